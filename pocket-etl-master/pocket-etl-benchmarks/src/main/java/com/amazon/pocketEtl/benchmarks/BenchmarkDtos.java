@@ -0,0 +1,264 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Java bean shapes used to exercise EtlStreamObject : a narrow bean with a handful of strings, a wide bean with twenty
+ * mixed fields and a nested bean that holds another bean and a list. Each shape has a view that only declares some of
+ * its fields, which is what a transformer typically projects the stream onto.
+ */
+public final class BenchmarkDtos {
+    private BenchmarkDtos() {
+    }
+
+    /**
+     * The DTO shapes available to benchmarks.
+     */
+    public enum Shape {
+        NARROW {
+            @Override
+            public Object newDto(int seed) {
+                NarrowDto dto = new NarrowDto();
+                dto.setId("id-" + seed);
+                dto.setName("name-" + seed);
+                dto.setStatus("ACTIVE");
+                return dto;
+            }
+
+            @Override
+            public Object newView(int seed) {
+                NarrowView view = new NarrowView();
+                view.setStatus("INACTIVE-" + seed);
+                return view;
+            }
+
+            @Override
+            public Class<?> getDtoClass() {
+                return NarrowDto.class;
+            }
+
+            @Override
+            public Class<?> getViewClass() {
+                return NarrowView.class;
+            }
+        },
+        WIDE {
+            @Override
+            public Object newDto(int seed) {
+                WideDto dto = new WideDto();
+                dto.setId("id-" + seed);
+                dto.setField1("value-1");
+                dto.setField2("value-2");
+                dto.setField3("value-3");
+                dto.setField4("value-4");
+                dto.setField5("value-5");
+                dto.setField6("value-6");
+                dto.setField7("value-7");
+                dto.setField8("value-8");
+                dto.setCount1(seed);
+                dto.setCount2(seed + 1);
+                dto.setCount3(seed + 2);
+                dto.setCount4(seed + 3);
+                dto.setTotal1(seed * 1.5);
+                dto.setTotal2(seed * 2.5);
+                dto.setTotal3(seed * 3.5);
+                dto.setFlag1(true);
+                dto.setFlag2(false);
+                dto.setTimestamp1(1_500_000_000_000L + seed);
+                dto.setTimestamp2(1_600_000_000_000L + seed);
+                return dto;
+            }
+
+            @Override
+            public Object newView(int seed) {
+                WideView view = new WideView();
+                view.setId("id-" + seed);
+                view.setCount1(seed * 10);
+                view.setFlag1(false);
+                return view;
+            }
+
+            @Override
+            public Class<?> getDtoClass() {
+                return WideDto.class;
+            }
+
+            @Override
+            public Class<?> getViewClass() {
+                return WideView.class;
+            }
+        },
+        NESTED {
+            @Override
+            public Object newDto(int seed) {
+                NarrowDto child = (NarrowDto) NARROW.newDto(seed);
+                NestedDto dto = new NestedDto();
+                dto.setId("id-" + seed);
+                dto.setChild(child);
+                dto.setTags(new ArrayList<>());
+                dto.getTags().add("tag-a");
+                dto.getTags().add("tag-b");
+                return dto;
+            }
+
+            @Override
+            public Object newView(int seed) {
+                NarrowDto child = (NarrowDto) NARROW.newDto(seed + 1);
+                NestedView view = new NestedView();
+                view.setChild(child);
+                return view;
+            }
+
+            @Override
+            public Class<?> getDtoClass() {
+                return NestedDto.class;
+            }
+
+            @Override
+            public Class<?> getViewClass() {
+                return NestedView.class;
+            }
+        };
+
+        public abstract Object newDto(int seed);
+
+        public abstract Object newView(int seed);
+
+        public abstract Class<?> getDtoClass();
+
+        public abstract Class<?> getViewClass();
+    }
+
+    public static class NarrowDto {
+        private String id;
+        private String name;
+        private String status;
+
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+        public String getStatus() { return status; }
+        public void setStatus(String status) { this.status = status; }
+    }
+
+    public static class NarrowView {
+        private String status;
+
+        public String getStatus() { return status; }
+        public void setStatus(String status) { this.status = status; }
+    }
+
+    public static class WideDto {
+        private String id;
+        private String field1;
+        private String field2;
+        private String field3;
+        private String field4;
+        private String field5;
+        private String field6;
+        private String field7;
+        private String field8;
+        private int count1;
+        private int count2;
+        private long count3;
+        private long count4;
+        private double total1;
+        private double total2;
+        private Double total3;
+        private boolean flag1;
+        private Boolean flag2;
+        private long timestamp1;
+        private Long timestamp2;
+
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+        public String getField1() { return field1; }
+        public void setField1(String field1) { this.field1 = field1; }
+        public String getField2() { return field2; }
+        public void setField2(String field2) { this.field2 = field2; }
+        public String getField3() { return field3; }
+        public void setField3(String field3) { this.field3 = field3; }
+        public String getField4() { return field4; }
+        public void setField4(String field4) { this.field4 = field4; }
+        public String getField5() { return field5; }
+        public void setField5(String field5) { this.field5 = field5; }
+        public String getField6() { return field6; }
+        public void setField6(String field6) { this.field6 = field6; }
+        public String getField7() { return field7; }
+        public void setField7(String field7) { this.field7 = field7; }
+        public String getField8() { return field8; }
+        public void setField8(String field8) { this.field8 = field8; }
+        public int getCount1() { return count1; }
+        public void setCount1(int count1) { this.count1 = count1; }
+        public int getCount2() { return count2; }
+        public void setCount2(int count2) { this.count2 = count2; }
+        public long getCount3() { return count3; }
+        public void setCount3(long count3) { this.count3 = count3; }
+        public long getCount4() { return count4; }
+        public void setCount4(long count4) { this.count4 = count4; }
+        public double getTotal1() { return total1; }
+        public void setTotal1(double total1) { this.total1 = total1; }
+        public double getTotal2() { return total2; }
+        public void setTotal2(double total2) { this.total2 = total2; }
+        public Double getTotal3() { return total3; }
+        public void setTotal3(Double total3) { this.total3 = total3; }
+        public boolean isFlag1() { return flag1; }
+        public void setFlag1(boolean flag1) { this.flag1 = flag1; }
+        public Boolean getFlag2() { return flag2; }
+        public void setFlag2(Boolean flag2) { this.flag2 = flag2; }
+        public long getTimestamp1() { return timestamp1; }
+        public void setTimestamp1(long timestamp1) { this.timestamp1 = timestamp1; }
+        public Long getTimestamp2() { return timestamp2; }
+        public void setTimestamp2(Long timestamp2) { this.timestamp2 = timestamp2; }
+    }
+
+    public static class WideView {
+        private String id;
+        private int count1;
+        private boolean flag1;
+
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+        public int getCount1() { return count1; }
+        public void setCount1(int count1) { this.count1 = count1; }
+        public boolean isFlag1() { return flag1; }
+        public void setFlag1(boolean flag1) { this.flag1 = flag1; }
+    }
+
+    public static class NestedDto {
+        private String id;
+        private NarrowDto child;
+        private List<String> tags;
+
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+        public NarrowDto getChild() { return child; }
+        public void setChild(NarrowDto child) { this.child = child; }
+        public List<String> getTags() { return tags; }
+        public void setTags(List<String> tags) { this.tags = tags; }
+    }
+
+    public static class NestedView {
+        private NarrowDto child;
+
+        public NarrowDto getChild() { return child; }
+        public void setChild(NarrowDto child) { this.child = child; }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.benchmarks;
+
+import com.amazon.pocketEtl.lookup.CachingLoaderLookup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures lookups against a fully loaded CachingLoaderLookup from one thread and from several threads at once, for
+ * keys that are in the cache and keys that are not.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CachingLoaderLookupBenchmark {
+    private final static int CONTENDED_THREADS = 8;
+
+    @Param({"1000", "100000"})
+    private int cacheSize;
+
+    private CachingLoaderLookup<Integer> cachingLoaderLookup;
+
+    @Setup
+    public void setup() throws Exception {
+        cachingLoaderLookup = new CachingLoaderLookup<>(Semaphore::new);
+        cachingLoaderLookup.open(null);
+
+        for (int i = 0; i < cacheSize; i++) {
+            cachingLoaderLookup.load(i * 2);
+        }
+
+        cachingLoaderLookup.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Optional<Integer> getHit() {
+        return cachingLoaderLookup.get(randomKey(0));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Optional<Integer> getMiss() {
+        return cachingLoaderLookup.get(randomKey(1));
+    }
+
+    @Benchmark
+    @Threads(CONTENDED_THREADS)
+    public Optional<Integer> getHitContended() {
+        return cachingLoaderLookup.get(randomKey(0));
+    }
+
+    @Benchmark
+    @Threads(CONTENDED_THREADS)
+    public Optional<Integer> getMissContended() {
+        return cachingLoaderLookup.get(randomKey(1));
+    }
+
+    // Every even number below twice the cache size has been loaded, so an offset of 0 always hits and 1 always misses
+    private int randomKey(int offset) {
+        return ThreadLocalRandom.current().nextInt(cacheSize) * 2 + offset;
+    }
+}
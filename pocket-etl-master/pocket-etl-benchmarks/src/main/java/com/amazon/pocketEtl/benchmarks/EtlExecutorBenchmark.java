@@ -0,0 +1,136 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.benchmarks;
+
+import com.amazon.pocketEtl.core.executor.EtlExecutor;
+import com.amazon.pocketEtl.core.executor.EtlExecutorFactory;
+import com.amazon.pocketEtl.core.executor.PartitionedEtlExecutor;
+import com.amazon.pocketEtl.core.executor.RingBufferWaitStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Measures the cost of handing tasks to each type of EtlExecutor the factory can build, and waiting for them to run.
+ * The tasks themselves do a configurable amount of busy work, so that a workCost of 0 shows the raw hand-off overhead
+ * and larger values show how well each executor keeps its workers busy.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EtlExecutorBenchmark {
+    private final static int TASKS_PER_INVOCATION = 1000;
+    private final static int QUEUE_SIZE = 1000;
+
+    public enum ExecutorType {
+        IMMEDIATE((factory, workers) -> factory.newImmediateExecutionEtlExecutor()),
+        BLOCKING_FIXED_THREADS((factory, workers) -> factory.newBlockingFixedThreadsEtlExecutor(workers, QUEUE_SIZE)),
+        UNBOUND_FIXED_THREADS((factory, workers) -> factory.newUnboundFixedThreadsEtlExecutorFactory(workers)),
+        RING_BUFFER((factory, workers) -> factory.newRingBufferEtlExecutor(workers, QUEUE_SIZE,
+                RingBufferWaitStrategy.YIELD)),
+        ADAPTIVE_CONCURRENCY((factory, workers) -> factory.newAdaptiveConcurrencyEtlExecutor(1, workers)),
+        VIRTUAL_THREADS((factory, workers) -> factory.newVirtualThreadsEtlExecutor(workers)),
+        KEY_AFFINITY((factory, workers) -> factory.newKeyAffinityEtlExecutor(workers, QUEUE_SIZE));
+
+        private final BiFunction<EtlExecutorFactory, Integer, EtlExecutor> constructor;
+
+        ExecutorType(BiFunction<EtlExecutorFactory, Integer, EtlExecutor> constructor) {
+            this.constructor = constructor;
+        }
+    }
+
+    @Param({"IMMEDIATE", "BLOCKING_FIXED_THREADS", "UNBOUND_FIXED_THREADS", "RING_BUFFER", "ADAPTIVE_CONCURRENCY",
+            "VIRTUAL_THREADS", "KEY_AFFINITY"})
+    private ExecutorType executorType;
+
+    @Param({"4"})
+    private int workers;
+
+    @Param({"0", "100"})
+    private int workCost;
+
+    private final AtomicInteger completedTasks = new AtomicInteger(0);
+    private EtlExecutor etlExecutor;
+    private Runnable task;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        etlExecutor = executorType.constructor.apply(new EtlExecutorFactory(), workers);
+        task = () -> {
+            Blackhole.consumeCPU(workCost);
+            completedTasks.incrementAndGet();
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        etlExecutor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS_PER_INVOCATION)
+    public void submit() {
+        completedTasks.set(0);
+
+        for (int i = 0; i < TASKS_PER_INVOCATION; i++) {
+            etlExecutor.submit(task, null);
+        }
+
+        awaitCompletedTasks();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS_PER_INVOCATION)
+    public void submitWithKey() {
+        if (!(etlExecutor instanceof PartitionedEtlExecutor)) {
+            submit();
+            return;
+        }
+
+        completedTasks.set(0);
+
+        for (int i = 0; i < TASKS_PER_INVOCATION; i++) {
+            ((PartitionedEtlExecutor) etlExecutor).submit(i, task, null);
+        }
+
+        awaitCompletedTasks();
+    }
+
+    private void awaitCompletedTasks() {
+        while (completedTasks.get() < TASKS_PER_INVOCATION) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.benchmarks;
+
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversions every record goes through between stages : projecting the stream onto the class it was
+ * created with and onto a narrower view, merging a view back into the stream, and copying the stream for fan-out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EtlStreamObjectBenchmark {
+    @Param({"NARROW", "WIDE", "NESTED"})
+    private BenchmarkDtos.Shape shape;
+
+    private Object dto;
+    private Object view;
+    private Class<?> dtoClass;
+    private Class<?> viewClass;
+    private EtlStreamObject mapBackedEtlStreamObject;
+
+    @Setup
+    public void setup() {
+        dto = shape.newDto(1);
+        view = shape.newView(1);
+        dtoClass = shape.getDtoClass();
+        viewClass = shape.getViewClass();
+
+        // Merging in a different class forces the stream onto its map representation
+        mapBackedEtlStreamObject = EtlStreamObject.of(shape.newDto(2)).with(shape.newView(2));
+    }
+
+    @Benchmark
+    public Object getSameClass() {
+        return EtlStreamObject.of(dto).get(dtoClass);
+    }
+
+    @Benchmark
+    public Object getView() {
+        return EtlStreamObject.of(dto).get(viewClass);
+    }
+
+    @Benchmark
+    public Object getFromMap() {
+        return mapBackedEtlStreamObject.get(dtoClass);
+    }
+
+    @Benchmark
+    public EtlStreamObject withView() {
+        return EtlStreamObject.of(dto).with(view);
+    }
+
+    @Benchmark
+    public EtlStreamObject createCopy() {
+        return EtlStreamObject.of(dto).createCopy();
+    }
+
+    @Benchmark
+    public EtlStreamObject createCopyThenWithView() {
+        return EtlStreamObject.of(dto).createCopy().with(view);
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.benchmarks;
+
+import com.amazon.pocketEtl.EtlMetrics;
+
+/**
+ * An EtlMetrics implementation that discards everything, so benchmarks measure the cost of the framework calling
+ * EtlMetrics rather than the cost of any particular metrics backend.
+ */
+public class NoOpEtlMetrics implements EtlMetrics {
+    @Override
+    public EtlMetrics createChildMetrics() {
+        return this;
+    }
+
+    @Override
+    public void addCount(String keyName, double count) {
+    }
+
+    @Override
+    public void addTime(String keyName, double timeInMilliSeconds) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.benchmarks.throughput;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the time spent in garbage collection and the bytes allocated on the heap while it is running. Worker
+ * threads come and go with every run, so rather than asking each thread what it allocated, allocation is worked out
+ * from the heap : the bytes every collection freed, plus the growth of the heap between start and stop. Collections
+ * are reported to the monitor asynchronously, so a collection that finishes just before stop() may be missed.
+ */
+class GcMonitor {
+    private final List<NotificationEmitter> registeredEmitters = new ArrayList<>();
+    private final AtomicLong bytesFreed = new AtomicLong();
+    private final NotificationListener listener = this::handleNotification;
+
+    private long startCollectionCount;
+    private long startCollectionTimeMillis;
+    private long startHeapUsedBytes;
+    private long collectionCount;
+    private long collectionTimeMillis;
+    private long allocatedBytes;
+
+    void start() {
+        bytesFreed.set(0);
+        startCollectionCount = getTotalCollectionCount();
+        startCollectionTimeMillis = getTotalCollectionTimeMillis();
+        startHeapUsedBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                ((NotificationEmitter) collector).addNotificationListener(listener, null, null);
+                registeredEmitters.add((NotificationEmitter) collector);
+            }
+        }
+    }
+
+    void stop() {
+        long endHeapUsedBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+        for (NotificationEmitter emitter : registeredEmitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException ignored) {
+                // Nothing to remove
+            }
+        }
+
+        registeredEmitters.clear();
+        collectionCount = getTotalCollectionCount() - startCollectionCount;
+        collectionTimeMillis = getTotalCollectionTimeMillis() - startCollectionTimeMillis;
+        allocatedBytes = Math.max(0, endHeapUsedBytes - startHeapUsedBytes + bytesFreed.get());
+    }
+
+    long getCollectionCount() {
+        return collectionCount;
+    }
+
+    long getCollectionTimeMillis() {
+        return collectionTimeMillis;
+    }
+
+    long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    private void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+
+        GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+
+        bytesFreed.addAndGet(sumUsedBytes(info.getGcInfo().getMemoryUsageBeforeGc())
+                - sumUsedBytes(info.getGcInfo().getMemoryUsageAfterGc()));
+    }
+
+    private static long sumUsedBytes(Map<String, MemoryUsage> memoryUsageByPool) {
+        return memoryUsageByPool.values().stream().mapToLong(MemoryUsage::getUsed).sum();
+    }
+
+    private static long getTotalCollectionCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(collector -> Math.max(0, collector.getCollectionCount())).sum();
+    }
+
+    private static long getTotalCollectionTimeMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(collector -> Math.max(0, collector.getCollectionTime())).sum();
+    }
+}
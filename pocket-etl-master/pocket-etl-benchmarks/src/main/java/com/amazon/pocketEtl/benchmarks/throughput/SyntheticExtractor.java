@@ -0,0 +1,67 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.benchmarks.throughput;
+
+import com.amazon.pocketEtl.Extractor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Extractor that generates a fixed number of records, each with a new map of attributes as wide as the workload
+ * profile asks for. The attribute values are shared between records, so the cost of extraction is the cost of the
+ * record and its map rather than the cost of building strings.
+ */
+class SyntheticExtractor implements Extractor<SyntheticRecord> {
+    private final long recordCount;
+    private final String[] attributeNames;
+    private final String attributeValue;
+    private long nextId = 0;
+
+    SyntheticExtractor(long recordCount, int dtoWidth, int valueLength) {
+        this.recordCount = recordCount;
+        this.attributeNames = new String[dtoWidth];
+
+        for (int i = 0; i < dtoWidth; i++) {
+            attributeNames[i] = "attribute" + i;
+        }
+
+        char[] valueCharacters = new char[valueLength];
+        Arrays.fill(valueCharacters, 'x');
+        this.attributeValue = new String(valueCharacters);
+    }
+
+    @Override
+    public Optional<SyntheticRecord> next() {
+        if (nextId >= recordCount) {
+            return Optional.empty();
+        }
+
+        Map<String, String> attributes = new HashMap<>();
+
+        for (String attributeName : attributeNames) {
+            attributes.put(attributeName, attributeValue);
+        }
+
+        return Optional.of(new SyntheticRecord(nextId++, System.nanoTime(), attributes));
+    }
+
+    long getRecordsExtracted() {
+        return nextId;
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.benchmarks.throughput;
+
+/**
+ * Thrown by a synthetic stage to simulate a record that could not be processed. The stack trace is not filled in, as
+ * the cost being simulated is that of routing a failed record rather than that of building a stack trace.
+ */
+class SyntheticFailureException extends RuntimeException {
+    SyntheticFailureException() {
+        super("Simulated record failure", null, false, false);
+    }
+}
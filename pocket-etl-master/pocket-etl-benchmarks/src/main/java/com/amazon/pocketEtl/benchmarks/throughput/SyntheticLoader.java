@@ -0,0 +1,51 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.benchmarks.throughput;
+
+import com.amazon.pocketEtl.Loader;
+import com.amazon.pocketEtl.core.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loader that spends the time a workload profile says the load stage costs, then records how long the record took to
+ * get from the extractor to here.
+ */
+class SyntheticLoader implements Loader<SyntheticRecord> {
+    private final WorkloadProfile.StageProfile stageProfile;
+    private final LatencyHistogram endToEndLatency = new LatencyHistogram();
+    private final LongAdder recordsLoaded = new LongAdder();
+
+    SyntheticLoader(WorkloadProfile.StageProfile stageProfile) {
+        this.stageProfile = stageProfile;
+    }
+
+    @Override
+    public void load(SyntheticRecord objectToLoad) {
+        stageProfile.simulateWork();
+
+        endToEndLatency.record(System.nanoTime() - objectToLoad.getExtractedAtNanos());
+        recordsLoaded.increment();
+    }
+
+    LatencyHistogram getEndToEndLatency() {
+        return endToEndLatency;
+    }
+
+    long getRecordsLoaded() {
+        return recordsLoaded.sum();
+    }
+}
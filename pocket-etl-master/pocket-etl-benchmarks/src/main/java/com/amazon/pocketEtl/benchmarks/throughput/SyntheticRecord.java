@@ -0,0 +1,62 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.benchmarks.throughput;
+
+import java.util.Map;
+
+/**
+ * The record generated by SyntheticExtractor. Besides its attributes, which give the record the width asked for by the
+ * workload profile, it carries the time it was extracted so the loader can measure how long it took to travel through
+ * the whole pipeline.
+ */
+public class SyntheticRecord {
+    private long id;
+    private long extractedAtNanos;
+    private Map<String, String> attributes;
+
+    public SyntheticRecord() {
+    }
+
+    SyntheticRecord(long id, long extractedAtNanos, Map<String, String> attributes) {
+        this.id = id;
+        this.extractedAtNanos = extractedAtNanos;
+        this.attributes = attributes;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getExtractedAtNanos() {
+        return extractedAtNanos;
+    }
+
+    public void setExtractedAtNanos(long extractedAtNanos) {
+        this.extractedAtNanos = extractedAtNanos;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    public void setAttributes(Map<String, String> attributes) {
+        this.attributes = attributes;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.benchmarks.throughput;
+
+import com.amazon.pocketEtl.Transformer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Transformer that spends the time a workload profile says the transform stage costs, then fans each record out into
+ * copies that share its id, extraction time and attributes.
+ */
+class SyntheticTransformer implements Transformer<SyntheticRecord, SyntheticRecord> {
+    private final WorkloadProfile.StageProfile stageProfile;
+
+    SyntheticTransformer(WorkloadProfile.StageProfile stageProfile) {
+        this.stageProfile = stageProfile;
+    }
+
+    @Override
+    public List<SyntheticRecord> transform(SyntheticRecord objectToTransform) {
+        stageProfile.simulateWork();
+
+        int fanOut = stageProfile.nextFanOut();
+
+        if (fanOut == 1) {
+            return Collections.singletonList(objectToTransform);
+        }
+
+        List<SyntheticRecord> transformedRecords = new ArrayList<>(fanOut);
+
+        for (int i = 0; i < fanOut; i++) {
+            transformedRecords.add(new SyntheticRecord(objectToTransform.getId(),
+                    objectToTransform.getExtractedAtNanos(), objectToTransform.getAttributes()));
+        }
+
+        return transformedRecords;
+    }
+}
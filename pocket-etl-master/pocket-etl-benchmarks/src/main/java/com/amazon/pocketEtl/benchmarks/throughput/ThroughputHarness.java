@@ -0,0 +1,227 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.benchmarks.throughput;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.benchmarks.NoOpEtlMetrics;
+import com.amazon.pocketEtl.core.consumer.EtlConsumer;
+import com.amazon.pocketEtl.core.consumer.EtlConsumerFactory;
+import com.amazon.pocketEtl.core.executor.EtlExecutorFactory;
+import com.amazon.pocketEtl.core.metrics.EtlMetricsRegistry;
+import com.amazon.pocketEtl.core.metrics.EtlTelemetry;
+import com.amazon.pocketEtl.core.producer.EtlProducer;
+import com.amazon.pocketEtl.core.producer.EtlProducerFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Drives complete extract, transform and load pipelines built from workload profiles, once for every thread count in
+ * the profile, and reports the throughput, end-to-end latency, GC time and allocation rate of each run. Useful for
+ * sizing a job before deploying it : describe its records and the cost of its stages in a profile, and see how many
+ * threads it takes to reach the throughput it needs.
+ *
+ * Usage: ThroughputHarness [--threads 1,2,4] [--output throughput-result.json] [profile...]
+ *
+ * Each profile is either the path of a JSON profile file or the name of one of the profiles bundled in this jar. With
+ * no profiles every bundled profile is run. --threads overrides the thread counts in every profile.
+ */
+public class ThroughputHarness {
+    private final static Logger logger = getLogger(ThroughputHarness.class);
+    private final static List<String> BUNDLED_PROFILES = Arrays.asList("cpu-bound", "io-bound", "fan-out", "error-heavy");
+    private final static String DEFAULT_OUTPUT_FILE = "throughput-result.json";
+    private final static String EXTRACT_STAGE = "extract";
+    private final static String TRANSFORM_STAGE = "transform";
+    private final static String LOAD_STAGE = "load";
+
+    private final static ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final EtlExecutorFactory etlExecutorFactory = new EtlExecutorFactory();
+    private final EtlMetrics etlMetrics = new NoOpEtlMetrics();
+
+    public static void main(String[] args) throws Exception {
+        List<String> profileNames = new ArrayList<>();
+        List<Integer> threadCounts = null;
+        String outputFile = DEFAULT_OUTPUT_FILE;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threadCounts = Arrays.stream(getOptionValue(args, i++).split(","))
+                            .map(String::trim)
+                            .map(Integer::valueOf)
+                            .collect(Collectors.toList());
+                    break;
+                case "--output":
+                    outputFile = getOptionValue(args, i++);
+                    break;
+                default:
+                    profileNames.add(args[i]);
+            }
+        }
+
+        if (profileNames.isEmpty()) {
+            profileNames.addAll(BUNDLED_PROFILES);
+        }
+
+        ThroughputHarness throughputHarness = new ThroughputHarness();
+        List<ThroughputResult> results = new ArrayList<>();
+
+        System.out.println(String.format("%-16s %7s %12s %10s %10s %10s %8s %10s %9s",
+                "profile", "threads", "records/s", "p50 ms", "p99 ms", "p99.9 ms", "gc ms", "alloc MB/s", "errors"));
+
+        for (String profileName : profileNames) {
+            WorkloadProfile workloadProfile = loadProfile(profileName);
+
+            if (threadCounts != null) {
+                workloadProfile.setThreadCounts(threadCounts);
+            }
+
+            workloadProfile.validate();
+
+            for (int threads : workloadProfile.getThreadCounts()) {
+                ThroughputResult result = throughputHarness.run(workloadProfile, threads);
+                results.add(result);
+
+                System.out.println(String.format("%-16s %7d %12.0f %10.3f %10.3f %10.3f %8d %10.1f %9d",
+                        result.getProfileName(), result.getThreads(), result.getRecordsPerSecond(),
+                        result.getEndToEndLatencyP50Millis(), result.getEndToEndLatencyP99Millis(),
+                        result.getEndToEndLatencyP999Millis(), result.getGcTimeMillis(),
+                        result.getAllocationRateMegabytesPerSecond(), result.getRecordsErrored()));
+            }
+        }
+
+        objectMapper.writeValue(new File(outputFile), results);
+        System.out.println("Results written to " + outputFile);
+    }
+
+    /**
+     * Runs a workload profile with a single thread count : first a warmup run that is discarded, then the measured
+     * run.
+     * @param workloadProfile The profile to run.
+     * @param threads The number of threads each of the transform and load stages runs with.
+     * @return The measurements taken from the measured run.
+     * @throws Exception If the pipeline could not be closed.
+     */
+    ThroughputResult run(WorkloadProfile workloadProfile, int threads) throws Exception {
+        if (workloadProfile.getWarmupRecordCount() > 0) {
+            runPipeline(workloadProfile, workloadProfile.getWarmupRecordCount(), threads);
+        }
+
+        // Start the measured run from a clean heap, so it is not charged for collecting the warmup's garbage
+        System.gc();
+        return runPipeline(workloadProfile, workloadProfile.getRecordCount(), threads);
+    }
+
+    private ThroughputResult runPipeline(WorkloadProfile workloadProfile, long recordCount, int threads)
+            throws Exception {
+        EtlMetricsRegistry etlMetricsRegistry = new EtlMetricsRegistry();
+        EtlTelemetry etlTelemetry = new EtlTelemetry(etlMetricsRegistry);
+        EtlConsumerFactory etlConsumerFactory = new EtlConsumerFactory(etlExecutorFactory, etlMetricsRegistry);
+        EtlProducerFactory etlProducerFactory = new EtlProducerFactory(etlExecutorFactory);
+
+        SyntheticExtractor syntheticExtractor = new SyntheticExtractor(recordCount, workloadProfile.getDtoWidth(),
+                workloadProfile.getValueLength());
+        SyntheticLoader syntheticLoader = new SyntheticLoader(workloadProfile.getLoad());
+
+        EtlConsumer loadEtlConsumer = etlConsumerFactory.newLoader(LOAD_STAGE, syntheticLoader,
+                SyntheticRecord.class, newErrorEtlConsumer(etlConsumerFactory, LOAD_STAGE),
+                etlExecutorFactory.newBlockingFixedThreadsEtlExecutor(threads, workloadProfile.getQueueSize()));
+
+        EtlConsumer transformEtlConsumer = etlConsumerFactory.newTransformer(TRANSFORM_STAGE,
+                new SyntheticTransformer(workloadProfile.getTransform()), SyntheticRecord.class, loadEtlConsumer,
+                newErrorEtlConsumer(etlConsumerFactory, TRANSFORM_STAGE),
+                etlExecutorFactory.newBlockingFixedThreadsEtlExecutor(threads, workloadProfile.getQueueSize()));
+
+        EtlProducer etlProducer = etlProducerFactory.newExtractorProducer(EXTRACT_STAGE, syntheticExtractor,
+                transformEtlConsumer);
+
+        // Holding an attachment with no metrics to flush to keeps the registry from resetting its latency histograms,
+        // so the telemetry taken once the pipeline has closed covers the whole run
+        etlMetricsRegistry.attach(null);
+        GcMonitor gcMonitor = new GcMonitor();
+
+        try {
+            gcMonitor.start();
+            long startNanos = System.nanoTime();
+
+            try {
+                etlProducer.open(etlMetrics);
+                etlProducer.produce();
+            } finally {
+                etlProducer.close();
+            }
+
+            long elapsedNanos = System.nanoTime() - startNanos;
+            gcMonitor.stop();
+            long recordsErrored = etlMetricsRegistry.getStageMetrics(TRANSFORM_STAGE).getErrors()
+                    + etlMetricsRegistry.getStageMetrics(LOAD_STAGE).getErrors();
+
+            return new ThroughputResult(workloadProfile.getName(), threads, syntheticExtractor.getRecordsExtracted(),
+                    syntheticLoader.getRecordsLoaded(), recordsErrored, elapsedNanos,
+                    syntheticLoader.getEndToEndLatency().snapshot(), gcMonitor, etlTelemetry.snapshot());
+        } finally {
+            etlMetricsRegistry.detach();
+        }
+    }
+
+    private EtlConsumer newErrorEtlConsumer(EtlConsumerFactory etlConsumerFactory, String stageName) {
+        return etlConsumerFactory.newLogAsErrorConsumer(stageName + ".error", logger, SyntheticRecord.class,
+                failedRecord -> "Failed record " + failedRecord.getId());
+    }
+
+    private static WorkloadProfile loadProfile(String profileName) throws IOException {
+        File profileFile = new File(profileName);
+        WorkloadProfile workloadProfile;
+
+        if (profileFile.isFile()) {
+            workloadProfile = objectMapper.readValue(profileFile, WorkloadProfile.class);
+        } else {
+            try (InputStream profileStream =
+                         ThroughputHarness.class.getResourceAsStream("/workloads/" + profileName + ".json")) {
+                if (profileStream == null) {
+                    throw new IllegalArgumentException("No profile file or bundled profile named: " + profileName);
+                }
+
+                workloadProfile = objectMapper.readValue(profileStream, WorkloadProfile.class);
+            }
+        }
+
+        if (workloadProfile.getName() == null) {
+            workloadProfile.setName(profileFile.getName().replaceFirst("\\.json$", ""));
+        }
+
+        return workloadProfile;
+    }
+
+    private static String getOptionValue(String[] args, int optionIndex) {
+        if (optionIndex + 1 >= args.length) {
+            throw new IllegalArgumentException("Missing value for option: " + args[optionIndex]);
+        }
+
+        return args[optionIndex + 1];
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.benchmarks.throughput;
+
+import com.amazon.pocketEtl.core.metrics.LatencyHistogram;
+import com.amazon.pocketEtl.core.metrics.StageTelemetry;
+
+import java.util.List;
+
+/**
+ * The measurements taken from running a workload profile with one thread count. Records per second is based on the
+ * records extracted, which is how the size of a job is usually known up front; fan-out and errors decide how many of
+ * them, or of the records they turned into, reach the loader.
+ */
+public class ThroughputResult {
+    private final static double NANOSECONDS_PER_MILLISECOND = 1_000_000.0;
+    private final static double NANOSECONDS_PER_SECOND = 1_000_000_000.0;
+    private final static double BYTES_PER_MEGABYTE = 1024.0 * 1024.0;
+
+    private final String profileName;
+    private final int threads;
+    private final long recordsExtracted;
+    private final long recordsLoaded;
+    private final long recordsErrored;
+    private final double elapsedSeconds;
+    private final double endToEndLatencyP50Millis;
+    private final double endToEndLatencyP99Millis;
+    private final double endToEndLatencyP999Millis;
+    private final long gcCount;
+    private final long gcTimeMillis;
+    private final long allocatedBytes;
+    private final List<StageTelemetry> stages;
+
+    ThroughputResult(String profileName, int threads, long recordsExtracted, long recordsLoaded, long recordsErrored,
+                     long elapsedNanos, LatencyHistogram.Snapshot endToEndLatency, GcMonitor gcMonitor,
+                     List<StageTelemetry> stages) {
+        this.profileName = profileName;
+        this.threads = threads;
+        this.recordsExtracted = recordsExtracted;
+        this.recordsLoaded = recordsLoaded;
+        this.recordsErrored = recordsErrored;
+        this.elapsedSeconds = elapsedNanos / NANOSECONDS_PER_SECOND;
+        this.endToEndLatencyP50Millis = getLatencyMillis(endToEndLatency, 50);
+        this.endToEndLatencyP99Millis = getLatencyMillis(endToEndLatency, 99);
+        this.endToEndLatencyP999Millis = getLatencyMillis(endToEndLatency, 99.9);
+        this.gcCount = gcMonitor.getCollectionCount();
+        this.gcTimeMillis = gcMonitor.getCollectionTimeMillis();
+        this.allocatedBytes = gcMonitor.getAllocatedBytes();
+        this.stages = stages;
+    }
+
+    public String getProfileName() {
+        return profileName;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getRecordsExtracted() {
+        return recordsExtracted;
+    }
+
+    public long getRecordsLoaded() {
+        return recordsLoaded;
+    }
+
+    public long getRecordsErrored() {
+        return recordsErrored;
+    }
+
+    public double getElapsedSeconds() {
+        return elapsedSeconds;
+    }
+
+    public double getRecordsPerSecond() {
+        return elapsedSeconds > 0 ? recordsExtracted / elapsedSeconds : 0.0;
+    }
+
+    public double getEndToEndLatencyP50Millis() {
+        return endToEndLatencyP50Millis;
+    }
+
+    public double getEndToEndLatencyP99Millis() {
+        return endToEndLatencyP99Millis;
+    }
+
+    public double getEndToEndLatencyP999Millis() {
+        return endToEndLatencyP999Millis;
+    }
+
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    public long getGcTimeMillis() {
+        return gcTimeMillis;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public double getAllocationRateMegabytesPerSecond() {
+        return elapsedSeconds > 0 ? allocatedBytes / BYTES_PER_MEGABYTE / elapsedSeconds : 0.0;
+    }
+
+    public List<StageTelemetry> getStages() {
+        return stages;
+    }
+
+    private static double getLatencyMillis(LatencyHistogram.Snapshot latency, double percentile) {
+        return latency.getValueAtPercentile(percentile) / NANOSECONDS_PER_MILLISECOND;
+    }
+}
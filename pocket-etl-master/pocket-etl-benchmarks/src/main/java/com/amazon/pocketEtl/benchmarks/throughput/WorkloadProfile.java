@@ -0,0 +1,244 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.benchmarks.throughput;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A declarative description of an ETL job to simulate : how many records to extract and how wide they are, and for the
+ * transform and load stages how many records each input fans out to, how much CPU and I/O time each record costs and
+ * how often a record fails. Profiles are read from JSON, for example:
+ *
+ * <pre>
+ * {
+ *   "name": "io-bound",
+ *   "recordCount": 200000,
+ *   "dtoWidth": 20,
+ *   "threadCounts": [1, 4, 16, 64],
+ *   "transform": { "fanOut": 1.0, "cpuCostMicros": 5 },
+ *   "load": { "ioLatencyMicros": 500, "errorRate": 0.001 }
+ * }
+ * </pre>
+ *
+ * Every stage runs with each of the thread counts in turn, in the same way EtlStream.withThreads() sets the
+ * parallelism of a stage.
+ */
+public class WorkloadProfile {
+    private String name;
+    private long recordCount = 100_000;
+    private long warmupRecordCount = -1;
+    private int dtoWidth = 10;
+    private int valueLength = 16;
+    private int queueSize = 1000;
+    private List<Integer> threadCounts = Arrays.asList(1, 2, 4, 8);
+    private StageProfile transform = new StageProfile();
+    private StageProfile load = new StageProfile();
+
+    /**
+     * Checks that the profile describes a job that can be run.
+     * @throws IllegalArgumentException If any of the settings are out of range.
+     */
+    public void validate() {
+        if (recordCount < 1) {
+            throw new IllegalArgumentException("recordCount must be at least 1");
+        }
+
+        if (dtoWidth < 0 || valueLength < 0) {
+            throw new IllegalArgumentException("dtoWidth and valueLength cannot be negative");
+        }
+
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("queueSize must be at least 1");
+        }
+
+        if (threadCounts == null || threadCounts.isEmpty() || threadCounts.stream().anyMatch(threads -> threads < 1)) {
+            throw new IllegalArgumentException("threadCounts must contain at least one thread count, all at least 1");
+        }
+
+        transform.validate("transform");
+        load.validate("load");
+    }
+
+    /**
+     * Get the number of records to extract before measuring, to give the JIT compiler a chance to warm up.
+     * @return The warmup record count, which is a tenth of the record count unless set explicitly.
+     */
+    public long getWarmupRecordCount() {
+        return warmupRecordCount < 0 ? recordCount / 10 : warmupRecordCount;
+    }
+
+    public void setWarmupRecordCount(long warmupRecordCount) {
+        this.warmupRecordCount = warmupRecordCount;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public void setRecordCount(long recordCount) {
+        this.recordCount = recordCount;
+    }
+
+    public int getDtoWidth() {
+        return dtoWidth;
+    }
+
+    public void setDtoWidth(int dtoWidth) {
+        this.dtoWidth = dtoWidth;
+    }
+
+    public int getValueLength() {
+        return valueLength;
+    }
+
+    public void setValueLength(int valueLength) {
+        this.valueLength = valueLength;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public List<Integer> getThreadCounts() {
+        return threadCounts;
+    }
+
+    public void setThreadCounts(List<Integer> threadCounts) {
+        this.threadCounts = threadCounts;
+    }
+
+    public StageProfile getTransform() {
+        return transform;
+    }
+
+    public void setTransform(StageProfile transform) {
+        this.transform = transform;
+    }
+
+    public StageProfile getLoad() {
+        return load;
+    }
+
+    public void setLoad(StageProfile load) {
+        this.load = load;
+    }
+
+    /**
+     * The simulated cost of a single stage. Fan-out only applies to the transform stage; a fan-out of 1.5 means every
+     * record is transformed into one record half the time and into two records the other half.
+     */
+    public static class StageProfile {
+        private double fanOut = 1.0;
+        private long cpuCostMicros = 0;
+        private long ioLatencyMicros = 0;
+        private double errorRate = 0.0;
+
+        /**
+         * Spends the CPU and I/O time this stage costs per record, then fails the record at the configured error rate.
+         * @throws SyntheticFailureException If this record has been chosen to fail.
+         */
+        void simulateWork() {
+            if (cpuCostMicros > 0) {
+                long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(cpuCostMicros);
+
+                while (System.nanoTime() < deadline) {
+                    // Burn CPU without giving up the thread
+                }
+            }
+
+            if (ioLatencyMicros > 0) {
+                long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(ioLatencyMicros);
+                long remainingNanos;
+
+                // parkNanos() can return early, so keep parking until the full latency has passed
+                while ((remainingNanos = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remainingNanos);
+                }
+            }
+
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                throw new SyntheticFailureException();
+            }
+        }
+
+        /**
+         * Decides how many records the next record should be transformed into.
+         * @return The whole part of the fan-out, plus one at a probability equal to its fractional part.
+         */
+        int nextFanOut() {
+            int wholeFanOut = (int) fanOut;
+            return ThreadLocalRandom.current().nextDouble() < fanOut - wholeFanOut ? wholeFanOut + 1 : wholeFanOut;
+        }
+
+        private void validate(String stageName) {
+            if (fanOut < 0 || cpuCostMicros < 0 || ioLatencyMicros < 0) {
+                throw new IllegalArgumentException(stageName + " fanOut, cpuCostMicros and ioLatencyMicros cannot be negative");
+            }
+
+            if (errorRate < 0 || errorRate > 1) {
+                throw new IllegalArgumentException(stageName + " errorRate must be between 0 and 1");
+            }
+        }
+
+        public double getFanOut() {
+            return fanOut;
+        }
+
+        public void setFanOut(double fanOut) {
+            this.fanOut = fanOut;
+        }
+
+        public long getCpuCostMicros() {
+            return cpuCostMicros;
+        }
+
+        public void setCpuCostMicros(long cpuCostMicros) {
+            this.cpuCostMicros = cpuCostMicros;
+        }
+
+        public long getIoLatencyMicros() {
+            return ioLatencyMicros;
+        }
+
+        public void setIoLatencyMicros(long ioLatencyMicros) {
+            this.ioLatencyMicros = ioLatencyMicros;
+        }
+
+        public double getErrorRate() {
+            return errorRate;
+        }
+
+        public void setErrorRate(double errorRate) {
+            this.errorRate = errorRate;
+        }
+    }
+}
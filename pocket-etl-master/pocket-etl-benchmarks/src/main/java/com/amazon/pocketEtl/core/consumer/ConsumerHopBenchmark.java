@@ -0,0 +1,165 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.benchmarks.NoOpEtlMetrics;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.executor.EtlExecutorFactory;
+import com.amazon.pocketEtl.core.metrics.EtlMetricsRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead a single consumer in the standard chain adds to every record, by wrapping a consumer that does
+ * nothing but hand the record to a Blackhole. Compare each benchmark with 'direct' to get the cost of the hop. Every
+ * executor used here runs tasks on the calling thread, so no thread hand-off is included. This class lives in the
+ * consumer package because the individual consumers are not part of the public API.
+ *
+ * Run with '-prof gc' to check the number of bytes allocated per record (gc.alloc.rate.norm) on these paths. Once
+ * warmed up, direct, smartConsumer, metricsEmissionConsumer, metricsEmissionConsumerWithRegistry, fusedConsumer and
+ * loaderChain (which is fused, because its executor runs tasks on the calling thread) are expected to allocate nothing.
+ * executorConsumer allocates the task it hands to its executor and the consume action that task wraps: two capturing
+ * lambdas, about 48 bytes per record on a 64-bit JVM with compressed oops, or less where escape analysis removes them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConsumerHopBenchmark {
+    private final static String STAGE_NAME = "benchmark";
+
+    @Param({"true", "false"})
+    private boolean withMetrics;
+
+    private EtlStreamObject etlStreamObject;
+    private EtlConsumer directEtlConsumer;
+    private EtlConsumer smartEtlConsumer;
+    private EtlConsumer metricsEmissionEtlConsumer;
+    private EtlConsumer registryMetricsEmissionEtlConsumer;
+    private EtlConsumer executorEtlConsumer;
+    private EtlConsumer fusedEtlConsumer;
+    private EtlConsumer loaderChainEtlConsumer;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        EtlMetrics etlMetrics = withMetrics ? new NoOpEtlMetrics() : null;
+        EtlExecutorFactory etlExecutorFactory = new EtlExecutorFactory();
+        EtlConsumerFactory etlConsumerFactory = new EtlConsumerFactory(etlExecutorFactory);
+
+        etlStreamObject = EtlStreamObject.of(STAGE_NAME);
+        directEtlConsumer = new BlackholeEtlConsumer(blackhole);
+        smartEtlConsumer = new SmartEtlConsumer(STAGE_NAME, new BlackholeEtlConsumer(blackhole));
+        metricsEmissionEtlConsumer = new MetricsEmissionEtlConsumer(STAGE_NAME, new BlackholeEtlConsumer(blackhole));
+        registryMetricsEmissionEtlConsumer = new MetricsEmissionEtlConsumer(STAGE_NAME,
+                new BlackholeEtlConsumer(blackhole), new EtlMetricsRegistry());
+        executorEtlConsumer = new ExecutorEtlConsumer(STAGE_NAME, new BlackholeEtlConsumer(blackhole),
+                etlExecutorFactory.newImmediateExecutionEtlExecutor());
+        fusedEtlConsumer = new FusedEtlConsumer(STAGE_NAME, new BlackholeEtlConsumer(blackhole),
+                etlExecutorFactory.newImmediateExecutionEtlExecutor());
+        loaderChainEtlConsumer = etlConsumerFactory.newLoader(STAGE_NAME, blackhole::consume, String.class,
+                new BlackholeEtlConsumer(blackhole), etlExecutorFactory.newImmediateExecutionEtlExecutor());
+
+        directEtlConsumer.open(etlMetrics);
+        smartEtlConsumer.open(etlMetrics);
+        metricsEmissionEtlConsumer.open(etlMetrics);
+        registryMetricsEmissionEtlConsumer.open(etlMetrics);
+        executorEtlConsumer.open(etlMetrics);
+        fusedEtlConsumer.open(etlMetrics);
+        loaderChainEtlConsumer.open(etlMetrics);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        smartEtlConsumer.close();
+        metricsEmissionEtlConsumer.close();
+        registryMetricsEmissionEtlConsumer.close();
+        executorEtlConsumer.close();
+        fusedEtlConsumer.close();
+        loaderChainEtlConsumer.close();
+    }
+
+    @Benchmark
+    public void direct() {
+        directEtlConsumer.consume(etlStreamObject);
+    }
+
+    @Benchmark
+    public void smartConsumer() {
+        smartEtlConsumer.consume(etlStreamObject);
+    }
+
+    @Benchmark
+    public void metricsEmissionConsumer() {
+        metricsEmissionEtlConsumer.consume(etlStreamObject);
+    }
+
+    @Benchmark
+    public void metricsEmissionConsumerWithRegistry() {
+        registryMetricsEmissionEtlConsumer.consume(etlStreamObject);
+    }
+
+    @Benchmark
+    public void executorConsumer() {
+        executorEtlConsumer.consume(etlStreamObject);
+    }
+
+    @Benchmark
+    public void fusedConsumer() {
+        fusedEtlConsumer.consume(etlStreamObject);
+    }
+
+    @Benchmark
+    public void loaderChain() {
+        loaderChainEtlConsumer.consume(etlStreamObject);
+    }
+
+    private static class BlackholeEtlConsumer implements EtlConsumer {
+        private final Blackhole blackhole;
+
+        private BlackholeEtlConsumer(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void consume(EtlStreamObject objectToConsume) {
+            blackhole.consume(objectToConsume);
+        }
+
+        @Override
+        public void open(EtlMetrics parentMetrics) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletionStage;
+
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+
+/**
+ * Interface for a loader whose loads complete asynchronously, such as a loader built on a non-blocking HTTP client or
+ * an asynchronous service SDK. Instead of blocking until an object has been loaded, load() starts the load and returns
+ * a CompletionStage that completes when it has finished, which lets a single thread keep many loads in flight at once.
+ * The stream bounds how many loads may be in flight for each stage, and will not call load() again until one of them
+ * has completed once that limit has been reached.
+ *
+ * An object whose load completes exceptionally is routed to the error consumer of the stage, unless the exception is
+ * an UnrecoverableStreamFailureException, in which case the stream is aborted.
+ *
+ * @param <T> Type of object that is loaded.
+ */
+@FunctionalInterface
+public interface AsyncLoader<T> extends AutoCloseable {
+    /**
+     * Start loading a single object.
+     *
+     * @param objectToLoad The object to be loaded.
+     * @return A CompletionStage that completes when the object has been loaded, or completes exceptionally if it could
+     * not be.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     * detected and the stream needs to be aborted.
+     */
+    CompletionStage<Void> load(T objectToLoad) throws UnrecoverableStreamFailureException;
+
+    /**
+     * Signal the loader to prepare to load objects.
+     *
+     * @param parentMetrics An EtlMetrics object to attach any counters or timers to, will be null if profiling is not
+     *                      required.
+     */
+    default void open(@Nullable EtlMetrics parentMetrics) {
+        //no-op
+    }
+
+    /**
+     * Signal the loader that no more objects will be loaded. Every load started by this loader has completed by the
+     * time this is called.
+     *
+     * @throws Exception if something goes wrong.
+     */
+    @Override
+    default void close() throws Exception {
+        //no-op
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+
+/**
+ * Interface for a loader that can load many objects in a single operation, such as a loader that writes to a service
+ * with a bulk endpoint. If a batch fails to load, the stream will retry the objects in progressively smaller batches
+ * to isolate the objects that caused the failure, so loadBatch should be safe to call again with a subset of a batch
+ * that previously failed.
+ *
+ * A BatchLoader is also a Loader and can be used anywhere a Loader can, in which case each object is loaded as a
+ * batch of one.
+ *
+ * @param <T> Type of object that is loaded.
+ */
+@FunctionalInterface
+public interface BatchLoader<T> extends Loader<T> {
+    /**
+     * Load a batch of objects.
+     *
+     * @param objectsToLoad The objects to be loaded.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     * detected and the stream needs to be aborted.
+     */
+    void loadBatch(List<T> objectsToLoad) throws UnrecoverableStreamFailureException;
+
+    /**
+     * Load a single object as a batch of one.
+     *
+     * @param objectToLoad The object to be loaded.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     * detected and the stream needs to be aborted.
+     */
+    @Override
+    default void load(T objectToLoad) throws UnrecoverableStreamFailureException {
+        loadBatch(Collections.singletonList(objectToLoad));
+    }
+}
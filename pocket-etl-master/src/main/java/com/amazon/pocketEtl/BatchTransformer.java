@@ -0,0 +1,62 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+
+/**
+ * Interface for a transformer that can transform many objects in a single operation, such as a transformer that
+ * enriches objects by calling a service with a bulk endpoint. The results are returned positionally: the nth list in
+ * the result holds the objects the nth input object was transformed into, which allows each result to keep the
+ * attributes of the object it came from. If a batch fails to transform, the stream will retry the objects in
+ * progressively smaller batches to isolate the objects that caused the failure.
+ *
+ * A BatchTransformer is also a Transformer and can be used anywhere a Transformer can, in which case each object is
+ * transformed as a batch of one.
+ *
+ * @param <UpstreamType>   The object type before transformation.
+ * @param <DownstreamType> The object type after transformation.
+ */
+@FunctionalInterface
+public interface BatchTransformer<UpstreamType, DownstreamType> extends Transformer<UpstreamType, DownstreamType> {
+    /**
+     * Transform a batch of objects.
+     *
+     * @param objectsToTransform The objects to be transformed.
+     * @return A list with exactly one entry per object in the batch, in the same order, each holding the objects that
+     * input object was transformed into.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     * detected and the stream needs to be aborted.
+     */
+    List<List<DownstreamType>> transformBatch(List<UpstreamType> objectsToTransform)
+            throws UnrecoverableStreamFailureException;
+
+    /**
+     * Transform a single object as a batch of one.
+     *
+     * @param objectToTransform The object to be transformed.
+     * @return The transformed object.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     * detected and the stream needs to be aborted.
+     */
+    @Override
+    default List<DownstreamType> transform(UpstreamType objectToTransform) throws UnrecoverableStreamFailureException {
+        return transformBatch(Collections.singletonList(objectToTransform)).get(0);
+    }
+}
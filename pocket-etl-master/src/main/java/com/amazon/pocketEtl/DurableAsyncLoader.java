@@ -0,0 +1,27 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl;
+
+/**
+ * Marker interface for an AsyncLoader whose loads have durably stored their object by the time the CompletionStage
+ * returned by load() completes. It is the asynchronous counterpart of DurableLoader: only a DurableAsyncLoader can be
+ * used to load objects from a checkpointed extractor, and a stream that tries to load a checkpointed object with any
+ * other AsyncLoader is aborted before the object is loaded.
+ *
+ * @param <T> Type of object that is loaded.
+ */
+public interface DurableAsyncLoader<T> extends AsyncLoader<T> {
+}
@@ -0,0 +1,30 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl;
+
+/**
+ * Marker interface for a Loader that has durably stored each object by the time load() returns, rather than buffering
+ * objects and only writing them out when it is closed. A checkpoint records that every object before it has been
+ * loaded, so only a DurableLoader can be used to load objects from a checkpointed extractor; a stream that tries to
+ * load a checkpointed object with any other loader is aborted before the object is loaded.
+ *
+ * A BatchLoader that has durably stored each batch by the time loadBatch() returns can implement this interface too.
+ * AsyncLoaders opt in with DurableAsyncLoader instead.
+ *
+ * @param <T> Type of object that is loaded.
+ */
+public interface DurableLoader<T> extends Loader<T> {
+}
@@ -0,0 +1,45 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl;
+
+/**
+ * Interface for an Extractor that can report how far through its data it has got, and later carry on from that point
+ * instead of from the beginning. This is what allows a stream to be checkpointed : the position reported after each
+ * object is persisted once that object and every object before it has been fully loaded, so if the stream dies it can
+ * be run again from the last checkpoint without repeating all the work that had already been done.
+ *
+ * A position is an opaque string that only needs to mean something to the extractor that reported it, for instance
+ * the last key read by a keyset-paginated SQL query, a byte offset into an S3 object or the index of an iterator.
+ *
+ * @param <T> Type of object that is extracted.
+ */
+public interface ResumableExtractor<T> extends Extractor<T> {
+    /**
+     * Get the position just after the last object returned by next(). This is called once for every object extracted,
+     * so it should be cheap.
+     *
+     * @return The current position of this extractor.
+     */
+    String getPosition();
+
+    /**
+     * Position the extractor so that the first object returned by next() is the one that follows the given position.
+     * Called before open(), and only when resuming from a checkpoint.
+     *
+     * @param position A position previously returned by getPosition().
+     */
+    void resumeFrom(String position);
+}
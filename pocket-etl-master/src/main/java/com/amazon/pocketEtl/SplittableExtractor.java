@@ -0,0 +1,42 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl;
+
+import java.util.List;
+
+/**
+ * Interface for an Extractor that can divide its data into independent pieces that can be extracted concurrently, in
+ * the spirit of a Spliterator. Each piece is itself an Extractor covering a disjoint part of the data, for instance a
+ * range of keys for a SQL query, a range of bytes in a file or a segment of a DynamoDB scan, and between them the
+ * pieces must cover exactly the data this extractor would have extracted on its own.
+ *
+ * split() is called before open(), and once an extractor has been split only the pieces it returned are opened, used
+ * and closed; the original extractor is discarded. Each piece is only ever used by one thread at a time, but different
+ * pieces will be used by different threads at the same time, so they must not share any state that is not threadsafe.
+ *
+ * @param <T> Type of object that is extracted.
+ */
+public interface SplittableExtractor<T> extends Extractor<T> {
+    /**
+     * Divide the data of this extractor into independent pieces. An extractor is free to return fewer pieces than was
+     * asked for if its data cannot be divided that finely, including a list containing only itself if it cannot be
+     * divided at all, but it must never return more.
+     *
+     * @param maximumSplits The most pieces to divide the data into.
+     * @return A list of between one and maximumSplits extractors that between them cover all of the data.
+     */
+    List<Extractor<T>> split(int maximumSplits);
+}
@@ -0,0 +1,45 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.checkpoint;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The progress of a checkpointed extractor : every object it extracted up to and including the one at the given
+ * position has been fully loaded.
+ */
+@EqualsAndHashCode
+@ToString
+public class Checkpoint {
+    /**
+     * The position reported by the extractor after the last object covered by this checkpoint.
+     */
+    @Getter
+    private final String position;
+
+    /**
+     * The number of objects covered by this checkpoint.
+     */
+    @Getter
+    private final long recordsCompleted;
+
+    public Checkpoint(String position, long recordsCompleted) {
+        this.position = position;
+        this.recordsCompleted = recordsCompleted;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.checkpoint;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Interface for durable storage of checkpoints. Each checkpoint is stored under a name that identifies the extractor
+ * it belongs to; saving a checkpoint replaces any checkpoint previously saved under the same name.
+ */
+public interface CheckpointStore {
+    /**
+     * Load the checkpoint saved under a name.
+     * @param checkpointName The name the checkpoint was saved under.
+     * @return The checkpoint, or empty if there is none.
+     * @throws IOException If the store could not be read.
+     */
+    Optional<Checkpoint> load(String checkpointName) throws IOException;
+
+    /**
+     * Save a checkpoint, replacing any checkpoint already saved under the same name. A checkpoint must either be
+     * saved completely or not at all, so that a crash while saving never leaves a corrupt checkpoint behind.
+     * @param checkpointName The name to save the checkpoint under.
+     * @param checkpoint The checkpoint to save.
+     * @throws IOException If the checkpoint could not be saved.
+     */
+    void save(String checkpointName, Checkpoint checkpoint) throws IOException;
+
+    /**
+     * Remove the checkpoint saved under a name, if there is one. Called once a stream has completed, so that running
+     * it again starts from the beginning.
+     * @param checkpointName The name the checkpoint was saved under.
+     * @throws IOException If the checkpoint could not be removed.
+     */
+    void clear(String checkpointName) throws IOException;
+}
@@ -0,0 +1,136 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.checkpoint;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * A CheckpointStore that keeps each checkpoint in its own properties file in a local directory. A checkpoint is
+ * written to a temporary file first, forced to disk and then moved over the previous checkpoint, so a crash while
+ * saving leaves the previous checkpoint intact and a crash after saving cannot leave an empty or partly written one.
+ * The directory is also forced to disk after the move where the platform allows it, so that the move itself survives
+ * a crash.
+ */
+@EqualsAndHashCode
+public class LocalFileCheckpointStore implements CheckpointStore {
+    private final static String FILE_EXTENSION = ".checkpoint";
+    private final static String TEMPORARY_FILE_EXTENSION = ".tmp";
+    private final static String POSITION_PROPERTY = "position";
+    private final static String RECORDS_COMPLETED_PROPERTY = "recordsCompleted";
+
+    @Getter
+    private final Path directory;
+
+    /**
+     * Standard constructor.
+     * @param directory The directory to keep checkpoint files in. It will be created when the first checkpoint is
+     *                  saved if it does not already exist.
+     */
+    public LocalFileCheckpointStore(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public Optional<Checkpoint> load(String checkpointName) throws IOException {
+        Path checkpointFile = getCheckpointFile(checkpointName);
+
+        if (!Files.exists(checkpointFile)) {
+            return Optional.empty();
+        }
+
+        Properties properties = new Properties();
+
+        try (InputStream inputStream = Files.newInputStream(checkpointFile)) {
+            properties.load(inputStream);
+        }
+
+        String position = properties.getProperty(POSITION_PROPERTY);
+        String recordsCompleted = properties.getProperty(RECORDS_COMPLETED_PROPERTY);
+
+        if (position == null || recordsCompleted == null) {
+            throw new IOException("Checkpoint file is missing required properties: " + checkpointFile);
+        }
+
+        try {
+            return Optional.of(new Checkpoint(position, Long.parseLong(recordsCompleted)));
+        } catch (NumberFormatException e) {
+            throw new IOException("Checkpoint file has an invalid record count: " + checkpointFile, e);
+        }
+    }
+
+    @Override
+    public void save(String checkpointName, Checkpoint checkpoint) throws IOException {
+        Path checkpointFile = getCheckpointFile(checkpointName);
+        Path temporaryFile = directory.resolve(checkpointFile.getFileName() + TEMPORARY_FILE_EXTENSION);
+        Properties properties = new Properties();
+
+        properties.setProperty(POSITION_PROPERTY, checkpoint.getPosition());
+        properties.setProperty(RECORDS_COMPLETED_PROPERTY, Long.toString(checkpoint.getRecordsCompleted()));
+        Files.createDirectories(directory);
+
+        try (FileChannel fileChannel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream outputStream = Channels.newOutputStream(fileChannel);
+            properties.store(outputStream, "Checkpoint for " + checkpointName);
+            fileChannel.force(true);
+        }
+
+        try {
+            Files.move(temporaryFile, checkpointFile, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporaryFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        forceDirectory();
+    }
+
+    @Override
+    public void clear(String checkpointName) throws IOException {
+        Files.deleteIfExists(getCheckpointFile(checkpointName));
+    }
+
+    private void forceDirectory() {
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        } catch (IOException ignored) {
+            // Some platforms, such as Windows, do not allow a directory to be opened; the move is then left to the OS
+        }
+    }
+
+    private Path getCheckpointFile(String checkpointName) {
+        if (checkpointName.isEmpty() || checkpointName.contains("/") || checkpointName.contains("\\")
+                || checkpointName.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid checkpoint name: " + checkpointName);
+        }
+
+        return directory.resolve(checkpointName + FILE_EXTENSION);
+    }
+}
@@ -0,0 +1,462 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMethod;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Compiles and caches direct copy plans between Java Beans so that EtlStreamObject can move data between stage types
+ * without building an intermediate Jackson tree. A plan is built once per (source class, target class) pair using
+ * Jackson's own bean introspection, so property names resolve exactly the way the ObjectMapper would resolve them,
+ * and then copies values through MethodHandles.
+ *
+ * Only shapes where a direct reference copy is indistinguishable from a Jackson round-trip are compiled: every
+ * property must be an immutable value type that is identical on both sides and neither class may carry Jackson
+ * customizations. For everything else this class reports that it cannot handle the shape and the caller is expected
+ * to fall back to the ObjectMapper.
+ */
+class BeanProjection {
+    private final static MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private final static MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private final static MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private final static String JACKSON_ANNOTATION_PACKAGE = "com.fasterxml.jackson.";
+    private final static Collection<Class<? extends Annotation>> NEUTRAL_JACKSON_ANNOTATIONS =
+            ImmutableSet.of(JsonProperty.class, JsonIgnore.class);
+
+    // Types that are immutable and survive a Jackson round-trip as an equal object, so sharing the reference is safe.
+    private final static Collection<Class<?>> VALUE_TYPES = ImmutableSet.of(
+            boolean.class, Boolean.class, byte.class, Byte.class, short.class, Short.class, int.class, Integer.class,
+            long.class, Long.class, float.class, Float.class, double.class, Double.class, char.class, Character.class,
+            String.class, BigDecimal.class, BigInteger.class, Instant.class, LocalDate.class, LocalDateTime.class);
+
+    private final ObjectMapper objectMapper;
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private final ConcurrentMap<Class<?>, Optional<BeanReader>> readers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, Optional<BeanProjector>>> projectors =
+            new ConcurrentHashMap<>();
+
+    BeanProjection(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Creates a new instance of a bean class and copies every matching property from a source bean into it.
+     * @param source The bean to copy values from.
+     * @param targetClass The class of bean to create.
+     * @param <T> The type of bean to create.
+     * @return The newly created bean, or empty if this pair of classes cannot be projected directly.
+     */
+    <T> Optional<T> project(Object source, Class<T> targetClass) {
+        Optional<BeanProjector> projector = getProjector(source.getClass(), targetClass);
+
+        if (!projector.isPresent()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(targetClass.cast(projector.get().project(source)));
+    }
+
+    /**
+     * Copies every property of a bean into a new map keyed by property name.
+     * @param source The bean to copy values from.
+     * @return A new mutable map of the bean's values, or empty if this class cannot be read directly.
+     */
+    Optional<Map<Object, Object>> toMap(Object source) {
+        return getReader(source.getClass()).map(reader -> reader.toMap(source));
+    }
+
+    private Optional<BeanReader> getReader(Class<?> sourceClass) {
+        Optional<BeanReader> reader = readers.get(sourceClass);
+
+        // Avoid computeIfAbsent on the hot path as it locks the bin even when the key is present
+        if (reader == null) {
+            reader = readers.computeIfAbsent(sourceClass, this::compileReader);
+        }
+
+        return reader;
+    }
+
+    private Optional<BeanProjector> getProjector(Class<?> sourceClass, Class<?> targetClass) {
+        ConcurrentMap<Class<?>, Optional<BeanProjector>> projectorsForSource = projectors.get(sourceClass);
+
+        if (projectorsForSource == null) {
+            projectorsForSource = projectors.computeIfAbsent(sourceClass, ignored -> new ConcurrentHashMap<>());
+        }
+
+        Optional<BeanProjector> projector = projectorsForSource.get(targetClass);
+
+        if (projector == null) {
+            projector = projectorsForSource.computeIfAbsent(targetClass,
+                    ignored -> compileProjector(sourceClass, targetClass));
+        }
+
+        return projector;
+    }
+
+    private Optional<BeanReader> compileReader(Class<?> sourceClass) {
+        if (!isSupportedBeanClass(sourceClass)) {
+            return Optional.empty();
+        }
+
+        BeanDescription description =
+                objectMapper.getSerializationConfig().introspect(objectMapper.constructType(sourceClass));
+        List<String> names = new ArrayList<>();
+        List<Class<?>> types = new ArrayList<>();
+        List<MethodHandle> getters = new ArrayList<>();
+
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            if (!property.couldSerialize()) {
+                continue;
+            }
+
+            AnnotatedMember accessor = property.getAccessor();
+
+            if (accessor == null || !VALUE_TYPES.contains(accessor.getRawType())) {
+                return Optional.empty();
+            }
+
+            Optional<MethodHandle> getter = unreflectGetter(accessor.getMember());
+
+            if (!getter.isPresent()) {
+                return Optional.empty();
+            }
+
+            names.add(property.getName());
+            types.add(accessor.getRawType());
+            getters.add(getter.get());
+        }
+
+        // Jackson refuses to serialize beans with no properties, keep that behavior by not handling them here
+        if (names.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new BeanReader(names.toArray(new String[0]), types.toArray(new Class<?>[0]),
+                getters.toArray(new MethodHandle[0])));
+    }
+
+    private Optional<BeanProjector> compileProjector(Class<?> sourceClass, Class<?> targetClass) {
+        Optional<BeanReader> reader = getReader(sourceClass);
+
+        if (!reader.isPresent() || !isSupportedBeanClass(targetClass) || hasCreatorConstructor(targetClass)) {
+            return Optional.empty();
+        }
+
+        Optional<MethodHandle> constructor = unreflectDefaultConstructor(targetClass);
+
+        if (!constructor.isPresent()) {
+            return Optional.empty();
+        }
+
+        Map<String, Integer> sourceIndexByName = new HashMap<>();
+        String[] sourceNames = reader.get().names;
+
+        for (int i = 0; i < sourceNames.length; i++) {
+            sourceIndexByName.put(sourceNames[i], i);
+        }
+
+        BeanDescription targetDescription =
+                objectMapper.getDeserializationConfig().introspect(objectMapper.constructType(targetClass));
+        List<Integer> sourceIndexes = new ArrayList<>();
+        List<MethodHandle> setters = new ArrayList<>();
+
+        for (BeanPropertyDefinition property : targetDescription.findProperties()) {
+            Integer sourceIndex = sourceIndexByName.get(property.getName());
+
+            // Properties that are not present on the source retain their default value, just as they would in Jackson
+            if (sourceIndex == null || !property.couldDeserialize()) {
+                continue;
+            }
+
+            if (property.hasConstructorParameter()) {
+                return Optional.empty();
+            }
+
+            AnnotatedMember mutator = property.getMutator();
+
+            if (mutator == null) {
+                return Optional.empty();
+            }
+
+            Class<?> targetType = mutator instanceof AnnotatedMethod
+                    ? ((AnnotatedMethod) mutator).getRawParameterType(0)
+                    : mutator.getRawType();
+
+            if (!isDirectlyAssignable(reader.get().types[sourceIndex], targetType)) {
+                return Optional.empty();
+            }
+
+            Optional<MethodHandle> setter = unreflectSetter(mutator.getMember());
+
+            if (!setter.isPresent()) {
+                return Optional.empty();
+            }
+
+            sourceIndexes.add(sourceIndex);
+            setters.add(setter.get());
+        }
+
+        int[] sourceIndexArray = sourceIndexes.stream().mapToInt(Integer::intValue).toArray();
+
+        return Optional.of(new BeanProjector(constructor.get(), reader.get().getters, sourceIndexArray,
+                setters.toArray(new MethodHandle[0])));
+    }
+
+    private static boolean isDirectlyAssignable(Class<?> sourceType, Class<?> targetType) {
+        if (!VALUE_TYPES.contains(targetType)) {
+            return false;
+        }
+
+        if (sourceType.equals(targetType)) {
+            return true;
+        }
+
+        // A primitive can never be null so it is always safe to box it into its wrapper type
+        return sourceType.isPrimitive() && MethodType.methodType(sourceType).wrap().returnType().equals(targetType);
+    }
+
+    private static boolean isSupportedBeanClass(Class<?> beanClass) {
+        if (beanClass.isPrimitive() || beanClass.isArray() || beanClass.isEnum() || beanClass.isInterface() ||
+                Modifier.isAbstract(beanClass.getModifiers()) || VALUE_TYPES.contains(beanClass) ||
+                Map.class.isAssignableFrom(beanClass) || Collection.class.isAssignableFrom(beanClass) ||
+                (beanClass.isMemberClass() && !Modifier.isStatic(beanClass.getModifiers()))) {
+            return false;
+        }
+
+        for (Class<?> currentClass = beanClass; currentClass != null && currentClass != Object.class;
+             currentClass = currentClass.getSuperclass()) {
+            if (hasJacksonCustomization(currentClass)) {
+                return false;
+            }
+
+            for (Class<?> implementedInterface : currentClass.getInterfaces()) {
+                if (hasJacksonCustomization(implementedInterface)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean hasJacksonCustomization(Class<?> beanClass) {
+        if (hasJacksonCustomization((AnnotatedElement) beanClass)) {
+            return true;
+        }
+
+        for (Method method : beanClass.getDeclaredMethods()) {
+            if (hasJacksonCustomization(method)) {
+                return true;
+            }
+        }
+
+        for (Field field : beanClass.getDeclaredFields()) {
+            if (hasJacksonCustomization(field)) {
+                return true;
+            }
+        }
+
+        for (Constructor<?> constructor : beanClass.getDeclaredConstructors()) {
+            if (hasJacksonCustomization(constructor)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean hasJacksonCustomization(AnnotatedElement element) {
+        for (Annotation annotation : element.getDeclaredAnnotations()) {
+            Class<? extends Annotation> annotationType = annotation.annotationType();
+
+            if (annotationType.getName().startsWith(JACKSON_ANNOTATION_PACKAGE) &&
+                    !NEUTRAL_JACKSON_ANNOTATIONS.contains(annotationType)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // Jackson treats @ConstructorProperties as an implicit creator, which changes how the target is constructed
+    private static boolean hasCreatorConstructor(Class<?> beanClass) {
+        for (Constructor<?> constructor : beanClass.getDeclaredConstructors()) {
+            if (constructor.isAnnotationPresent(java.beans.ConstructorProperties.class)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private Optional<MethodHandle> unreflectDefaultConstructor(Class<?> beanClass) {
+        try {
+            Constructor<?> constructor = beanClass.getDeclaredConstructor();
+            makeAccessible(constructor);
+            return Optional.of(lookup.unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE));
+        } catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Optional<MethodHandle> unreflectGetter(Member member) {
+        try {
+            if (member instanceof Method) {
+                makeAccessible((Method) member);
+                return Optional.of(lookup.unreflect((Method) member).asType(GETTER_TYPE));
+            }
+
+            if (member instanceof Field) {
+                makeAccessible((Field) member);
+                return Optional.of(lookup.unreflectGetter((Field) member).asType(GETTER_TYPE));
+            }
+        } catch (IllegalAccessException | RuntimeException ignored) {
+        }
+
+        return Optional.empty();
+    }
+
+    private Optional<MethodHandle> unreflectSetter(Member member) {
+        try {
+            if (member instanceof Method) {
+                makeAccessible((Method) member);
+                return Optional.of(lookup.unreflect((Method) member).asType(SETTER_TYPE));
+            }
+
+            if (member instanceof Field && !Modifier.isFinal(member.getModifiers())) {
+                makeAccessible((Field) member);
+                return Optional.of(lookup.unreflectSetter((Field) member).asType(SETTER_TYPE));
+            }
+        } catch (IllegalAccessException | RuntimeException ignored) {
+        }
+
+        return Optional.empty();
+    }
+
+    // Jackson will also force access to non-public members of beans, so this class does the same for parity
+    private static void makeAccessible(AccessibleObject accessibleObject) {
+        if (!accessibleObject.isAccessible()) {
+            accessibleObject.setAccessible(true);
+        }
+    }
+
+    private static RuntimeException propagate(Throwable throwable) {
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        }
+
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+
+        return new IllegalArgumentException("Failed to copy bean property", throwable);
+    }
+
+    /**
+     * Compiled plan that reads every property of a bean class.
+     */
+    private static class BeanReader {
+        private final String[] names;
+        private final Class<?>[] types;
+        private final MethodHandle[] getters;
+
+        private BeanReader(String[] names, Class<?>[] types, MethodHandle[] getters) {
+            this.names = names;
+            this.types = types;
+            this.getters = getters;
+        }
+
+        private Map<Object, Object> toMap(Object source) {
+            Map<Object, Object> map = new HashMap<>((int) (names.length / 0.75f) + 1);
+
+            try {
+                for (int i = 0; i < names.length; i++) {
+                    map.put(names[i], (Object) getters[i].invokeExact(source));
+                }
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+
+            return map;
+        }
+    }
+
+    /**
+     * Compiled plan that creates a target bean and copies matching properties from a source bean into it.
+     */
+    private static class BeanProjector {
+        private final MethodHandle constructor;
+        private final MethodHandle[] sourceGetters;
+        private final int[] sourceIndexes;
+        private final MethodHandle[] targetSetters;
+
+        private BeanProjector(MethodHandle constructor, MethodHandle[] sourceGetters, int[] sourceIndexes,
+                              MethodHandle[] targetSetters) {
+            this.constructor = constructor;
+            this.sourceGetters = sourceGetters;
+            this.sourceIndexes = sourceIndexes;
+            this.targetSetters = targetSetters;
+        }
+
+        private Object project(Object source) {
+            try {
+                Object target = (Object) constructor.invokeExact();
+
+                for (int i = 0; i < targetSetters.length; i++) {
+                    Object value = (Object) sourceGetters[sourceIndexes[i]].invokeExact(source);
+                    targetSetters[i].invokeExact(target, value);
+                }
+
+                return target;
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        }
+    }
+}
@@ -15,12 +15,18 @@
 
 package com.amazon.pocketEtl.core;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.joda.JodaModule;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -35,14 +41,36 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
  *
  * If a get is called using the same Bean class that was used to create the class, there is an optimization where the
  * EtlStreamObject will short-circuit introspection and simply return the original object it was created with.
+ *
+ * Where the bean classes involved are simple enough, values are copied directly between beans (or from a bean into the
+ * map) using a copy plan compiled once per pair of classes. Anything the compiled plans cannot handle safely goes
+ * through the Jackson ObjectMapper instead.
  */
 public class EtlStreamObject {
     private final static ObjectMapper objectMapper = new ObjectMapper()
             .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
             .registerModules(new JodaModule(), new Jdk8Module(), new JavaTimeModule());
+    private final static BeanProjection beanProjection = new BeanProjection(objectMapper);
+    // Objects are serialized with Smile, a binary encoding of JSON that is more compact and quicker to parse
+    private final static ObjectMapper binaryObjectMapper = new ObjectMapper(new SmileFactory())
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .registerModules(new JodaModule(), new Jdk8Module(), new JavaTimeModule());
+    // Reading decimals as doubles would lose precision that the bean they were written from may have had
+    private final static ObjectReader streamDataMapReader = binaryObjectMapper
+            .readerFor(new TypeReference<HashMap<Object, Object>>() {})
+            .with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+
+    /**
+     * Sequence number of an object that has not been stamped by an extractor.
+     */
+    public final static long UNSEQUENCED = -1;
 
     private Map<Object, Object> streamDataMap = null;
+    // Once shared with a copy, streamDataMap and every map nested within it must be treated as immutable
+    private boolean isStreamDataMapShared = false;
     private Object cachedObject;
+    private long sequenceNumber = UNSEQUENCED;
+    private RecordCompletion recordCompletion = null;
 
     public static EtlStreamObject of(Object object) {
         return new EtlStreamObject(object);
@@ -52,6 +80,56 @@ public class EtlStreamObject {
         this.cachedObject = cachedObject;
     }
 
+    /**
+     * Returns the position, within the output of the extractor it came from, of the record this object was derived
+     * from. Copies made when a transformer fans out a record share the sequence number of that record.
+     * @return The sequence number of this object, or UNSEQUENCED if it was not produced by an extractor.
+     */
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * Fluent method to stamp this object with its position within the output of the extractor it came from.
+     * @param sequenceNumber The sequence number for this object.
+     * @return A copy of itself.
+     */
+    public EtlStreamObject withSequenceNumber(long sequenceNumber) {
+        this.sequenceNumber = sequenceNumber;
+        return this;
+    }
+
+    /**
+     * Fluent method to track when this object, and every copy made of it, has been completely dealt with by the
+     * stream. Used by checkpointed extractors to find out which records have been fully loaded.
+     * @param recordCompletion The completion tracker for the record this object was extracted as.
+     * @return A copy of itself.
+     */
+    public EtlStreamObject withRecordCompletion(RecordCompletion recordCompletion) {
+        this.recordCompletion = recordCompletion;
+        return this;
+    }
+
+    /**
+     * Returns the tracker that will be told when this object has been completely dealt with by the stream.
+     * @return The completion tracker for the record this object was extracted as, or null if completion is not being
+     * tracked.
+     */
+    public RecordCompletion getRecordCompletion() {
+        return recordCompletion;
+    }
+
+    /**
+     * Signals that this object has been completely dealt with by the stream : it has either been loaded or handed to
+     * an error consumer, or it was transformed into nothing. Called by consumers at the end of the stream, and by
+     * transformers that have replaced this object with copies. Does nothing unless completion is being tracked.
+     */
+    public void markCompleted() {
+        if (recordCompletion != null) {
+            recordCompletion.completeObject();
+        }
+    }
+
     /**
      * Creates a projection of the data on the stream by instantiating a bean from a provided class and setting its
      * attributes to the values stored on the stream. Will re-use an existing object if one is available.
@@ -62,8 +140,16 @@ public class EtlStreamObject {
     @SuppressWarnings("unchecked")
     // Explicit check is there but the compiler does not seem to correctly infer that dtoClass is the same class as T
     public <T> T get(Class<T> dtoClass) {
-        if (streamDataMap == null && dtoClass.isAssignableFrom(cachedObject.getClass())) {
-            return (T)cachedObject;
+        if (streamDataMap == null) {
+            if (dtoClass.isAssignableFrom(cachedObject.getClass())) {
+                return (T)cachedObject;
+            }
+
+            Optional<T> projectedObject = beanProjection.project(cachedObject, dtoClass);
+
+            if (projectedObject.isPresent()) {
+                return projectedObject.get();
+            }
         }
 
         initializeStreamDataMap();
@@ -75,15 +161,26 @@ public class EtlStreamObject {
      * transformation consumer to fan out the stream. If values of attributes are references to objects, those
      * references will be duplicated, not cloned. This could have unexpected or undesired behavior if those were
      * references to objects that were mutable by design such as containers, atomic references or iterators.
+     *
+     * The copy is made lazily: both objects share the same underlying map until one of them is written to, at which
+     * point only the maps along the paths being written are copied and all other nested maps remain shared. If completion
+     * is being tracked, the record this object belongs to will not be complete until the copy has been marked completed
+     * as well.
      * @return an independent copy of this object
      */
     public EtlStreamObject createCopy() {
-        EtlStreamObject newObject = new EtlStreamObject(cachedObject);
         initializeStreamDataMap();
+        isStreamDataMapShared = true;
 
-        Map<Object, Object> newStreamDataMap = new HashMap<>();
-        deepMergeMaps(streamDataMap, newStreamDataMap);
-        newObject.streamDataMap = newStreamDataMap;
+        EtlStreamObject newObject = new EtlStreamObject(cachedObject);
+        newObject.streamDataMap = streamDataMap;
+        newObject.isStreamDataMapShared = true;
+        newObject.sequenceNumber = sequenceNumber;
+
+        if (recordCompletion != null) {
+            recordCompletion.addObject();
+            newObject.recordCompletion = recordCompletion;
+        }
 
         return newObject;
     }
@@ -106,6 +203,39 @@ public class EtlStreamObject {
         return this;
     }
 
+    /**
+     * Writes the sequence number and data of this object in a compact form that can be turned back into an equivalent
+     * object with readFrom(). The data is written as length-prefixed Smile, so anything that would not survive being
+     * converted into a map by the ObjectMapper will not survive this either. Completion tracking is not written.
+     * @param dataOutput Where to write this object.
+     * @throws IOException If the object could not be serialized or written.
+     */
+    public void writeTo(DataOutput dataOutput) throws IOException {
+        byte[] data = binaryObjectMapper.writeValueAsBytes(streamDataMap != null ? streamDataMap : cachedObject);
+
+        dataOutput.writeLong(sequenceNumber);
+        dataOutput.writeInt(data.length);
+        dataOutput.write(data);
+    }
+
+    /**
+     * Reads an object previously written by writeTo(). The object that is returned holds its data as a map, as it
+     * would after being written to by a bean of a different class than the one it was created with.
+     * @param dataInput Where to read the object from.
+     * @return A newly created object with the same sequence number and data as the one that was written.
+     * @throws IOException If the object could not be read or deserialized.
+     */
+    public static EtlStreamObject readFrom(DataInput dataInput) throws IOException {
+        long sequenceNumber = dataInput.readLong();
+        byte[] data = new byte[dataInput.readInt()];
+        dataInput.readFully(data);
+
+        EtlStreamObject etlStreamObject = new EtlStreamObject(null);
+        etlStreamObject.streamDataMap = streamDataMapReader.readValue(data);
+        etlStreamObject.sequenceNumber = sequenceNumber;
+        return etlStreamObject;
+    }
+
     private void initializeStreamDataMap() {
         if (streamDataMap == null) {
             streamDataMap = new HashMap<>();
@@ -114,8 +244,14 @@ public class EtlStreamObject {
     }
 
     private void set(Object dto) {
-        Map<Object, Object> updateMap = objectMapper.convertValue(dto, new TypeReference<Map<String, Object>>() {});
-        deepMergeMaps(updateMap, streamDataMap);
+        Map<Object, Object> updateMap = beanProjection.toMap(dto).orElseGet(
+                () -> objectMapper.convertValue(dto, new TypeReference<Map<String, Object>>() {}));
+
+        if (isStreamDataMapShared) {
+            streamDataMap = copyOnWriteMergeMaps(updateMap, streamDataMap);
+        } else {
+            deepMergeMaps(updateMap, streamDataMap);
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -132,4 +268,23 @@ public class EtlStreamObject {
             toMap.put(key, value);
         });
     }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> copyOnWriteMergeMaps(Map<Object, Object> fromMap, Map<Object, Object> toMap) {
+        Map<Object, Object> resultMap = new HashMap<>(toMap);
+
+        fromMap.forEach((key, value) -> {
+            if (value instanceof Map) {
+                Object targetObject = resultMap.get(key);
+
+                if (targetObject instanceof Map) {
+                    resultMap.put(key, copyOnWriteMergeMaps((Map)value, (Map)targetObject));
+                    return;
+                }
+            }
+            resultMap.put(key, value);
+        });
+
+        return resultMap;
+    }
 }
\ No newline at end of file
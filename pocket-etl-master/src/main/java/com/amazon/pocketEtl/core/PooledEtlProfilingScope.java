@@ -0,0 +1,139 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core;
+
+import com.amazon.pocketEtl.EtlMetrics;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * A profiling scope that reports to EtlMetrics in the same way as EtlProfilingScope, but is cheap enough to be used
+ * for every record passing through a stage. When profiling is disabled (the parent metrics are null) a single shared
+ * scope that does nothing is returned, so nothing is allocated and the clock is never read. Otherwise the scope object
+ * is taken from a small stack kept for each thread and returned to it on close, so after warm-up the only allocation
+ * left is whatever the EtlMetrics implementation does to create child metrics. Scope names should be built once when
+ * the owning object is constructed rather than for every record.
+ *
+ * Scopes must be closed on the thread that opened them, in the reverse order they were opened; using them in a
+ * try-with-resources block guarantees this.
+ *
+ * Because the stacks are kept per thread, scopes are only reused on threads that live for more than one task. On an
+ * executor that starts a new thread for every task, such as the virtual thread executor, each task allocates a fresh
+ * stack and scope and pooling saves nothing; scopes opened by the submitting thread are still reused.
+ */
+public final class PooledEtlProfilingScope implements AutoCloseable {
+    private final static PooledEtlProfilingScope DISABLED_SCOPE = new PooledEtlProfilingScope(null);
+    private final static int INITIAL_SCOPE_STACK_DEPTH = 16;
+    private final static double NANOSECONDS_PER_MILLISECOND = 1_000_000.0;
+    private final static ThreadLocal<ScopeStack> scopeStacks = ThreadLocal.withInitial(ScopeStack::new);
+
+    private final ScopeStack scopeStack;
+    private boolean isOpen = false;
+    private EtlMetrics metrics;
+    private String scopeName;
+    private long startTimeNanos;
+
+    private PooledEtlProfilingScope(ScopeStack scopeStack) {
+        this.scopeStack = scopeStack;
+    }
+
+    /**
+     * Opens a new profiling scope.
+     * @param parentMetrics Metrics to create the child metrics of this scope from. Profiling is disabled if null.
+     * @param scopeName Name of the timer that will be recorded when the scope is closed.
+     * @return An open profiling scope.
+     */
+    public static PooledEtlProfilingScope open(@Nullable EtlMetrics parentMetrics, String scopeName) {
+        if (parentMetrics == null) {
+            return DISABLED_SCOPE;
+        }
+
+        EtlMetrics childMetrics = parentMetrics.createChildMetrics();
+        PooledEtlProfilingScope scope = scopeStacks.get().push();
+        scope.isOpen = true;
+        scope.metrics = childMetrics;
+        scope.scopeName = scopeName;
+        scope.startTimeNanos = System.nanoTime();
+
+        return scope;
+    }
+
+    /**
+     * Adds a counter to the metrics of this scope. Does nothing if profiling is disabled.
+     * @param counterName Name of the counter.
+     * @param count Value to add to the counter.
+     */
+    public void addCounter(String counterName, int count) {
+        if (metrics != null) {
+            metrics.addCount(counterName, count);
+        }
+    }
+
+    /**
+     * Get the child metrics of this scope. Only valid until the scope is closed.
+     * @return The child metrics, or null if profiling is disabled.
+     */
+    @Nullable
+    public EtlMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Records the time spent in this scope, closes its child metrics and makes the scope object available for reuse.
+     */
+    @Override
+    public void close() {
+        if (!isOpen) {
+            return;
+        }
+
+        EtlMetrics scopeMetrics = metrics;
+        isOpen = false;
+        metrics = null;
+
+        try {
+            if (scopeMetrics != null) {
+                scopeMetrics.addTime(scopeName, (System.nanoTime() - startTimeNanos) / NANOSECONDS_PER_MILLISECOND);
+                scopeMetrics.close();
+            }
+        } finally {
+            scopeName = null;
+            scopeStack.pop();
+        }
+    }
+
+    private static final class ScopeStack {
+        private PooledEtlProfilingScope[] scopes = new PooledEtlProfilingScope[INITIAL_SCOPE_STACK_DEPTH];
+        private int depth = 0;
+
+        private PooledEtlProfilingScope push() {
+            if (depth == scopes.length) {
+                scopes = Arrays.copyOf(scopes, depth * 2);
+            }
+
+            if (scopes[depth] == null) {
+                scopes[depth] = new PooledEtlProfilingScope(this);
+            }
+
+            return scopes[depth++];
+        }
+
+        private void pop() {
+            depth--;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks whether an extracted record has been completely dealt with by the stream. A record is complete once every
+ * object derived from it has either been loaded or handed to an error consumer; it starts out with a single object,
+ * every copy made when a transformer fans the record out adds another, and every object marked as completed takes one
+ * away.
+ */
+public class RecordCompletion {
+    /**
+     * The sequence number of the record being tracked.
+     */
+    @Getter
+    private final long sequenceNumber;
+
+    /**
+     * The position of the extractor just after the record being tracked.
+     */
+    @Getter
+    private final String position;
+
+    private final AtomicInteger outstandingObjects = new AtomicInteger(1);
+    private volatile boolean isCompleted = false;
+
+    public RecordCompletion(long sequenceNumber, String position) {
+        this.sequenceNumber = sequenceNumber;
+        this.position = position;
+    }
+
+    /**
+     * Check whether every object derived from the record has been loaded or handed to an error consumer.
+     * @return true if the record is complete.
+     */
+    public boolean isCompleted() {
+        return isCompleted;
+    }
+
+    void addObject() {
+        outstandingObjects.incrementAndGet();
+    }
+
+    void completeObject() {
+        if (outstandingObjects.decrementAndGet() == 0) {
+            isCompleted = true;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core;
+
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import lombok.Getter;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * A cancellation token shared by every producer and consumer of a single stream, used to abort the whole stream as
+ * soon as any part of it fails unrecoverably rather than letting the work already queued drain first. Producers stop
+ * extracting once the stream has been cancelled, and the executors behind each stage are told to discard the tasks they
+ * have queued and to interrupt the ones that are running.
+ *
+ * Once cancelled, the stream has a fixed amount of time to finish aborting. Closing a stage after cancellation only
+ * waits for its executor for whatever remains of that time, so the abort as a whole is bounded by it even if some tasks
+ * ignore being interrupted; the threads running those tasks are abandoned.
+ */
+public class StreamCancellation {
+    private final static Logger logger = getLogger(StreamCancellation.class);
+
+    /**
+     * How long, in milliseconds, the stream is given to finish aborting once it has been cancelled.
+     */
+    @Getter
+    private final long abortTimeoutMillis;
+
+    private final AtomicReference<Cancellation> cancellation = new AtomicReference<>();
+    private final List<Runnable> cancellationListeners = new CopyOnWriteArrayList<>();
+
+    private static class Cancellation {
+        private final UnrecoverableStreamFailureException cause;
+        private final long abortDeadlineNanos;
+
+        Cancellation(UnrecoverableStreamFailureException cause, long abortDeadlineNanos) {
+            this.cause = cause;
+            this.abortDeadlineNanos = abortDeadlineNanos;
+        }
+    }
+
+    /**
+     * Standard constructor.
+     * @param abortTimeoutMillis How long, in milliseconds, the stream is given to finish aborting once it has been
+     *                           cancelled.
+     */
+    public StreamCancellation(long abortTimeoutMillis) {
+        if (abortTimeoutMillis < 0) {
+            throw new IllegalArgumentException("abortTimeoutMillis must not be negative");
+        }
+
+        this.abortTimeoutMillis = abortTimeoutMillis;
+    }
+
+    /**
+     * Cancels the stream and notifies everything that registered to be told. Only the first call has any effect.
+     * @param cause The failure that the stream is being aborted for.
+     * @return 'true' if this call cancelled the stream, and 'false' if it had already been cancelled.
+     */
+    public boolean cancel(UnrecoverableStreamFailureException cause) {
+        long abortDeadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(abortTimeoutMillis);
+
+        if (!cancellation.compareAndSet(null, new Cancellation(cause, abortDeadlineNanos))) {
+            return false;
+        }
+
+        logger.error("Aborting stream: ", cause);
+
+        for (Runnable cancellationListener : cancellationListeners) {
+            try {
+                cancellationListener.run();
+            } catch (RuntimeException e) {
+                logger.warn("Exception thrown by listener whilst cancelling stream: ", e);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check whether the stream has been cancelled.
+     * @return 'true' if the stream has been cancelled.
+     */
+    public boolean isCancelled() {
+        return cancellation.get() != null;
+    }
+
+    /**
+     * Returns the failure that the stream was cancelled for.
+     * @return The failure, or null if the stream has not been cancelled.
+     */
+    public UnrecoverableStreamFailureException getCause() {
+        Cancellation currentCancellation = cancellation.get();
+        return currentCancellation == null ? null : currentCancellation.cause;
+    }
+
+    /**
+     * Throws the failure that the stream was cancelled for, if it has been cancelled.
+     * @throws UnrecoverableStreamFailureException If the stream has been cancelled.
+     */
+    public void throwIfCancelled() throws UnrecoverableStreamFailureException {
+        Cancellation currentCancellation = cancellation.get();
+
+        if (currentCancellation != null) {
+            throw currentCancellation.cause;
+        }
+    }
+
+    /**
+     * Queries how much of the time given to the stream to finish aborting is left.
+     * @return The time left in milliseconds, which is zero once the time is up, or the whole abort timeout if the
+     * stream has not been cancelled.
+     */
+    public long getRemainingAbortTimeMillis() {
+        Cancellation currentCancellation = cancellation.get();
+
+        if (currentCancellation == null) {
+            return abortTimeoutMillis;
+        }
+
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(currentCancellation.abortDeadlineNanos - System.nanoTime()));
+    }
+
+    /**
+     * Registers something to be run when the stream is cancelled, on the thread that cancels it. If the stream has
+     * already been cancelled, the listener is run straight away. Listeners should not block, and should be safe to run
+     * more than once as one registered whilst the stream is being cancelled may be.
+     * @param cancellationListener The listener to run.
+     */
+    public void onCancel(Runnable cancellationListener) {
+        cancellationListeners.add(cancellationListener);
+
+        if (isCancelled()) {
+            cancellationListener.run();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.AsyncLoader;
+import com.amazon.pocketEtl.DurableAsyncLoader;
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+
+import lombok.EqualsAndHashCode;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Implementation of Consumer that wraps an AsyncLoader and keeps up to a fixed number of loads in flight at once. Each
+ * object consumed takes a permit that is only given back when its load completes, so once the limit has been reached
+ * consume() blocks until a load completes; this pushes back on the upstream stage at the rate the loads are actually
+ * completing rather than the rate they can be started. A single thread can therefore keep many loads in flight without
+ * a thread per load.
+ *
+ * Objects whose loads complete successfully are marked as completed. Objects whose loads fail, either by throwing from
+ * load() or by completing exceptionally, are routed to a consumer designated for handling errors, which may happen on
+ * whatever thread completed the load. A load that fails with an UnrecoverableStreamFailureException aborts the stream
+ * the next time this consumer is used. close() waits for every load in flight to complete before closing the loader.
+ *
+ * Objects extracted by a checkpointed extractor are only accepted if the loader is a DurableAsyncLoader; any other
+ * loader aborts the stream when the first such object reaches it.
+ *
+ * @param <UpstreamType> Type of object to be consumed/loaded.
+ */
+@EqualsAndHashCode(exclude = {"isLoaderDurable", "consumeScopeName", "consumeBatchScopeName", "failureLogger", "loadsInFlight",
+        "abortStreamException"})
+class AsyncLoaderEtlConsumer<UpstreamType> implements EtlConsumer {
+    private final static Logger logger = getLogger(AsyncLoaderEtlConsumer.class);
+
+    private final String name;
+    private final AsyncLoader<UpstreamType> asyncLoader;
+    private final EtlConsumer errorEtlConsumer;
+    private final SampledFailureLogger failureLogger;
+    private final Class<UpstreamType> loaderTypeClass;
+    private final boolean isLoaderDurable;
+    private final int maxLoadsInFlight;
+    private final Semaphore loadsInFlight;
+    private final String consumeScopeName;
+    private final String consumeBatchScopeName;
+    private final AtomicReference<UnrecoverableStreamFailureException> abortStreamException = new AtomicReference<>();
+
+    private EtlMetrics parentMetrics;
+
+    /**
+     * Standard constructor.
+     *
+     * @param name             A human readable name for the instance of this class that will be used in logging and
+     *                         metrics.
+     * @param asyncLoader      Wrapped loader object.
+     * @param loaderTypeClass  Class definition for the objects being loaded by the wrapped loader.
+     * @param errorEtlConsumer Consumer to send objects to that could not be loaded. Its consume() method must be
+     *                         threadsafe.
+     * @param maxLoadsInFlight The most loads that may be in flight at once.
+     */
+    AsyncLoaderEtlConsumer(String name, AsyncLoader<UpstreamType> asyncLoader, Class<UpstreamType> loaderTypeClass,
+                           EtlConsumer errorEtlConsumer, int maxLoadsInFlight) {
+        if (maxLoadsInFlight < 1) {
+            throw new IllegalArgumentException("maxLoadsInFlight must be at least 1");
+        }
+
+        this.name = name;
+        this.asyncLoader = asyncLoader;
+        this.loaderTypeClass = loaderTypeClass;
+        this.isLoaderDurable = asyncLoader instanceof DurableAsyncLoader;
+        this.errorEtlConsumer = errorEtlConsumer;
+        this.maxLoadsInFlight = maxLoadsInFlight;
+        this.loadsInFlight = new Semaphore(maxLoadsInFlight);
+        this.consumeScopeName = "AsyncLoaderConsumer." + name + ".consume";
+        this.consumeBatchScopeName = "AsyncLoaderConsumer." + name + ".consumeBatch";
+        this.failureLogger = new SampledFailureLogger(logger, name);
+    }
+
+    /**
+     * Starts loading a single object, first waiting for a load to complete if the maximum number are in flight.
+     *
+     * @param objectToLoad The object to be loaded.
+     * @throws IllegalStateException If the consumer is in a state that cannot accept more objects to be loaded.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     *                                             detected and the stream needs to be aborted.
+     */
+    @Override
+    public void consume(EtlStreamObject objectToLoad) throws IllegalStateException, UnrecoverableStreamFailureException {
+        try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, consumeScopeName)) {
+            startLoad(objectToLoad);
+        }
+    }
+
+    /**
+     * Starts loading a batch of objects. Each object is loaded individually and counts towards the maximum number of
+     * loads in flight, but the profiling cost is shared across the whole batch.
+     *
+     * @param objectsToLoad The objects to be loaded.
+     * @throws IllegalStateException If the consumer is in a state that cannot accept more objects to be loaded.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     *                                             detected and the stream needs to be aborted.
+     */
+    @Override
+    public void consumeBatch(List<EtlStreamObject> objectsToLoad) throws IllegalStateException,
+                                                                         UnrecoverableStreamFailureException {
+        try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, consumeBatchScopeName)) {
+            for (EtlStreamObject objectToLoad : objectsToLoad) {
+                startLoad(objectToLoad);
+            }
+        }
+    }
+
+    /**
+     * Signals the loader to prepare to accept work. This will also signal the error consumer attached to this object.
+     */
+    @Override
+    public void open(EtlMetrics parentMetrics) {
+        this.parentMetrics = parentMetrics;
+
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "AsyncLoaderConsumer." + name + ".open")) {
+            asyncLoader.open(parentMetrics);
+            errorEtlConsumer.open(parentMetrics);
+        }
+    }
+
+    /**
+     * Waits for every load in flight to complete, then closes the loader and the error consumer attached to this
+     * object.
+     *
+     * @throws Exception If something went wrong closing the loader, or a load failed in a way that should abort the
+     *                   stream.
+     */
+    @Override
+    public void close() throws Exception {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "AsyncLoaderConsumer." + name + ".close")) {
+            loadsInFlight.acquire(maxLoadsInFlight);
+            loadsInFlight.release(maxLoadsInFlight);
+
+            try {
+                asyncLoader.close();
+            } catch (UnrecoverableStreamFailureException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                logger.warn("Exception thrown closing loader object: ", e);
+            }
+
+            failureLogger.flush();
+            errorEtlConsumer.close();
+        }
+
+        checkForAbortedStream();
+    }
+
+    private void startLoad(EtlStreamObject objectToLoad) {
+        checkForAbortedStream();
+
+        if (!isLoaderDurable && objectToLoad.getRecordCompletion() != null) {
+            logger.error("Loader in stage '" + name + "' is not a DurableAsyncLoader and cannot load checkpointed " +
+                    "objects, aborting stream");
+            throw new UnrecoverableStreamFailureException("Loader in stage '" + name + "' is not a " +
+                    "DurableAsyncLoader and cannot load objects from a checkpointed extractor");
+        }
+
+        try {
+            loadsInFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnrecoverableStreamFailureException("Interrupted waiting for a load to complete", e);
+        }
+
+        CompletionStage<Void> load;
+
+        try {
+            load = asyncLoader.load(objectToLoad.get(loaderTypeClass));
+
+            if (load == null) {
+                throw new IllegalStateException("AsyncLoader returned a null CompletionStage");
+            }
+        } catch (RuntimeException e) {
+            loadsInFlight.release();
+            handleFailedLoad(objectToLoad, e);
+            checkForAbortedStream();
+            return;
+        }
+
+        load.whenComplete((result, throwable) -> {
+            try {
+                if (throwable == null) {
+                    objectToLoad.markCompleted();
+                } else {
+                    handleFailedLoad(objectToLoad, throwable);
+                }
+            } finally {
+                loadsInFlight.release();
+            }
+        });
+    }
+
+    private void handleFailedLoad(EtlStreamObject objectToLoad, Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ?
+                throwable.getCause() : throwable;
+
+        if (cause instanceof UnrecoverableStreamFailureException) {
+            if (abortStreamException.compareAndSet(null, (UnrecoverableStreamFailureException) cause)) {
+                logger.error("Unrecoverable stream exception thrown in loader object, aborting stream: ", cause);
+            }
+
+            return;
+        }
+
+        failureLogger.warn("Exception thrown in loader object", cause instanceof Exception ?
+                (Exception) cause : new CompletionException(cause));
+
+        try {
+            errorEtlConsumer.consume(objectToLoad);
+        } catch (RuntimeException e) {
+            logger.error("Exception thrown passing failed object to error consumer: ", e);
+        }
+    }
+
+    private void checkForAbortedStream() {
+        if (abortStreamException.get() != null) {
+            throw abortStreamException.get();
+        }
+    }
+}
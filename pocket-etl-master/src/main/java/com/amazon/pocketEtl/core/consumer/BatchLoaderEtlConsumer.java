@@ -0,0 +1,198 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.BatchLoader;
+import com.amazon.pocketEtl.DurableLoader;
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+
+import lombok.EqualsAndHashCode;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Consumer that loads objects in batches using a BatchLoader. If a batch fails to load it is split in half and each
+ * half is retried, recursively, until the objects that could not be loaded have been isolated and sent to the error
+ * consumer. Every other object in the batch will still be loaded.
+ *
+ * Objects extracted by a checkpointed extractor are only accepted if the loader is a DurableLoader; any other loader
+ * aborts the stream when the first such object reaches it.
+ */
+@EqualsAndHashCode(exclude = {"isLoaderDurable", "consumeScopeName", "consumeBatchScopeName", "failureLogger",
+        "batchSplitsCounterName"})
+class BatchLoaderEtlConsumer<UpstreamType> implements EtlConsumer {
+    private final static Logger logger = getLogger(BatchLoaderEtlConsumer.class);
+
+    private final String name;
+    private final BatchLoader<UpstreamType> batchLoader;
+    private final EtlConsumer errorEtlConsumer;
+    private final SampledFailureLogger failureLogger;
+    private final Class<UpstreamType> loaderTypeClass;
+    private final boolean isLoaderDurable;
+    private final String consumeScopeName;
+    private final String consumeBatchScopeName;
+    private final String batchSplitsCounterName;
+
+    private EtlMetrics parentMetrics;
+
+    /**
+     * Standard constructor.
+     *
+     * @param name             A human readable name for the instance of this class that will be used in logging and metrics.
+     * @param batchLoader      Wrapped batch loader object.
+     * @param loaderTypeClass  Class definition for the objects being loaded by the wrapped loader.
+     * @param errorEtlConsumer Consumer to send objects to that could not be loaded.
+     */
+    BatchLoaderEtlConsumer(String name, BatchLoader<UpstreamType> batchLoader, Class<UpstreamType> loaderTypeClass,
+                           EtlConsumer errorEtlConsumer) {
+        this.name = name;
+        this.batchLoader = batchLoader;
+        this.loaderTypeClass = loaderTypeClass;
+        this.isLoaderDurable = batchLoader instanceof DurableLoader;
+        this.errorEtlConsumer = errorEtlConsumer;
+        this.failureLogger = new SampledFailureLogger(logger, name);
+        this.consumeScopeName = "BatchLoaderConsumer." + name + ".consume";
+        this.consumeBatchScopeName = "BatchLoaderConsumer." + name + ".consumeBatch";
+        this.batchSplitsCounterName = name + ".batchSplits";
+    }
+
+    /**
+     * Consumes a single object to be loaded by the loader as a batch of one.
+     *
+     * @param objectToLoad The object to be loaded.
+     * @throws IllegalStateException If the consumer is in a state that cannot accept more objects to be loaded.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     *                                             detected and the stream needs to be aborted.
+     */
+    @Override
+    public void consume(EtlStreamObject objectToLoad) throws IllegalStateException, UnrecoverableStreamFailureException {
+        try (PooledEtlProfilingScope scope = PooledEtlProfilingScope.open(parentMetrics, consumeScopeName)) {
+            loadObjects(Collections.singletonList(objectToLoad), scope);
+        }
+    }
+
+    /**
+     * Consumes a batch of objects to be loaded by the loader in a single operation.
+     *
+     * @param objectsToLoad The objects to be loaded.
+     * @throws IllegalStateException If the consumer is in a state that cannot accept more objects to be loaded.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     *                                             detected and the stream needs to be aborted.
+     */
+    @Override
+    public void consumeBatch(List<EtlStreamObject> objectsToLoad) throws IllegalStateException,
+                                                                         UnrecoverableStreamFailureException {
+        try (PooledEtlProfilingScope scope = PooledEtlProfilingScope.open(parentMetrics, consumeBatchScopeName)) {
+            loadObjects(objectsToLoad, scope);
+        }
+    }
+
+    /**
+     * Signals the loader to prepare to accept work. This will also signal the error consumer attached to this object.
+     */
+    @Override
+    public void open(EtlMetrics parentMetrics) {
+        this.parentMetrics = parentMetrics;
+
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "BatchLoaderConsumer." + name + ".open")) {
+            batchLoader.open(parentMetrics);
+            errorEtlConsumer.open(parentMetrics);
+        }
+    }
+
+    /**
+     * Signals the loader that the batch is complete and any buffers should be flushed and finalized. This will also
+     * close the error consumer attached to this object.
+     *
+     * @throws Exception If something went wrong closing the loader.
+     */
+    @Override
+    public void close() throws Exception {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "BatchLoaderConsumer." + name + ".close")) {
+            try {
+                batchLoader.close();
+            } catch (UnrecoverableStreamFailureException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                logger.warn("Exception thrown closing loader object: ", e);
+            }
+
+            failureLogger.flush();
+            errorEtlConsumer.close();
+        }
+    }
+
+    private void loadObjects(List<EtlStreamObject> objectsToLoad, PooledEtlProfilingScope scope) {
+        List<EtlStreamObject> streamObjects = new ArrayList<>(objectsToLoad.size());
+        List<UpstreamType> loaderObjects = new ArrayList<>(objectsToLoad.size());
+
+        for (EtlStreamObject objectToLoad : objectsToLoad) {
+            if (!isLoaderDurable && objectToLoad.getRecordCompletion() != null) {
+                logger.error("Loader in stage '" + name + "' is not a DurableLoader and cannot load checkpointed " +
+                        "objects, aborting stream");
+                throw new UnrecoverableStreamFailureException("Loader in stage '" + name + "' is not a " +
+                        "DurableLoader and cannot load objects from a checkpointed extractor");
+            }
+
+            try {
+                loaderObjects.add(objectToLoad.get(loaderTypeClass));
+                streamObjects.add(objectToLoad);
+            } catch (RuntimeException e) {
+                failureLogger.warn("Exception thrown converting object for loader", e);
+                errorEtlConsumer.consume(objectToLoad);
+            }
+        }
+
+        if (!loaderObjects.isEmpty()) {
+            loadOrSplitBatch(streamObjects, loaderObjects, scope);
+        }
+    }
+
+    private void loadOrSplitBatch(List<EtlStreamObject> streamObjects, List<UpstreamType> loaderObjects,
+                                  PooledEtlProfilingScope scope) {
+        try {
+            batchLoader.loadBatch(loaderObjects);
+            streamObjects.forEach(EtlStreamObject::markCompleted);
+        } catch (UnrecoverableStreamFailureException e) {
+            logger.error("Unrecoverable stream exception thrown in loader object, aborting stream: ", e);
+            throw e;
+        } catch (RuntimeException e) {
+            if (loaderObjects.size() == 1) {
+                failureLogger.warn("Exception thrown in loader object", e);
+                errorEtlConsumer.consume(streamObjects.get(0));
+                return;
+            }
+
+            logger.debug("Exception thrown loading batch of " + loaderObjects.size() + " objects, splitting batch: ", e);
+            scope.addCounter(batchSplitsCounterName, 1);
+
+            int splitIndex = loaderObjects.size() / 2;
+            loadOrSplitBatch(streamObjects.subList(0, splitIndex),
+                    new ArrayList<>(loaderObjects.subList(0, splitIndex)), scope);
+            loadOrSplitBatch(streamObjects.subList(splitIndex, streamObjects.size()),
+                    new ArrayList<>(loaderObjects.subList(splitIndex, loaderObjects.size())), scope);
+        }
+    }
+}
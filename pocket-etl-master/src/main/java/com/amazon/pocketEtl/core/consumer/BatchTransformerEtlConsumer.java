@@ -0,0 +1,237 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.BatchTransformer;
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Consumer that transforms objects in batches using a BatchTransformer. If a batch fails to transform it is split in
+ * half and each half is retried, recursively, until the objects that could not be transformed have been isolated and
+ * sent to the error consumer. Every other object in the batch will still be transformed and passed downstream.
+ */
+@EqualsAndHashCode(exclude = {"consumeScopeName", "consumeBatchScopeName", "failureLogger",
+        "batchSplitsCounterName"})
+class BatchTransformerEtlConsumer<UpstreamType, DownstreamType> implements EtlConsumer {
+    private final static Logger logger = getLogger(BatchTransformerEtlConsumer.class);
+
+    private final String name;
+    @Getter(AccessLevel.PACKAGE)
+    private final EtlConsumer downstreamEtlConsumer;
+    private final EtlConsumer errorEtlConsumer;
+    private final SampledFailureLogger failureLogger;
+    private final BatchTransformer<UpstreamType, DownstreamType> batchTransformer;
+    private final Class<UpstreamType> transformerUpstreamTypeClass;
+    private final String consumeScopeName;
+    private final String consumeBatchScopeName;
+    private final String batchSplitsCounterName;
+    private EtlMetrics parentMetrics = null;
+
+    /**
+     * Standard constructor.
+     *
+     * @param name                          A human readable name for the instance of this class that will be used in
+     *                                      logging and metrics.
+     * @param downstreamEtlConsumer         Consumer object to pass transformed objects into.
+     * @param errorEtlConsumer              Consumer object to pass objects into that could not be transformed.
+     * @param batchTransformer              Batch transformer object to perform the transformations.
+     * @param transformerUpstreamTypeClass  Class for objects being consumed by the transformer (upstream type).
+     */
+    BatchTransformerEtlConsumer(String name,
+                                EtlConsumer downstreamEtlConsumer,
+                                EtlConsumer errorEtlConsumer,
+                                BatchTransformer<UpstreamType, DownstreamType> batchTransformer,
+                                Class<UpstreamType> transformerUpstreamTypeClass) {
+        this.name = name;
+        this.downstreamEtlConsumer = downstreamEtlConsumer;
+        this.errorEtlConsumer = errorEtlConsumer;
+        this.batchTransformer = batchTransformer;
+        this.transformerUpstreamTypeClass = transformerUpstreamTypeClass;
+        this.failureLogger = new SampledFailureLogger(logger, name);
+        this.consumeScopeName = "BatchTransformerConsumer." + name + ".consume";
+        this.consumeBatchScopeName = "BatchTransformerConsumer." + name + ".consumeBatch";
+        this.batchSplitsCounterName = name + ".batchSplits";
+    }
+
+    /**
+     * Consume and transform a single object as a batch of one then pass the transformed objects to the downstream
+     * consumer. If the object cannot be transformed it will instead be passed as-is to the designated error consumer.
+     *
+     * @param objectToTransform The object to be transformed.
+     * @throws IllegalStateException If the consumer is in a state that cannot accept work.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     *                                             detected and the stream needs to be aborted.
+     */
+    @Override
+    public void consume(EtlStreamObject objectToTransform) throws IllegalStateException,
+                                                                  UnrecoverableStreamFailureException {
+        try (PooledEtlProfilingScope scope = PooledEtlProfilingScope.open(parentMetrics, consumeScopeName)) {
+            transformObjects(Collections.singletonList(objectToTransform), downstreamEtlConsumer::consume, scope);
+        }
+    }
+
+    /**
+     * Consume and transform a batch of objects in a single operation then pass all the transformed objects to the
+     * downstream consumer as a single batch. Objects that cannot be transformed are passed individually to the
+     * designated error consumer.
+     *
+     * @param objectsToTransform The objects to be transformed.
+     * @throws IllegalStateException If the consumer is in a state that cannot accept work.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     *                                             detected and the stream needs to be aborted.
+     */
+    @Override
+    public void consumeBatch(List<EtlStreamObject> objectsToTransform) throws IllegalStateException,
+                                                                              UnrecoverableStreamFailureException {
+        try (PooledEtlProfilingScope scope = PooledEtlProfilingScope.open(parentMetrics, consumeBatchScopeName)) {
+            List<EtlStreamObject> transformedBatch = new ArrayList<>(objectsToTransform.size());
+            transformObjects(objectsToTransform, transformedBatch::add, scope);
+
+            if (!transformedBatch.isEmpty()) {
+                downstreamEtlConsumer.consumeBatch(transformedBatch);
+            }
+        }
+    }
+
+    /**
+     * Signals the consumer to prepare to accept work. The designated downstream consumers will also be signalled.
+     */
+    @Override
+    public void open(EtlMetrics parentMetrics) {
+        this.parentMetrics = parentMetrics;
+
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "BatchTransformerConsumer." + name +
+                                                                              ".open")) {
+            batchTransformer.open(parentMetrics);
+            downstreamEtlConsumer.open(parentMetrics);
+            errorEtlConsumer.open(parentMetrics);
+        }
+    }
+
+    /**
+     * Signals the consumer to stop accepting work and complete any buffered work. The designated downstream consumers
+     * will also be signaled.
+     *
+     * @throws Exception if something went wrong.
+     */
+    @Override
+    public void close() throws Exception {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "BatchTransformerConsumer." + name +
+                                                                              ".close")) {
+            try {
+                downstreamEtlConsumer.close();
+            } catch (UnrecoverableStreamFailureException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                logger.warn("Exception thrown closing downstream EtlConsumer object: ", e);
+            }
+            try {
+                batchTransformer.close();
+            } catch (UnrecoverableStreamFailureException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                logger.warn("Exception thrown closing transformer object: ", e);
+            }
+
+            failureLogger.flush();
+            errorEtlConsumer.close();
+        }
+    }
+
+    private void transformObjects(List<EtlStreamObject> objectsToTransform, Consumer<EtlStreamObject> resultConsumer,
+                                  PooledEtlProfilingScope scope) {
+        List<EtlStreamObject> streamObjects = new ArrayList<>(objectsToTransform.size());
+        List<UpstreamType> transformerObjects = new ArrayList<>(objectsToTransform.size());
+
+        for (EtlStreamObject objectToTransform : objectsToTransform) {
+            try {
+                transformerObjects.add(objectToTransform.get(transformerUpstreamTypeClass));
+                streamObjects.add(objectToTransform);
+            } catch (RuntimeException e) {
+                failureLogger.warn("Exception thrown converting object for transformer", e);
+                errorEtlConsumer.consume(objectToTransform);
+            }
+        }
+
+        if (!transformerObjects.isEmpty()) {
+            transformOrSplitBatch(streamObjects, transformerObjects, resultConsumer, scope);
+        }
+    }
+
+    private void transformOrSplitBatch(List<EtlStreamObject> streamObjects, List<UpstreamType> transformerObjects,
+                                       Consumer<EtlStreamObject> resultConsumer, PooledEtlProfilingScope scope) {
+        List<List<DownstreamType>> transformedBatch;
+
+        try {
+            transformedBatch = batchTransformer.transformBatch(transformerObjects);
+
+            if (transformedBatch.size() != transformerObjects.size()) {
+                throw new IllegalStateException("Transformer returned " + transformedBatch.size() +
+                        " results for a batch of " + transformerObjects.size() + " objects");
+            }
+        } catch (UnrecoverableStreamFailureException e) {
+            logger.error("Unrecoverable stream exception thrown in transformer object, aborting stream: ", e);
+            throw e;
+        } catch (RuntimeException e) {
+            if (transformerObjects.size() == 1) {
+                failureLogger.warn("Exception thrown in transformer object", e);
+                errorEtlConsumer.consume(streamObjects.get(0));
+                return;
+            }
+
+            logger.debug("Exception thrown transforming batch of " + transformerObjects.size() +
+                    " objects, splitting batch: ", e);
+            scope.addCounter(batchSplitsCounterName, 1);
+
+            int splitIndex = transformerObjects.size() / 2;
+            transformOrSplitBatch(streamObjects.subList(0, splitIndex),
+                    new ArrayList<>(transformerObjects.subList(0, splitIndex)), resultConsumer, scope);
+            transformOrSplitBatch(streamObjects.subList(splitIndex, streamObjects.size()),
+                    new ArrayList<>(transformerObjects.subList(splitIndex, transformerObjects.size())),
+                    resultConsumer, scope);
+            return;
+        }
+
+        for (int i = 0; i < streamObjects.size(); i++) {
+            EtlStreamObject objectToTransform = streamObjects.get(i);
+            List<DownstreamType> transformedObjects = transformedBatch.get(i);
+
+            // Optimized path for single object transformation, re-uses existing EtlStreamObject
+            if (transformedObjects.size() == 1) {
+                resultConsumer.accept(objectToTransform.with(transformedObjects.get(0)));
+            } else {
+                transformedObjects.forEach(obj -> resultConsumer.accept(objectToTransform.createCopy().with(obj)));
+                objectToTransform.markCompleted();
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.EqualsAndHashCode;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Implementation of Consumer that writes the objects it consumes to files in a local directory, one line per object,
+ * so that records that failed can be inspected or replayed once the stream has finished. Objects are converted to a
+ * line by the submitting thread and handed to a single background thread that writes them in batches, so a stage that
+ * fails a large share of its records does not wait on the disk for each one. The hand-off queue is bounded, so if the
+ * disk cannot keep up the submitting threads will block rather than buffering without limit.
+ *
+ * Files are named after the stage and the time the consumer was opened, and a new file is started once the current
+ * one would grow past the maximum size. An object is only marked as completed once the batch it was written in has
+ * been flushed to its file. If the files cannot be written to, every object consumed afterwards fails with an
+ * UnrecoverableStreamFailureException.
+ *
+ * @param <T> Type of object to be written.
+ */
+@EqualsAndHashCode(exclude = {"consumeScopeName", "queue", "writerThread", "outputStream", "currentFileBytes",
+        "fileIndex", "filePrefix", "isClosed", "writeFailure"})
+class DeadLetterFileEtlConsumer<T> implements EtlConsumer {
+    private final static Logger logger = getLogger(DeadLetterFileEtlConsumer.class);
+    private final static ThreadFactory writerThreadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("DeadLetterFileEtlConsumer-%d")
+            .setDaemon(true)
+            .build();
+    private final static int QUEUE_CAPACITY = 10_000;
+    private final static int MAX_BATCH_SIZE = 1_000;
+    private final static long IDLE_POLL_MILLIS = 10;
+    private final static byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final String name;
+    private final Path directory;
+    private final Class<T> dtoClass;
+    private final Function<T, String> serializationStrategy;
+    private final long maxFileBytes;
+    private final String consumeScopeName;
+    private final BlockingQueue<DeadLetter> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private Thread writerThread = null;
+    private OutputStream outputStream = null;
+    private long currentFileBytes = 0;
+    private int fileIndex = 0;
+    private String filePrefix = null;
+    private EtlMetrics parentMetrics = null;
+    private volatile boolean isClosed = false;
+    private volatile IOException writeFailure = null;
+
+    private static class DeadLetter {
+        private final byte[] line;
+        private final EtlStreamObject etlStreamObject;
+
+        DeadLetter(byte[] line, EtlStreamObject etlStreamObject) {
+            this.line = line;
+            this.etlStreamObject = etlStreamObject;
+        }
+    }
+
+    /**
+     * Standard constructor.
+     *
+     * @param name                  A human readable name for the instance of this class that will be used in logging,
+     *                              metrics and the names of the files written.
+     * @param directory             The directory to write the files to. It will be created if it does not exist.
+     * @param dtoClass              Class object to use to create the object to be written.
+     * @param serializationStrategy Function that takes an object from the ETL stream and returns the single line of
+     *                              text to write for it.
+     * @param maxFileBytes          The size a file may grow to before a new one is started.
+     */
+    DeadLetterFileEtlConsumer(String name, Path directory, @Nonnull Class<T> dtoClass,
+                              @Nonnull Function<T, String> serializationStrategy, long maxFileBytes) {
+        if (maxFileBytes < 1) {
+            throw new IllegalArgumentException("maxFileBytes must be at least 1");
+        }
+
+        this.name = name;
+        this.directory = directory;
+        this.dtoClass = dtoClass;
+        this.serializationStrategy = serializationStrategy;
+        this.maxFileBytes = maxFileBytes;
+        this.consumeScopeName = "DeadLetterFileConsumer." + name + ".consume";
+    }
+
+    /**
+     * Converts an object to a line of text and queues it to be written. This call only blocks if the background
+     * writer has fallen too far behind.
+     *
+     * @param objectToConsume The object to be consumed.
+     * @throws IllegalStateException If this consumer is not in a state able to do work.
+     * @throws UnrecoverableStreamFailureException If the files could not be written to, or the thread was interrupted
+     *                                             whilst waiting for the writer to catch up.
+     */
+    @Override
+    public void consume(EtlStreamObject objectToConsume) throws IllegalStateException,
+                                                                UnrecoverableStreamFailureException {
+        if (isClosed || writerThread == null) {
+            throw new IllegalStateException("Attempt to write to a dead-letter consumer that is not open");
+        }
+
+        checkForWriteFailure();
+
+        try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, consumeScopeName)) {
+            String line;
+
+            try {
+                line = serializationStrategy.apply(objectToConsume.get(dtoClass));
+            } catch (RuntimeException e) {
+                logger.error("ETL failure for object type '" + objectToConsume.getClass().getSimpleName() +
+                        "' could not be written to a dead-letter file. Serialization strategy failed with exception: ",
+                        e);
+                objectToConsume.markCompleted();
+                return;
+            }
+
+            queue.put(new DeadLetter(line.getBytes(StandardCharsets.UTF_8), objectToConsume));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnrecoverableStreamFailureException("Interrupted waiting to write to a dead-letter file", e);
+        }
+    }
+
+    /**
+     * Signal the consumer to prepare to accept work. Creates the directory if needed and starts the background writer.
+     */
+    @Override
+    public void open(EtlMetrics parentMetrics) {
+        this.parentMetrics = parentMetrics;
+
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "DeadLetterFileConsumer." + name + ".open")) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new UnrecoverableStreamFailureException("Could not create dead-letter directory " + directory, e);
+            }
+
+            filePrefix = name + "." + System.currentTimeMillis();
+            writerThread = writerThreadFactory.newThread(this::write);
+            writerThread.start();
+        }
+    }
+
+    /**
+     * Signal the consumer to stop accepting work, and wait for everything queued to be written to disk.
+     *
+     * @throws Exception If the files could not be written to, or the thread was interrupted whilst waiting.
+     */
+    @Override
+    public void close() throws Exception {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "DeadLetterFileConsumer." + name + ".close")) {
+            isClosed = true;
+
+            if (writerThread != null) {
+                writerThread.join();
+            }
+        }
+
+        if (writeFailure != null) {
+            throw new IOException("Failed objects could not be written to dead-letter files in " + directory,
+                    writeFailure);
+        }
+    }
+
+    private void write() {
+        List<DeadLetter> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
+        try {
+            while (true) {
+                DeadLetter firstDeadLetter = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (firstDeadLetter == null) {
+                    if (isClosed && queue.isEmpty()) {
+                        return;
+                    }
+
+                    continue;
+                }
+
+                batch.add(firstDeadLetter);
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+                // Once writing has failed, keep draining so that submitters are not left blocked on a full queue
+                if (writeFailure == null) {
+                    writeBatch(batch);
+                }
+
+                batch.clear();
+            }
+        } catch (InterruptedException ignored) {
+        } finally {
+            closeFile();
+        }
+    }
+
+    private void writeBatch(List<DeadLetter> batch) {
+        try {
+            for (DeadLetter deadLetter : batch) {
+                long lineBytes = deadLetter.line.length + LINE_SEPARATOR.length;
+
+                if (outputStream == null || (currentFileBytes > 0 && currentFileBytes + lineBytes > maxFileBytes)) {
+                    rollFile();
+                }
+
+                outputStream.write(deadLetter.line);
+                outputStream.write(LINE_SEPARATOR);
+                currentFileBytes += lineBytes;
+            }
+
+            outputStream.flush();
+        } catch (IOException e) {
+            logger.error("Could not write to dead-letter file, failed objects will be lost: ", e);
+            writeFailure = e;
+            return;
+        }
+
+        batch.forEach(deadLetter -> deadLetter.etlStreamObject.markCompleted());
+    }
+
+    private void rollFile() throws IOException {
+        if (outputStream != null) {
+            outputStream.close();
+        }
+
+        Path file = directory.resolve(filePrefix + "." + fileIndex++ + ".log");
+        outputStream = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE));
+        currentFileBytes = 0;
+    }
+
+    private void closeFile() {
+        if (outputStream != null) {
+            try {
+                outputStream.close();
+            } catch (IOException e) {
+                logger.warn("Exception thrown closing dead-letter file: ", e);
+            }
+        }
+    }
+
+    private void checkForWriteFailure() {
+        if (writeFailure != null) {
+            throw new UnrecoverableStreamFailureException("Failed objects could not be written to dead-letter files",
+                    writeFailure);
+        }
+    }
+}
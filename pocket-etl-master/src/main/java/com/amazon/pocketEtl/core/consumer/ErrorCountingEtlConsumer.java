@@ -0,0 +1,90 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.executor.EtlExecutor;
+import com.amazon.pocketEtl.core.metrics.StageMetrics;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Implementation of consumer that sits between a stage and the consumer it routes failed records to. Every record
+ * routed there is counted as an error of the stage in its StageMetrics, and reported as a failure of the task that
+ * was running it to the stage's EtlExecutor. Transformers and loaders catch the failures of individual records and
+ * hand them to their error consumer rather than throwing, so this is the only place those failures can be seen. The
+ * factory inserts it in front of the error consumer of every stage.
+ */
+@EqualsAndHashCode(exclude = {"stageMetrics", "etlExecutor"})
+class ErrorCountingEtlConsumer implements EtlConsumer {
+    @Getter(AccessLevel.PACKAGE)
+    private final EtlConsumer errorEtlConsumer;
+
+    private final StageMetrics stageMetrics;
+    private final EtlExecutor etlExecutor;
+
+    /**
+     * Standard constructor.
+     *
+     * @param errorEtlConsumer The consumer failed records are routed to.
+     * @param stageMetrics     The metrics of the stage the records failed in, or null if the stage records none.
+     * @param etlExecutor      The executor running the work of the stage the records failed in.
+     */
+    ErrorCountingEtlConsumer(EtlConsumer errorEtlConsumer, @Nullable StageMetrics stageMetrics,
+                             EtlExecutor etlExecutor) {
+        this.errorEtlConsumer = errorEtlConsumer;
+        this.stageMetrics = stageMetrics;
+        this.etlExecutor = etlExecutor;
+    }
+
+    @Override
+    public void consume(EtlStreamObject objectToConsume) throws IllegalStateException,
+                                                                 UnrecoverableStreamFailureException {
+        countErrors(1);
+        errorEtlConsumer.consume(objectToConsume);
+    }
+
+    @Override
+    public void consumeBatch(List<EtlStreamObject> objectsToConsume) throws IllegalStateException,
+                                                                             UnrecoverableStreamFailureException {
+        countErrors(objectsToConsume.size());
+        errorEtlConsumer.consumeBatch(objectsToConsume);
+    }
+
+    @Override
+    public void open(EtlMetrics parentMetrics) {
+        errorEtlConsumer.open(parentMetrics);
+    }
+
+    @Override
+    public void close() throws Exception {
+        errorEtlConsumer.close();
+    }
+
+    private void countErrors(int numberOfErrors) {
+        if (stageMetrics != null) {
+            stageMetrics.addRoutedErrors(numberOfErrors);
+        }
+
+        etlExecutor.reportTaskFailure();
+    }
+}
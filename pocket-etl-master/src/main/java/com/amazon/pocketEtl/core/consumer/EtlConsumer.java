@@ -20,6 +20,7 @@ import com.amazon.pocketEtl.core.EtlStreamObject;
 import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
 
 import javax.annotation.Nullable;
+import java.util.List;
 
 /**
  * Common interface for all ETL objects that consume data from the ETL stream.
@@ -35,6 +36,23 @@ public interface EtlConsumer extends AutoCloseable {
      */
     void consume(EtlStreamObject objectToConsume) throws IllegalStateException, UnrecoverableStreamFailureException;
 
+    /**
+     * Consume a batch of objects. Consumers that can amortize work across multiple objects should override this
+     * method; the default implementation simply consumes each object in turn so that every consumer can be used in a
+     * batched consumer chain.
+     *
+     * @param objectsToConsume The objects to be consumed.
+     * @throws IllegalStateException If the consumer is in a state that it cannot accept more objects to consume.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     * detected and the stream needs to be aborted.
+     */
+    default void consumeBatch(List<EtlStreamObject> objectsToConsume) throws IllegalStateException,
+                                                                             UnrecoverableStreamFailureException {
+        for (EtlStreamObject objectToConsume : objectsToConsume) {
+            consume(objectToConsume);
+        }
+    }
+
     /**
      * Signal the consumer to prepare receiving work.
      *
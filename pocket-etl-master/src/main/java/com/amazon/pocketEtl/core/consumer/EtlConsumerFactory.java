@@ -15,29 +15,78 @@
 
 package com.amazon.pocketEtl.core.consumer;
 
+import com.amazon.pocketEtl.AsyncLoader;
+import com.amazon.pocketEtl.BatchLoader;
+import com.amazon.pocketEtl.BatchTransformer;
 import com.amazon.pocketEtl.Loader;
 import com.amazon.pocketEtl.Transformer;
+import com.amazon.pocketEtl.core.StreamCancellation;
 import com.amazon.pocketEtl.core.executor.EtlExecutor;
 import com.amazon.pocketEtl.core.executor.EtlExecutorFactory;
-import lombok.RequiredArgsConstructor;
+import com.amazon.pocketEtl.core.executor.PartitionedEtlExecutor;
+import com.amazon.pocketEtl.core.metrics.EtlMetricsRegistry;
 import org.apache.logging.log4j.Logger;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.file.Path;
 import java.util.function.Function;
 
 /**
  * An injectable factory class for building various types of useful consumers. This is the only way you should be
  * constructing consumers of any kind outside of this package. Typically consumers are actually chains :
  * SmartConsumer -> MetricsEmissionConsumer -> ExecutorConsumer -> SpecificConsumer
+ * Order preserving transformers replace the ExecutorConsumer with an OrderPreservingConsumer that releases transformed
+ * records to the downstream consumer in the order they arrived. Key partitioned transformers give the ExecutorConsumer
+ * a PartitionedEtlExecutor so that records sharing a key are always transformed by the same thread.
+ * If a MicroBatchPolicy is provided, a MicroBatchingConsumer is inserted after the SmartConsumer so that records are
+ * carried through the rest of the chain in batches rather than one at a time.
  * The SmartConsumer allows multiple upstream consumers to be chained to a single downstream consumer without causing
  * problems with open and close. This layer is invisible to the operation of the ETL stream, but necessary.
  * The ExecutorConsumer handles the parallelism of the consumer. If you don't want any parallelism, then pass in a
  * SingleThreadedEtlExecutor for the consumer bundles that require an EtlExecutor. Passing in a multithreaded EtlExecutor
  * means you have to ensure that the SpecificConsumer is threadsafe.
+ * Stages built with an EtlExecutor that runs tasks on the submitting thread are fused : the MetricsEmissionConsumer and
+ * ExecutorConsumer are replaced by a single FusedConsumer, and a fused transformer whose downstream stage is also fused
+ * hands its output straight to the downstream FusedConsumer. Use explain() to see the resulting plan.
+ * If the factory is given an EtlMetricsRegistry, every stage records its record and error counts, service time and
+ * queue wait time in the registry instead of emitting them to EtlMetrics per record; the registry flushes aggregates,
+ * including latency percentiles, to EtlMetrics periodically.
+ * Every stage's error consumer is fronted by an ErrorCountingConsumer, which counts the records routed to it as errors
+ * of the stage and reports them to the stage's EtlExecutor as task failures.
+ * If the factory is given a StreamCancellation, every ExecutorConsumer it builds cancels the whole stream when a record
+ * fails unrecoverably, and discards its queued work as soon as any part of the stream is cancelled.
  */
-@RequiredArgsConstructor
 public class EtlConsumerFactory {
     private final EtlExecutorFactory etlExecutorFactory;
+    private final EtlMetricsRegistry etlMetricsRegistry;
+    private final StreamCancellation streamCancellation;
+
+    public EtlConsumerFactory(EtlExecutorFactory etlExecutorFactory) {
+        this(etlExecutorFactory, null);
+    }
+
+    /**
+     * Constructs a factory whose consumers record their metrics in an in-process registry.
+     * @param etlExecutorFactory Factory used to construct executors for the consumers that need them.
+     * @param etlMetricsRegistry Registry the consumers will record to, or null to emit metrics per record.
+     */
+    public EtlConsumerFactory(EtlExecutorFactory etlExecutorFactory, @Nullable EtlMetricsRegistry etlMetricsRegistry) {
+        this(etlExecutorFactory, etlMetricsRegistry, null);
+    }
+
+    /**
+     * Constructs a factory whose consumers take part in cancelling the stream they belong to.
+     * @param etlExecutorFactory Factory used to construct executors for the consumers that need them.
+     * @param etlMetricsRegistry Registry the consumers will record to, or null to emit metrics per record.
+     * @param streamCancellation Cancellation token shared by the stream, or null to abort only the failing stage.
+     */
+    public EtlConsumerFactory(EtlExecutorFactory etlExecutorFactory, @Nullable EtlMetricsRegistry etlMetricsRegistry,
+                              @Nullable StreamCancellation streamCancellation) {
+        this.etlExecutorFactory = etlExecutorFactory;
+        this.etlMetricsRegistry = etlMetricsRegistry;
+        this.streamCancellation = streamCancellation;
+    }
 
     /**
      * Constructs a consumer based on a Loader.
@@ -51,11 +100,59 @@ public class EtlConsumerFactory {
     @Nonnull
     public <T> EtlConsumer newLoader(String stageName, Loader<T> loader, Class<T> loaderTypeClass,
                                             EtlConsumer errorEtlConsumer, EtlExecutor etlExecutor) {
-        EtlConsumer loaderEtlConsumer = new LoaderEtlConsumer<>(stageName, loader, loaderTypeClass, errorEtlConsumer);
+        EtlConsumer loaderEtlConsumer = new LoaderEtlConsumer<>(stageName, loader, loaderTypeClass,
+                countErrors(stageName, errorEtlConsumer, etlExecutor));
 
         return newWrappedConsumer(stageName, loaderEtlConsumer, etlExecutor);
     }
 
+    /**
+     * Constructs a consumer based on a Loader that carries records through the consumer chain in micro-batches. If
+     * the loader is a BatchLoader, each micro-batch will be loaded in a single operation.
+     * @param stageName The name of this consumer used in logging and reporting.
+     * @param loader The loader object this consumer will be based on.
+     * @param errorEtlConsumer A consumer to send all records that could not be loaded to.
+     * @param etlExecutor An EtlExecutor object to handle parallelism for this consumer.
+     * @param microBatchPolicy A policy that determines how records are grouped into batches.
+     * @param <T> The type of object being loaded.
+     * @return A fully constructed consumer.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public <T> EtlConsumer newLoader(String stageName, Loader<T> loader, Class<T> loaderTypeClass,
+                                     EtlConsumer errorEtlConsumer, EtlExecutor etlExecutor,
+                                     MicroBatchPolicy microBatchPolicy) {
+        EtlConsumer stageErrorEtlConsumer = countErrors(stageName, errorEtlConsumer, etlExecutor);
+        EtlConsumer loaderEtlConsumer = loader instanceof BatchLoader ?
+                new BatchLoaderEtlConsumer<>(stageName, (BatchLoader<T>) loader, loaderTypeClass,
+                        stageErrorEtlConsumer) :
+                new LoaderEtlConsumer<>(stageName, loader, loaderTypeClass, stageErrorEtlConsumer);
+
+        return newMicroBatchingWrappedConsumer(stageName, loaderEtlConsumer, etlExecutor, microBatchPolicy);
+    }
+
+    /**
+     * Constructs a consumer based on an AsyncLoader that keeps a bounded number of loads in flight at once. Because
+     * each thread of the executor can have many loads in flight, an executor with only a few threads is normally
+     * enough.
+     * @param stageName The name of this consumer used in logging and reporting.
+     * @param asyncLoader The asynchronous loader object this consumer will be based on.
+     * @param errorEtlConsumer A consumer to send all records that could not be loaded to.
+     * @param etlExecutor An EtlExecutor object to handle parallelism for this consumer.
+     * @param maxLoadsInFlight The most loads that may be in flight at once across the whole stage.
+     * @param <T> The type of object being loaded.
+     * @return A fully constructed consumer.
+     */
+    @Nonnull
+    public <T> EtlConsumer newAsyncLoader(String stageName, AsyncLoader<T> asyncLoader, Class<T> loaderTypeClass,
+                                          EtlConsumer errorEtlConsumer, EtlExecutor etlExecutor,
+                                          int maxLoadsInFlight) {
+        EtlConsumer asyncLoaderEtlConsumer = new AsyncLoaderEtlConsumer<>(stageName, asyncLoader, loaderTypeClass,
+                countErrors(stageName, errorEtlConsumer, etlExecutor), maxLoadsInFlight);
+
+        return newWrappedConsumer(stageName, asyncLoaderEtlConsumer, etlExecutor);
+    }
+
     /**
      * Constructs a consumer based on a Transformer.
      * @param stageName The name of this consumer used in logging and reporting.
@@ -77,12 +174,125 @@ public class EtlConsumerFactory {
             EtlExecutor etlExecutor
     ) {
         EtlConsumer transformerEtlConsumer =
-                new TransformerEtlConsumer<>(stageName, downstreamEtlConsumer, errorEtlConsumer, transformer,
+                new TransformerEtlConsumer<>(stageName, fuseWithDownstream(downstreamEtlConsumer, etlExecutor),
+                        countErrors(stageName, errorEtlConsumer, etlExecutor), transformer,
                         transformerUpstreamTypeClass);
 
         return newWrappedConsumer(stageName, transformerEtlConsumer, etlExecutor);
     }
 
+    /**
+     * Constructs a consumer based on a Transformer that carries records through the consumer chain in micro-batches.
+     * Transformed records are passed on to the downstream consumer in batches as well. If the transformer is a
+     * BatchTransformer, each micro-batch will be transformed in a single operation.
+     * @param stageName The name of this consumer used in logging and reporting.
+     * @param transformer The transformer object this consumer will be based on.
+     * @param downstreamEtlConsumer A consumer to pass in transformed objects to.
+     * @param errorEtlConsumer A consumer to send all records that could not be transformed to.
+     * @param etlExecutor An EtlExecutor object to handle parallelism for this consumer.
+     * @param microBatchPolicy A policy that determines how records are grouped into batches.
+     * @param <Upstream> The type of objects that will be consumed by the transformer.
+     * @param <Downstream> The type of objects that will be produced by the transformer.
+     * @return A fully constructed consumer.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public <Upstream, Downstream> EtlConsumer newTransformer(
+            String stageName,
+            Transformer<Upstream, Downstream> transformer,
+            Class<Upstream> transformerUpstreamTypeClass,
+            EtlConsumer downstreamEtlConsumer,
+            EtlConsumer errorEtlConsumer,
+            EtlExecutor etlExecutor,
+            MicroBatchPolicy microBatchPolicy
+    ) {
+        EtlConsumer stageErrorEtlConsumer = countErrors(stageName, errorEtlConsumer, etlExecutor);
+        EtlConsumer transformerEtlConsumer = transformer instanceof BatchTransformer ?
+                new BatchTransformerEtlConsumer<>(stageName, downstreamEtlConsumer, stageErrorEtlConsumer,
+                        (BatchTransformer<Upstream, Downstream>) transformer, transformerUpstreamTypeClass) :
+                new TransformerEtlConsumer<>(stageName, downstreamEtlConsumer, stageErrorEtlConsumer, transformer,
+                        transformerUpstreamTypeClass);
+
+        return newMicroBatchingWrappedConsumer(stageName, transformerEtlConsumer, etlExecutor, microBatchPolicy);
+    }
+
+    /**
+     * Constructs a consumer based on a Transformer that transforms objects in parallel but passes the transformed
+     * objects on to the downstream consumer in the same order the objects were consumed. All the objects a single
+     * object is transformed into are passed on together.
+     * @param stageName The name of this consumer used in logging and reporting.
+     * @param transformer The transformer object this consumer will be based on.
+     * @param downstreamEtlConsumer A consumer to pass in transformed objects to.
+     * @param errorEtlConsumer A consumer to send all records that could not be transformed to.
+     * @param etlExecutor An EtlExecutor object to handle parallelism for this consumer.
+     * @param reorderBufferSize The maximum number of objects that can be in flight or waiting for earlier objects to
+     *                          be passed on. The consumer will block once this limit is reached.
+     * @param <Upstream> The type of objects that will be consumed by the transformer.
+     * @param <Downstream> The type of objects that will be produced by the transformer.
+     * @return A fully constructed consumer.
+     */
+    @Nonnull
+    public <Upstream, Downstream> EtlConsumer newOrderPreservingTransformer(
+            String stageName,
+            Transformer<Upstream, Downstream> transformer,
+            Class<Upstream> transformerUpstreamTypeClass,
+            EtlConsumer downstreamEtlConsumer,
+            EtlConsumer errorEtlConsumer,
+            EtlExecutor etlExecutor,
+            int reorderBufferSize
+    ) {
+        EtlConsumer stageErrorEtlConsumer = countErrors(stageName, errorEtlConsumer, etlExecutor);
+        EtlConsumer orderPreservingEtlConsumer = new OrderPreservingEtlConsumer(stageName,
+                collectingEtlConsumer -> new TransformerEtlConsumer<>(stageName, collectingEtlConsumer,
+                        stageErrorEtlConsumer, transformer, transformerUpstreamTypeClass),
+                downstreamEtlConsumer, etlExecutor, reorderBufferSize);
+
+        if (etlMetricsRegistry != null) {
+            etlMetricsRegistry.getStageMetrics(stageName).observeExecutor(etlExecutor);
+        }
+
+        return new SmartEtlConsumer(stageName, new MetricsEmissionEtlConsumer(stageName, orderPreservingEtlConsumer,
+                etlMetricsRegistry));
+    }
+
+    /**
+     * Constructs a consumer based on a Transformer that transforms objects in parallel, but always transforms objects
+     * that share a partition key on the same thread and in the order they were consumed. A transformer that keeps
+     * state per key can therefore do so without any locking, as long as state for different keys is kept apart.
+     * @param stageName The name of this consumer used in logging and reporting.
+     * @param transformer The transformer object this consumer will be based on.
+     * @param downstreamEtlConsumer A consumer to pass in transformed objects to.
+     * @param errorEtlConsumer A consumer to send all records that could not be transformed to.
+     * @param partitionedEtlExecutor A PartitionedEtlExecutor object to handle parallelism for this consumer.
+     * @param partitionKeyExtractor A function that extracts the partition key from an object to be transformed.
+     * @param <Upstream> The type of objects that will be consumed by the transformer.
+     * @param <Downstream> The type of objects that will be produced by the transformer.
+     * @return A fully constructed consumer.
+     */
+    @Nonnull
+    public <Upstream, Downstream> EtlConsumer newKeyPartitionedTransformer(
+            String stageName,
+            Transformer<Upstream, Downstream> transformer,
+            Class<Upstream> transformerUpstreamTypeClass,
+            EtlConsumer downstreamEtlConsumer,
+            EtlConsumer errorEtlConsumer,
+            PartitionedEtlExecutor partitionedEtlExecutor,
+            Function<Upstream, ?> partitionKeyExtractor
+    ) {
+        EtlConsumer transformerEtlConsumer =
+                new TransformerEtlConsumer<>(stageName, downstreamEtlConsumer,
+                        countErrors(stageName, errorEtlConsumer, partitionedEtlExecutor), transformer,
+                        transformerUpstreamTypeClass);
+
+        return new SmartEtlConsumer(stageName, new MetricsEmissionEtlConsumer(stageName,
+                new ExecutorEtlConsumer(stageName, transformerEtlConsumer, partitionedEtlExecutor,
+                        etlStreamObject -> partitionKeyExtractor.apply(
+                                etlStreamObject.get(transformerUpstreamTypeClass)),
+                        etlMetricsRegistry == null ? null : etlMetricsRegistry.getStageMetrics(stageName),
+                        streamCancellation),
+                etlMetricsRegistry));
+    }
+
     /**
      * Constructs a consumer that will simply output the object to a log based on a logging strategy and then do
      * nothing further with it. Used for logging errors in your ETL flow.
@@ -98,10 +308,155 @@ public class EtlConsumerFactory {
                 etlExecutorFactory.newImmediateExecutionEtlExecutor());
     }
 
+    /**
+     * Constructs a consumer that writes the objects it consumes to rolling files in a local directory, one line per
+     * object, and then does nothing further with them. Used as a dead-letter sink for the errors in your ETL flow:
+     * objects are written in batches by a background thread, so a high failure rate does not slow the stream down the
+     * way logging every object would.
+     * @param stageName The name of this consumer used in logging, reporting and the names of the files written.
+     * @param directory The directory to write the files to.
+     * @param dtoClass Class object to use to create the object to be written.
+     * @param serializationStrategy Method that converts an object to the single line of text written for it.
+     * @param maxFileBytes The size a file may grow to before a new one is started.
+     * @return A fully constructed consumer.
+     */
+    @Nonnull
+    public <T> EtlConsumer newDeadLetterFileConsumer(String stageName, Path directory, Class<T> dtoClass,
+                                                     Function<T, String> serializationStrategy, long maxFileBytes) {
+        return newWrappedConsumer(stageName + ".error",
+                new DeadLetterFileEtlConsumer<>(stageName, directory, dtoClass, serializationStrategy, maxFileBytes),
+                etlExecutorFactory.newImmediateExecutionEtlExecutor());
+    }
+
+    /**
+     * Wraps a consumer so that several upstream producers can each open and close it: the wrapped consumer is opened
+     * by the first producer to open it and only closed once every producer that opened it has closed it again. The
+     * consumers built by this factory already count their producers in this way and are returned as they are.
+     * @param name The name used in logging and reporting.
+     * @param etlConsumer The consumer to share between producers.
+     * @return A consumer that can be shared between producers.
+     */
+    public static EtlConsumer newSharedConsumer(String name, EtlConsumer etlConsumer) {
+        if (etlConsumer instanceof SmartEtlConsumer) {
+            return etlConsumer;
+        }
+
+        return new SmartEtlConsumer(name, etlConsumer);
+    }
+
+    /**
+     * Describes the chain of consumers that objects passed to a consumer will travel through, one stage per line,
+     * following transformers through to their downstream stages. A stage that has been fused with the stage upstream
+     * of it starts with a FusedLinkConsumer instead of a SmartConsumer.
+     * @param etlConsumer A consumer constructed by this factory.
+     * @return A human readable description of the consumer plan.
+     */
+    @Nonnull
+    public String explain(EtlConsumer etlConsumer) {
+        StringBuilder plan = new StringBuilder();
+        EtlConsumer stageHeadEtlConsumer = etlConsumer;
+
+        while (stageHeadEtlConsumer != null) {
+            if (plan.length() > 0) {
+                plan.append(System.lineSeparator());
+            }
+
+            stageHeadEtlConsumer = explainStage(stageHeadEtlConsumer, plan);
+        }
+
+        return plan.toString();
+    }
+
+    // Appends the consumers of a single stage to the plan and returns the head of the next stage, if there is one
+    private static EtlConsumer explainStage(EtlConsumer stageHeadEtlConsumer, StringBuilder plan) {
+        EtlConsumer nextStageHeadEtlConsumer = null;
+        EtlConsumer etlConsumer = stageHeadEtlConsumer;
+
+        while (etlConsumer != null) {
+            if (etlConsumer != stageHeadEtlConsumer) {
+                plan.append(" -> ");
+            }
+
+            plan.append(etlConsumer.getClass().getSimpleName().replace("EtlConsumer", "Consumer"));
+            EtlConsumer nextEtlConsumer = null;
+
+            if (etlConsumer instanceof SmartEtlConsumer) {
+                plan.append("(").append(((SmartEtlConsumer) etlConsumer).getName()).append(")");
+                nextEtlConsumer = ((SmartEtlConsumer) etlConsumer).getWrappedEtlConsumer();
+            } else if (etlConsumer instanceof FusedLinkEtlConsumer) {
+                nextEtlConsumer = ((FusedLinkEtlConsumer) etlConsumer).getDownstreamFusedEtlConsumer();
+            } else if (etlConsumer instanceof FusedEtlConsumer) {
+                plan.append("(").append(((FusedEtlConsumer) etlConsumer).getStageName()).append(")");
+                nextEtlConsumer = ((FusedEtlConsumer) etlConsumer).getWrappedEtlConsumer();
+            } else if (etlConsumer instanceof MicroBatchingEtlConsumer) {
+                nextEtlConsumer = ((MicroBatchingEtlConsumer) etlConsumer).getDownstreamEtlConsumer();
+            } else if (etlConsumer instanceof MetricsEmissionEtlConsumer) {
+                nextEtlConsumer = ((MetricsEmissionEtlConsumer) etlConsumer).getDownstreamEtlConsumer();
+            } else if (etlConsumer instanceof ExecutorEtlConsumer) {
+                nextEtlConsumer = ((ExecutorEtlConsumer) etlConsumer).getWrappedEtlConsumer();
+            } else if (etlConsumer instanceof OrderPreservingEtlConsumer) {
+                // The wrapped transformer only feeds the reorder buffer, so the next stage is downstream of this one
+                plan.append(" -> ").append(((OrderPreservingEtlConsumer) etlConsumer).getWrappedEtlConsumer()
+                        .getClass().getSimpleName().replace("EtlConsumer", "Consumer"));
+                nextStageHeadEtlConsumer = ((OrderPreservingEtlConsumer) etlConsumer).getDownstreamEtlConsumer();
+            } else if (etlConsumer instanceof TransformerEtlConsumer) {
+                nextStageHeadEtlConsumer = ((TransformerEtlConsumer) etlConsumer).getDownstreamEtlConsumer();
+            } else if (etlConsumer instanceof BatchTransformerEtlConsumer) {
+                nextStageHeadEtlConsumer = ((BatchTransformerEtlConsumer) etlConsumer).getDownstreamEtlConsumer();
+            }
+
+            etlConsumer = nextEtlConsumer;
+        }
+
+        return nextStageHeadEtlConsumer;
+    }
+
+    // A stage that runs on the thread of its upstream stage can skip the SmartConsumer of its downstream stage when
+    // that stage runs on the same thread as well
+    @Nonnull
+    private static EtlConsumer fuseWithDownstream(EtlConsumer downstreamEtlConsumer, EtlExecutor etlExecutor) {
+        if (etlExecutor.runsTasksOnSubmittingThread() && downstreamEtlConsumer instanceof SmartEtlConsumer) {
+            SmartEtlConsumer downstreamSmartEtlConsumer = (SmartEtlConsumer) downstreamEtlConsumer;
+
+            if (downstreamSmartEtlConsumer.getWrappedEtlConsumer() instanceof FusedEtlConsumer) {
+                return new FusedLinkEtlConsumer(downstreamSmartEtlConsumer,
+                        (FusedEtlConsumer) downstreamSmartEtlConsumer.getWrappedEtlConsumer());
+            }
+        }
+
+        return downstreamEtlConsumer;
+    }
+
     @Nonnull
     private EtlConsumer newWrappedConsumer(String stageName, EtlConsumer wrappedEtlConsumer,
                                                   EtlExecutor etlExecutor) {
+        if (etlExecutor.runsTasksOnSubmittingThread()) {
+            return new SmartEtlConsumer(stageName, new FusedEtlConsumer(stageName, wrappedEtlConsumer, etlExecutor,
+                    etlMetricsRegistry));
+        }
+
         return new SmartEtlConsumer(stageName, new MetricsEmissionEtlConsumer(stageName,
-                new ExecutorEtlConsumer(stageName, wrappedEtlConsumer, etlExecutor)));
+                newExecutorConsumer(stageName, wrappedEtlConsumer, etlExecutor), etlMetricsRegistry));
+    }
+
+    @Nonnull
+    private EtlConsumer newMicroBatchingWrappedConsumer(String stageName, EtlConsumer wrappedEtlConsumer,
+                                                       EtlExecutor etlExecutor, MicroBatchPolicy microBatchPolicy) {
+        return new SmartEtlConsumer(stageName, new MicroBatchingEtlConsumer(stageName,
+                new MetricsEmissionEtlConsumer(stageName,
+                        newExecutorConsumer(stageName, wrappedEtlConsumer, etlExecutor), etlMetricsRegistry),
+                microBatchPolicy));
+    }
+
+    @Nonnull
+    private EtlConsumer countErrors(String stageName, EtlConsumer errorEtlConsumer, EtlExecutor etlExecutor) {
+        return new ErrorCountingEtlConsumer(errorEtlConsumer,
+                etlMetricsRegistry == null ? null : etlMetricsRegistry.getStageMetrics(stageName), etlExecutor);
+    }
+
+    @Nonnull
+    private EtlConsumer newExecutorConsumer(String stageName, EtlConsumer wrappedEtlConsumer, EtlExecutor etlExecutor) {
+        return new ExecutorEtlConsumer(stageName, wrappedEtlConsumer, etlExecutor, null,
+                etlMetricsRegistry == null ? null : etlMetricsRegistry.getStageMetrics(stageName), streamCancellation);
     }
 }
@@ -18,7 +18,12 @@ package com.amazon.pocketEtl.core.consumer;
 import com.amazon.pocketEtl.EtlMetrics;
 import com.amazon.pocketEtl.EtlProfilingScope;
 import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
+import com.amazon.pocketEtl.core.StreamCancellation;
 import com.amazon.pocketEtl.core.executor.EtlExecutor;
+import com.amazon.pocketEtl.core.executor.PartitionedEtlExecutor;
+import com.amazon.pocketEtl.core.executor.SpillableEtlExecutor;
+import com.amazon.pocketEtl.core.metrics.StageMetrics;
 import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
 
 import lombok.AccessLevel;
@@ -28,14 +33,35 @@ import org.apache.logging.log4j.Logger;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
 
 /**
  * Consumer implementation that wraps another consumer and facilitates parallel consumption. The wrapped consumer's
  * consume() method must be threadsafe for this to work. Note that open() and close() are not executed in parallel
  * threads.
+ *
+ * When constructed with a PartitionedEtlExecutor and a partition key extractor, every object is routed to the
+ * partition that owns its key, so objects with the same key are consumed one at a time and in the order they arrived.
+ * This lets the wrapped consumer keep per-key state without synchronizing it.
+ *
+ * When constructed with a SpillableEtlExecutor, every object is submitted individually along with the action to perform
+ * on it, so that the executor can hold the objects waiting for its workers in serialized form outside the heap. A
+ * SpillableEtlExecutor cannot route objects by key, so it cannot be combined with a partition key extractor.
+ *
+ * When constructed with StageMetrics, the time each task spent queued in the executor, the time spent consuming it, the
+ * records consumed successfully and any failures are recorded there, and the executor is observed so that its queue
+ * depth and busy workers can be reported.
+ *
+ * When constructed with a StreamCancellation, a task that fails unrecoverably cancels the whole stream rather than only
+ * this stage, and when any part of the stream is cancelled the executor discards its queued tasks and interrupts the
+ * running ones straight away. Closing a cancelled stage waits for its executor no longer than the abort deadline.
  */
-@EqualsAndHashCode(exclude = "abortStreamException")
+@EqualsAndHashCode(exclude = {"abortStreamException", "consumeScopeName", "consumeBatchScopeName", "stageMetrics",
+        "spillableEtlExecutor", "consumeSubmittedObject", "streamCancellation"})
 class ExecutorEtlConsumer implements EtlConsumer {
     private final static Logger logger = getLogger(ExecutorEtlConsumer.class);
 
@@ -45,6 +71,13 @@ class ExecutorEtlConsumer implements EtlConsumer {
     private final EtlConsumer wrappedEtlConsumer;
 
     private final EtlExecutor etlExecutor;
+    private final Function<EtlStreamObject, Object> partitionKeyExtractor;
+    private final String consumeScopeName;
+    private final String consumeBatchScopeName;
+    private final StageMetrics stageMetrics;
+    private final SpillableEtlExecutor spillableEtlExecutor;
+    private final ObjLongConsumer<EtlStreamObject> consumeSubmittedObject = this::consumeSubmittedObject;
+    private final StreamCancellation streamCancellation;
     private AtomicReference<UnrecoverableStreamFailureException> abortStreamException = new AtomicReference<>();
     private EtlMetrics parentMetrics = null;
 
@@ -56,22 +89,79 @@ class ExecutorEtlConsumer implements EtlConsumer {
      * @param etlExecutor     An EtlExecutor object to facilitate the parallel consumption.
      */
     ExecutorEtlConsumer(String name, EtlConsumer wrappedEtlConsumer, EtlExecutor etlExecutor) {
+        this(name, wrappedEtlConsumer, etlExecutor, null, null, null);
+    }
+
+    /**
+     * Full constructor.
+     *
+     * @param name                  A human readable name for the instance of this class that will be used in logging
+     *                              and metrics.
+     * @param wrappedEtlConsumer    Wrapped consumer object. When a partition key extractor is given, the consume()
+     *                              method of this consumer need only be threadsafe across different partition keys.
+     * @param etlExecutor           An EtlExecutor object to facilitate the parallel consumption. Must be a
+     *                              PartitionedEtlExecutor, and must not be a SpillableEtlExecutor, if a partition key
+     *                              extractor is given.
+     * @param partitionKeyExtractor A function that extracts the partition key from an object to be consumed, or null.
+     * @param stageMetrics          The metrics to record to, or null.
+     * @param streamCancellation    The cancellation token shared by the stream, or null.
+     * @throws IllegalArgumentException If a partition key extractor is given with an executor that cannot route
+     *                                  objects by key.
+     */
+    ExecutorEtlConsumer(String name, EtlConsumer wrappedEtlConsumer, EtlExecutor etlExecutor,
+                        Function<EtlStreamObject, Object> partitionKeyExtractor, StageMetrics stageMetrics,
+                        StreamCancellation streamCancellation) {
+        if (partitionKeyExtractor != null && !(etlExecutor instanceof PartitionedEtlExecutor)) {
+            throw new IllegalArgumentException("A partition key extractor requires a PartitionedEtlExecutor");
+        }
+
+        if (partitionKeyExtractor != null && etlExecutor instanceof SpillableEtlExecutor) {
+            throw new IllegalArgumentException("A partition key extractor cannot be used with a SpillableEtlExecutor");
+        }
+
         this.name = name;
         this.wrappedEtlConsumer = wrappedEtlConsumer;
         this.etlExecutor = etlExecutor;
+        this.partitionKeyExtractor = partitionKeyExtractor;
+        this.stageMetrics = stageMetrics;
+        this.consumeScopeName = "ExecutorConsumer." + name + ".consume";
+        this.consumeBatchScopeName = "ExecutorConsumer." + name + ".consumeBatch";
+        this.spillableEtlExecutor = etlExecutor instanceof SpillableEtlExecutor ?
+                (SpillableEtlExecutor) etlExecutor : null;
+
+        this.streamCancellation = streamCancellation;
+
+        if (stageMetrics != null) {
+            stageMetrics.observeExecutor(etlExecutor);
+        }
+
+        if (streamCancellation != null) {
+            streamCancellation.onCancel(etlExecutor::cancel);
+        }
     }
 
     /**
      * Blocks and drains any remaining work left to do by the threads managed in this object. It will then signal
-     * the wrapped consumer to close.
+     * the wrapped consumer to close. If the stream has been cancelled, the remaining work is discarded instead and
+     * this only blocks until the abort deadline. Any workers still running at the deadline are abandoned, and the
+     * wrapped consumer is then left open, because those workers may still be inside it.
      *
      * @throws Exception If something went wrong.
      */
     @Override
     public void close() throws Exception {
         try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "ExecutorConsumer." + name + ".close")) {
-            etlExecutor.shutdown();
-            wrappedEtlConsumer.close();
+            boolean isExecutorTerminated = true;
+
+            if (streamCancellation != null && streamCancellation.isCancelled()) {
+                isExecutorTerminated = abortExecutor();
+            } else {
+                etlExecutor.shutdown();
+            }
+
+            if (isExecutorTerminated) {
+                wrappedEtlConsumer.close();
+            }
         }
 
         checkForAbortedStream();
@@ -89,25 +179,59 @@ class ExecutorEtlConsumer implements EtlConsumer {
     @Override
     public void consume(EtlStreamObject objectToConsume) throws UnrecoverableStreamFailureException {
         checkForAbortedStream();
+        checkForShutdownExecutor();
 
-        if (etlExecutor.isShutdown()) {
-            IllegalStateException e = new IllegalStateException("Transformer was closed and cannot receive more loader requests");
-            logger.error("Error inside multi-threaded transformation: ", e);
-            throw e;
+        try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, consumeScopeName)) {
+            if (spillableEtlExecutor != null) {
+                spillableEtlExecutor.submit(objectToConsume, consumeSubmittedObject, parentMetrics);
+                return;
+            }
+
+            Runnable task = () -> runTask(() -> wrappedEtlConsumer.consume(objectToConsume), 1);
+
+            if (stageMetrics != null) {
+                task = newMeasuredTask(task);
+            }
+
+            if (partitionKeyExtractor == null) {
+                etlExecutor.submit(task, parentMetrics);
+            } else {
+                ((PartitionedEtlExecutor) etlExecutor).submit(extractPartitionKey(objectToConsume), task, parentMetrics);
+            }
         }
+    }
+
+    /**
+     * Asynchronously accepts a batch of objects to be consumed by the wrapped consumer. The whole batch is queued as a
+     * single task so the cost of the handoff is shared by every object in the batch. When consuming by partition key
+     * the objects in a batch may belong to different partitions, and when the executor can serialize the objects
+     * it needs them rather than a task, so in both cases they are submitted individually instead.
+     *
+     * @param objectsToConsume The objects to be consumed.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     *                                             detected and the stream needs to be aborted.
+     */
+    @Override
+    public void consumeBatch(List<EtlStreamObject> objectsToConsume) throws UnrecoverableStreamFailureException {
+        if (partitionKeyExtractor != null || spillableEtlExecutor != null) {
+            for (EtlStreamObject objectToConsume : objectsToConsume) {
+                consume(objectToConsume);
+            }
+            return;
+        }
+
+        checkForAbortedStream();
+        checkForShutdownExecutor();
+
+        try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, consumeBatchScopeName)) {
+            Runnable task = () -> runTask(() -> wrappedEtlConsumer.consumeBatch(objectsToConsume),
+                    objectsToConsume.size());
 
-        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "ExecutorConsumer." + name + ".consume")) {
-            etlExecutor.submit(() -> {
-                    if (abortStreamException.get() != null) {
-                        return;
-                    }
+            if (stageMetrics != null) {
+                task = newMeasuredTask(task);
+            }
 
-                    try {
-                        wrappedEtlConsumer.consume(objectToConsume);
-                    } catch (UnrecoverableStreamFailureException e) {
-                        abortStreamException.set(e);
-                    }
-                }, parentMetrics);
+            etlExecutor.submit(task, parentMetrics);
         }
     }
 
@@ -123,9 +247,99 @@ class ExecutorEtlConsumer implements EtlConsumer {
         }
     }
 
+    private void runTask(Runnable consumeAction, int numberOfObjects) {
+        if (abortStreamException.get() != null || (streamCancellation != null && streamCancellation.isCancelled())) {
+            return;
+        }
+
+        try {
+            consumeAction.run();
+
+            if (stageMetrics != null) {
+                stageMetrics.addRecordsCompleted(numberOfObjects);
+            }
+        } catch (UnrecoverableStreamFailureException e) {
+            countError();
+            abortStreamException.set(e);
+
+            if (streamCancellation != null) {
+                streamCancellation.cancel(e);
+            }
+        } catch (RuntimeException e) {
+            countError();
+            throw e;
+        }
+    }
+
+    private void consumeSubmittedObject(EtlStreamObject objectToConsume, long submitTimeNanos) {
+        Runnable task = () -> runTask(() -> wrappedEtlConsumer.consume(objectToConsume), 1);
+
+        if (stageMetrics == null) {
+            task.run();
+        } else {
+            runMeasuredTask(task, submitTimeNanos);
+        }
+    }
+
+    private Runnable newMeasuredTask(Runnable task) {
+        long submitTimeNanos = System.nanoTime();
+        return () -> runMeasuredTask(task, submitTimeNanos);
+    }
+
+    private void runMeasuredTask(Runnable task, long submitTimeNanos) {
+        long startTimeNanos = System.nanoTime();
+        stageMetrics.getQueueWaitTime().record(startTimeNanos - submitTimeNanos);
+
+        try {
+            task.run();
+        } finally {
+            stageMetrics.getServiceTime().record(System.nanoTime() - startTimeNanos);
+        }
+    }
+
+    private void countError() {
+        if (stageMetrics != null) {
+            stageMetrics.addError();
+        }
+    }
+
+    private Object extractPartitionKey(EtlStreamObject objectToConsume) {
+        try {
+            return partitionKeyExtractor.apply(objectToConsume);
+        } catch (RuntimeException e) {
+            // Let the wrapped consumer deal with the object; it will most likely fail there in a way it can report
+            logger.warn("Could not extract partition key, routing object to the partition for null keys: ", e);
+            return null;
+        }
+    }
+
+    private void checkForShutdownExecutor() {
+        if (etlExecutor.isShutdown()) {
+            IllegalStateException e = new IllegalStateException("Transformer was closed and cannot receive more loader requests");
+            logger.error("Error inside multi-threaded transformation: ", e);
+            throw e;
+        }
+    }
+
+    private boolean abortExecutor() throws Exception {
+        etlExecutor.cancel();
+
+        if (!etlExecutor.shutdownWithin(streamCancellation.getRemainingAbortTimeMillis(), TimeUnit.MILLISECONDS)) {
+            logger.warn("Workers of " + name + " did not stop before the abort deadline and have been abandoned; "
+                    + "the consumer they were running will not be closed");
+            return false;
+        }
+
+        return true;
+    }
+
     private void checkForAbortedStream() {
         if (abortStreamException.get() != null) {
             throw abortStreamException.get();
         }
+
+        if (streamCancellation != null) {
+            streamCancellation.throwIfCancelled();
+        }
     }
 }
@@ -0,0 +1,285 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
+import com.amazon.pocketEtl.core.executor.EtlExecutor;
+import com.amazon.pocketEtl.core.metrics.EtlMetricsRegistry;
+import com.amazon.pocketEtl.core.metrics.StageMetrics;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Consumer implementation that replaces the MetricsEmissionConsumer and ExecutorConsumer pair for a stage whose
+ * EtlExecutor runs every task on the submitting thread. Since no thread hand-off can happen, the wrapped consumer is
+ * called directly with a single profiling scope per record instead of one per layer, and the names of the scope and
+ * the recordsProcessed counter are only built once. Error handling is the same as the chain it replaces: runtime
+ * exceptions thrown by the wrapped consumer are swallowed, and an UnrecoverableStreamFailureException aborts the stream
+ * the next time this consumer is used or when it is closed.
+ *
+ * When the upstream stage is fused as well, it can call consumeFused() instead of consume() so that the record is
+ * counted without opening another profiling scope, making the two stages a single call path.
+ *
+ * If constructed with an EtlMetricsRegistry, no profiling scope is opened per record at all: records, service time and
+ * errors are recorded in the StageMetrics for the stage and the registry flushes them to EtlMetrics periodically.
+ */
+@EqualsAndHashCode(exclude = {"abortStreamException", "consumeScopeName", "consumeBatchScopeName",
+        "recordsProcessedCounterName", "etlMetricsRegistry", "stageMetrics"})
+class FusedEtlConsumer implements EtlConsumer {
+    private final static Logger logger = getLogger(FusedEtlConsumer.class);
+
+    @Getter(AccessLevel.PACKAGE)
+    private final String stageName;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final EtlConsumer wrappedEtlConsumer;
+
+    private final EtlExecutor etlExecutor;
+    private final String consumeScopeName;
+    private final String consumeBatchScopeName;
+    private final String recordsProcessedCounterName;
+    private final EtlMetricsRegistry etlMetricsRegistry;
+    private final StageMetrics stageMetrics;
+    private final AtomicReference<UnrecoverableStreamFailureException> abortStreamException = new AtomicReference<>();
+    private EtlMetrics parentMetrics = null;
+
+    /**
+     * Standard constructor.
+     *
+     * @param stageName          A human readable name for the stage that will be used in logging and metrics.
+     * @param wrappedEtlConsumer Wrapped consumer object.
+     * @param etlExecutor        The EtlExecutor the stage was built with. It must run tasks on the submitting thread;
+     *                           it is only used to track whether the stage has been shutdown.
+     */
+    FusedEtlConsumer(String stageName, EtlConsumer wrappedEtlConsumer, EtlExecutor etlExecutor) {
+        this(stageName, wrappedEtlConsumer, etlExecutor, null);
+    }
+
+    /**
+     * Constructor that records to an in-process metrics registry instead of opening a profiling scope per record.
+     *
+     * @param stageName          A human readable name for the stage that will be used in logging and metrics.
+     * @param wrappedEtlConsumer Wrapped consumer object.
+     * @param etlExecutor        The EtlExecutor the stage was built with. It must run tasks on the submitting thread;
+     *                           it is only used to track whether the stage has been shutdown.
+     * @param etlMetricsRegistry The registry to record to, or null to emit a profiling scope per record.
+     */
+    FusedEtlConsumer(String stageName, EtlConsumer wrappedEtlConsumer, EtlExecutor etlExecutor,
+                     EtlMetricsRegistry etlMetricsRegistry) {
+        this.stageName = stageName;
+        this.wrappedEtlConsumer = wrappedEtlConsumer;
+        this.etlExecutor = etlExecutor;
+        this.etlMetricsRegistry = etlMetricsRegistry;
+        this.stageMetrics = etlMetricsRegistry == null ? null : etlMetricsRegistry.getStageMetrics(stageName);
+
+        if (stageMetrics != null) {
+            stageMetrics.observeExecutor(etlExecutor);
+        }
+
+        this.consumeScopeName = "FusedConsumer." + stageName + ".consume";
+        this.consumeBatchScopeName = "FusedConsumer." + stageName + ".consumeBatch";
+        this.recordsProcessedCounterName = stageName + ".recordsProcessed";
+    }
+
+    /**
+     * Counts the object and passes it directly to the wrapped consumer inside a single profiling scope.
+     *
+     * @param objectToConsume The object to be consumed.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     *                                             detected and the stream needs to be aborted.
+     */
+    @Override
+    public void consume(EtlStreamObject objectToConsume) throws UnrecoverableStreamFailureException {
+        checkForAbortedStream();
+        checkForShutdownExecutor();
+
+        if (stageMetrics != null) {
+            stageMetrics.addRecordsProcessed(1);
+            consumeWrapped(objectToConsume);
+            return;
+        }
+
+        try (PooledEtlProfilingScope scope = PooledEtlProfilingScope.open(parentMetrics, consumeScopeName)) {
+            scope.addCounter(recordsProcessedCounterName, 1);
+            consumeWrapped(objectToConsume);
+        }
+    }
+
+    /**
+     * Counts the batch and passes it directly to the wrapped consumer inside a single profiling scope.
+     *
+     * @param objectsToConsume The objects to be consumed.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     *                                             detected and the stream needs to be aborted.
+     */
+    @Override
+    public void consumeBatch(List<EtlStreamObject> objectsToConsume) throws UnrecoverableStreamFailureException {
+        checkForAbortedStream();
+        checkForShutdownExecutor();
+
+        if (stageMetrics != null) {
+            stageMetrics.addRecordsProcessed(objectsToConsume.size());
+            consumeWrappedBatch(objectsToConsume);
+            return;
+        }
+
+        try (PooledEtlProfilingScope scope = PooledEtlProfilingScope.open(parentMetrics, consumeBatchScopeName)) {
+            scope.addCounter(recordsProcessedCounterName, objectsToConsume.size());
+            consumeWrappedBatch(objectsToConsume);
+        }
+    }
+
+    /**
+     * Consumes an object on behalf of a fused upstream stage that is already inside a profiling scope of its own. The
+     * object is counted but no further profiling scope is opened.
+     *
+     * @param objectToConsume The object to be consumed.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     *                                             detected and the stream needs to be aborted.
+     */
+    void consumeFused(EtlStreamObject objectToConsume) throws UnrecoverableStreamFailureException {
+        checkForAbortedStream();
+        checkForShutdownExecutor();
+
+        if (stageMetrics != null) {
+            stageMetrics.addRecordsProcessed(1);
+        } else if (parentMetrics != null) {
+            parentMetrics.addCount(recordsProcessedCounterName, 1);
+        }
+
+        consumeWrapped(objectToConsume);
+    }
+
+    /**
+     * Signals the consumer that it should prepare to receive work. This in turn will call open() on the wrapped
+     * consumer.
+     */
+    @Override
+    public void open(EtlMetrics parentMetrics) {
+        try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "FusedConsumer." + stageName + ".open")) {
+            scope.addCounter(recordsProcessedCounterName, 0);
+            this.parentMetrics = parentMetrics;
+
+            if (etlMetricsRegistry != null) {
+                etlMetricsRegistry.attach(parentMetrics);
+            }
+
+            wrappedEtlConsumer.open(parentMetrics);
+        }
+    }
+
+    /**
+     * Shuts down the stage and signals the wrapped consumer to close.
+     *
+     * @throws Exception If something went wrong.
+     */
+    @Override
+    public void close() throws Exception {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "FusedConsumer." + stageName + ".close")) {
+            etlExecutor.shutdown();
+            wrappedEtlConsumer.close();
+        } finally {
+            if (etlMetricsRegistry != null) {
+                etlMetricsRegistry.detach();
+            }
+        }
+
+        checkForAbortedStream();
+    }
+
+    private void consumeWrapped(EtlStreamObject objectToConsume) {
+        if (abortStreamException.get() != null) {
+            return;
+        }
+
+        long startTimeNanos = stageMetrics == null ? 0 : System.nanoTime();
+
+        try {
+            wrappedEtlConsumer.consume(objectToConsume);
+            countCompleted(1);
+        } catch (UnrecoverableStreamFailureException e) {
+            countError();
+            abortStreamException.set(e);
+        } catch (RuntimeException ignored) {
+            countError();
+        } finally {
+            recordServiceTime(startTimeNanos);
+        }
+    }
+
+    private void consumeWrappedBatch(List<EtlStreamObject> objectsToConsume) {
+        if (abortStreamException.get() != null) {
+            return;
+        }
+
+        long startTimeNanos = stageMetrics == null ? 0 : System.nanoTime();
+
+        try {
+            wrappedEtlConsumer.consumeBatch(objectsToConsume);
+            countCompleted(objectsToConsume.size());
+        } catch (UnrecoverableStreamFailureException e) {
+            countError();
+            abortStreamException.set(e);
+        } catch (RuntimeException ignored) {
+            countError();
+        } finally {
+            recordServiceTime(startTimeNanos);
+        }
+    }
+
+    private void recordServiceTime(long startTimeNanos) {
+        if (stageMetrics != null) {
+            stageMetrics.getServiceTime().record(System.nanoTime() - startTimeNanos);
+        }
+    }
+
+    private void countCompleted(int numberOfObjects) {
+        if (stageMetrics != null) {
+            stageMetrics.addRecordsCompleted(numberOfObjects);
+        }
+    }
+
+    private void countError() {
+        if (stageMetrics != null) {
+            stageMetrics.addError();
+        }
+    }
+
+    private void checkForShutdownExecutor() {
+        if (etlExecutor.isShutdown()) {
+            IllegalStateException e = new IllegalStateException("Consumer was closed and cannot receive more work");
+            logger.error("Error inside fused consumer: ", e);
+            throw e;
+        }
+    }
+
+    private void checkForAbortedStream() {
+        if (abortStreamException.get() != null) {
+            throw abortStreamException.get();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Consumer implementation that a fused stage uses as its downstream consumer when the downstream stage is fused as
+ * well. Objects are handed straight to the downstream FusedConsumer, skipping the downstream SmartConsumer and its
+ * profiling scope, while open() and close() still go through the SmartConsumer so that a downstream stage with several
+ * upstream stages is only closed once all of them have closed.
+ */
+@EqualsAndHashCode
+class FusedLinkEtlConsumer implements EtlConsumer {
+    @Getter(AccessLevel.PACKAGE)
+    private final SmartEtlConsumer downstreamSmartEtlConsumer;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final FusedEtlConsumer downstreamFusedEtlConsumer;
+
+    /**
+     * Standard constructor.
+     *
+     * @param downstreamSmartEtlConsumer The SmartConsumer at the head of the downstream stage.
+     * @param downstreamFusedEtlConsumer The FusedConsumer wrapped by that SmartConsumer.
+     */
+    FusedLinkEtlConsumer(SmartEtlConsumer downstreamSmartEtlConsumer, FusedEtlConsumer downstreamFusedEtlConsumer) {
+        this.downstreamSmartEtlConsumer = downstreamSmartEtlConsumer;
+        this.downstreamFusedEtlConsumer = downstreamFusedEtlConsumer;
+    }
+
+    @Override
+    public void consume(EtlStreamObject objectToConsume) {
+        downstreamFusedEtlConsumer.consumeFused(objectToConsume);
+    }
+
+    @Override
+    public void consumeBatch(List<EtlStreamObject> objectsToConsume) {
+        downstreamFusedEtlConsumer.consumeBatch(objectsToConsume);
+    }
+
+    @Override
+    public void open(EtlMetrics parentMetrics) {
+        downstreamSmartEtlConsumer.open(parentMetrics);
+    }
+
+    @Override
+    public void close() throws Exception {
+        downstreamSmartEtlConsumer.close();
+    }
+}
@@ -15,31 +15,43 @@
 
 package com.amazon.pocketEtl.core.consumer;
 
+import com.amazon.pocketEtl.DurableLoader;
 import com.amazon.pocketEtl.EtlMetrics;
 import com.amazon.pocketEtl.EtlProfilingScope;
 import com.amazon.pocketEtl.Loader;
 import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
 import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
 
 import lombok.EqualsAndHashCode;
 import org.apache.logging.log4j.Logger;
 
+import java.util.List;
+
 import static org.apache.logging.log4j.LogManager.getLogger;
 
 /**
  * Implementation of Consumer that wraps a Loader object and passes all objects to be consumed into the loader. If
  * something goes wrong during the loading the object is instead routed to a consumer designated for handling errors.
  *
+ * Objects extracted by a checkpointed extractor are only accepted if the loader is a DurableLoader, as marking an
+ * object completed when it is still sitting in a loader's buffer would let a checkpoint advance past it. Any other
+ * loader aborts the stream when the first such object reaches it.
+ *
  * @param <UpstreamType> Type of object to be consumed/loaded.
  */
-@EqualsAndHashCode
+@EqualsAndHashCode(exclude = {"isLoaderDurable", "consumeScopeName", "consumeBatchScopeName", "failureLogger"})
 class LoaderEtlConsumer<UpstreamType> implements EtlConsumer {
     private final static Logger logger = getLogger(LoaderEtlConsumer.class);
 
     private final String name;
     private final Loader<UpstreamType> loader;
     private final EtlConsumer errorEtlConsumer;
+    private final SampledFailureLogger failureLogger;
     private final Class<UpstreamType> loaderTypeClass;
+    private final boolean isLoaderDurable;
+    private final String consumeScopeName;
+    private final String consumeBatchScopeName;
 
     private EtlMetrics parentMetrics;
 
@@ -55,7 +67,11 @@ class LoaderEtlConsumer<UpstreamType> implements EtlConsumer {
         this.name = name;
         this.loader = loader;
         this.loaderTypeClass = loaderTypeClass;
+        this.isLoaderDurable = loader instanceof DurableLoader;
         this.errorEtlConsumer = errorEtlConsumer;
+        this.consumeScopeName = "LoaderConsumer." + name + ".consume";
+        this.consumeBatchScopeName = "LoaderConsumer." + name + ".consumeBatch";
+        this.failureLogger = new SampledFailureLogger(logger, name);
     }
 
     /**
@@ -68,15 +84,26 @@ class LoaderEtlConsumer<UpstreamType> implements EtlConsumer {
      */
     @Override
     public void consume(EtlStreamObject objectToLoad) throws IllegalStateException, UnrecoverableStreamFailureException {
-        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "LoaderConsumer." + name + ".consume")) {
-            try {
-                loader.load(objectToLoad.get(loaderTypeClass));
-            } catch (UnrecoverableStreamFailureException e) {
-                logger.error("Unrecoverable stream exception thrown in loader object, aborting stream: ", e);
-                throw e;
-            } catch (RuntimeException e) {
-                logger.warn("Exception thrown in loader object: ", e);
-                errorEtlConsumer.consume(objectToLoad);
+        try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, consumeScopeName)) {
+            loadObject(objectToLoad);
+        }
+    }
+
+    /**
+     * Consumes a batch of objects to be loaded by the loader. Each object is loaded individually, but the profiling
+     * cost is shared across the whole batch.
+     *
+     * @param objectsToLoad The objects to be loaded.
+     * @throws IllegalStateException If the consumer is in a state that cannot accept more objects to be loaded.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     *                                             detected and the stream needs to be aborted.
+     */
+    @Override
+    public void consumeBatch(List<EtlStreamObject> objectsToLoad) throws IllegalStateException,
+                                                                         UnrecoverableStreamFailureException {
+        try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, consumeBatchScopeName)) {
+            for (EtlStreamObject objectToLoad : objectsToLoad) {
+                loadObject(objectToLoad);
             }
         }
     }
@@ -111,7 +138,28 @@ class LoaderEtlConsumer<UpstreamType> implements EtlConsumer {
                 logger.warn("Exception thrown closing loader object: ", e);
             }
 
+            failureLogger.flush();
             errorEtlConsumer.close();
         }
     }
+
+    private void loadObject(EtlStreamObject objectToLoad) {
+        if (!isLoaderDurable && objectToLoad.getRecordCompletion() != null) {
+            logger.error("Loader in stage '" + name + "' is not a DurableLoader and cannot load checkpointed objects, " +
+                    "aborting stream");
+            throw new UnrecoverableStreamFailureException("Loader in stage '" + name + "' is not a DurableLoader and " +
+                    "cannot load objects from a checkpointed extractor");
+        }
+
+        try {
+            loader.load(objectToLoad.get(loaderTypeClass));
+            objectToLoad.markCompleted();
+        } catch (UnrecoverableStreamFailureException e) {
+            logger.error("Unrecoverable stream exception thrown in loader object, aborting stream: ", e);
+            throw e;
+        } catch (RuntimeException e) {
+            failureLogger.warn("Exception thrown in loader object", e);
+            errorEtlConsumer.consume(objectToLoad);
+        }
+    }
 }
\ No newline at end of file
@@ -18,6 +18,7 @@ package com.amazon.pocketEtl.core.consumer;
 import com.amazon.pocketEtl.EtlMetrics;
 import com.amazon.pocketEtl.EtlProfilingScope;
 import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
 import lombok.EqualsAndHashCode;
 import org.apache.logging.log4j.Logger;
 
@@ -30,10 +31,11 @@ import java.util.function.Function;
  *
  * @param <T> Type of object to be logged
  */
-@EqualsAndHashCode
+@EqualsAndHashCode(exclude = "consumeScopeName")
 class LogAsErrorEtlConsumer<T> implements EtlConsumer {
     private final String name;
     private final Logger errorLogger;
+    private final String consumeScopeName;
     private EtlMetrics parentMetrics;
     private Class<T> dtoClass;
     private Function<T, String> loggingStrategy;
@@ -49,6 +51,7 @@ class LogAsErrorEtlConsumer<T> implements EtlConsumer {
     LogAsErrorEtlConsumer(String name, Logger errorLogger, @Nonnull Class<T> dtoClass, @Nonnull Function<T, String> loggingStrategy) {
         this.name = name;
         this.errorLogger = errorLogger;
+        this.consumeScopeName = "LogAsErrorConsumer." + name + ".consume";
         this.dtoClass = dtoClass;
         this.loggingStrategy = loggingStrategy;
     }
@@ -61,12 +64,14 @@ class LogAsErrorEtlConsumer<T> implements EtlConsumer {
      */
     @Override
     public void consume(EtlStreamObject objectToConsume) throws IllegalStateException {
-        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "LogAsErrorConsumer." + name + ".consume")) {
+        try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, consumeScopeName)) {
             String logMessage = loggingStrategy.apply(objectToConsume.get(dtoClass));
             errorLogger.error("ETL failure for object: " + logMessage);
         } catch (RuntimeException e) {
             errorLogger.error("ETL failure for object type '" + objectToConsume.getClass().getSimpleName() +
                     "'. Logging Strategy failed with exception: ", e);
+        } finally {
+            objectToConsume.markCompleted();
         }
     }
 
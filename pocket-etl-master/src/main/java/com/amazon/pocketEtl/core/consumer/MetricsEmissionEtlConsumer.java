@@ -18,34 +18,79 @@ package com.amazon.pocketEtl.core.consumer;
 import com.amazon.pocketEtl.EtlMetrics;
 import com.amazon.pocketEtl.EtlProfilingScope;
 import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
+import com.amazon.pocketEtl.core.metrics.EtlMetricsRegistry;
+import com.amazon.pocketEtl.core.metrics.StageMetrics;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
+import java.util.List;
+
 /**
  * Implementation of consumer that logs a counter for each record consumed in the format :
  * job-name.stage-name.recordsProcessed
  * This consumer is automatically inserted into the standard chain of consumers that wrap ETL consumers.
+ *
+ * If constructed with an EtlMetricsRegistry, records are instead counted in the StageMetrics for the stage and the
+ * registry takes care of flushing the counts to EtlMetrics periodically. No EtlMetrics calls are made per record in
+ * that case.
  */
-@EqualsAndHashCode
+@EqualsAndHashCode(exclude = {"consumeScopeName", "consumeBatchScopeName", "recordsProcessedCounterName",
+        "etlMetricsRegistry", "stageMetrics"})
 class MetricsEmissionEtlConsumer implements EtlConsumer {
     private final String stageName;
 
     @Getter(AccessLevel.PACKAGE)
     private final EtlConsumer downstreamEtlConsumer;
 
+    private final String consumeScopeName;
+    private final String consumeBatchScopeName;
+    private final String recordsProcessedCounterName;
+    private final EtlMetricsRegistry etlMetricsRegistry;
+    private final StageMetrics stageMetrics;
     private EtlMetrics parentMetrics;
 
     MetricsEmissionEtlConsumer(String stageName, EtlConsumer downstreamEtlConsumer) {
+      this(stageName, downstreamEtlConsumer, null);
+    }
+
+    MetricsEmissionEtlConsumer(String stageName, EtlConsumer downstreamEtlConsumer,
+                               EtlMetricsRegistry etlMetricsRegistry) {
       this.stageName = stageName;
       this.downstreamEtlConsumer = downstreamEtlConsumer;
+      this.etlMetricsRegistry = etlMetricsRegistry;
+      this.stageMetrics = etlMetricsRegistry == null ? null : etlMetricsRegistry.getStageMetrics(stageName);
+      this.consumeScopeName = "MetricsEmissionConsumer." + stageName + ".consume";
+      this.consumeBatchScopeName = "MetricsEmissionConsumer." + stageName + ".consumeBatch";
+      this.recordsProcessedCounterName = stageName + ".recordsProcessed";
     }
 
     @Override
     public void consume(EtlStreamObject objectToConsume) throws IllegalStateException {
-        try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "MetricsEmissionConsumer." + stageName + ".consume")) {
-            scope.addCounter(stageName + ".recordsProcessed", 1);
+        if (stageMetrics != null) {
+            stageMetrics.addRecordsProcessed(1);
             downstreamEtlConsumer.consume(objectToConsume);
+            return;
+        }
+
+        try (PooledEtlProfilingScope scope = PooledEtlProfilingScope.open(parentMetrics, consumeScopeName)) {
+            scope.addCounter(recordsProcessedCounterName, 1);
+            downstreamEtlConsumer.consume(objectToConsume);
+        }
+    }
+
+    @Override
+    public void consumeBatch(List<EtlStreamObject> objectsToConsume) throws IllegalStateException {
+        if (stageMetrics != null) {
+            stageMetrics.addRecordsProcessed(objectsToConsume.size());
+            downstreamEtlConsumer.consumeBatch(objectsToConsume);
+            return;
+        }
+
+        try (PooledEtlProfilingScope scope = PooledEtlProfilingScope.open(parentMetrics, consumeBatchScopeName)) {
+            scope.addCounter(recordsProcessedCounterName, objectsToConsume.size());
+            downstreamEtlConsumer.consumeBatch(objectsToConsume);
         }
     }
 
@@ -54,14 +99,25 @@ class MetricsEmissionEtlConsumer implements EtlConsumer {
         try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "MetricsEmissionConsumer." +
                                                                             stageName +
                                                                             ".open")) {
-            scope.addCounter(stageName + ".recordsProcessed", 0);
+            scope.addCounter(recordsProcessedCounterName, 0);
             this.parentMetrics = parentMetrics;
+
+            if (etlMetricsRegistry != null) {
+                etlMetricsRegistry.attach(parentMetrics);
+            }
+
             downstreamEtlConsumer.open(parentMetrics);
         }
     }
 
     @Override
     public void close() throws Exception {
-        downstreamEtlConsumer.close();
+        try {
+            downstreamEtlConsumer.close();
+        } finally {
+            if (etlMetricsRegistry != null) {
+                etlMetricsRegistry.detach();
+            }
+        }
     }
 }
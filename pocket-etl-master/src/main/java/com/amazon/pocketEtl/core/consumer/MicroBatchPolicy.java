@@ -0,0 +1,82 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import lombok.EqualsAndHashCode;
+
+/**
+ * Describes how records should be grouped into micro-batches as they pass through a consumer chain. A batch is
+ * released as soon as it reaches the maximum batch size, or once the oldest record in it has waited for the maximum
+ * batch delay, whichever comes first. Any partially filled batch is always released when the chain is closed.
+ */
+@EqualsAndHashCode
+public final class MicroBatchPolicy {
+    private final int maxBatchSize;
+    private final long maxBatchDelayMillis;
+
+    private MicroBatchPolicy(int maxBatchSize, long maxBatchDelayMillis) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Maximum batch size must be at least 1");
+        }
+
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelayMillis = maxBatchDelayMillis;
+    }
+
+    /**
+     * Constructs a policy that releases batches based on size only.
+     * @param maxBatchSize The number of records that will cause a batch to be released.
+     * @return A new MicroBatchPolicy.
+     */
+    public static MicroBatchPolicy ofSize(int maxBatchSize) {
+        return new MicroBatchPolicy(maxBatchSize, 0);
+    }
+
+    /**
+     * Constructs a policy that releases batches based on size or on how long the batch has been waiting.
+     * @param maxBatchSize The number of records that will cause a batch to be released.
+     * @param maxBatchDelayMillis The longest time in milliseconds a record will wait in a partially filled batch. A
+     *                            value of zero or less disables time based release.
+     * @return A new MicroBatchPolicy.
+     */
+    public static MicroBatchPolicy of(int maxBatchSize, long maxBatchDelayMillis) {
+        return new MicroBatchPolicy(maxBatchSize, maxBatchDelayMillis);
+    }
+
+    /**
+     * The number of records that will cause a batch to be released.
+     * @return Maximum batch size.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * The longest time in milliseconds a record will wait in a partially filled batch.
+     * @return Maximum batch delay in milliseconds, or zero or less if batches are only released by size.
+     */
+    public long getMaxBatchDelayMillis() {
+        return maxBatchDelayMillis;
+    }
+
+    /**
+     * Queries whether batches will be released based on how long they have been waiting.
+     * @return 'true' if there is a time bound on batches, 'false' if batches are only released by size.
+     */
+    public boolean isTimeBound() {
+        return maxBatchDelayMillis > 0;
+    }
+}
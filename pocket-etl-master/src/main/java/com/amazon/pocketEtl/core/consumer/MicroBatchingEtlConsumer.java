@@ -0,0 +1,242 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Implementation of consumer that gathers individually consumed objects into micro-batches and passes each batch to
+ * the downstream consumer with a single call to consumeBatch(). This allows the rest of the consumer chain to
+ * amortize the cost of queue handoffs, profiling scopes and metric emission over many records. Batches are released
+ * according to a MicroBatchPolicy. This consumer is threadsafe and may be fed by multiple upstream producers.
+ */
+@EqualsAndHashCode(exclude = {"releaseBatchScopeName", "batchSizeCounterName", "currentBatch", "currentBatchStartNanos",
+        "flushScheduler", "flushException"})
+class MicroBatchingEtlConsumer implements EtlConsumer {
+    private final static Logger logger = getLogger(MicroBatchingEtlConsumer.class);
+
+    private final String name;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final EtlConsumer downstreamEtlConsumer;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final MicroBatchPolicy microBatchPolicy;
+
+    private final String releaseBatchScopeName;
+    private final String batchSizeCounterName;
+    private final AtomicReference<RuntimeException> flushException = new AtomicReference<>();
+    private List<EtlStreamObject> currentBatch = null;
+    private long currentBatchStartNanos = 0;
+    private ScheduledExecutorService flushScheduler = null;
+    private EtlMetrics parentMetrics = null;
+
+    /**
+     * Standard constructor.
+     *
+     * @param name                  A human readable name for the instance of this class that will be used in logging
+     *                              and metrics.
+     * @param downstreamEtlConsumer The consumer to pass batches of objects to.
+     * @param microBatchPolicy      Policy that determines when a batch is released downstream.
+     */
+    MicroBatchingEtlConsumer(String name, EtlConsumer downstreamEtlConsumer, MicroBatchPolicy microBatchPolicy) {
+        this.name = name;
+        this.downstreamEtlConsumer = downstreamEtlConsumer;
+        this.microBatchPolicy = microBatchPolicy;
+        this.releaseBatchScopeName = "MicroBatchingConsumer." + name + ".releaseBatch";
+        this.batchSizeCounterName = name + ".batchSize";
+    }
+
+    /**
+     * Adds a single object to the current batch. If this causes the batch to become full, or the batch has been
+     * waiting longer than the policy allows, the batch will be passed to the downstream consumer by this thread.
+     *
+     * @param objectToConsume The object to be consumed.
+     * @throws IllegalStateException If the consumer is not open.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     *                                             detected and the stream needs to be aborted.
+     */
+    @Override
+    public void consume(EtlStreamObject objectToConsume) throws IllegalStateException,
+                                                                UnrecoverableStreamFailureException {
+        checkForFlushException();
+
+        List<EtlStreamObject> batchToRelease = null;
+
+        synchronized (this) {
+            if (currentBatch == null) {
+                throw new IllegalStateException("Attempt to consume with a consumer that is not open");
+            }
+
+            if (currentBatch.isEmpty()) {
+                currentBatchStartNanos = System.nanoTime();
+            }
+
+            currentBatch.add(objectToConsume);
+
+            if (currentBatch.size() >= microBatchPolicy.getMaxBatchSize() || isCurrentBatchExpired()) {
+                batchToRelease = takeCurrentBatch();
+            }
+        }
+
+        if (batchToRelease != null) {
+            releaseBatch(batchToRelease);
+        }
+    }
+
+    /**
+     * Signals the consumer to prepare to accept work. If the policy has a time bound, a background thread will be
+     * started to release batches that have waited too long. The downstream consumer will also be opened.
+     */
+    @Override
+    public void open(EtlMetrics parentMetrics) {
+        this.parentMetrics = parentMetrics;
+
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "MicroBatchingConsumer." + name + ".open")) {
+            synchronized (this) {
+                currentBatch = new ArrayList<>(microBatchPolicy.getMaxBatchSize());
+            }
+
+            if (microBatchPolicy.isTimeBound()) {
+                flushScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("MicroBatchingConsumer-" + name + "-%d")
+                        .build());
+                flushScheduler.scheduleWithFixedDelay(this::releaseExpiredBatch,
+                        microBatchPolicy.getMaxBatchDelayMillis(), microBatchPolicy.getMaxBatchDelayMillis(),
+                        TimeUnit.MILLISECONDS);
+            }
+
+            downstreamEtlConsumer.open(parentMetrics);
+        }
+    }
+
+    /**
+     * Releases any partially filled batch to the downstream consumer and then closes it.
+     *
+     * @throws Exception If something went wrong.
+     */
+    @Override
+    public void close() throws Exception {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "MicroBatchingConsumer." + name + ".close")) {
+            if (flushScheduler != null) {
+                // An expired batch may be part way through being released; interrupting it could lose the batch
+                flushScheduler.shutdown();
+                flushScheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+
+            List<EtlStreamObject> batchToRelease;
+
+            synchronized (this) {
+                batchToRelease = takeCurrentBatch();
+                currentBatch = null;
+            }
+
+            try {
+                if (batchToRelease != null && !batchToRelease.isEmpty()) {
+                    releaseFinalBatch(batchToRelease);
+                }
+            } finally {
+                downstreamEtlConsumer.close();
+            }
+        }
+
+        checkForFlushException();
+    }
+
+    private void releaseExpiredBatch() {
+        List<EtlStreamObject> batchToRelease = null;
+
+        synchronized (this) {
+            if (currentBatch != null && !currentBatch.isEmpty() && isCurrentBatchExpired()) {
+                batchToRelease = takeCurrentBatch();
+            }
+        }
+
+        if (batchToRelease != null) {
+            try {
+                releaseBatch(batchToRelease);
+            } catch (RuntimeException e) {
+                logger.error("Exception thrown releasing expired batch: ", e);
+                flushException.compareAndSet(null, e);
+            }
+        }
+    }
+
+    // The final batch is released even if an expired batch failed earlier, so its objects are not silently lost. The
+    // earlier failure is the one reported when the consumer closes.
+    private void releaseFinalBatch(List<EtlStreamObject> batch) {
+        try {
+            releaseBatch(batch);
+        } catch (RuntimeException e) {
+            if (flushException.get() == null) {
+                throw e;
+            }
+
+            logger.error("Exception thrown releasing final batch: ", e);
+        }
+    }
+
+    private void releaseBatch(List<EtlStreamObject> batch) {
+        try (PooledEtlProfilingScope scope = PooledEtlProfilingScope.open(parentMetrics, releaseBatchScopeName)) {
+            scope.addCounter(batchSizeCounterName, batch.size());
+            downstreamEtlConsumer.consumeBatch(batch);
+        }
+    }
+
+    // Must be called while holding the monitor for this object
+    private List<EtlStreamObject> takeCurrentBatch() {
+        List<EtlStreamObject> batch = currentBatch;
+
+        if (batch != null) {
+            currentBatch = new ArrayList<>(microBatchPolicy.getMaxBatchSize());
+        }
+
+        return batch;
+    }
+
+    // Must be called while holding the monitor for this object
+    private boolean isCurrentBatchExpired() {
+        return microBatchPolicy.isTimeBound() && System.nanoTime() - currentBatchStartNanos >=
+                TimeUnit.MILLISECONDS.toNanos(microBatchPolicy.getMaxBatchDelayMillis());
+    }
+
+    private void checkForFlushException() {
+        RuntimeException e = flushException.get();
+
+        if (e != null) {
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
+import com.amazon.pocketEtl.core.executor.EtlExecutor;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Consumer implementation that wraps another consumer and facilitates parallel consumption, like ExecutorEtlConsumer,
+ * but releases the objects emitted by the wrapped consumer to the downstream consumer in the same order the objects
+ * they came from were consumed. All the objects emitted for a single consumed object are released together, so the
+ * output of a fan-out stays contiguous.
+ *
+ * Each consumed object is given a ticket on arrival. The wrapped consumer emits into a collector rather than directly
+ * to the downstream consumer, and when it finishes with an object, everything it emitted is held in a reorder buffer
+ * until every object with an earlier ticket has been released. The reorder buffer is bounded: once the configured
+ * number of objects are waiting or being worked on, consume() will block until the oldest of them is released.
+ *
+ * Each time the wrapped consumer finishes with an object, the number of objects held in the reorder buffer is emitted
+ * to the stage's reorderBufferOccupancy metric. It is a level rather than a count, so read that metric with an average
+ * or maximum statistic rather than a sum.
+ *
+ * The wrapped consumer's consume() method must be threadsafe, and must only emit objects to the collector it was
+ * built with from within that call.
+ */
+@EqualsAndHashCode(exclude = {"consumeScopeName", "releaseScopeName", "reorderBufferOccupancyCounterName",
+        "abortStreamException", "collectedOutputs", "lock", "completedOutputs", "nextTicket", "nextTicketToRelease",
+        "isReleasing"})
+class OrderPreservingEtlConsumer implements EtlConsumer {
+    private final static Logger logger = getLogger(OrderPreservingEtlConsumer.class);
+
+    private final String name;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final EtlConsumer wrappedEtlConsumer;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final EtlConsumer downstreamEtlConsumer;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final int reorderBufferSize;
+
+    private final EtlExecutor etlExecutor;
+    private final String consumeScopeName;
+    private final String releaseScopeName;
+    // A level sampled on every completion, not a count; it must not be summed
+    private final String reorderBufferOccupancyCounterName;
+    private final AtomicReference<UnrecoverableStreamFailureException> abortStreamException = new AtomicReference<>();
+    private final ThreadLocal<List<EtlStreamObject>> collectedOutputs = new ThreadLocal<>();
+    private final Object lock = new Object();
+    private final Map<Long, List<EtlStreamObject>> completedOutputs = new HashMap<>();
+    private long nextTicket = 0;
+    private long nextTicketToRelease = 0;
+    private boolean isReleasing = false;
+    private EtlMetrics parentMetrics = null;
+
+    /**
+     * Standard constructor.
+     *
+     * @param name                      A human readable name for the instance of this class that will be used in
+     *                                  logging and metrics.
+     * @param wrappedEtlConsumerBuilder A function that builds the wrapped consumer given the consumer it should emit
+     *                                  its objects to. The consume() method of the built consumer must be threadsafe.
+     * @param downstreamEtlConsumer     Consumer to release the emitted objects to, in order.
+     * @param etlExecutor               An EtlExecutor object to facilitate the parallel consumption.
+     * @param reorderBufferSize         The maximum number of consumed objects that can be in flight or waiting to be
+     *                                  released at any one time.
+     */
+    OrderPreservingEtlConsumer(String name, Function<EtlConsumer, EtlConsumer> wrappedEtlConsumerBuilder,
+                               EtlConsumer downstreamEtlConsumer, EtlExecutor etlExecutor, int reorderBufferSize) {
+        if (reorderBufferSize < 1) {
+            throw new IllegalArgumentException("reorderBufferSize must be at least 1");
+        }
+
+        this.name = name;
+        this.wrappedEtlConsumer = wrappedEtlConsumerBuilder.apply(new OutputCollectingEtlConsumer());
+        this.downstreamEtlConsumer = downstreamEtlConsumer;
+        this.etlExecutor = etlExecutor;
+        this.reorderBufferSize = reorderBufferSize;
+        this.consumeScopeName = "OrderPreservingConsumer." + name + ".consume";
+        this.releaseScopeName = "OrderPreservingConsumer." + name + ".release";
+        this.reorderBufferOccupancyCounterName = name + ".reorderBufferOccupancy";
+    }
+
+    /**
+     * Blocks and drains any remaining work left to do by the threads managed in this object, which will release all
+     * the remaining objects downstream. It will then signal the wrapped and downstream consumers to close.
+     *
+     * @throws Exception If something went wrong.
+     */
+    @Override
+    public void close() throws Exception {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics,
+                "OrderPreservingConsumer." + name + ".close")) {
+            etlExecutor.shutdown();
+            // Release anything left behind by a releasing thread that was stopped by an Error
+            releaseCompletedOutputs();
+            wrappedEtlConsumer.close();
+
+            try {
+                downstreamEtlConsumer.close();
+            } catch (UnrecoverableStreamFailureException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                logger.warn("Exception thrown closing downstream EtlConsumer object: ", e);
+            }
+        }
+
+        checkForAbortedStream();
+    }
+
+    /**
+     * Asynchronously accepts an object to be consumed by the wrapped consumer. The objects the wrapped consumer emits
+     * for it will be released downstream after those of every object consumed before it. Blocks while the reorder
+     * buffer is full.
+     *
+     * @param objectToConsume The object to be consumed.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     *                                             detected and the stream needs to be aborted.
+     */
+    @Override
+    public void consume(EtlStreamObject objectToConsume) throws UnrecoverableStreamFailureException {
+        checkForAbortedStream();
+        checkForShutdownExecutor();
+
+        try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, consumeScopeName)) {
+            long ticket = takeTicket();
+
+            try {
+                etlExecutor.submit(() -> consumeInOrder(ticket, objectToConsume), parentMetrics);
+            } catch (RuntimeException e) {
+                // The ticket must still be completed or every object after it would be held forever
+                completeTicket(ticket, Collections.emptyList());
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Signals the consumer that it should prepare to receive work. This in turn will call open() on the wrapped and
+     * downstream consumers.
+     */
+    @Override
+    public void open(EtlMetrics parentMetrics) {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics,
+                "OrderPreservingConsumer." + name + ".open")) {
+            this.parentMetrics = parentMetrics;
+            wrappedEtlConsumer.open(parentMetrics);
+            downstreamEtlConsumer.open(parentMetrics);
+        }
+    }
+
+    private long takeTicket() {
+        synchronized (lock) {
+            while (nextTicket - nextTicketToRelease >= reorderBufferSize) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Thread was interrupted waiting for space in reorder buffer");
+                }
+            }
+
+            return nextTicket++;
+        }
+    }
+
+    private void consumeInOrder(long ticket, EtlStreamObject objectToConsume) {
+        List<EtlStreamObject> outputs = Collections.emptyList();
+
+        try {
+            if (abortStreamException.get() == null) {
+                List<EtlStreamObject> emittedOutputs = new ArrayList<>();
+                collectedOutputs.set(emittedOutputs);
+
+                try {
+                    wrappedEtlConsumer.consume(objectToConsume);
+                    outputs = emittedOutputs;
+                } finally {
+                    collectedOutputs.remove();
+                }
+            }
+        } catch (UnrecoverableStreamFailureException e) {
+            abortStreamException.set(e);
+        } finally {
+            // The ticket must be completed however the wrapped consumer failed, or every object after it would be held
+            // forever. An object the wrapped consumer threw on releases nothing.
+            try {
+                completeTicket(ticket, outputs);
+            } catch (UnrecoverableStreamFailureException e) {
+                abortStreamException.set(e);
+            }
+        }
+    }
+
+    private void completeTicket(long ticket, List<EtlStreamObject> outputs) {
+        int reorderBufferOccupancy;
+
+        synchronized (lock) {
+            completedOutputs.put(ticket, outputs);
+            reorderBufferOccupancy = completedOutputs.size();
+        }
+
+        try (PooledEtlProfilingScope scope = PooledEtlProfilingScope.open(parentMetrics, releaseScopeName)) {
+            scope.addCounter(reorderBufferOccupancyCounterName, reorderBufferOccupancy);
+            releaseCompletedOutputs();
+        }
+    }
+
+    // Only one thread releases at a time; any thread that completes a ticket whilst another is releasing leaves its
+    // outputs for that thread to pick up.
+    private void releaseCompletedOutputs() {
+        while (true) {
+            List<EtlStreamObject> outputs;
+
+            synchronized (lock) {
+                if (isReleasing) {
+                    return;
+                }
+
+                outputs = completedOutputs.remove(nextTicketToRelease);
+
+                if (outputs == null) {
+                    return;
+                }
+
+                isReleasing = true;
+            }
+
+            try {
+                for (EtlStreamObject output : outputs) {
+                    if (abortStreamException.get() != null) {
+                        break;
+                    }
+
+                    releaseOutput(output);
+                }
+            } finally {
+                synchronized (lock) {
+                    nextTicketToRelease++;
+                    isReleasing = false;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    // A failure to release one object must not stop the rest of the reorder buffer from draining, or the objects
+    // behind it would be stranded until the stream is closed.
+    private void releaseOutput(EtlStreamObject output) {
+        try {
+            downstreamEtlConsumer.consume(output);
+        } catch (UnrecoverableStreamFailureException e) {
+            abortStreamException.set(e);
+        } catch (RuntimeException e) {
+            logger.error("Error releasing object from multi-threaded ordered consumer: ", e);
+        }
+    }
+
+    private void checkForShutdownExecutor() {
+        if (etlExecutor.isShutdown()) {
+            IllegalStateException e = new IllegalStateException("Consumer was closed and cannot receive more objects");
+            logger.error("Error inside multi-threaded ordered consumer: ", e);
+            throw e;
+        }
+    }
+
+    private void checkForAbortedStream() {
+        if (abortStreamException.get() != null) {
+            throw abortStreamException.get();
+        }
+    }
+
+    /**
+     * The consumer the wrapped consumer emits into. Objects are collected against whichever consumed object the
+     * emitting thread is currently working on.
+     */
+    private class OutputCollectingEtlConsumer implements EtlConsumer {
+        @Override
+        public void consume(EtlStreamObject objectToConsume) {
+            List<EtlStreamObject> outputs = collectedOutputs.get();
+
+            if (outputs == null) {
+                throw new IllegalStateException("Objects can only be emitted whilst an object is being consumed");
+            }
+
+            outputs.add(objectToConsume);
+        }
+
+        @Override
+        public void open(EtlMetrics parentMetrics) {
+            // no-op
+        }
+
+        @Override
+        public void close() {
+            // no-op
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Logs the failures of a single stage without letting a high failure rate make logging the slowest part of the stage.
+ * Failures are bucketed by what was being done when they happened and by the type of exception thrown. The first
+ * failure in a bucket is logged with its stack trace; after that at most one failure per bucket is logged in each
+ * sampling interval, along with the number of failures in the bucket that were counted but not logged since the last
+ * one. Failures that are only counted cost a hash lookup and an increment.
+ *
+ * Anything counted but not yet logged is summarized by flush(), which stages call when they are closed.
+ */
+class SampledFailureLogger {
+    private final static long DEFAULT_SAMPLE_INTERVAL_MILLIS = 10_000;
+
+    private final Logger logger;
+    private final String stageName;
+    private final long sampleIntervalNanos;
+    private final LongSupplier nanoClock;
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private static class Bucket {
+        private final String description;
+        private final String exceptionType;
+        private final AtomicLong lastLoggedNanos;
+        private final LongAdder unloggedFailures = new LongAdder();
+
+        Bucket(String description, String exceptionType, long lastLoggedNanos) {
+            this.description = description;
+            this.exceptionType = exceptionType;
+            this.lastLoggedNanos = new AtomicLong(lastLoggedNanos);
+        }
+    }
+
+    /**
+     * Standard constructor.
+     *
+     * @param logger    The logger to log failures and summaries to.
+     * @param stageName The name of the stage the failures happen in.
+     */
+    SampledFailureLogger(Logger logger, String stageName) {
+        this(logger, stageName, DEFAULT_SAMPLE_INTERVAL_MILLIS, System::nanoTime);
+    }
+
+    SampledFailureLogger(Logger logger, String stageName, long sampleIntervalMillis, LongSupplier nanoClock) {
+        this.logger = logger;
+        this.stageName = stageName;
+        this.sampleIntervalNanos = TimeUnit.MILLISECONDS.toNanos(sampleIntervalMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Records a failure, logging it as a warning with its stack trace if it is the first in its bucket for this
+     * sampling interval.
+     *
+     * @param description What was being done when the failure happened. Failures with the same description and
+     *                    exception type share a bucket.
+     * @param exception   The exception that was thrown.
+     */
+    void warn(String description, Exception exception) {
+        long now = nanoClock.getAsLong();
+        String exceptionType = exception.getClass().getName();
+        Bucket bucket = buckets.computeIfAbsent(description + '\u0000' + exceptionType,
+                ignored -> new Bucket(description, exceptionType, now - sampleIntervalNanos));
+        long lastLoggedNanos = bucket.lastLoggedNanos.get();
+
+        if (now - lastLoggedNanos < sampleIntervalNanos || !bucket.lastLoggedNanos.compareAndSet(lastLoggedNanos, now)) {
+            bucket.unloggedFailures.increment();
+            return;
+        }
+
+        long unloggedFailures = bucket.unloggedFailures.sumThenReset();
+
+        if (unloggedFailures == 0) {
+            logger.warn(description + " in stage '" + stageName + "': ", exception);
+        } else {
+            logger.warn(description + " in stage '" + stageName + "' (" + unloggedFailures +
+                    " more like it were not logged since the last one): ", exception);
+        }
+    }
+
+    /**
+     * Logs a summary line for every bucket with failures that were counted but not logged, and resets their counts.
+     */
+    void flush() {
+        buckets.values().forEach(bucket -> {
+            long unloggedFailures = bucket.unloggedFailures.sumThenReset();
+
+            if (unloggedFailures > 0) {
+                logger.warn(bucket.description + " in stage '" + stageName + "': " + unloggedFailures + " more " +
+                        bucket.exceptionType + " failures were not logged individually");
+            }
+        });
+    }
+}
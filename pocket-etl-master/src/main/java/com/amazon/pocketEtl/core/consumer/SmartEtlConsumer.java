@@ -18,11 +18,13 @@ package com.amazon.pocketEtl.core.consumer;
 import com.amazon.pocketEtl.EtlMetrics;
 import com.amazon.pocketEtl.EtlProfilingScope;
 import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import org.apache.logging.log4j.Logger;
 
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
@@ -37,15 +39,18 @@ import static org.apache.logging.log4j.LogManager.getLogger;
  * Currently cyclic connections in the consumer graph are not supported and will make it impossible to close the
  * consumer, although it's noted here as possible future expansion for this class.
  */
-@EqualsAndHashCode(exclude = {"openCount"})
+@EqualsAndHashCode(exclude = {"openCount", "consumeScopeName", "consumeBatchScopeName"})
 class SmartEtlConsumer implements EtlConsumer {
     private final static Logger logger = getLogger(SmartEtlConsumer.class);
 
+    @Getter(AccessLevel.PACKAGE)
     private final String name;
 
     @Getter(AccessLevel.PACKAGE)
     private final EtlConsumer wrappedEtlConsumer;
 
+    private final String consumeScopeName;
+    private final String consumeBatchScopeName;
     private final AtomicInteger openCount = new AtomicInteger(0);
 
     private EtlMetrics parentMetrics = null;
@@ -59,6 +64,8 @@ class SmartEtlConsumer implements EtlConsumer {
     SmartEtlConsumer(String name, EtlConsumer wrappedEtlConsumer) {
         this.name = name;
         this.wrappedEtlConsumer = wrappedEtlConsumer;
+        this.consumeScopeName = "SmartConsumer." + name + ".consume";
+        this.consumeBatchScopeName = "SmartConsumer." + name + ".consumeBatch";
     }
 
     /**
@@ -68,11 +75,23 @@ class SmartEtlConsumer implements EtlConsumer {
      */
     @Override
     public void consume(EtlStreamObject objectToConsume) {
-        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "SmartConsumer." + name + ".consume")) {
+        try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, consumeScopeName)) {
             wrappedEtlConsumer.consume(objectToConsume);
         }
     }
 
+    /**
+     * Passes a batch of objects to be consumed directly to the wrapped consumer.
+     *
+     * @param objectsToConsume The objects to be consumed.
+     */
+    @Override
+    public void consumeBatch(List<EtlStreamObject> objectsToConsume) {
+        try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, consumeBatchScopeName)) {
+            wrappedEtlConsumer.consumeBatch(objectsToConsume);
+        }
+    }
+
     /**
      * Signals the consumer to prepare to accept work. This implementation will keep a count of how many times it
      * has been opened as a way of knowing how many upstream producers expect to use it. It will also pass on this
@@ -19,12 +19,17 @@ import com.amazon.pocketEtl.EtlMetrics;
 import com.amazon.pocketEtl.EtlProfilingScope;
 import com.amazon.pocketEtl.Transformer;
 import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
 import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
 
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
 
@@ -36,15 +41,19 @@ import static org.apache.logging.log4j.LogManager.getLogger;
  * @param <UpstreamType>   Object type being passed into the transformer.
  * @param <DownstreamType> Object type being produced after the transformation.
  */
-@EqualsAndHashCode
+@EqualsAndHashCode(exclude = {"consumeScopeName", "consumeBatchScopeName", "failureLogger"})
 class TransformerEtlConsumer<UpstreamType, DownstreamType> implements EtlConsumer {
     private final static Logger logger = getLogger(TransformerEtlConsumer.class);
 
     private final String name;
+    @Getter(AccessLevel.PACKAGE)
     private final EtlConsumer downstreamEtlConsumer;
     private final EtlConsumer errorEtlConsumer;
+    private final SampledFailureLogger failureLogger;
     private final Transformer<UpstreamType, DownstreamType> transformer;
     private final Class<UpstreamType> transformerUpstreamTypeClass;
+    private final String consumeScopeName;
+    private final String consumeBatchScopeName;
     private EtlMetrics parentMetrics = null;
 
     /**
@@ -67,6 +76,9 @@ class TransformerEtlConsumer<UpstreamType, DownstreamType> implements EtlConsume
         this.errorEtlConsumer = errorEtlConsumer;
         this.transformer = transformer;
         this.transformerUpstreamTypeClass = transformerUpstreamTypeClass;
+        this.consumeScopeName = "TransformerConsumer." + name + ".consume";
+        this.consumeBatchScopeName = "TransformerConsumer." + name + ".consumeBatch";
+        this.failureLogger = new SampledFailureLogger(logger, name);
     }
 
     /**
@@ -82,28 +94,32 @@ class TransformerEtlConsumer<UpstreamType, DownstreamType> implements EtlConsume
     @Override
     public void consume(EtlStreamObject objectToTransform) throws IllegalStateException,
                                                                   UnrecoverableStreamFailureException {
-        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "TransformerConsumer." + name +
-                                                                              ".consume")) {
+        try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, consumeScopeName)) {
+            transformObject(objectToTransform, downstreamEtlConsumer::consume);
+        }
+    }
 
-            List<DownstreamType> transformedObjects;
+    /**
+     * Consume and transform a batch of objects then pass all the transformed objects to the downstream consumer as a
+     * single batch. Objects that cannot be transformed are passed individually to the designated error consumer.
+     *
+     * @param objectsToTransform The objects to be transformed.
+     * @throws IllegalStateException If the consumer is in a state that cannot accept work.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     *                                             detected and the stream needs to be aborted.
+     */
+    @Override
+    public void consumeBatch(List<EtlStreamObject> objectsToTransform) throws IllegalStateException,
+                                                                              UnrecoverableStreamFailureException {
+        try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, consumeBatchScopeName)) {
+            List<EtlStreamObject> transformedBatch = new ArrayList<>(objectsToTransform.size());
 
-            try {
-                transformedObjects = transformer.transform(objectToTransform.get(transformerUpstreamTypeClass));
-            } catch (UnrecoverableStreamFailureException e) {
-                logger.error("Unrecoverable stream exception thrown in transformer object, aborting stream: ", e);
-                throw e;
-            } catch (RuntimeException e) {
-                logger.warn("Exception thrown in transformer object: ", e);
-                errorEtlConsumer.consume(objectToTransform);
-                return;
+            for (EtlStreamObject objectToTransform : objectsToTransform) {
+                transformObject(objectToTransform, transformedBatch::add);
             }
 
-            // Optimized path for single object transformation, re-uses existing EtlStreamObject
-            if (transformedObjects.size() == 1) {
-                downstreamEtlConsumer.consume(objectToTransform.with(transformedObjects.get(0)));
-            } else {
-                transformedObjects.forEach(
-                    obj -> downstreamEtlConsumer.consume(objectToTransform.createCopy().with(obj)));
+            if (!transformedBatch.isEmpty()) {
+                downstreamEtlConsumer.consumeBatch(transformedBatch);
             }
         }
     }
@@ -146,7 +162,31 @@ class TransformerEtlConsumer<UpstreamType, DownstreamType> implements EtlConsume
                 logger.warn("Exception thrown closing transformer object: ", e);
             }
 
+            failureLogger.flush();
             errorEtlConsumer.close();
         }
     }
+
+    private void transformObject(EtlStreamObject objectToTransform, Consumer<EtlStreamObject> resultConsumer) {
+        List<DownstreamType> transformedObjects;
+
+        try {
+            transformedObjects = transformer.transform(objectToTransform.get(transformerUpstreamTypeClass));
+        } catch (UnrecoverableStreamFailureException e) {
+            logger.error("Unrecoverable stream exception thrown in transformer object, aborting stream: ", e);
+            throw e;
+        } catch (RuntimeException e) {
+            failureLogger.warn("Exception thrown in transformer object", e);
+            errorEtlConsumer.consume(objectToTransform);
+            return;
+        }
+
+        // Optimized path for single object transformation, re-uses existing EtlStreamObject
+        if (transformedObjects.size() == 1) {
+            resultConsumer.accept(objectToTransform.with(transformedObjects.get(0)));
+        } else {
+            transformedObjects.forEach(obj -> resultConsumer.accept(objectToTransform.createCopy().with(obj)));
+            objectToTransform.markCompleted();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,302 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.exception.GenericEtlException;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * An EtlExecutor implementation that limits how many tasks can be in flight at once, and tunes that limit at runtime
+ * between a minimum and a maximum based on how long tasks take to run. It uses an additive-increase/multiplicative-
+ * decrease (AIMD) strategy: the limit is re-evaluated every time a limit's worth of tasks has completed, and grows by
+ * one if the limit was reached during that window while task latency stayed close to the lowest latency observed,
+ * or is cut by 10% if the average latency grew to more than double the lowest latency or any task failed. This allows
+ * a stage to find the level of parallelism a downstream service can sustain without having to guess it upfront. A task
+ * has failed if it threw, or if it called reportTaskFailure() while running, which consumers do whenever they route an
+ * object to their error consumer.
+ *
+ * Once the current limit is reached, submit will block until a task completes. The current limit is reported as a
+ * gauge by getConcurrencyLimit(), which EtlTelemetry exposes for the stage. It is also emitted to the parent
+ * EtlMetrics of the tasks as a sample each time it is re-evaluated; since it is a level rather than a count, read that
+ * metric with an average or maximum statistic rather than a sum. This object should not be constructed directly,
+ * instead use EtlExecutorFactory.
+ */
+@EqualsAndHashCode(exclude = {"wrappedEtlExecutor", "nanoClock", "lock", "concurrencyLimit", "tasksInFlight",
+        "baselineLatencyNanos", "windowsSinceBaseline", "windowCompletions", "windowTotalLatencyNanos",
+        "windowMinLatencyNanos", "windowWasSaturated", "windowHadFailure", "runningTaskFailed"})
+class AdaptiveConcurrencyEtlExecutor implements EtlExecutor {
+    static final String CONCURRENCY_LIMIT_METRIC_NAME = "AdaptiveConcurrencyEtlExecutor.concurrencyLimit";
+
+    private final static double LATENCY_TOLERANCE = 2.0;
+    private final static double BACKOFF_RATIO = 0.9;
+    // The lowest observed latency is re-baselined periodically so that it can follow a downstream that has got slower
+    private final static int WINDOWS_PER_BASELINE = 100;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final EtlExecutor wrappedEtlExecutor;
+    @Getter(AccessLevel.PACKAGE)
+    private final int minConcurrency;
+    @Getter(AccessLevel.PACKAGE)
+    private final int maxConcurrency;
+    private final LongSupplier nanoClock;
+    private final Object lock = new Object();
+    // Set for the duration of each task on the worker running it, so that reportTaskFailure() can mark that task
+    private final ThreadLocal<Boolean> runningTaskFailed = new ThreadLocal<>();
+
+    private int concurrencyLimit;
+    private int tasksInFlight = 0;
+    private long baselineLatencyNanos = Long.MAX_VALUE;
+    private int windowsSinceBaseline = 0;
+    private int windowCompletions = 0;
+    private long windowTotalLatencyNanos = 0;
+    private long windowMinLatencyNanos = Long.MAX_VALUE;
+    private boolean windowWasSaturated = false;
+    private boolean windowHadFailure = false;
+
+    AdaptiveConcurrencyEtlExecutor(EtlExecutor wrappedEtlExecutor, int minConcurrency, int maxConcurrency) {
+        this(wrappedEtlExecutor, minConcurrency, maxConcurrency, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyEtlExecutor(EtlExecutor wrappedEtlExecutor, int minConcurrency, int maxConcurrency,
+                                   LongSupplier nanoClock) {
+        if (minConcurrency < 1 || maxConcurrency < minConcurrency) {
+            throw new IllegalArgumentException("Concurrency bounds must satisfy 1 <= minConcurrency <= maxConcurrency");
+        }
+
+        this.wrappedEtlExecutor = wrappedEtlExecutor;
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.nanoClock = nanoClock;
+        this.concurrencyLimit = minConcurrency;
+    }
+
+    /**
+     * Returns the number of tasks that are currently allowed to be in flight at once.
+     *
+     * @return The current concurrency limit.
+     */
+    @Override
+    public int getConcurrencyLimit() {
+        synchronized (lock) {
+            return concurrencyLimit;
+        }
+    }
+
+    /**
+     * Wait for all the tasks in flight to complete and then destroy the resources used by the wrapped executor. This
+     * request will block until the tasks have finished.
+     *
+     * @throws GenericEtlException If the wrapped executor could not be shutdown.
+     */
+    @Override
+    public void shutdown() throws GenericEtlException {
+        wrappedEtlExecutor.shutdown();
+
+        // Wake up any submitters still waiting for the limit so that they can be rejected
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Cancel the wrapped executor, discarding the tasks it has queued and interrupting the ones it is running. Any
+     * submitters waiting for the limit are woken up so that they can be rejected.
+     */
+    @Override
+    public void cancel() {
+        wrappedEtlExecutor.cancel();
+
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Destroy the resources used by the wrapped executor, waiting no longer than the timeout for the tasks in flight
+     * to complete.
+     *
+     * @param timeout How long to wait for the tasks in flight.
+     * @param unit    The unit of the timeout.
+     * @return 'true' if the tasks completed in time, and 'false' if they did not.
+     * @throws GenericEtlException If the wrapped executor could not be shutdown.
+     */
+    @Override
+    public boolean shutdownWithin(long timeout, TimeUnit unit) throws GenericEtlException {
+        boolean isTerminated = wrappedEtlExecutor.shutdownWithin(timeout, unit);
+
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+
+        return isTerminated;
+    }
+
+    /**
+     * Queries whether the executor has been shutdown.
+     *
+     * @return 'true' if the executor has been shutdown, and 'false' if it has not.
+     */
+    @Override
+    public boolean isShutdown() {
+        return wrappedEtlExecutor.isShutdown();
+    }
+
+    /**
+     * Submits a task to the wrapped executor. If the current concurrency limit has been reached, this call will block
+     * until a task has completed.
+     *
+     * @param task          a runnable wrapping the task to be performed in the future.
+     * @param parentMetrics A parent EtlMetrics object to attach the runnables to.
+     * @throws RejectedExecutionException If the executor has been shutdown or the thread was interrupted whilst
+     *                                    waiting for a task to complete.
+     */
+    @Override
+    public void submit(Runnable task, EtlMetrics parentMetrics) throws RejectedExecutionException {
+        synchronized (lock) {
+            while (true) {
+                if (wrappedEtlExecutor.isShutdown()) {
+                    throw new RejectedExecutionException("Executor has been shutdown and cannot accept more work");
+                }
+
+                if (tasksInFlight < concurrencyLimit) {
+                    break;
+                }
+
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Thread was interrupted trying to queue new work");
+                }
+            }
+
+            tasksInFlight++;
+
+            if (tasksInFlight >= concurrencyLimit) {
+                windowWasSaturated = true;
+            }
+        }
+
+        try {
+            wrappedEtlExecutor.submit(() -> {
+                long startTime = nanoClock.getAsLong();
+                boolean isSuccessful = false;
+                runningTaskFailed.set(false);
+
+                try {
+                    task.run();
+                    isSuccessful = !runningTaskFailed.get();
+                } finally {
+                    runningTaskFailed.remove();
+                    onTaskCompleted(nanoClock.getAsLong() - startTime, isSuccessful, parentMetrics);
+                }
+            }, parentMetrics);
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                tasksInFlight--;
+                lock.notifyAll();
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Queries how many submitted tasks are waiting for a worker of the wrapped executor.
+     *
+     * @return The number of tasks waiting to be worked on.
+     */
+    @Override
+    public int getQueuedTaskCount() {
+        return wrappedEtlExecutor.getQueuedTaskCount();
+    }
+
+    /**
+     * Queries how many workers of the wrapped executor are currently working on a task.
+     *
+     * @return The number of busy workers.
+     */
+    @Override
+    public int getActiveWorkerCount() {
+        return wrappedEtlExecutor.getActiveWorkerCount();
+    }
+
+    /**
+     * Marks the task running on the calling thread as failed, so that it counts towards backing off the concurrency
+     * limit even though it did not throw. Ignored if the calling thread is not running one of this executor's tasks.
+     */
+    @Override
+    public void reportTaskFailure() {
+        if (runningTaskFailed.get() != null) {
+            runningTaskFailed.set(true);
+        }
+    }
+
+    private void onTaskCompleted(long latencyNanos, boolean isSuccessful, EtlMetrics parentMetrics) {
+        int updatedConcurrencyLimit = -1;
+
+        synchronized (lock) {
+            tasksInFlight--;
+            windowCompletions++;
+            windowTotalLatencyNanos += latencyNanos;
+            windowMinLatencyNanos = Math.min(windowMinLatencyNanos, latencyNanos);
+            windowHadFailure |= !isSuccessful;
+
+            if (windowCompletions >= concurrencyLimit) {
+                updatedConcurrencyLimit = updateConcurrencyLimit();
+            }
+
+            lock.notifyAll();
+        }
+
+        if (updatedConcurrencyLimit != -1 && parentMetrics != null) {
+            parentMetrics.addCount(CONCURRENCY_LIMIT_METRIC_NAME, updatedConcurrencyLimit);
+        }
+    }
+
+    // Must be called whilst holding the lock
+    private int updateConcurrencyLimit() {
+        long averageLatencyNanos = windowTotalLatencyNanos / windowCompletions;
+
+        if (++windowsSinceBaseline >= WINDOWS_PER_BASELINE) {
+            baselineLatencyNanos = windowMinLatencyNanos;
+            windowsSinceBaseline = 0;
+        } else {
+            baselineLatencyNanos = Math.min(baselineLatencyNanos, windowMinLatencyNanos);
+        }
+
+        if (windowHadFailure || averageLatencyNanos > baselineLatencyNanos * LATENCY_TOLERANCE) {
+            concurrencyLimit = Math.max(minConcurrency, (int) (concurrencyLimit * BACKOFF_RATIO));
+        } else if (windowWasSaturated) {
+            concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1);
+        }
+
+        windowCompletions = 0;
+        windowTotalLatencyNanos = 0;
+        windowMinLatencyNanos = Long.MAX_VALUE;
+        windowWasSaturated = false;
+        windowHadFailure = false;
+
+        return concurrencyLimit;
+    }
+}
@@ -19,6 +19,7 @@ import com.amazon.pocketEtl.EtlMetrics;
 import com.amazon.pocketEtl.exception.GenericEtlException;
 
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An abstracted interface for an executor that can schedule, queue and perform work.
@@ -48,4 +49,79 @@ public interface EtlExecutor {
      * @throws RejectedExecutionException If the task cannot be submitted to the Executor.
      */
     void submit(Runnable task, EtlMetrics parentMetrics) throws RejectedExecutionException;
+
+    /**
+     * Stops the executor as quickly as possible instead of letting it finish its work : no more tasks are accepted,
+     * tasks that are still queued are discarded in bulk and the workers running tasks are interrupted. This call does
+     * not wait for running tasks to stop, so it is safe to make from one of them. Call shutdownWithin() afterwards to
+     * wait for the workers to stop. Executors that do not queue tasks have nothing to cancel.
+     */
+    default void cancel() {
+    }
+
+    /**
+     * Shuts the executor down as shutdown() does, but stops waiting for its workers once the timeout has passed. Any
+     * workers still running at that point are abandoned. Usually called after cancel(). Executors that cannot stop
+     * waiting early simply shut down.
+     *
+     * @param timeout How long to wait for the workers to stop.
+     * @param unit    The unit of the timeout.
+     * @return 'true' if every worker stopped in time, and 'false' if some were abandoned.
+     * @throws GenericEtlException If something goes wrong.
+     */
+    default boolean shutdownWithin(long timeout, TimeUnit unit) throws GenericEtlException {
+        shutdown();
+        return true;
+    }
+
+    /**
+     * Queries whether every task submitted to the executor runs to completion on the thread that submitted it before
+     * submit returns. Consumers use this to decide whether a stage can be fused with its neighbours into a single call
+     * path.
+     *
+     * @return 'true' if tasks run on the submitting thread, and 'false' if they may run on another thread.
+     */
+    default boolean runsTasksOnSubmittingThread() {
+        return false;
+    }
+
+    /**
+     * Queries how many submitted tasks are waiting for a worker. Used for telemetry, so the answer may be slightly out
+     * of date by the time it is returned.
+     *
+     * @return The number of tasks waiting to be worked on, or 0 if the executor does not queue tasks.
+     */
+    default int getQueuedTaskCount() {
+        return 0;
+    }
+
+    /**
+     * Queries how many workers are currently working on a task. Used for telemetry, so the answer may be slightly out
+     * of date by the time it is returned.
+     *
+     * @return The number of busy workers, or 0 if the executor does not have workers of its own.
+     */
+    default int getActiveWorkerCount() {
+        return 0;
+    }
+
+    /**
+     * Queries how many tasks the executor currently allows to be in flight at once, for executors that tune that limit
+     * at runtime. Used for telemetry, so the answer may be slightly out of date by the time it is returned.
+     *
+     * @return The current concurrency limit, or 0 if the executor does not tune one.
+     */
+    default int getConcurrencyLimit() {
+        return 0;
+    }
+
+    /**
+     * Signals that the task this executor is running on the calling thread failed to process one of its objects, even
+     * though the task itself did not throw. Consumers call this when they route an object to an error consumer, so
+     * that executors which adapt to failures can see the failures the consumer chain recovers from. Calls made from a
+     * thread that is not running one of this executor's tasks are ignored, as are all calls to executors that do not
+     * adapt to failures.
+     */
+    default void reportTaskFailure() {
+    }
 }
@@ -15,6 +15,9 @@
 
 package com.amazon.pocketEtl.core.executor;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -51,7 +54,27 @@ public class EtlExecutorFactory {
     }
 
     /**
-     * This multi-threaded EtlExecutor uses an unbound queue that will not block on new requests.
+     * This multi-threaded EtlExecutor divides its work between a number of partitions, each with a single thread and a
+     * fixed-size work queue. Tasks submitted with equal partition keys always run on the same partition, one at a
+     * time, so stateful work keyed on that value does not need to be synchronized. Submit will block once the queue of
+     * the partition a task is routed to is full.
+     * @param numberOfPartitions Number of partitions, and so threads, to run tasks simultaneously.
+     * @param queueSizePerPartition The maximum size of the work-queue of each partition.
+     * @return A fully constructed PartitionedEtlExecutor.
+     */
+    public PartitionedEtlExecutor newKeyAffinityEtlExecutor(int numberOfPartitions, int queueSizePerPartition) {
+        List<ExecutorServiceEtlExecutor> partitions = new ArrayList<>(numberOfPartitions);
+
+        for (int i = 0; i < numberOfPartitions; i++) {
+            partitions.add((ExecutorServiceEtlExecutor) newBlockingFixedThreadsEtlExecutor(1, queueSizePerPartition));
+        }
+
+        return new KeyAffinityEtlExecutor(partitions);
+    }
+
+    /**
+     * This multi-threaded EtlExecutor uses an unbound queue that will not block on new requests. If the workers could
+     * fall far behind, consider newSpillingFixedThreadsEtlExecutor instead.
      * @param numberOfWorkers Number of threads to run tasks simultaneously.
      * @return A fully constructed EtlExecutor.
      */
@@ -59,6 +82,81 @@ public class EtlExecutorFactory {
         return new ExecutorServiceEtlExecutor(Executors.newFixedThreadPool(numberOfWorkers));
     }
 
+    /**
+     * This multi-threaded EtlExecutor keeps a fixed-size work queue in memory and, once it is full, spills objects
+     * submitted to it to segment files on local disk rather than blocking or growing without limit. Spilled objects are
+     * read back in the order they were submitted as the workers catch up. Use this instead of an unbound queue when a
+     * fast producer could otherwise exhaust the heap, and instead of a blocking queue when stalling the producer is not
+     * acceptable. The number of objects spilled and the bytes written are counted to EtlMetrics.
+     * @param numberOfWorkers Number of threads to run tasks simultaneously.
+     * @param inMemoryQueueSize The maximum number of tasks to hold in memory before spilling to disk.
+     * @param spillDirectory The directory to create spill files in. It will not be written to unless the in-memory
+     *                       queue fills up, and the files are deleted when the executor is shutdown.
+     * @return A fully constructed SpillableEtlExecutor.
+     */
+    public SpillableEtlExecutor newSpillingFixedThreadsEtlExecutor(int numberOfWorkers, int inMemoryQueueSize,
+                                                                   Path spillDirectory) {
+        return new SpillingEtlExecutor(numberOfWorkers, inMemoryQueueSize, spillDirectory);
+    }
+
+    /**
+     * This multi-threaded EtlExecutor keeps the objects waiting for its workers serialized in direct memory outside the
+     * heap, and only deserializes each one when a worker takes it. Use this for stages that may have very deep queues,
+     * where holding the waiting objects on the heap would lead to long garbage collection pauses. Submit will block once
+     * the memory budget is used up until the workers have made room. The direct memory the executor uses counts
+     * against -XX:MaxDirectMemorySize rather than the heap.
+     * @param numberOfWorkers Number of threads to run tasks simultaneously.
+     * @param bufferSizeBytes The memory budget for waiting objects, in bytes.
+     * @return A fully constructed SpillableEtlExecutor.
+     */
+    public SpillableEtlExecutor newOffHeapBufferedEtlExecutor(int numberOfWorkers, long bufferSizeBytes) {
+        return new OffHeapBufferedEtlExecutor(numberOfWorkers, bufferSizeBytes);
+    }
+
+    /**
+     * This multi-threaded EtlExecutor hands tasks to a fixed number of worker threads through a preallocated lock-free
+     * ring buffer, avoiding the lock contention and per-task allocations of a queue-backed thread pool. Submit will
+     * block once the buffer is full until a worker has taken a task from it. Best suited to CPU-bound stages with high
+     * record rates.
+     * @param numberOfWorkers Number of threads to run tasks simultaneously.
+     * @param bufferSize The number of tasks the ring buffer can hold, rounded up to the next power of two.
+     * @param waitStrategy How idle workers and blocked submitters should wait.
+     * @return A fully constructed EtlExecutor.
+     */
+    public EtlExecutor newRingBufferEtlExecutor(int numberOfWorkers, int bufferSize,
+                                                RingBufferWaitStrategy waitStrategy) {
+        return new RingBufferEtlExecutor(numberOfWorkers, bufferSize, waitStrategy);
+    }
+
+    /**
+     * This multi-threaded EtlExecutor tunes how many tasks it runs at once based on how long the tasks take, backing
+     * off when latency rises or tasks fail and growing while latency stays low. Useful for stages that call a
+     * downstream service whose capacity is not known upfront. Submit will block once the current limit is reached
+     * until a task completes. The current limit is reported to EtlMetrics as it changes.
+     * @param minConcurrency The lowest the concurrency limit is allowed to go, and the limit it starts at.
+     * @param maxConcurrency The highest the concurrency limit is allowed to go, and the number of threads used.
+     * @return A fully constructed EtlExecutor.
+     */
+    public EtlExecutor newAdaptiveConcurrencyEtlExecutor(int minConcurrency, int maxConcurrency) {
+        return new AdaptiveConcurrencyEtlExecutor(
+                new ExecutorServiceEtlExecutor(Executors.newFixedThreadPool(maxConcurrency)),
+                minConcurrency, maxConcurrency);
+    }
+
+    /**
+     * This multi-threaded EtlExecutor starts a new virtual thread for every task and bounds the number of tasks in
+     * flight with a semaphore instead of a thread count, making it well suited to stages that spend most of their time
+     * waiting on remote calls. Submit will block once the maximum number of tasks are in flight until one of them
+     * completes. Virtual threads require Java 21 or later; on older runtimes a cached pool of platform threads is used
+     * instead, which still respects the same bound.
+     * @param maxConcurrency The maximum number of tasks that can be in flight simultaneously.
+     * @return A fully constructed EtlExecutor.
+     */
+    public EtlExecutor newVirtualThreadsEtlExecutor(int maxConcurrency) {
+        return new SemaphoreBoundedEtlExecutor(new ExecutorServiceEtlExecutor(newThreadPerTaskExecutorService()),
+                maxConcurrency);
+    }
+
     /**
      * This is a single-threaded EtlExecutor used when you don't want any kind of parallelism, but conceptually will
      * behave like other EtlExecutors. Executions will block until completed by the invoking thread. This should be
@@ -68,4 +166,13 @@ public class EtlExecutorFactory {
     public EtlExecutor newImmediateExecutionEtlExecutor() {
         return new ImmediateExecutionEtlExecutor();
     }
+
+    private static ExecutorService newThreadPerTaskExecutorService() {
+        // Looked up reflectively so that this library can still be built for and run on Java 8
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ignored) {
+            return Executors.newCachedThreadPool();
+        }
+    }
 }
@@ -16,13 +16,14 @@
 package com.amazon.pocketEtl.core.executor;
 
 import com.amazon.pocketEtl.EtlMetrics;
-import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
 import com.amazon.pocketEtl.exception.GenericEtlException;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -67,6 +68,35 @@ class ExecutorServiceEtlExecutor implements EtlExecutor {
         }
     }
 
+    /**
+     * Stop accepting work, discard the tasks still in the work-queue and interrupt the threads working on a task. This
+     * request does not wait for the threads to finish.
+     */
+    @Override
+    public void cancel() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Drain the work-queue and destroy the thread resources used by this object, waiting no longer than the timeout for
+     * the threads to finish working.
+     *
+     * @param timeout How long to wait for the threads to finish.
+     * @param unit    The unit of the timeout.
+     * @return 'true' if the threads finished in time, and 'false' if they did not or this thread was interrupted.
+     */
+    @Override
+    public boolean shutdownWithin(long timeout, TimeUnit unit) {
+        executorService.shutdown();
+
+        try {
+            return executorService.awaitTermination(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return executorService.isTerminated();
+        }
+    }
+
     /**
      * Queries whether the executor has been shutdown.
      *
@@ -88,9 +118,38 @@ class ExecutorServiceEtlExecutor implements EtlExecutor {
     @Override
     public void submit(Runnable task, EtlMetrics parentMetrics) {
         executorService.submit(() -> {
-            try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "ExecutorServiceEtlExecutor.submit")) {
+            try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, "ExecutorServiceEtlExecutor.submit")) {
                 task.run();
             }
         });
     }
+
+    /**
+     * Queries how many submitted tasks are waiting in the work queue of the wrapped ThreadPoolExecutor.
+     *
+     * @return The number of tasks waiting to be worked on, or 0 if the wrapped ExecutorService is not a
+     * ThreadPoolExecutor.
+     */
+    @Override
+    public int getQueuedTaskCount() {
+        if (executorService instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executorService).getQueue().size();
+        }
+
+        return 0;
+    }
+
+    /**
+     * Queries how many threads of the wrapped ThreadPoolExecutor are currently working on a task.
+     *
+     * @return The number of busy threads, or 0 if the wrapped ExecutorService is not a ThreadPoolExecutor.
+     */
+    @Override
+    public int getActiveWorkerCount() {
+        if (executorService instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executorService).getActiveCount();
+        }
+
+        return 0;
+    }
 }
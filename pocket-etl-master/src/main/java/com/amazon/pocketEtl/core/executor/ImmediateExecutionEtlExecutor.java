@@ -17,7 +17,7 @@ package com.amazon.pocketEtl.core.executor;
 
 
 import com.amazon.pocketEtl.EtlMetrics;
-import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
 import com.amazon.pocketEtl.exception.GenericEtlException;
 import lombok.EqualsAndHashCode;
 
@@ -62,9 +62,18 @@ class ImmediateExecutionEtlExecutor implements EtlExecutor {
             throw new RejectedExecutionException("Executor has been shutdown and cannot accept more work");
         }
 
-        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "SingleThreadedEtlExecutor.submit")) {
+        try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, "SingleThreadedEtlExecutor.submit")) {
             task.run();
         } catch (RuntimeException ignored) {
         }
     }
+
+    /**
+     * Tasks always run on the thread that submits them.
+     * @return true.
+     */
+    @Override
+    public boolean runsTasksOnSubmittingThread() {
+        return true;
+    }
 }
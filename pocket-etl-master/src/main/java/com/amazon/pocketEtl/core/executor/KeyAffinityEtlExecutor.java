@@ -0,0 +1,215 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.exception.GenericEtlException;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A PartitionedEtlExecutor implementation that gives each partition its own single worker thread and its own bounded
+ * queue. Tasks are routed to a partition by the hash of their partition key, so stateful work keyed on that value
+ * does not need to be synchronized. Tasks submitted without a key are spread across the partitions in turn.
+ *
+ * Every time a fixed number of tasks have been submitted, the depth of each partition's queue is emitted to the
+ * parent EtlMetrics of the task being submitted, along with the skew of the partitions: the number of tasks the
+ * busiest partition received since the last report divided by the average number of tasks per partition. A skew well
+ * above 1 means a few hot keys are limiting parallelism. Both are levels rather than counts, so read those metrics
+ * with an average or maximum statistic rather than a sum. This object should not be constructed directly, instead use
+ * EtlExecutorFactory.
+ */
+@EqualsAndHashCode(exclude = {"partitions", "partitionQueueDepthMetricNames", "tasksSinceLastReport",
+        "partitionTasksSinceLastReport", "nextUnkeyedPartition"})
+class KeyAffinityEtlExecutor implements PartitionedEtlExecutor {
+    // The skew and the queue depths are levels sampled once per report, not counts; they must not be summed
+    static final String PARTITION_SKEW_METRIC_NAME = "KeyAffinityEtlExecutor.partitionSkew";
+
+    private final static int TASKS_PER_REPORT = 1024;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final List<ExecutorServiceEtlExecutor> partitions;
+    private final String[] partitionQueueDepthMetricNames;
+    private final AtomicInteger tasksSinceLastReport = new AtomicInteger(0);
+    private final AtomicLongArray partitionTasksSinceLastReport;
+    private final AtomicInteger nextUnkeyedPartition = new AtomicInteger(0);
+
+    /**
+     * Standard constructor.
+     *
+     * @param partitions Single threaded executors, one per partition.
+     */
+    KeyAffinityEtlExecutor(List<ExecutorServiceEtlExecutor> partitions) {
+        if (partitions.isEmpty()) {
+            throw new IllegalArgumentException("At least one partition is required");
+        }
+
+        this.partitions = partitions;
+        this.partitionQueueDepthMetricNames = new String[partitions.size()];
+        this.partitionTasksSinceLastReport = new AtomicLongArray(partitions.size());
+
+        for (int i = 0; i < partitions.size(); i++) {
+            partitionQueueDepthMetricNames[i] = "KeyAffinityEtlExecutor.partition." + i + ".queueDepth";
+        }
+    }
+
+    /**
+     * Drain the work-queue of every partition and destroy the thread resources used by this object. This request will
+     * block until the threads have finished working.
+     *
+     * @throws GenericEtlException If one of the partitions could not be shutdown.
+     */
+    @Override
+    public void shutdown() throws GenericEtlException {
+        for (EtlExecutor partition : partitions) {
+            partition.shutdown();
+        }
+    }
+
+    /**
+     * Cancel every partition, discarding the tasks they have queued and interrupting the ones they are running.
+     */
+    @Override
+    public void cancel() {
+        partitions.forEach(ExecutorServiceEtlExecutor::cancel);
+    }
+
+    /**
+     * Drain the work-queue of every partition and destroy the thread resources used by this object, waiting no longer
+     * than the timeout in total for the threads to finish working.
+     *
+     * @param timeout How long to wait for the threads to finish.
+     * @param unit    The unit of the timeout.
+     * @return 'true' if every partition finished in time, and 'false' if any did not.
+     */
+    @Override
+    public boolean shutdownWithin(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean isTerminated = true;
+
+        for (ExecutorServiceEtlExecutor partition : partitions) {
+            long remainingNanos = Math.max(0, deadline - System.nanoTime());
+            isTerminated &= partition.shutdownWithin(remainingNanos, TimeUnit.NANOSECONDS);
+        }
+
+        return isTerminated;
+    }
+
+    /**
+     * Queries whether the executor has been shutdown.
+     *
+     * @return 'true' if the executor has been shutdown, and 'false' if it has not.
+     */
+    @Override
+    public boolean isShutdown() {
+        return partitions.stream().allMatch(EtlExecutor::isShutdown);
+    }
+
+    /**
+     * Submits a task that has no partition key. Tasks without a key are spread across the partitions in turn.
+     *
+     * @param task          a runnable wrapping the task to be performed in the future.
+     * @param parentMetrics A parent EtlMetrics object to attach the runnables to.
+     * @throws RejectedExecutionException If the task cannot be submitted to the Executor.
+     */
+    @Override
+    public void submit(Runnable task, EtlMetrics parentMetrics) throws RejectedExecutionException {
+        submitToPartition(Math.floorMod(nextUnkeyedPartition.getAndIncrement(), partitions.size()), task,
+                parentMetrics);
+    }
+
+    /**
+     * Submits a task to the partition that owns the given key. Blocks if that partition's queue is full.
+     *
+     * @param partitionKey  The key that determines which partition the task runs on. Null keys are treated like any
+     *                      other key and all run on the same partition.
+     * @param task          a runnable wrapping the task to be performed in the future.
+     * @param parentMetrics A parent EtlMetrics object to attach the runnables to.
+     * @throws RejectedExecutionException If the task cannot be submitted to the Executor.
+     */
+    @Override
+    public void submit(Object partitionKey, Runnable task, EtlMetrics parentMetrics) throws RejectedExecutionException {
+        submitToPartition(getPartitionIndex(partitionKey), task, parentMetrics);
+    }
+
+    int getPartitionIndex(Object partitionKey) {
+        if (partitionKey == null) {
+            return 0;
+        }
+
+        // Spread the high bits of the hash so keys that only differ there do not all land on the same partition
+        int hash = partitionKey.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), partitions.size());
+    }
+
+    private void submitToPartition(int partitionIndex, Runnable task, EtlMetrics parentMetrics) {
+        partitions.get(partitionIndex).submit(task, parentMetrics);
+        partitionTasksSinceLastReport.incrementAndGet(partitionIndex);
+
+        if (tasksSinceLastReport.incrementAndGet() >= TASKS_PER_REPORT) {
+            tasksSinceLastReport.set(0);
+            reportPartitionMetrics(parentMetrics);
+        }
+    }
+
+    /**
+     * Queries how many submitted tasks are waiting across every partition.
+     *
+     * @return The number of tasks waiting to be worked on.
+     */
+    @Override
+    public int getQueuedTaskCount() {
+        return partitions.stream().mapToInt(ExecutorServiceEtlExecutor::getQueuedTaskCount).sum();
+    }
+
+    /**
+     * Queries how many partitions are currently working on a task.
+     *
+     * @return The number of busy partition threads.
+     */
+    @Override
+    public int getActiveWorkerCount() {
+        return partitions.stream().mapToInt(ExecutorServiceEtlExecutor::getActiveWorkerCount).sum();
+    }
+
+    private void reportPartitionMetrics(EtlMetrics parentMetrics) {
+        long totalTasks = 0;
+        long maxTasks = 0;
+
+        for (int i = 0; i < partitions.size(); i++) {
+            long partitionTasks = partitionTasksSinceLastReport.getAndSet(i, 0);
+            totalTasks += partitionTasks;
+            maxTasks = Math.max(maxTasks, partitionTasks);
+        }
+
+        if (parentMetrics == null || totalTasks == 0) {
+            return;
+        }
+
+        for (int i = 0; i < partitions.size(); i++) {
+            parentMetrics.addCount(partitionQueueDepthMetricNames[i], partitions.get(i).getQueuedTaskCount());
+        }
+
+        parentMetrics.addCount(PARTITION_SKEW_METRIC_NAME, (double) maxTasks * partitions.size() / totalTasks);
+    }
+}
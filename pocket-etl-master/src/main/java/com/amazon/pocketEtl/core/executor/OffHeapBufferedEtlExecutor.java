@@ -0,0 +1,476 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
+import com.amazon.pocketEtl.exception.GenericEtlException;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjLongConsumer;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * A multi-threaded EtlExecutor that keeps the objects waiting for its workers outside the heap. Each object submitted
+ * with an action is serialized by the submitting thread into an OffHeapRecordBuffer, and is only deserialized by the
+ * worker that takes it, so a deep queue costs a few bytes of direct memory per object instead of a graph of
+ * long-lived heap objects for the garbage collector to trace. The queue is bounded by a memory budget in bytes rather
+ * than a number of objects, and submit will block once the budget is used up until the workers have made room. The
+ * budget is held in several arenas and room is made an arena at a time, so blocked submitters resume once the workers
+ * have read through the oldest arena rather than waiting for the whole buffer to be emptied.
+ *
+ * Plain tasks cannot be serialized, so a Runnable submitted to this executor is queued on the heap instead, and submit
+ * will block while there are already as many of them waiting as there are workers. Completion tracking for buffered
+ * objects is kept on the heap and reattached when they are deserialized. If an object cannot be serialized, or a
+ * buffered object cannot be deserialized, the stream fails with an UnrecoverableStreamFailureException. This object
+ * should not be constructed directly, instead use EtlExecutorFactory.
+ */
+@EqualsAndHashCode(exclude = {"recordBuffer", "serializedRecordCodec", "tasks", "workers", "lock", "notEmpty",
+        "notFull", "activeSubmitters", "activeWorkers", "isShutdown", "isCancelled", "readFailure"})
+class OffHeapBufferedEtlExecutor implements SpillableEtlExecutor {
+    private final static Logger logger = getLogger(OffHeapBufferedEtlExecutor.class);
+    private final static ThreadFactory workerThreadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("OffHeapBufferedEtlExecutor-%d")
+            .setDaemon(true)
+            .build();
+    // Room is made for submitters an arena at a time, so the default budget is split into several arenas
+    private final static int DEFAULT_ARENAS_PER_BUFFER = 8;
+    private final static int MIN_DEFAULT_ARENA_SIZE_BYTES = 4 * 1024;
+    private final static int MAX_DEFAULT_ARENA_SIZE_BYTES = 1024 * 1024;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final long bufferSizeBytes;
+
+    private final OffHeapRecordBuffer recordBuffer;
+    private final SerializedRecordCodec serializedRecordCodec = new SerializedRecordCodec();
+    private final Deque<QueuedTask> tasks = new ArrayDeque<>();
+    private final Thread[] workers;
+    // Guards the record buffer, the queued tasks, the record completions held by the codec and activeSubmitters
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    // Workers will not stop while there are submitters that could still queue work
+    private int activeSubmitters = 0;
+    private final AtomicInteger activeWorkers = new AtomicInteger(0);
+    private volatile boolean isShutdown = false;
+    private volatile boolean isCancelled = false;
+    private volatile Exception readFailure = null;
+
+    private static class QueuedTask {
+        private final Runnable task;
+        private final EtlMetrics parentMetrics;
+
+        QueuedTask(Runnable task, EtlMetrics parentMetrics) {
+            this.task = task;
+            this.parentMetrics = parentMetrics;
+        }
+    }
+
+    OffHeapBufferedEtlExecutor(int numberOfWorkers, long bufferSizeBytes) {
+        this(numberOfWorkers, bufferSizeBytes, getDefaultArenaSizeBytes(bufferSizeBytes));
+    }
+
+    OffHeapBufferedEtlExecutor(int numberOfWorkers, long bufferSizeBytes, int arenaSizeBytes) {
+        if (numberOfWorkers < 1) {
+            throw new IllegalArgumentException("numberOfWorkers must be at least 1");
+        }
+
+        this.bufferSizeBytes = bufferSizeBytes;
+        this.recordBuffer = new OffHeapRecordBuffer(bufferSizeBytes, arenaSizeBytes);
+        this.workers = new Thread[numberOfWorkers];
+
+        for (int i = 0; i < numberOfWorkers; i++) {
+            workers[i] = workerThreadFactory.newThread(this::work);
+            workers[i].start();
+        }
+    }
+
+    int getNumberOfWorkers() {
+        return workers.length;
+    }
+
+    /**
+     * Chooses the arena size for a memory budget so that the budget is split into several arenas, within a floor and a
+     * ceiling. Space for submitters is only reclaimed once a whole arena has been read, so a budget held in a single
+     * arena would make every submitter wait until the workers had emptied the buffer.
+     *
+     * @param bufferSizeBytes The memory budget, in bytes.
+     * @return The size of each arena, in bytes.
+     */
+    static int getDefaultArenaSizeBytes(long bufferSizeBytes) {
+        long arenaSizeBytes = Math.max(MIN_DEFAULT_ARENA_SIZE_BYTES,
+                Math.min(MAX_DEFAULT_ARENA_SIZE_BYTES, bufferSizeBytes / DEFAULT_ARENAS_PER_BUFFER));
+        return (int) Math.min(bufferSizeBytes, arenaSizeBytes);
+    }
+
+    /**
+     * Stop accepting new work, wait for the workers to drain the buffer, then stop the worker threads and release the
+     * buffer's memory. This request will block until the threads have finished working.
+     *
+     * @throws GenericEtlException If buffered objects could not be deserialized, or if the threads could not be stopped
+     *                             after this thread was interrupted whilst waiting for them.
+     */
+    @Override
+    public void shutdown() throws GenericEtlException {
+        lock.lock();
+
+        try {
+            isShutdown = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+
+            throw new GenericEtlException("Interrupted waiting for shutdown of executor", e);
+        }
+
+        lock.lock();
+
+        try {
+            recordBuffer.release();
+        } finally {
+            lock.unlock();
+        }
+
+        if (readFailure != null) {
+            throw new GenericEtlException("Buffered objects could not be deserialized and were lost", readFailure);
+        }
+    }
+
+    /**
+     * Stop accepting new work, discard every buffered object and queued task, release the buffer's memory and
+     * interrupt the workers. Submitters waiting for room are rejected. This request does not wait for the workers to
+     * stop.
+     */
+    @Override
+    public void cancel() {
+        lock.lock();
+
+        try {
+            isShutdown = true;
+            isCancelled = true;
+            tasks.clear();
+            recordBuffer.release();
+            serializedRecordCodec.clearRecordCompletions();
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Stop accepting new work and wait for the workers to drain the buffer, as shutdown() does, but no longer than
+     * the timeout. The buffer's memory is released whether or not the workers stopped in time.
+     *
+     * @param timeout How long to wait for the workers to stop.
+     * @param unit    The unit of the timeout.
+     * @return 'true' if every worker stopped in time, and 'false' if any did not or this thread was interrupted.
+     * @throws GenericEtlException If buffered objects could not be deserialized.
+     */
+    @Override
+    public boolean shutdownWithin(long timeout, TimeUnit unit) throws GenericEtlException {
+        lock.lock();
+
+        try {
+            isShutdown = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean isTerminated = true;
+
+        try {
+            for (Thread worker : workers) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+
+                if (remainingMillis > 0) {
+                    worker.join(remainingMillis);
+                }
+
+                isTerminated &= !worker.isAlive();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            isTerminated = false;
+        }
+
+        lock.lock();
+
+        try {
+            recordBuffer.release();
+        } finally {
+            lock.unlock();
+        }
+
+        if (readFailure != null) {
+            throw new GenericEtlException("Buffered objects could not be deserialized and were lost", readFailure);
+        }
+
+        return isTerminated;
+    }
+
+    /**
+     * Queries whether the executor has been shutdown.
+     *
+     * @return 'true' if the executor has been shutdown, and 'false' if it has not.
+     */
+    @Override
+    public boolean isShutdown() {
+        return isShutdown;
+    }
+
+    /**
+     * Places a task on the heap to be run by one of the worker threads. If as many tasks as there are workers are
+     * already waiting, this call will block until there is room for the task.
+     *
+     * @param task          a runnable wrapping the task to be performed in the future.
+     * @param parentMetrics A parent EtlMetrics object to attach the runnables to.
+     * @throws RejectedExecutionException If the executor has been shutdown or the thread was interrupted whilst
+     *                                    waiting for room.
+     */
+    @Override
+    public void submit(Runnable task, EtlMetrics parentMetrics) throws RejectedExecutionException {
+        lock.lock();
+
+        try {
+            checkCanSubmit();
+            activeSubmitters++;
+
+            try {
+                while (!isCancelled && tasks.size() >= workers.length) {
+                    notFull.await();
+                }
+
+                checkNotCancelled();
+                tasks.addLast(new QueuedTask(task, parentMetrics));
+                notEmpty.signal();
+            } finally {
+                endSubmit();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Thread was interrupted trying to queue new work");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Serializes an object into the off-heap buffer to have an action performed on it by one of the worker threads.
+     * If the buffer does not have room for the object within its memory budget, this call will block until it does.
+     *
+     * @param objectToProcess The object to perform the action on.
+     * @param action          The action to perform.
+     * @param parentMetrics   A parent EtlMetrics object to attach the action to.
+     * @throws RejectedExecutionException          If the executor has been shutdown, the object is too big to ever fit
+     *                                             in the buffer or the thread was interrupted whilst waiting for room.
+     * @throws UnrecoverableStreamFailureException If the object could not be serialized, or objects submitted earlier
+     *                                             could not be deserialized.
+     */
+    @Override
+    public void submit(EtlStreamObject objectToProcess, ObjLongConsumer<EtlStreamObject> action,
+                       EtlMetrics parentMetrics) throws RejectedExecutionException {
+        long submitTimeNanos = System.nanoTime();
+        byte[] record;
+
+        // Serialize before taking the lock so that submitters do not have to wait on each other's serialization
+        try {
+            record = serializedRecordCodec.encode(objectToProcess, action, submitTimeNanos, parentMetrics);
+        } catch (IOException e) {
+            throw new UnrecoverableStreamFailureException("Could not serialize object into off-heap buffer", e);
+        }
+
+        if (Integer.BYTES + (long) record.length > recordBuffer.getCapacityBytes()) {
+            throw new RejectedExecutionException("Object of " + record.length + " bytes will never fit in a buffer of "
+                    + recordBuffer.getCapacityBytes() + " bytes");
+        }
+
+        lock.lock();
+
+        try {
+            checkCanSubmit();
+            activeSubmitters++;
+
+            try {
+                while (!isCancelled && !recordBuffer.offer(record)) {
+                    notFull.await();
+                }
+
+                checkNotCancelled();
+                serializedRecordCodec.addRecordCompletion(objectToProcess);
+                notEmpty.signal();
+            } finally {
+                endSubmit();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Thread was interrupted trying to queue new work");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queries how many objects and tasks are waiting for a worker.
+     *
+     * @return The number of tasks waiting to be worked on.
+     */
+    @Override
+    public int getQueuedTaskCount() {
+        lock.lock();
+
+        try {
+            return (int) Math.min(Integer.MAX_VALUE, recordBuffer.getSize() + tasks.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queries how many worker threads are currently working on a task.
+     *
+     * @return The number of busy workers.
+     */
+    @Override
+    public int getActiveWorkerCount() {
+        return activeWorkers.get();
+    }
+
+    /**
+     * Queries how much of the memory budget is in use by objects waiting for a worker.
+     *
+     * @return The number of bytes in use.
+     */
+    long getBufferedBytes() {
+        lock.lock();
+
+        try {
+            return recordBuffer.getUsedBytes();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkCanSubmit() {
+        if (isShutdown) {
+            throw new RejectedExecutionException("Executor has been shutdown and cannot accept more work");
+        }
+
+        if (readFailure != null) {
+            throw new UnrecoverableStreamFailureException("Buffered objects could not be deserialized", readFailure);
+        }
+    }
+
+    private void checkNotCancelled() {
+        if (isCancelled) {
+            throw new RejectedExecutionException("Executor has been cancelled and cannot accept more work");
+        }
+    }
+
+    // Must be called whilst holding the lock
+    private void endSubmit() {
+        if (--activeSubmitters == 0 && isShutdown) {
+            notEmpty.signalAll();
+        }
+    }
+
+    private void work() {
+        while (!isCancelled) {
+            Runnable nextTask;
+            EtlMetrics parentMetrics;
+
+            lock.lock();
+
+            try {
+                while (tasks.isEmpty() && recordBuffer.getSize() == 0) {
+                    if (isCancelled || (isShutdown && activeSubmitters == 0)) {
+                        return;
+                    }
+
+                    notEmpty.await();
+                }
+
+                if (!tasks.isEmpty()) {
+                    QueuedTask queuedTask = tasks.removeFirst();
+                    nextTask = queuedTask.task;
+                    parentMetrics = queuedTask.parentMetrics;
+                } else {
+                    SerializedRecord serializedRecord = serializedRecordCodec.decode(recordBuffer.poll());
+                    nextTask = () -> performBufferedAction(serializedRecord);
+                    parentMetrics = serializedRecord.getParentMetrics();
+                }
+
+                activeWorkers.incrementAndGet();
+                notFull.signalAll();
+            } catch (InterruptedException ignored) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics,
+                    "OffHeapBufferedEtlExecutor.submit")) {
+                nextTask.run();
+            } catch (RuntimeException ignored) {
+            } finally {
+                activeWorkers.decrementAndGet();
+            }
+        }
+    }
+
+    private void performBufferedAction(SerializedRecord serializedRecord) {
+        try {
+            serializedRecord.performAction();
+        } catch (IOException e) {
+            logger.error("A buffered object could not be deserialized and will be lost: ", e);
+            readFailure = e;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A first-in-first-out queue of opaque records held outside the heap in a chain of direct ByteBuffer arenas. Records
+ * are written to the end of the newest arena and may run over into the next, and are read from the oldest arena,
+ * which is recycled for writers as soon as it has been read to the end. Arenas are allocated as they are first needed, up to a
+ * fixed memory budget, and are then reused for as long as the queue lives rather than being returned to the JVM, so
+ * that direct memory is not repeatedly allocated and freed.
+ *
+ * This class is not threadsafe; callers must synchronize access to it.
+ */
+class OffHeapRecordBuffer {
+    private final Deque<ByteBuffer> arenas = new ArrayDeque<>();
+    private final Deque<ByteBuffer> freeArenas = new ArrayDeque<>();
+    private final byte[] lengthBytes = new byte[Integer.BYTES];
+    private final int maxArenas;
+    private int allocatedArenas = 0;
+    // A view of the oldest arena, positioned at the next byte to be read
+    private ByteBuffer readView = null;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final int arenaSizeBytes;
+
+    @Getter(AccessLevel.PACKAGE)
+    private long size = 0;
+
+    @Getter(AccessLevel.PACKAGE)
+    private long usedBytes = 0;
+
+    /**
+     * Standard constructor.
+     * @param maxBytes The memory budget. It is rounded up to a whole number of arenas.
+     * @param arenaSizeBytes The size of each arena.
+     */
+    OffHeapRecordBuffer(long maxBytes, int arenaSizeBytes) {
+        if (arenaSizeBytes < 1) {
+            throw new IllegalArgumentException("arenaSizeBytes must be at least 1");
+        }
+
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be at least 1");
+        }
+
+        long arenasNeeded = (maxBytes + arenaSizeBytes - 1) / arenaSizeBytes;
+
+        if (arenasNeeded > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("maxBytes needs too many arenas of the requested size");
+        }
+
+        this.arenaSizeBytes = arenaSizeBytes;
+        this.maxArenas = (int) arenasNeeded;
+    }
+
+    /**
+     * Queries the memory budget of this buffer.
+     * @return The most bytes that can be held at once, including four bytes of framing per record.
+     */
+    long getCapacityBytes() {
+        return (long) maxArenas * arenaSizeBytes;
+    }
+
+    /**
+     * Adds a record to the end of the buffer if there is room for it within the memory budget.
+     * @param record The record to add.
+     * @return 'true' if the record was added, and 'false' if there was not enough room for it.
+     */
+    boolean offer(byte[] record) {
+        long bytesNeeded = (long) Integer.BYTES + record.length;
+
+        if (bytesNeeded > getWritableBytes()) {
+            return false;
+        }
+
+        lengthBytes[0] = (byte) (record.length >>> 24);
+        lengthBytes[1] = (byte) (record.length >>> 16);
+        lengthBytes[2] = (byte) (record.length >>> 8);
+        lengthBytes[3] = (byte) record.length;
+
+        write(lengthBytes);
+        write(record);
+        usedBytes += bytesNeeded;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the record at the head of the buffer, copying it onto the heap.
+     * @return The record that was removed, or null if the buffer is empty.
+     */
+    byte[] poll() {
+        if (size == 0) {
+            return null;
+        }
+
+        read(lengthBytes);
+        byte[] record = new byte[((lengthBytes[0] & 0xFF) << 24) | ((lengthBytes[1] & 0xFF) << 16) |
+                ((lengthBytes[2] & 0xFF) << 8) | (lengthBytes[3] & 0xFF)];
+        read(record);
+
+        usedBytes -= Integer.BYTES + record.length;
+        size--;
+
+        if (size == 0) {
+            // Start again from the beginning of the one arena still in use rather than writing on past what was read
+            ByteBuffer arena = arenas.getFirst();
+            arena.clear();
+            readView = arena.duplicate();
+        } else if (readView.position() == arenas.getFirst().capacity()) {
+            // The next record starts in the next arena, so make room for writers without waiting for it to be read
+            recycleOldestArena();
+        }
+
+        return record;
+    }
+
+    /**
+     * Discards every record and lets go of the arenas so that their memory can be reclaimed.
+     */
+    void release() {
+        arenas.clear();
+        freeArenas.clear();
+        readView = null;
+        allocatedArenas = 0;
+        size = 0;
+        usedBytes = 0;
+    }
+
+    private long getWritableBytes() {
+        ByteBuffer newestArena = arenas.peekLast();
+        long writableBytes = newestArena == null ? 0 : newestArena.remaining();
+        return writableBytes + (long) (freeArenas.size() + maxArenas - allocatedArenas) * arenaSizeBytes;
+    }
+
+    private void write(byte[] source) {
+        int offset = 0;
+
+        while (offset < source.length) {
+            ByteBuffer arena = arenas.peekLast();
+
+            if (arena == null || !arena.hasRemaining()) {
+                arena = nextArena();
+            }
+
+            int length = Math.min(arena.remaining(), source.length - offset);
+            arena.put(source, offset, length);
+            offset += length;
+        }
+    }
+
+    private void read(byte[] destination) {
+        int offset = 0;
+
+        while (offset < destination.length) {
+            ByteBuffer arena = arenas.getFirst();
+
+            if (readView.position() == arena.capacity()) {
+                // The oldest arena has been read to the end and the record continues in the next one
+                recycleOldestArena();
+                arena = arenas.getFirst();
+            }
+
+            readView.limit(arena.position());
+            int length = Math.min(readView.remaining(), destination.length - offset);
+            readView.get(destination, offset, length);
+            offset += length;
+        }
+    }
+
+    private void recycleOldestArena() {
+        ByteBuffer arena = arenas.removeFirst();
+        arena.clear();
+        freeArenas.addLast(arena);
+        readView = arenas.getFirst().duplicate();
+        readView.position(0);
+    }
+
+    private ByteBuffer nextArena() {
+        ByteBuffer arena = freeArenas.pollFirst();
+
+        if (arena == null) {
+            arena = ByteBuffer.allocateDirect(arenaSizeBytes);
+            allocatedArenas++;
+        }
+
+        if (arenas.isEmpty()) {
+            readView = arena.duplicate();
+        }
+
+        arenas.addLast(arena);
+        return arena;
+    }
+}
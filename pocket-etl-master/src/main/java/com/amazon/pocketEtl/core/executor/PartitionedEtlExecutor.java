@@ -0,0 +1,38 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import com.amazon.pocketEtl.EtlMetrics;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * An EtlExecutor that divides its work between a number of partitions, each of which runs its tasks one at a time
+ * in the order they were submitted. Tasks submitted with equal partition keys always run on the same partition, so
+ * work for any one key is never done in parallel, while work for different keys can be.
+ */
+public interface PartitionedEtlExecutor extends EtlExecutor {
+    /**
+     * Schedules a task to be worked on by the partition that owns the given key. Depending on the implementation this
+     * may block until the partition has room for more work.
+     *
+     * @param partitionKey  The key that determines which partition the task runs on. May be null.
+     * @param task          a runnable wrapping the task to be performed in the future.
+     * @param parentMetrics A parent EtlMetrics object to attach the runnables to.
+     * @throws RejectedExecutionException If the task cannot be submitted to the Executor.
+     */
+    void submit(Object partitionKey, Runnable task, EtlMetrics parentMetrics) throws RejectedExecutionException;
+}
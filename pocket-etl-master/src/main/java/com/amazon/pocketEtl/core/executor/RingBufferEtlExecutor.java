@@ -0,0 +1,343 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
+import com.amazon.pocketEtl.exception.GenericEtlException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * A multi-threaded EtlExecutor that hands tasks to its worker threads through a preallocated ring buffer instead of a
+ * lock-based queue. Submitters and workers claim slots in the buffer by advancing a sequence counter with a
+ * compare-and-set, and each slot carries its own sequence number that tells both sides whether it is ready to be
+ * written to or read from, so neither side ever takes a lock. Slots are reused, so passing a task to a worker does not
+ * allocate anything.
+ *
+ * Once the buffer is full, submit will block until a worker has taken a task from it. How threads wait, both for room
+ * in the buffer and for new tasks to arrive, is controlled by a RingBufferWaitStrategy.
+ *
+ * Nothing replaces a worker thread that dies, so a worker that runs a task that throws anything, including an Error,
+ * logs it and carries on with the next task. This object should not be constructed directly, instead use
+ * EtlExecutorFactory.
+ */
+@EqualsAndHashCode(exclude = {"slots", "workers", "head", "tail", "activeSubmitters", "activeWorkers", "isShutdown",
+        "isForcedShutdown"})
+class RingBufferEtlExecutor implements EtlExecutor {
+    private final static Logger logger = getLogger(RingBufferEtlExecutor.class);
+    private final static ThreadFactory workerThreadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("RingBufferEtlExecutor-%d")
+            .setDaemon(true)
+            .build();
+
+    @Getter(AccessLevel.PACKAGE)
+    private final int bufferSize;
+    @Getter(AccessLevel.PACKAGE)
+    private final RingBufferWaitStrategy waitStrategy;
+
+    private final Slot[] slots;
+    private final int mask;
+    private final Thread[] workers;
+    // Sequence of the next slot to be read by a worker
+    private final AtomicLong head = new AtomicLong(0);
+    // Sequence of the next slot to be written by a submitter
+    private final AtomicLong tail = new AtomicLong(0);
+    private final AtomicInteger activeSubmitters = new AtomicInteger(0);
+    private final AtomicInteger activeWorkers = new AtomicInteger(0);
+    private final AtomicBoolean isShutdown = new AtomicBoolean(false);
+    private final AtomicBoolean isForcedShutdown = new AtomicBoolean(false);
+
+    /**
+     * A reusable entry in the ring buffer. A slot with a sequence equal to a position is free to be written to for that
+     * position, and a slot with a sequence one greater than a position holds a task ready to be read for that position.
+     * The task and metrics fields are only ever accessed by the thread that claimed the slot, and are published to the
+     * other side by the volatile write to sequence.
+     */
+    private static class Slot {
+        private volatile long sequence;
+        private Runnable task;
+        private EtlMetrics parentMetrics;
+
+        Slot(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    RingBufferEtlExecutor(int numberOfWorkers, int requestedBufferSize, RingBufferWaitStrategy waitStrategy) {
+        if (numberOfWorkers < 1) {
+            throw new IllegalArgumentException("numberOfWorkers must be at least 1");
+        }
+
+        if (requestedBufferSize < 1 || requestedBufferSize > 1 << 30) {
+            throw new IllegalArgumentException("bufferSize must be between 1 and 2^30");
+        }
+
+        // Round up to a power of two so positions can be mapped to slots with a mask
+        this.bufferSize = Integer.highestOneBit(requestedBufferSize) == requestedBufferSize ?
+                requestedBufferSize : Integer.highestOneBit(requestedBufferSize) << 1;
+        this.mask = bufferSize - 1;
+        this.waitStrategy = waitStrategy;
+        this.slots = new Slot[bufferSize];
+
+        for (int i = 0; i < bufferSize; i++) {
+            slots[i] = new Slot(i);
+        }
+
+        this.workers = new Thread[numberOfWorkers];
+
+        for (int i = 0; i < numberOfWorkers; i++) {
+            workers[i] = workerThreadFactory.newThread(this::work);
+            workers[i].start();
+        }
+    }
+
+    int getNumberOfWorkers() {
+        return workers.length;
+    }
+
+    /**
+     * Stop accepting new tasks, wait for the workers to drain the buffer and then stop the worker threads. This request
+     * will block until the threads have finished working.
+     *
+     * @throws GenericEtlException If the worker threads could not be stopped after this thread was interrupted whilst
+     *                             waiting for them.
+     */
+    @Override
+    public void shutdown() throws GenericEtlException {
+        isShutdown.set(true);
+
+        if (!joinWorkers()) {
+            isForcedShutdown.set(true);
+
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+
+            if (!joinWorkers()) {
+                throw new GenericEtlException("Timed out waiting for forced shutdown of executor");
+            }
+        }
+    }
+
+    /**
+     * Stop accepting new tasks, abandon the tasks still in the buffer and interrupt the workers. This request does not
+     * wait for the workers to stop.
+     */
+    @Override
+    public void cancel() {
+        isShutdown.set(true);
+        isForcedShutdown.set(true);
+
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Stop accepting new tasks and wait for the workers to drain the buffer and stop, but no longer than the timeout.
+     *
+     * @param timeout How long to wait for the workers to stop.
+     * @param unit    The unit of the timeout.
+     * @return 'true' if every worker stopped in time, and 'false' if any did not or this thread was interrupted.
+     */
+    @Override
+    public boolean shutdownWithin(long timeout, TimeUnit unit) {
+        isShutdown.set(true);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        try {
+            for (Thread worker : workers) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+
+                if (remainingMillis > 0) {
+                    worker.join(remainingMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (Thread worker : workers) {
+            if (worker.isAlive()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Queries whether the executor has been shutdown.
+     *
+     * @return 'true' if the executor has been shutdown, and 'false' if it has not.
+     */
+    @Override
+    public boolean isShutdown() {
+        return isShutdown.get();
+    }
+
+    /**
+     * Places a task in the ring buffer to be run by one of the worker threads. If the buffer is full, this call will
+     * block until there is room for the task.
+     *
+     * @param task          a runnable wrapping the task to be performed in the future.
+     * @param parentMetrics A parent EtlMetrics object to attach the runnables to.
+     * @throws RejectedExecutionException If the executor has been shutdown or the thread was interrupted whilst
+     *                                    waiting for room in the buffer.
+     */
+    @Override
+    public void submit(Runnable task, EtlMetrics parentMetrics) throws RejectedExecutionException {
+        // Workers will not stop while there are submitters that could still publish a task
+        activeSubmitters.incrementAndGet();
+
+        try {
+            while (true) {
+                if (isShutdown.get()) {
+                    throw new RejectedExecutionException("Executor has been shutdown and cannot accept more work");
+                }
+
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new RejectedExecutionException("Thread was interrupted trying to queue new work");
+                }
+
+                if (tryPublish(task, parentMetrics)) {
+                    return;
+                }
+
+                waitStrategy.idle();
+            }
+        } finally {
+            activeSubmitters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Queries how many published tasks are waiting in the ring buffer for a worker.
+     *
+     * @return The number of tasks waiting to be worked on.
+     */
+    @Override
+    public int getQueuedTaskCount() {
+        // Read head first so that a concurrent read can never make the count negative
+        long headPosition = head.get();
+        return (int) Math.max(0, tail.get() - headPosition);
+    }
+
+    /**
+     * Queries how many worker threads are currently working on a task.
+     *
+     * @return The number of busy workers.
+     */
+    @Override
+    public int getActiveWorkerCount() {
+        return activeWorkers.get();
+    }
+
+    private boolean tryPublish(Runnable task, EtlMetrics parentMetrics) {
+        while (true) {
+            long position = tail.get();
+            Slot slot = slots[(int) position & mask];
+            long difference = slot.sequence - position;
+
+            if (difference < 0) {
+                // The slot still holds a task from the previous lap around the buffer
+                return false;
+            }
+
+            if (difference == 0 && tail.compareAndSet(position, position + 1)) {
+                slot.task = task;
+                slot.parentMetrics = parentMetrics;
+                slot.sequence = position + 1;
+                return true;
+            }
+        }
+    }
+
+    private boolean runNextTask() {
+        while (true) {
+            long position = head.get();
+            Slot slot = slots[(int) position & mask];
+            long difference = slot.sequence - (position + 1);
+
+            if (difference < 0) {
+                // The slot has not been published to yet
+                return false;
+            }
+
+            if (difference == 0 && head.compareAndSet(position, position + 1)) {
+                Runnable task = slot.task;
+                EtlMetrics parentMetrics = slot.parentMetrics;
+                slot.task = null;
+                slot.parentMetrics = null;
+                slot.sequence = position + bufferSize;
+
+                activeWorkers.incrementAndGet();
+
+                try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, "RingBufferEtlExecutor.submit")) {
+                    task.run();
+                } catch (Throwable e) {
+                    logger.error("Task threw an exception in RingBufferEtlExecutor worker: ", e);
+                } finally {
+                    activeWorkers.decrementAndGet();
+                }
+
+                return true;
+            }
+        }
+    }
+
+    private void work() {
+        while (!isForcedShutdown.get()) {
+            if (!runNextTask()) {
+                if (isShutdown.get() && activeSubmitters.get() == 0 && head.get() == tail.get()) {
+                    return;
+                }
+
+                waitStrategy.idle();
+            }
+        }
+    }
+
+    private boolean joinWorkers() {
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException ignored) {
+        }
+
+        for (Thread worker : workers) {
+            if (worker.isAlive()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Strategies for how threads using a ring buffer EtlExecutor should wait when there is nothing they can do: workers
+ * waiting for the buffer to receive a task, and submitters waiting for the buffer to have room for a task. The
+ * strategies trade CPU usage for latency.
+ */
+public enum RingBufferWaitStrategy {
+    /**
+     * Spin continuously without giving up the CPU. Lowest latency, but each waiting thread will consume an entire CPU
+     * core, so only use this when there are more cores available than worker threads.
+     */
+    BUSY_SPIN {
+        @Override
+        void idle() {
+            // no-op
+        }
+    },
+
+    /**
+     * Yield the CPU to other threads between attempts. Low latency while leaving cores available to other threads,
+     * but waiting threads will still show as busy.
+     */
+    YIELD {
+        @Override
+        void idle() {
+            Thread.yield();
+        }
+    },
+
+    /**
+     * Park the thread briefly between attempts. Waiting threads use very little CPU at the cost of tens of
+     * microseconds of added latency when work arrives.
+     */
+    PARK {
+        @Override
+        void idle() {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    };
+
+    private final static long PARK_NANOS = 50_000;
+
+    abstract void idle();
+}
@@ -0,0 +1,151 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.exception.GenericEtlException;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An EtlExecutor implementation that bounds the number of tasks in flight with a semaphore rather than with a number of
+ * threads. It is intended to wrap an executor that starts a new thread for every task, such as one backed by virtual
+ * threads, where threads are cheap but the resources the tasks use are not. Once the maximum number of tasks are in
+ * flight, submit will block until one of them completes. This object should not be constructed directly, instead use
+ * EtlExecutorFactory.
+ */
+@EqualsAndHashCode(exclude = {"wrappedEtlExecutor", "permits"})
+class SemaphoreBoundedEtlExecutor implements EtlExecutor {
+    @Getter(AccessLevel.PACKAGE)
+    private final EtlExecutor wrappedEtlExecutor;
+    @Getter(AccessLevel.PACKAGE)
+    private final int maxConcurrency;
+    private final Semaphore permits;
+
+    SemaphoreBoundedEtlExecutor(EtlExecutor wrappedEtlExecutor, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+
+        this.wrappedEtlExecutor = wrappedEtlExecutor;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    /**
+     * Wait for all the tasks in flight to complete and then destroy the resources used by the wrapped executor. This
+     * request will block until the tasks have finished.
+     *
+     * @throws GenericEtlException If the wrapped executor could not be shutdown.
+     */
+    @Override
+    public void shutdown() throws GenericEtlException {
+        wrappedEtlExecutor.shutdown();
+    }
+
+    /**
+     * Cancel the wrapped executor, discarding the tasks it has queued and interrupting the ones it is running.
+     */
+    @Override
+    public void cancel() {
+        wrappedEtlExecutor.cancel();
+    }
+
+    /**
+     * Destroy the resources used by the wrapped executor, waiting no longer than the timeout for the tasks in flight
+     * to complete.
+     *
+     * @param timeout How long to wait for the tasks in flight.
+     * @param unit    The unit of the timeout.
+     * @return 'true' if the tasks completed in time, and 'false' if they did not.
+     * @throws GenericEtlException If the wrapped executor could not be shutdown.
+     */
+    @Override
+    public boolean shutdownWithin(long timeout, TimeUnit unit) throws GenericEtlException {
+        return wrappedEtlExecutor.shutdownWithin(timeout, unit);
+    }
+
+    /**
+     * Queries whether the executor has been shutdown.
+     *
+     * @return 'true' if the executor has been shutdown, and 'false' if it has not.
+     */
+    @Override
+    public boolean isShutdown() {
+        return wrappedEtlExecutor.isShutdown();
+    }
+
+    /**
+     * Submits a task to the wrapped executor. If the maximum number of tasks are already in flight, this call will
+     * block until one of them has completed.
+     *
+     * @param task          a runnable wrapping the task to be performed in the future.
+     * @param parentMetrics A parent EtlMetrics object to attach the runnables to.
+     * @throws RejectedExecutionException If the executor has been shutdown or the thread was interrupted whilst
+     *                                    waiting for a task to complete.
+     */
+    @Override
+    public void submit(Runnable task, EtlMetrics parentMetrics) throws RejectedExecutionException {
+        if (wrappedEtlExecutor.isShutdown()) {
+            throw new RejectedExecutionException("Executor has been shutdown and cannot accept more work");
+        }
+
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Thread was interrupted trying to queue new work");
+        }
+
+        try {
+            wrappedEtlExecutor.submit(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            }, parentMetrics);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Queries how many submitted tasks are waiting for a worker of the wrapped executor.
+     *
+     * @return The number of tasks waiting to be worked on.
+     */
+    @Override
+    public int getQueuedTaskCount() {
+        return wrappedEtlExecutor.getQueuedTaskCount();
+    }
+
+    /**
+     * Queries how many workers of the wrapped executor are currently working on a task.
+     *
+     * @return The number of busy workers.
+     */
+    @Override
+    public int getActiveWorkerCount() {
+        return wrappedEtlExecutor.getActiveWorkerCount();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.RecordCompletion;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * An object submitted to a SpillableEtlExecutor that has been held in serialized form, as decoded by
+ * SerializedRecordCodec. The object is only deserialized when readObject() is called.
+ */
+class SerializedRecord {
+    private final byte[] data;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final ObjLongConsumer<EtlStreamObject> action;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final EtlMetrics parentMetrics;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final long submitTimeNanos;
+
+    private final RecordCompletion recordCompletion;
+
+    SerializedRecord(byte[] data, ObjLongConsumer<EtlStreamObject> action, EtlMetrics parentMetrics,
+                     long submitTimeNanos, RecordCompletion recordCompletion) {
+        this.data = data;
+        this.action = action;
+        this.parentMetrics = parentMetrics;
+        this.submitTimeNanos = submitTimeNanos;
+        this.recordCompletion = recordCompletion;
+    }
+
+    /**
+     * Deserializes the object that was submitted, with its completion tracking reattached.
+     * @return A copy of the object that was submitted.
+     * @throws IOException If the object could not be deserialized.
+     */
+    EtlStreamObject readObject() throws IOException {
+        EtlStreamObject etlStreamObject = EtlStreamObject.readFrom(new DataInputStream(new ByteArrayInputStream(data,
+                SerializedRecordCodec.HEADER_SIZE, data.length - SerializedRecordCodec.HEADER_SIZE)));
+
+        return recordCompletion == null ? etlStreamObject : etlStreamObject.withRecordCompletion(recordCompletion);
+    }
+
+    /**
+     * Deserializes the object that was submitted and performs the action on it.
+     * @throws IOException If the object could not be deserialized. Anything thrown by the action itself is left to
+     * propagate as it is.
+     */
+    void performAction() throws IOException {
+        action.accept(readObject(), submitTimeNanos);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.RecordCompletion;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Turns objects submitted to a SpillableEtlExecutor, along with the action to perform on them, into bytes that can be
+ * held outside the heap, and turns those bytes back into SerializedRecords. The action and parent metrics cannot be
+ * serialized, so each is written as its position in a list of the instances seen so far; callers are expected to pass
+ * the same few instances every time.
+ *
+ * Completion tracking stays on the heap. encode() is threadsafe, but the completion of an encoded object must be
+ * handed to addRecordCompletion() in the same order the encoded records are stored, and records must be decoded in that
+ * order too, so callers must synchronize those calls with however they store the records.
+ */
+class SerializedRecordCodec {
+    private final static int NO_PARENT_METRICS = -1;
+    private final static int INITIAL_BUFFER_SIZE = 256;
+
+    // Action index, parent metrics index, submit time and whether the record is tracking its completion
+    static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES + 1;
+
+    private final List<ObjLongConsumer<EtlStreamObject>> actions = new CopyOnWriteArrayList<>();
+    private final List<EtlMetrics> parentMetricsList = new CopyOnWriteArrayList<>();
+    private final Deque<RecordCompletion> recordCompletions = new ArrayDeque<>();
+
+    /**
+     * Serializes an object and the details needed to perform an action on it.
+     * @param objectToProcess The object to perform the action on.
+     * @param action The action to perform.
+     * @param submitTimeNanos The value of System.nanoTime() when the object was submitted.
+     * @param parentMetrics A parent EtlMetrics object to attach the action to, or null.
+     * @return The encoded record.
+     * @throws IOException If the object could not be serialized.
+     */
+    byte[] encode(EtlStreamObject objectToProcess, ObjLongConsumer<EtlStreamObject> action, long submitTimeNanos,
+                  EtlMetrics parentMetrics) throws IOException {
+        ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        DataOutputStream recordOutput = new DataOutputStream(recordBuffer);
+
+        recordOutput.writeInt(indexOf(actions, action));
+        recordOutput.writeInt(parentMetrics == null ? NO_PARENT_METRICS : indexOf(parentMetricsList, parentMetrics));
+        recordOutput.writeLong(submitTimeNanos);
+        recordOutput.writeBoolean(objectToProcess.getRecordCompletion() != null);
+        objectToProcess.writeTo(recordOutput);
+
+        return recordBuffer.toByteArray();
+    }
+
+    /**
+     * Holds on to the completion tracker of an object that has just been encoded and stored, if it has one, so that it
+     * can be reattached when the record is decoded.
+     * @param objectToProcess The object that was encoded.
+     */
+    void addRecordCompletion(EtlStreamObject objectToProcess) {
+        RecordCompletion recordCompletion = objectToProcess.getRecordCompletion();
+
+        if (recordCompletion != null) {
+            recordCompletions.addLast(recordCompletion);
+        }
+    }
+
+    /**
+     * Decodes the header of a record. The object itself is not deserialized until the SerializedRecord is asked for
+     * it, so that the cost can be paid by whichever thread performs the action.
+     * @param data An encoded record.
+     * @return The decoded record.
+     */
+    SerializedRecord decode(byte[] data) {
+        ByteBuffer header = ByteBuffer.wrap(data, 0, HEADER_SIZE);
+        ObjLongConsumer<EtlStreamObject> action = actions.get(header.getInt());
+        int parentMetricsIndex = header.getInt();
+        EtlMetrics parentMetrics = parentMetricsIndex == NO_PARENT_METRICS ? null :
+                parentMetricsList.get(parentMetricsIndex);
+        long submitTimeNanos = header.getLong();
+        RecordCompletion recordCompletion = header.get() != 0 ? recordCompletions.removeFirst() : null;
+
+        return new SerializedRecord(data, action, parentMetrics, submitTimeNanos, recordCompletion);
+    }
+
+    /**
+     * Forgets every completion tracker being held, for when the records they belong to have been discarded.
+     */
+    void clearRecordCompletions() {
+        recordCompletions.clear();
+    }
+
+    private static <T> int indexOf(List<T> list, T item) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == item) {
+                return i;
+            }
+        }
+
+        synchronized (list) {
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i) == item) {
+                    return i;
+                }
+            }
+
+            list.add(item);
+            return list.size() - 1;
+        }
+    }
+}
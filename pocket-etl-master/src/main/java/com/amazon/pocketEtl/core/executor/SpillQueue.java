@@ -0,0 +1,188 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A first-in-first-out queue of opaque records that lives in a series of segment files on local disk. Records are
+ * appended to the newest segment until it grows past a size limit, at which point a new segment is started, and are
+ * read back from the oldest segment, which is deleted as soon as it has been read to the end. Segments are kept in a
+ * directory of their own that is created on the first append and deleted when the queue is closed.
+ *
+ * This class is not threadsafe; callers must synchronize access to it.
+ */
+class SpillQueue implements Closeable {
+    private final static String DIRECTORY_PREFIX = "pocket-etl-spill-";
+    private final static String SEGMENT_FILE_FORMAT = "segment-%d.spill";
+
+    private final Path parentDirectory;
+    private final long maxSegmentBytes;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private Path directory = null;
+    private DataOutputStream writer = null;
+    private DataInputStream reader = null;
+    private long nextSegmentNumber = 0;
+
+    @Getter(AccessLevel.PACKAGE)
+    private long size = 0;
+
+    private static class Segment {
+        private final Path path;
+        private long bytesWritten = 0;
+        private long recordsWritten = 0;
+        private long recordsRead = 0;
+
+        Segment(Path path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * Standard constructor.
+     * @param parentDirectory The directory to create the directory of segment files in.
+     * @param maxSegmentBytes The size past which a segment is no longer appended to.
+     */
+    SpillQueue(Path parentDirectory, long maxSegmentBytes) {
+        if (maxSegmentBytes < 1) {
+            throw new IllegalArgumentException("maxSegmentBytes must be at least 1");
+        }
+
+        this.parentDirectory = parentDirectory;
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    /**
+     * Adds a record to the end of the queue.
+     * @param record The record to add.
+     * @return The number of bytes written to disk for the record.
+     * @throws IOException If the record could not be written.
+     */
+    long append(byte[] record) throws IOException {
+        Segment segment = segments.peekLast();
+
+        if (segment == null || segment.bytesWritten >= maxSegmentBytes) {
+            segment = startSegment();
+        }
+
+        writer.writeInt(record.length);
+        writer.write(record);
+
+        long bytesWritten = Integer.BYTES + record.length;
+        segment.bytesWritten += bytesWritten;
+        segment.recordsWritten++;
+        size++;
+        return bytesWritten;
+    }
+
+    /**
+     * Removes the record at the head of the queue.
+     * @return The record that was removed, or null if the queue is empty.
+     * @throws IOException If the record could not be read.
+     */
+    byte[] poll() throws IOException {
+        if (size == 0) {
+            return null;
+        }
+
+        Segment segment = segments.getFirst();
+
+        if (reader == null) {
+            reader = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.path)));
+        }
+
+        if (segment == segments.getLast()) {
+            // Records still held in the write buffer must reach the file before they can be read from it
+            writer.flush();
+        }
+
+        byte[] record = new byte[reader.readInt()];
+        reader.readFully(record);
+        segment.recordsRead++;
+        size--;
+
+        if (segment.recordsRead == segment.recordsWritten) {
+            if (segment == segments.getLast()) {
+                writer.close();
+                writer = null;
+            }
+
+            reader.close();
+            reader = null;
+            segments.removeFirst();
+            Files.deleteIfExists(segment.path);
+        }
+
+        return record;
+    }
+
+    /**
+     * Discards every record in the queue and deletes the directory of segment files.
+     * @throws IOException If the files could not be deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+
+            if (reader != null) {
+                reader.close();
+            }
+        } finally {
+            writer = null;
+            reader = null;
+            size = 0;
+
+            while (!segments.isEmpty()) {
+                Files.deleteIfExists(segments.removeFirst().path);
+            }
+
+            if (directory != null) {
+                Files.deleteIfExists(directory);
+                directory = null;
+            }
+        }
+    }
+
+    private Segment startSegment() throws IOException {
+        if (directory == null) {
+            directory = Files.createTempDirectory(parentDirectory, DIRECTORY_PREFIX);
+        }
+
+        if (writer != null) {
+            writer.close();
+        }
+
+        Segment segment = new Segment(directory.resolve(String.format(SEGMENT_FILE_FORMAT, nextSegmentNumber++)));
+        writer = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(segment.path)));
+        segments.addLast(segment);
+        return segment;
+    }
+}
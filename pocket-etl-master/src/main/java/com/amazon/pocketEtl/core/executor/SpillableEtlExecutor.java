@@ -0,0 +1,44 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * An EtlExecutor that can hold the work waiting for its workers in serialized form outside the heap, for instance on
+ * local disk or in direct memory, and bring it back in the order it was submitted as its workers catch up. A task is a
+ * closure and cannot be serialized, so work that may be spilled is submitted as the object to be worked on together
+ * with the action to perform on it; only the object is serialized. Callers should pass the same action and metrics
+ * objects with every submission.
+ */
+public interface SpillableEtlExecutor extends EtlExecutor {
+    /**
+     * Schedules an action to be performed on an object in the future. The object may be held in serialized form until
+     * a worker is ready for it. Depending on the implementation this may block.
+     *
+     * @param objectToProcess The object to perform the action on.
+     * @param action          The action to perform. It is given the object, which may be a deserialized copy, and the
+     *                        value of System.nanoTime() at the time it was submitted.
+     * @param parentMetrics   A parent EtlMetrics object to attach the action to.
+     * @throws RejectedExecutionException If the object cannot be submitted to the Executor.
+     */
+    void submit(EtlStreamObject objectToProcess, ObjLongConsumer<EtlStreamObject> action, EtlMetrics parentMetrics)
+            throws RejectedExecutionException;
+}
@@ -0,0 +1,482 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
+import com.amazon.pocketEtl.exception.GenericEtlException;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjLongConsumer;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * A multi-threaded EtlExecutor with a bounded in-memory work queue that overflows to local disk instead of blocking or
+ * growing without limit. While there is room in memory, work is queued there as it would be by any thread pool. Once
+ * the in-memory queue is full, objects submitted with an action are serialized into a SpillQueue, and every object
+ * submitted after that follows them to disk until the spill has drained, so that they are still worked on in the order
+ * they were submitted. A dedicated thread reads spilled objects back and moves them into the in-memory queue as the
+ * workers make room for them.
+ *
+ * Plain tasks cannot be written to disk, so a Runnable submitted to this executor is always queued in memory, blocking
+ * while the queue is full, and may overtake objects that are waiting on disk. Completion tracking for spilled objects
+ * is kept in memory and reattached when they are read back, and spilled objects are only deserialized by the worker
+ * that performs the action on them.
+ *
+ * Every spilled object is counted to the parent EtlMetrics it was submitted with, along with the number of bytes it took
+ * up on disk, so that the spill rate can be monitored. If the disk cannot be written to, the object being submitted
+ * fails with an UnrecoverableStreamFailureException; if it cannot be read back, every object still on disk is lost and
+ * shutdown will report it. This object should not be constructed directly, instead use EtlExecutorFactory.
+ */
+@EqualsAndHashCode(exclude = {"queue", "spillQueue", "serializedRecordCodec", "workers", "refillThread", "spillLock", "activeSubmitters", "activeWorkers",
+        "recordsInTransit", "isShutdown", "isCancelled", "isRefillFinished", "spillFailure"})
+class SpillingEtlExecutor implements SpillableEtlExecutor {
+    private final static Logger logger = getLogger(SpillingEtlExecutor.class);
+    private final static ThreadFactory workerThreadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("SpillingEtlExecutor-%d")
+            .setDaemon(true)
+            .build();
+    private final static long DEFAULT_MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+    private final static long IDLE_POLL_MILLIS = 10;
+
+    static final String SPILLED_RECORDS_METRIC_NAME = "SpillingEtlExecutor.spilledRecords";
+    static final String SPILLED_BYTES_METRIC_NAME = "SpillingEtlExecutor.spilledBytes";
+
+    @Getter(AccessLevel.PACKAGE)
+    private final int inMemoryQueueSize;
+    @Getter(AccessLevel.PACKAGE)
+    private final Path spillDirectory;
+
+    private final BlockingQueue<QueuedTask> queue;
+    private final SpillQueue spillQueue;
+    private final SerializedRecordCodec serializedRecordCodec = new SerializedRecordCodec();
+    private final Thread[] workers;
+    private final Thread refillThread;
+    // Guards the spill queue, and everything above it that describes what is in it
+    private final Object spillLock = new Object();
+    private final AtomicInteger activeSubmitters = new AtomicInteger(0);
+    private final AtomicInteger activeWorkers = new AtomicInteger(0);
+    // Objects that are on disk, or that have been read back but not yet placed in the in-memory queue
+    private long recordsInTransit = 0;
+    private volatile boolean isShutdown = false;
+    private volatile boolean isCancelled = false;
+    private volatile boolean isRefillFinished = false;
+    private volatile Exception spillFailure = null;
+
+    private static class QueuedTask {
+        private final Runnable task;
+        private final EtlMetrics parentMetrics;
+
+        QueuedTask(Runnable task, EtlMetrics parentMetrics) {
+            this.task = task;
+            this.parentMetrics = parentMetrics;
+        }
+    }
+
+    SpillingEtlExecutor(int numberOfWorkers, int inMemoryQueueSize, Path spillDirectory) {
+        this(numberOfWorkers, inMemoryQueueSize, spillDirectory, DEFAULT_MAX_SEGMENT_BYTES);
+    }
+
+    SpillingEtlExecutor(int numberOfWorkers, int inMemoryQueueSize, Path spillDirectory, long maxSegmentBytes) {
+        if (numberOfWorkers < 1) {
+            throw new IllegalArgumentException("numberOfWorkers must be at least 1");
+        }
+
+        if (inMemoryQueueSize < 1) {
+            throw new IllegalArgumentException("inMemoryQueueSize must be at least 1");
+        }
+
+        this.inMemoryQueueSize = inMemoryQueueSize;
+        this.spillDirectory = spillDirectory;
+        this.queue = new ArrayBlockingQueue<>(inMemoryQueueSize);
+        this.spillQueue = new SpillQueue(spillDirectory, maxSegmentBytes);
+        this.workers = new Thread[numberOfWorkers];
+
+        for (int i = 0; i < numberOfWorkers; i++) {
+            workers[i] = workerThreadFactory.newThread(this::work);
+            workers[i].start();
+        }
+
+        this.refillThread = workerThreadFactory.newThread(this::refill);
+        refillThread.start();
+    }
+
+    int getNumberOfWorkers() {
+        return workers.length;
+    }
+
+    /**
+     * Stop accepting new work, wait for everything that was spilled to be read back and for the workers to drain the
+     * in-memory queue, then stop the threads and delete the spill files. This request will block until the threads
+     * have finished working.
+     *
+     * @throws GenericEtlException If spilled objects could not be read back, or if the threads could not be stopped
+     *                             after this thread was interrupted whilst waiting for them.
+     */
+    @Override
+    public void shutdown() throws GenericEtlException {
+        synchronized (spillLock) {
+            isShutdown = true;
+            spillLock.notifyAll();
+        }
+
+        try {
+            refillThread.join();
+            isRefillFinished = true;
+
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            refillThread.interrupt();
+
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+
+            throw new GenericEtlException("Interrupted waiting for shutdown of executor", e);
+        } finally {
+            closeSpillQueue();
+        }
+
+        if (spillFailure != null) {
+            throw new GenericEtlException("Objects spilled to disk could not be read back and were lost", spillFailure);
+        }
+    }
+
+    /**
+     * Stop accepting new work, discard everything in the in-memory queue and on disk, and interrupt the threads. This
+     * request does not wait for the threads to stop; the spill files are deleted when the executor is shutdown.
+     */
+    @Override
+    public void cancel() {
+        synchronized (spillLock) {
+            isShutdown = true;
+            isCancelled = true;
+            recordsInTransit = 0;
+            serializedRecordCodec.clearRecordCompletions();
+            spillLock.notifyAll();
+        }
+
+        queue.clear();
+        refillThread.interrupt();
+
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Stop accepting new work and wait for everything that was spilled to be read back and worked on, as shutdown()
+     * does, but no longer than the timeout. The spill files are deleted whether or not the threads stopped in time.
+     *
+     * @param timeout How long to wait for the threads to stop.
+     * @param unit    The unit of the timeout.
+     * @return 'true' if every thread stopped in time, and 'false' if any did not or this thread was interrupted.
+     * @throws GenericEtlException If spilled objects could not be read back.
+     */
+    @Override
+    public boolean shutdownWithin(long timeout, TimeUnit unit) throws GenericEtlException {
+        synchronized (spillLock) {
+            isShutdown = true;
+            spillLock.notifyAll();
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean isTerminated = false;
+
+        try {
+            if (joinUntil(refillThread, deadline)) {
+                isRefillFinished = true;
+                isTerminated = true;
+
+                for (Thread worker : workers) {
+                    isTerminated &= joinUntil(worker, deadline);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeSpillQueue();
+        }
+
+        if (spillFailure != null) {
+            throw new GenericEtlException("Objects spilled to disk could not be read back and were lost", spillFailure);
+        }
+
+        return isTerminated;
+    }
+
+    /**
+     * Queries whether the executor has been shutdown.
+     *
+     * @return 'true' if the executor has been shutdown, and 'false' if it has not.
+     */
+    @Override
+    public boolean isShutdown() {
+        return isShutdown;
+    }
+
+    /**
+     * Places a task in the in-memory queue to be run by one of the worker threads. Tasks cannot be spilled, so if the
+     * queue is full this call will block until there is room for the task.
+     *
+     * @param task          a runnable wrapping the task to be performed in the future.
+     * @param parentMetrics A parent EtlMetrics object to attach the runnables to.
+     * @throws RejectedExecutionException If the executor has been shutdown or the thread was interrupted whilst
+     *                                    waiting for room in the queue.
+     */
+    @Override
+    public void submit(Runnable task, EtlMetrics parentMetrics) throws RejectedExecutionException {
+        // Workers will not stop while there are submitters that could still queue a task
+        activeSubmitters.incrementAndGet();
+
+        try {
+            checkNotShutdown();
+            queue.put(new QueuedTask(task, parentMetrics));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Thread was interrupted trying to queue new work");
+        } finally {
+            activeSubmitters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Places an object in the in-memory queue to have an action performed on it by one of the worker threads. If the
+     * queue is full, or objects submitted earlier are still on disk, the object is spilled to disk instead. This call
+     * only blocks while other threads are submitting objects.
+     *
+     * @param objectToProcess The object to perform the action on.
+     * @param action          The action to perform.
+     * @param parentMetrics   A parent EtlMetrics object to attach the action to.
+     * @throws RejectedExecutionException          If the executor has been shutdown.
+     * @throws UnrecoverableStreamFailureException If the object could not be written to disk, or objects written
+     *                                             earlier could not be read back.
+     */
+    @Override
+    public void submit(EtlStreamObject objectToProcess, ObjLongConsumer<EtlStreamObject> action,
+                       EtlMetrics parentMetrics) throws RejectedExecutionException {
+        long submitTimeNanos = System.nanoTime();
+        activeSubmitters.incrementAndGet();
+
+        try {
+            synchronized (spillLock) {
+                checkNotShutdown();
+                checkForSpillFailure();
+
+                if (recordsInTransit == 0 && queue.offer(newRecordTask(objectToProcess, action, submitTimeNanos,
+                        parentMetrics))) {
+                    return;
+                }
+
+                spill(objectToProcess, action, submitTimeNanos, parentMetrics);
+            }
+        } finally {
+            activeSubmitters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Queries how many tasks are waiting for a worker, counting both those in memory and those spilled to disk.
+     *
+     * @return The number of tasks waiting to be worked on.
+     */
+    @Override
+    public int getQueuedTaskCount() {
+        long spilledCount;
+
+        synchronized (spillLock) {
+            spilledCount = recordsInTransit;
+        }
+
+        return (int) Math.min(Integer.MAX_VALUE, queue.size() + spilledCount);
+    }
+
+    /**
+     * Queries how many worker threads are currently working on a task.
+     *
+     * @return The number of busy workers.
+     */
+    @Override
+    public int getActiveWorkerCount() {
+        return activeWorkers.get();
+    }
+
+    private void spill(EtlStreamObject objectToProcess, ObjLongConsumer<EtlStreamObject> action, long submitTimeNanos,
+                       EtlMetrics parentMetrics) {
+        long bytesSpilled;
+
+        try {
+            bytesSpilled = spillQueue.append(serializedRecordCodec.encode(objectToProcess, action, submitTimeNanos,
+                    parentMetrics));
+            serializedRecordCodec.addRecordCompletion(objectToProcess);
+        } catch (IOException e) {
+            throw new UnrecoverableStreamFailureException("Could not spill object to disk", e);
+        }
+
+        recordsInTransit++;
+        spillLock.notifyAll();
+
+        if (parentMetrics != null) {
+            parentMetrics.addCount(SPILLED_RECORDS_METRIC_NAME, 1);
+            parentMetrics.addCount(SPILLED_BYTES_METRIC_NAME, bytesSpilled);
+        }
+    }
+
+    private SerializedRecord readSpilledRecord() throws IOException, InterruptedException {
+        synchronized (spillLock) {
+            while (isCancelled || spillQueue.getSize() == 0) {
+                if (isShutdown) {
+                    return null;
+                }
+
+                spillLock.wait();
+            }
+
+            return serializedRecordCodec.decode(spillQueue.poll());
+        }
+    }
+
+    private void refill() {
+        try {
+            SerializedRecord serializedRecord = readSpilledRecord();
+
+            while (serializedRecord != null) {
+                SerializedRecord recordToPerform = serializedRecord;
+
+                // Only the refill thread takes objects off disk, so this one is next in line for the in-memory queue
+                queue.put(new QueuedTask(() -> performSpilledAction(recordToPerform),
+                        recordToPerform.getParentMetrics()));
+
+                synchronized (spillLock) {
+                    recordsInTransit--;
+                }
+
+                serializedRecord = readSpilledRecord();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Objects spilled to disk could not be read back and will be lost: ", e);
+            discardSpilledRecords(e);
+        } catch (InterruptedException e) {
+            if (!isCancelled) {
+                discardSpilledRecords(e);
+            }
+        }
+    }
+
+    private void work() {
+        while (!isCancelled) {
+            QueuedTask queuedTask;
+
+            try {
+                queuedTask = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ignored) {
+                return;
+            }
+
+            if (queuedTask == null) {
+                if (isRefillFinished && activeSubmitters.get() == 0 && queue.isEmpty()) {
+                    return;
+                }
+
+                continue;
+            }
+
+            activeWorkers.incrementAndGet();
+
+            try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(queuedTask.parentMetrics,
+                    "SpillingEtlExecutor.submit")) {
+                queuedTask.task.run();
+            } catch (RuntimeException ignored) {
+            } finally {
+                activeWorkers.decrementAndGet();
+            }
+        }
+    }
+
+    private void performSpilledAction(SerializedRecord serializedRecord) {
+        try {
+            serializedRecord.performAction();
+        } catch (IOException e) {
+            logger.error("An object spilled to disk could not be deserialized and will be lost: ", e);
+            spillFailure = e;
+        }
+    }
+
+    private void discardSpilledRecords(Exception cause) {
+        synchronized (spillLock) {
+            spillFailure = cause;
+            recordsInTransit = 0;
+            serializedRecordCodec.clearRecordCompletions();
+        }
+
+        closeSpillQueue();
+    }
+
+    private void closeSpillQueue() {
+        synchronized (spillLock) {
+            try {
+                spillQueue.close();
+            } catch (IOException e) {
+                logger.warn("Could not delete spill files: ", e);
+            }
+        }
+    }
+
+    private static boolean joinUntil(Thread thread, long deadline) throws InterruptedException {
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+
+        if (remainingMillis > 0) {
+            thread.join(remainingMillis);
+        }
+
+        return !thread.isAlive();
+    }
+
+    private void checkNotShutdown() {
+        if (isShutdown) {
+            throw new RejectedExecutionException("Executor has been shutdown and cannot accept more work");
+        }
+    }
+
+    private void checkForSpillFailure() {
+        if (spillFailure != null) {
+            throw new UnrecoverableStreamFailureException("Objects spilled to disk could not be read back",
+                    spillFailure);
+        }
+    }
+
+    private static QueuedTask newRecordTask(EtlStreamObject objectToProcess, ObjLongConsumer<EtlStreamObject> action,
+                                            long submitTimeNanos, EtlMetrics parentMetrics) {
+        return new QueuedTask(() -> action.accept(objectToProcess, submitTimeNanos), parentMetrics);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.metrics;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Getter;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * A registry of in-process StageMetrics that periodically flushes their aggregates to EtlMetrics, so the cost of
+ * EtlMetrics is paid once per flush period rather than once per record. Consumers attach to the registry when they are
+ * opened and detach when they are closed; the first attach starts a background thread that flushes every flush period,
+ * and the last detach stops it and performs a final flush so nothing recorded is lost.
+ */
+public class EtlMetricsRegistry {
+    private final static Logger logger = getLogger(EtlMetricsRegistry.class);
+    private final static long DEFAULT_FLUSH_PERIOD_MILLIS = 10_000;
+
+    @Getter
+    private final long flushPeriodMillis;
+
+    private final ConcurrentMap<String, StageMetrics> stageMetrics = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private int attachCount = 0;
+    private EtlMetrics parentMetrics = null;
+    private ScheduledExecutorService flushScheduler = null;
+
+    /**
+     * Constructs a registry that flushes every 10 seconds.
+     */
+    public EtlMetricsRegistry() {
+        this(DEFAULT_FLUSH_PERIOD_MILLIS);
+    }
+
+    /**
+     * Constructs a registry with a custom flush period.
+     * @param flushPeriodMillis How often the aggregates are flushed to EtlMetrics, in milliseconds.
+     */
+    public EtlMetricsRegistry(long flushPeriodMillis) {
+        if (flushPeriodMillis < 1) {
+            throw new IllegalArgumentException("flushPeriodMillis must be at least 1");
+        }
+
+        this.flushPeriodMillis = flushPeriodMillis;
+    }
+
+    /**
+     * Get the metrics for a stage, creating them the first time a stage name is seen.
+     * @param stageName Name of the stage.
+     * @return The metrics for that stage.
+     */
+    public StageMetrics getStageMetrics(String stageName) {
+        return stageMetrics.computeIfAbsent(stageName, StageMetrics::new);
+    }
+
+    /**
+     * Get the metrics for every stage in the registry.
+     * @return An unmodifiable view of the metrics for every stage.
+     */
+    public Collection<StageMetrics> getAllStageMetrics() {
+        return Collections.unmodifiableCollection(stageMetrics.values());
+    }
+
+    /**
+     * Signals that a consumer recording to this registry has been opened. The first call starts the periodic flush to
+     * the given metrics; later calls only count the attachment.
+     * @param parentMetrics Metrics to flush to. No flushing will happen if this is null.
+     */
+    public void attach(@Nullable EtlMetrics parentMetrics) {
+        synchronized (lock) {
+            if (attachCount++ > 0) {
+                return;
+            }
+
+            this.parentMetrics = parentMetrics;
+
+            if (parentMetrics != null) {
+                flushScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("EtlMetricsRegistry-%d")
+                        .build());
+                flushScheduler.scheduleAtFixedRate(this::flushQuietly, flushPeriodMillis, flushPeriodMillis,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Signals that a consumer recording to this registry has been closed. Once every attached consumer has detached
+     * the periodic flush is stopped and a final flush is performed.
+     */
+    public void detach() {
+        synchronized (lock) {
+            if (attachCount == 0) {
+                IllegalStateException e = new IllegalStateException("Attempt to detach from registry that is not attached");
+                logger.error("Exception thrown detaching from metrics registry: ", e);
+                throw e;
+            }
+
+            if (--attachCount > 0) {
+                return;
+            }
+
+            if (flushScheduler != null) {
+                flushScheduler.shutdownNow();
+                flushScheduler = null;
+            }
+
+            flush();
+            parentMetrics = null;
+        }
+    }
+
+    /**
+     * Emits everything recorded since the last flush to EtlMetrics and resets the aggregates. Does nothing if the
+     * registry is not attached to any metrics.
+     */
+    public void flush() {
+        synchronized (lock) {
+            if (parentMetrics == null) {
+                return;
+            }
+
+            EtlMetrics flushMetrics = parentMetrics.createChildMetrics();
+
+            try {
+                stageMetrics.values().forEach(stage -> stage.flush(flushMetrics));
+            } finally {
+                flushMetrics.close();
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to flush metrics registry: ", e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Live telemetry for the stages recording to an EtlMetricsRegistry. Unlike the periodic flush to EtlMetrics, a snapshot
+ * can be taken at any time while an ETL job is running to see which stage is the bottleneck : a stage with a deep
+ * queue and every worker busy is limiting the throughput of the stages upstream of it.
+ *
+ * Throughput is calculated over the time since the previous snapshot taken by the same EtlTelemetry object, so every
+ * consumer of snapshots that wants its own throughput figures should use its own EtlTelemetry.
+ */
+public class EtlTelemetry {
+    private final static double NANOSECONDS_PER_SECOND = 1_000_000_000.0;
+
+    private final EtlMetricsRegistry etlMetricsRegistry;
+    private final LongSupplier nanoClock;
+    private final Map<String, Long> previousRecordsIn = new HashMap<>();
+    private long previousSnapshotNanos;
+
+    /**
+     * Constructs telemetry for every stage recording to a registry.
+     * @param etlMetricsRegistry The registry the stages record to.
+     */
+    public EtlTelemetry(EtlMetricsRegistry etlMetricsRegistry) {
+        this(etlMetricsRegistry, System::nanoTime);
+    }
+
+    EtlTelemetry(EtlMetricsRegistry etlMetricsRegistry, LongSupplier nanoClock) {
+        this.etlMetricsRegistry = etlMetricsRegistry;
+        this.nanoClock = nanoClock;
+        this.previousSnapshotNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Take a point-in-time view of every stage, ordered by stage name.
+     * @return A list of telemetry for each stage.
+     */
+    public synchronized List<StageTelemetry> snapshot() {
+        long snapshotNanos = nanoClock.getAsLong();
+        double elapsedSeconds = (snapshotNanos - previousSnapshotNanos) / NANOSECONDS_PER_SECOND;
+        List<StageTelemetry> stageTelemetry = new ArrayList<>();
+
+        for (StageMetrics stageMetrics : etlMetricsRegistry.getAllStageMetrics()) {
+            long recordsIn = stageMetrics.getRecordsProcessed();
+            long recordsInSincePreviousSnapshot =
+                    recordsIn - previousRecordsIn.getOrDefault(stageMetrics.getStageName(), 0L);
+            double recordsPerSecond = elapsedSeconds > 0 ? recordsInSincePreviousSnapshot / elapsedSeconds : 0.0;
+
+            previousRecordsIn.put(stageMetrics.getStageName(), recordsIn);
+            stageTelemetry.add(new StageTelemetry(stageMetrics, recordsIn, recordsPerSecond));
+        }
+
+        previousSnapshotNanos = snapshotNanos;
+        stageTelemetry.sort(Comparator.comparing(StageTelemetry::getStageName));
+        return stageTelemetry;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds. Like an HDR histogram, buckets are laid out log-linearly: every
+ * power of two is split into 32 equally sized sub-buckets, so any recorded value is reported with an error of at most
+ * about 3% while the whole range from 1 nanosecond to 2^41 nanoseconds, about 36 minutes, fits in a fixed array of
+ * counters. Larger values are counted in the highest bucket. Recording a value is a single atomic increment and never
+ * allocates.
+ */
+public class LatencyHistogram {
+    private final static int SUB_BUCKET_BITS = 5;
+    private final static int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private final static int MAX_EXPONENT = 40;
+    private final static int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * Record a single latency.
+     * @param latencyNanos The latency in nanoseconds. Negative values are recorded as zero.
+     */
+    public void record(long latencyNanos) {
+        buckets.incrementAndGet(getBucketIndex(Math.max(latencyNanos, 0)));
+    }
+
+    /**
+     * Take a copy of the latencies recorded so far.
+     * @return A snapshot of this histogram.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+        }
+
+        return new Snapshot(counts);
+    }
+
+    /**
+     * Take a copy of the latencies recorded so far and reset the histogram. Latencies recorded while this is happening
+     * will either be in the snapshot or remain in the histogram, but will never be lost or counted twice.
+     * @return A snapshot of this histogram.
+     */
+    public Snapshot snapshotAndReset() {
+        long[] counts = new long[BUCKET_COUNT];
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.getAndSet(i, 0);
+        }
+
+        return new Snapshot(counts);
+    }
+
+    static int getBucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+
+        if (exponent == MAX_EXPONENT && value >= (1L << (MAX_EXPONENT + 1))) {
+            return BUCKET_COUNT - 1;
+        }
+
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    // The highest value that would be counted in a bucket
+    static long getHighestValueInBucket(int bucketIndex) {
+        if (bucketIndex < SUB_BUCKET_COUNT * 2) {
+            return bucketIndex;
+        }
+
+        int exponent = bucketIndex / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        long mantissa = bucketIndex % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((mantissa + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * An immutable copy of the counts in a LatencyHistogram at a point in time.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long totalCount;
+
+        private Snapshot(long[] counts) {
+            long total = 0;
+
+            for (long count : counts) {
+                total += count;
+            }
+
+            this.counts = counts;
+            this.totalCount = total;
+        }
+
+        /**
+         * Get the number of latencies in the snapshot.
+         * @return The number of latencies recorded.
+         */
+        public long getCount() {
+            return totalCount;
+        }
+
+        /**
+         * Get the latency that the given percentage of recorded latencies are lower than or equal to.
+         * @param percentile A percentile between 0 and 100, for example 99.9.
+         * @return The latency in nanoseconds, or 0 if nothing was recorded.
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (totalCount == 0) {
+                return 0;
+            }
+
+            long targetCount = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount));
+            long cumulativeCount = 0;
+
+            for (int i = 0; i < counts.length; i++) {
+                cumulativeCount += counts[i];
+
+                if (cumulativeCount >= targetCount) {
+                    return getHighestValueInBucket(i);
+                }
+            }
+
+            return getHighestValueInBucket(counts.length - 1);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.metrics;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.ToDoubleFunction;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * A minimal HTTP endpoint that serves EtlTelemetry snapshots in the Prometheus text exposition format at /metrics. The
+ * endpoint only listens on the loopback address, so it is not reachable from other hosts, and serves requests on a
+ * single daemon thread. Close it to stop listening.
+ */
+public class PrometheusTelemetryEndpoint implements AutoCloseable {
+    private final static Logger logger = getLogger(PrometheusTelemetryEndpoint.class);
+    private final static String METRICS_PATH = "/metrics";
+    private final static String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private final static String METRIC_PREFIX = "pocket_etl_stage_";
+
+    private final EtlTelemetry etlTelemetry;
+    private final HttpServer httpServer;
+    private final ExecutorService requestExecutor;
+
+    private PrometheusTelemetryEndpoint(EtlTelemetry etlTelemetry, HttpServer httpServer) {
+        this.etlTelemetry = etlTelemetry;
+        this.httpServer = httpServer;
+        this.requestExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("PrometheusTelemetryEndpoint-%d")
+                .build());
+    }
+
+    /**
+     * Start serving telemetry on localhost.
+     * @param etlTelemetry The telemetry to serve.
+     * @param port The port to listen on, or 0 to pick any free port.
+     * @return The running endpoint.
+     * @throws UncheckedIOException If the endpoint could not listen on the port.
+     */
+    public static PrometheusTelemetryEndpoint start(EtlTelemetry etlTelemetry, int port) {
+        HttpServer httpServer;
+
+        try {
+            httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            logger.error("Could not start telemetry endpoint: ", e);
+            throw new UncheckedIOException(e);
+        }
+
+        PrometheusTelemetryEndpoint endpoint = new PrometheusTelemetryEndpoint(etlTelemetry, httpServer);
+        httpServer.createContext(METRICS_PATH, endpoint::handle);
+        httpServer.setExecutor(endpoint.requestExecutor);
+        httpServer.start();
+        return endpoint;
+    }
+
+    /**
+     * Get the port the endpoint is listening on.
+     * @return The port number.
+     */
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Stop listening and release the request thread.
+     */
+    @Override
+    public void close() {
+        httpServer.stop(0);
+        requestExecutor.shutdownNow();
+    }
+
+    static String format(List<StageTelemetry> stageTelemetry) {
+        StringBuilder output = new StringBuilder();
+
+        appendMetric(output, "records_in_total", "counter", "Records received by the stage.", stageTelemetry,
+                StageTelemetry::getRecordsIn);
+        appendMetric(output, "records_out_total", "counter", "Records the stage finished without an error.",
+                stageTelemetry, StageTelemetry::getRecordsOut);
+        appendMetric(output, "records_errored_total", "counter", "Records the stage failed to process.",
+                stageTelemetry, StageTelemetry::getRecordsErrored);
+        appendMetric(output, "records_per_second", "gauge", "Records received per second since the last scrape.",
+                stageTelemetry, StageTelemetry::getRecordsPerSecond);
+        appendMetric(output, "queued_tasks", "gauge", "Tasks waiting for a worker.", stageTelemetry,
+                StageTelemetry::getQueuedTasks);
+        appendMetric(output, "active_workers", "gauge", "Workers busy with a task.", stageTelemetry,
+                StageTelemetry::getActiveWorkers);
+        appendMetric(output, "concurrency_limit", "gauge",
+                "Tasks the stage's executor currently allows in flight, or 0 if it does not tune this limit.",
+                stageTelemetry, StageTelemetry::getConcurrencyLimit);
+        appendSummary(output, "service_time_milliseconds", "Time spent processing a task.", stageTelemetry,
+                StageTelemetry::getServiceTimeP50Millis, StageTelemetry::getServiceTimeP99Millis,
+                StageTelemetry::getServiceTimeP999Millis);
+        appendSummary(output, "queue_wait_time_milliseconds", "Time a task spent waiting for a worker.",
+                stageTelemetry, StageTelemetry::getQueueWaitTimeP50Millis, StageTelemetry::getQueueWaitTimeP99Millis,
+                StageTelemetry::getQueueWaitTimeP999Millis);
+
+        return output.toString();
+    }
+
+    void handle(HttpExchange httpExchange) throws IOException {
+        boolean isResponseStarted = false;
+
+        try {
+            if (!"GET".equals(httpExchange.getRequestMethod())) {
+                httpExchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] response = format(etlTelemetry.snapshot()).getBytes(StandardCharsets.UTF_8);
+            httpExchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            httpExchange.sendResponseHeaders(200, response.length);
+            isResponseStarted = true;
+
+            try (OutputStream responseBody = httpExchange.getResponseBody()) {
+                responseBody.write(response);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to serve telemetry: ", e);
+
+            // Once the headers have been sent the status can no longer be changed, closing the exchange cuts the
+            // response short instead
+            if (!isResponseStarted) {
+                httpExchange.sendResponseHeaders(500, -1);
+            }
+        } finally {
+            httpExchange.close();
+        }
+    }
+
+    private static void appendMetric(StringBuilder output, String name, String type, String help,
+                                     List<StageTelemetry> stageTelemetry, ToDoubleFunction<StageTelemetry> value) {
+        appendHeader(output, name, type, help);
+
+        for (StageTelemetry stage : stageTelemetry) {
+            appendSample(output, name, stage, null, value.applyAsDouble(stage));
+        }
+    }
+
+    private static void appendSummary(StringBuilder output, String name, String help,
+                                      List<StageTelemetry> stageTelemetry, ToDoubleFunction<StageTelemetry> p50,
+                                      ToDoubleFunction<StageTelemetry> p99, ToDoubleFunction<StageTelemetry> p999) {
+        appendHeader(output, name, "summary", help);
+
+        for (StageTelemetry stage : stageTelemetry) {
+            appendSample(output, name, stage, "0.5", p50.applyAsDouble(stage));
+            appendSample(output, name, stage, "0.99", p99.applyAsDouble(stage));
+            appendSample(output, name, stage, "0.999", p999.applyAsDouble(stage));
+        }
+    }
+
+    private static void appendHeader(StringBuilder output, String name, String type, String help) {
+        output.append("# HELP ").append(METRIC_PREFIX).append(name).append(' ').append(help).append('\n');
+        output.append("# TYPE ").append(METRIC_PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void appendSample(StringBuilder output, String name, StageTelemetry stage, String quantile,
+                                     double value) {
+        output.append(METRIC_PREFIX).append(name).append("{stage=\"").append(escapeLabelValue(stage.getStageName()))
+                .append('"');
+
+        if (quantile != null) {
+            output.append(",quantile=\"").append(quantile).append('"');
+        }
+
+        output.append("} ").append(formatValue(value)).append('\n');
+    }
+
+    private static String formatValue(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+
+        return Double.toString(value);
+    }
+
+    private static String escapeLabelValue(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.metrics;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.core.executor.EtlExecutor;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process metrics for a single ETL stage. Counters are striped LongAdders and latencies go into lock-free
+ * histograms, so recording from many worker threads at once is cheap and never touches EtlMetrics. The aggregates are
+ * periodically flushed to EtlMetrics by the EtlMetricsRegistry that owns this object, as :
+ * stage-name.recordsProcessed and stage-name.errors counters, and stage-name.serviceTime.p50/p99/p999 and
+ * stage-name.queueWaitTime.p50/p99/p999 timers in milliseconds.
+ *
+ * Counters are cumulative for the life of the stage; each flush emits only what was counted since the previous one.
+ * If the EtlExecutor of the stage is observed, its queue depth and number of busy workers can be read as well, which
+ * is what EtlTelemetry uses to build a live view of the stage.
+ */
+public class StageMetrics {
+    private final static double NANOSECONDS_PER_MILLISECOND = 1_000_000.0;
+
+    @Getter
+    private final String stageName;
+
+    @Getter
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+
+    @Getter
+    private final LatencyHistogram queueWaitTime = new LatencyHistogram();
+
+    private final LongAdder recordsProcessed = new LongAdder();
+    private final LongAdder recordsCompleted = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder routedErrors = new LongAdder();
+    private final String recordsProcessedMetricName;
+    private final String errorsMetricName;
+    private final String serviceTimeMetricName;
+    private final String queueWaitTimeMetricName;
+    private volatile EtlExecutor etlExecutor = null;
+
+    // Only accessed by flush, which the owning registry never runs concurrently
+    private long flushedRecordsProcessed = 0;
+    private long flushedErrors = 0;
+
+    StageMetrics(String stageName) {
+        this.stageName = stageName;
+        this.recordsProcessedMetricName = stageName + ".recordsProcessed";
+        this.errorsMetricName = stageName + ".errors";
+        this.serviceTimeMetricName = stageName + ".serviceTime";
+        this.queueWaitTimeMetricName = stageName + ".queueWaitTime";
+    }
+
+    /**
+     * Count records processed by the stage.
+     * @param count Number of records processed.
+     */
+    public void addRecordsProcessed(long count) {
+        recordsProcessed.add(count);
+    }
+
+    /**
+     * Count records that the stage finished processing without an error.
+     * @param count Number of records completed.
+     */
+    public void addRecordsCompleted(long count) {
+        recordsCompleted.add(count);
+    }
+
+    /**
+     * Count a record that the stage failed to process.
+     */
+    public void addError() {
+        errors.increment();
+    }
+
+    /**
+     * Count records that failed in the stage and were routed to its error consumer. The executor running the stage
+     * still sees such records complete without an exception, so they are also taken back out of the records
+     * completed.
+     * @param count Number of records routed to the error consumer.
+     */
+    public void addRoutedErrors(long count) {
+        errors.add(count);
+        routedErrors.add(count);
+    }
+
+    /**
+     * Get the number of records received by the stage.
+     * @return Number of records processed.
+     */
+    public long getRecordsProcessed() {
+        return recordsProcessed.sum();
+    }
+
+    /**
+     * Get the number of records the stage finished processing without an error.
+     * @return Number of records completed.
+     */
+    public long getRecordsCompleted() {
+        // Records routed to the error consumer by a stage that does not count its completions must not go negative
+        return Math.max(0, recordsCompleted.sum() - routedErrors.sum());
+    }
+
+    /**
+     * Get the number of records the stage failed to process.
+     * @return Number of errors.
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Observe the EtlExecutor that runs the work of this stage, so its queue depth and busy workers can be reported.
+     * @param etlExecutor The executor of the stage.
+     */
+    public void observeExecutor(EtlExecutor etlExecutor) {
+        this.etlExecutor = etlExecutor;
+    }
+
+    /**
+     * Get the number of tasks waiting for a worker in the observed EtlExecutor.
+     * @return Number of queued tasks, or 0 if no executor is observed.
+     */
+    public int getQueuedTaskCount() {
+        EtlExecutor observedEtlExecutor = etlExecutor;
+        return observedEtlExecutor == null ? 0 : observedEtlExecutor.getQueuedTaskCount();
+    }
+
+    /**
+     * Get the number of workers of the observed EtlExecutor that are working on a task.
+     * @return Number of busy workers, or 0 if no executor is observed.
+     */
+    public int getActiveWorkerCount() {
+        EtlExecutor observedEtlExecutor = etlExecutor;
+        return observedEtlExecutor == null ? 0 : observedEtlExecutor.getActiveWorkerCount();
+    }
+
+    /**
+     * Get the number of tasks the observed EtlExecutor currently allows to be in flight at once.
+     * @return The concurrency limit, or 0 if no executor is observed or the executor does not tune one.
+     */
+    public int getConcurrencyLimit() {
+        EtlExecutor observedEtlExecutor = etlExecutor;
+        return observedEtlExecutor == null ? 0 : observedEtlExecutor.getConcurrencyLimit();
+    }
+
+    /**
+     * Emit everything recorded since the last flush to EtlMetrics. Counters carry on counting, histograms are reset.
+     * @param metrics Metrics to emit to.
+     */
+    void flush(EtlMetrics metrics) {
+        long totalRecordsProcessed = recordsProcessed.sum();
+        long totalErrors = errors.sum();
+
+        metrics.addCount(recordsProcessedMetricName, totalRecordsProcessed - flushedRecordsProcessed);
+        metrics.addCount(errorsMetricName, totalErrors - flushedErrors);
+        flushedRecordsProcessed = totalRecordsProcessed;
+        flushedErrors = totalErrors;
+
+        flushHistogram(metrics, serviceTimeMetricName, serviceTime.snapshotAndReset());
+        flushHistogram(metrics, queueWaitTimeMetricName, queueWaitTime.snapshotAndReset());
+    }
+
+    private static void flushHistogram(EtlMetrics metrics, String metricName, LatencyHistogram.Snapshot snapshot) {
+        if (snapshot.getCount() == 0) {
+            return;
+        }
+
+        metrics.addTime(metricName + ".p50", snapshot.getValueAtPercentile(50.0) / NANOSECONDS_PER_MILLISECOND);
+        metrics.addTime(metricName + ".p99", snapshot.getValueAtPercentile(99.0) / NANOSECONDS_PER_MILLISECOND);
+        metrics.addTime(metricName + ".p999", snapshot.getValueAtPercentile(99.9) / NANOSECONDS_PER_MILLISECOND);
+    }
+}
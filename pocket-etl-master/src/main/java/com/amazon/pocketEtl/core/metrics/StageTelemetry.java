@@ -0,0 +1,97 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.metrics;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A point-in-time view of a single ETL stage, as reported by EtlTelemetry. Record counts are cumulative for the life of
+ * the stage. Latency percentiles are in milliseconds and cover what was recorded since the EtlMetricsRegistry last
+ * flushed to EtlMetrics, or since the stage started if the registry is not flushing anywhere.
+ */
+@EqualsAndHashCode
+@ToString
+public class StageTelemetry {
+    private final static double NANOSECONDS_PER_MILLISECOND = 1_000_000.0;
+
+    @Getter
+    private final String stageName;
+
+    @Getter
+    private final int queuedTasks;
+
+    @Getter
+    private final int activeWorkers;
+
+    @Getter
+    private final int concurrencyLimit;
+
+    @Getter
+    private final long recordsIn;
+
+    @Getter
+    private final long recordsOut;
+
+    @Getter
+    private final long recordsErrored;
+
+    @Getter
+    private final double recordsPerSecond;
+
+    @Getter
+    private final double serviceTimeP50Millis;
+
+    @Getter
+    private final double serviceTimeP99Millis;
+
+    @Getter
+    private final double serviceTimeP999Millis;
+
+    @Getter
+    private final double queueWaitTimeP50Millis;
+
+    @Getter
+    private final double queueWaitTimeP99Millis;
+
+    @Getter
+    private final double queueWaitTimeP999Millis;
+
+    StageTelemetry(StageMetrics stageMetrics, long recordsIn, double recordsPerSecond) {
+        LatencyHistogram.Snapshot serviceTime = stageMetrics.getServiceTime().snapshot();
+        LatencyHistogram.Snapshot queueWaitTime = stageMetrics.getQueueWaitTime().snapshot();
+
+        this.stageName = stageMetrics.getStageName();
+        this.queuedTasks = stageMetrics.getQueuedTaskCount();
+        this.activeWorkers = stageMetrics.getActiveWorkerCount();
+        this.concurrencyLimit = stageMetrics.getConcurrencyLimit();
+        this.recordsIn = recordsIn;
+        this.recordsOut = stageMetrics.getRecordsCompleted();
+        this.recordsErrored = stageMetrics.getErrors();
+        this.recordsPerSecond = recordsPerSecond;
+        this.serviceTimeP50Millis = toMillis(serviceTime.getValueAtPercentile(50.0));
+        this.serviceTimeP99Millis = toMillis(serviceTime.getValueAtPercentile(99.0));
+        this.serviceTimeP999Millis = toMillis(serviceTime.getValueAtPercentile(99.9));
+        this.queueWaitTimeP50Millis = toMillis(queueWaitTime.getValueAtPercentile(50.0));
+        this.queueWaitTimeP99Millis = toMillis(queueWaitTime.getValueAtPercentile(99.0));
+        this.queueWaitTimeP999Millis = toMillis(queueWaitTime.getValueAtPercentile(99.9));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / NANOSECONDS_PER_MILLISECOND;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.producer;
+
+import com.amazon.pocketEtl.checkpoint.Checkpoint;
+import com.amazon.pocketEtl.checkpoint.CheckpointStore;
+import com.amazon.pocketEtl.core.RecordCompletion;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Keeps track of which extracted records have been completely dealt with by the stream and periodically saves a
+ * checkpoint covering every record up to the first one that is still in flight. Records complete out of order when
+ * stages run in parallel, so a checkpoint is only ever advanced over a contiguous run of completed records; a record
+ * that never completes, because its processing threw an exception out of the stream, holds the checkpoint back and
+ * will be extracted again when the stream is resumed.
+ *
+ * Records are tracked in the order they are extracted, which only the producing thread does, while completions are
+ * checked by a background thread, so tracking a record costs one allocation and one lock-free enqueue.
+ */
+class CheckpointTracker {
+    private final static Logger logger = getLogger(CheckpointTracker.class);
+
+    private final String checkpointName;
+    private final CheckpointStore checkpointStore;
+    private final long checkpointIntervalMillis;
+    private final Queue<RecordCompletion> inFlightRecords = new ConcurrentLinkedQueue<>();
+    private Checkpoint lastCheckpoint = null;
+    private boolean isCheckpointSaved = true;
+    private ScheduledExecutorService checkpointScheduler = null;
+
+    /**
+     * Standard constructor.
+     * @param checkpointName The name to save checkpoints under.
+     * @param checkpointStore The store to save checkpoints to.
+     * @param checkpointIntervalMillis How often to save a checkpoint, in milliseconds.
+     */
+    CheckpointTracker(String checkpointName, CheckpointStore checkpointStore, long checkpointIntervalMillis) {
+        if (checkpointIntervalMillis < 1) {
+            throw new IllegalArgumentException("checkpointIntervalMillis must be at least 1");
+        }
+
+        this.checkpointName = checkpointName;
+        this.checkpointStore = checkpointStore;
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+    }
+
+    /**
+     * Loads the checkpoint to resume from and starts saving checkpoints periodically.
+     * @return The checkpoint to resume from, or empty if the stream should start from the beginning.
+     * @throws UnrecoverableStreamFailureException If the checkpoint store could not be read. Starting from the
+     * beginning instead would silently repeat work that had already been done.
+     */
+    synchronized Optional<Checkpoint> start() throws UnrecoverableStreamFailureException {
+        try {
+            lastCheckpoint = checkpointStore.load(checkpointName).orElse(null);
+        } catch (IOException e) {
+            logger.error("Failed to load checkpoint '" + checkpointName + "': ", e);
+            throw new UnrecoverableStreamFailureException("Failed to load checkpoint '" + checkpointName + "'", e);
+        }
+
+        checkpointScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("CheckpointTracker-%d")
+                .build());
+        checkpointScheduler.scheduleAtFixedRate(this::checkpointQuietly, checkpointIntervalMillis,
+                checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+
+        return Optional.ofNullable(lastCheckpoint);
+    }
+
+    /**
+     * Start tracking a record that has just been extracted. Must be called in the order records are extracted.
+     * @param sequenceNumber The sequence number of the record.
+     * @param position The position of the extractor just after the record.
+     * @return The object that tracks the completion of the record.
+     */
+    RecordCompletion track(long sequenceNumber, String position) {
+        RecordCompletion recordCompletion = new RecordCompletion(sequenceNumber, position);
+        inFlightRecords.add(recordCompletion);
+        return recordCompletion;
+    }
+
+    /**
+     * Saves a checkpoint if any more records have been completed since the last one was saved.
+     * @throws IOException If the checkpoint could not be saved.
+     */
+    synchronized void checkpoint() throws IOException {
+        RecordCompletion recordCompletion;
+
+        while ((recordCompletion = inFlightRecords.peek()) != null && recordCompletion.isCompleted()) {
+            inFlightRecords.poll();
+            lastCheckpoint = new Checkpoint(recordCompletion.getPosition(), recordCompletion.getSequenceNumber() + 1);
+            isCheckpointSaved = false;
+        }
+
+        if (!isCheckpointSaved) {
+            checkpointStore.save(checkpointName, lastCheckpoint);
+            isCheckpointSaved = true;
+        }
+    }
+
+    /**
+     * Stops saving checkpoints periodically. If the stream completed every record is done, so the checkpoint is
+     * cleared and the next run will start from the beginning; otherwise a final checkpoint is saved to resume from.
+     * @param isStreamComplete true if the extractor was exhausted and every stage closed cleanly.
+     * @throws IOException If the checkpoint could not be saved or cleared.
+     */
+    synchronized void stop(boolean isStreamComplete) throws IOException {
+        if (checkpointScheduler != null) {
+            checkpointScheduler.shutdownNow();
+            checkpointScheduler = null;
+        }
+
+        if (isStreamComplete) {
+            checkpointStore.clear(checkpointName);
+            logger.info("Stream '" + checkpointName + "' completed, checkpoint cleared");
+        } else {
+            checkpoint();
+            logger.info("Stream '" + checkpointName + "' did not complete, last checkpoint: " + lastCheckpoint);
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to save checkpoint '" + checkpointName + "': ", e);
+        }
+    }
+}
@@ -16,21 +16,44 @@
 package com.amazon.pocketEtl.core.producer;
 
 import com.amazon.pocketEtl.Extractor;
+import com.amazon.pocketEtl.ResumableExtractor;
+import com.amazon.pocketEtl.SplittableExtractor;
+import com.amazon.pocketEtl.checkpoint.CheckpointStore;
+import com.amazon.pocketEtl.core.StreamCancellation;
 import com.amazon.pocketEtl.core.consumer.EtlConsumer;
+import com.amazon.pocketEtl.core.consumer.EtlConsumerFactory;
 import com.amazon.pocketEtl.core.executor.EtlExecutorFactory;
-import lombok.RequiredArgsConstructor;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * An injectable factory class for building various types of useful Producer implementations. This is the only
  * way you should be constructing Producer objects of any kind outside of this package. Producers of various kinds
  * should be combined into a single Producer using combineProducers() which will then run all the producers it is
  * constructed with together.
+ * If the factory is given a StreamCancellation, the producers it builds stop extracting as soon as the stream is
+ * cancelled, and cancel it themselves if extraction fails unrecoverably.
  */
-@RequiredArgsConstructor
 public class EtlProducerFactory {
     private final EtlExecutorFactory etlExecutorFactory;
+    private final StreamCancellation streamCancellation;
+
+    public EtlProducerFactory(EtlExecutorFactory etlExecutorFactory) {
+        this(etlExecutorFactory, null);
+    }
+
+    /**
+     * Constructs a factory whose producers take part in cancelling the stream they belong to.
+     * @param etlExecutorFactory Factory used to construct executors for the producers that need them.
+     * @param streamCancellation Cancellation token shared by the stream, or null.
+     */
+    public EtlProducerFactory(EtlExecutorFactory etlExecutorFactory, @Nullable StreamCancellation streamCancellation) {
+        this.etlExecutorFactory = etlExecutorFactory;
+        this.streamCancellation = streamCancellation;
+    }
 
     /**
      * Constructs a new producer based on an Extractor.
@@ -41,7 +64,107 @@ public class EtlProducerFactory {
      * @return A fully constructed producer.
      */
     public <T> EtlProducer newExtractorProducer(String name, Extractor<T> extractor, EtlConsumer downstreamEtlConsumer) {
-        return new ExtractorEtlProducer<>(name, downstreamEtlConsumer, extractor);
+        return new ExtractorEtlProducer<>(name, downstreamEtlConsumer, extractor, null, streamCancellation);
+    }
+
+    /**
+     * Constructs a new producer based on an Extractor that is read ahead of the stream on a dedicated thread, so that
+     * waiting on the source overlaps with handing objects to the first stage.
+     * @param name The name of this producer used in logging and reporting.
+     * @param extractor The extractor object this producer is based on.
+     * @param downstreamEtlConsumer The consumer to send objects this producer extracts to.
+     * @param prefetchDepth The most objects to extract ahead of them being sent downstream.
+     * @param <T> The type of object being extracted.
+     * @return A fully constructed producer.
+     */
+    public <T> EtlProducer newPrefetchingExtractorProducer(String name, Extractor<T> extractor,
+                                                           EtlConsumer downstreamEtlConsumer, int prefetchDepth) {
+        return new ExtractorEtlProducer<>(name, downstreamEtlConsumer,
+                newPrefetchingExtractor(name, extractor, prefetchDepth), null, streamCancellation);
+    }
+
+    /**
+     * Constructs a new producer based on a ResumableExtractor that saves checkpoints as the objects it extracts are
+     * fully loaded. If a checkpoint has already been saved under the producer's name when it is opened, extraction
+     * resumes from that checkpoint; once the stream completes the checkpoint is cleared.
+     * Every loader the stream's objects reach must be a DurableLoader, or a DurableAsyncLoader; the stream is aborted,
+     * before any checkpoint covers it, when an object from this producer reaches any other loader.
+     * @param name The name of this producer used in logging and reporting, and the name checkpoints are saved under.
+     * @param resumableExtractor The extractor object this producer is based on.
+     * @param downstreamEtlConsumer The consumer to send objects this producer extracts to.
+     * @param checkpointStore The store to save checkpoints to.
+     * @param checkpointIntervalMillis How often to save a checkpoint, in milliseconds.
+     * @param <T> The type of object being extracted.
+     * @return A fully constructed producer.
+     */
+    public <T> EtlProducer newCheckpointedExtractorProducer(String name, ResumableExtractor<T> resumableExtractor,
+                                                            EtlConsumer downstreamEtlConsumer,
+                                                            CheckpointStore checkpointStore,
+                                                            long checkpointIntervalMillis) {
+        return new ExtractorEtlProducer<>(name, downstreamEtlConsumer, resumableExtractor,
+                new CheckpointTracker(name, checkpointStore, checkpointIntervalMillis), streamCancellation);
+    }
+
+    /**
+     * Constructs a new checkpointed producer, as newCheckpointedExtractorProducer() does, whose extractor is read ahead
+     * of the stream on a dedicated thread. Checkpoints still only cover objects that have been fully loaded, never
+     * objects that are sitting in the prefetch buffer.
+     * As with newCheckpointedExtractorProducer(), every loader must be a DurableLoader or a DurableAsyncLoader.
+     * @param name The name of this producer used in logging and reporting, and the name checkpoints are saved under.
+     * @param resumableExtractor The extractor object this producer is based on.
+     * @param downstreamEtlConsumer The consumer to send objects this producer extracts to.
+     * @param checkpointStore The store to save checkpoints to.
+     * @param checkpointIntervalMillis How often to save a checkpoint, in milliseconds.
+     * @param prefetchDepth The most objects to extract ahead of them being sent downstream.
+     * @param <T> The type of object being extracted.
+     * @return A fully constructed producer.
+     */
+    public <T> EtlProducer newPrefetchingCheckpointedExtractorProducer(String name,
+                                                                       ResumableExtractor<T> resumableExtractor,
+                                                                       EtlConsumer downstreamEtlConsumer,
+                                                                       CheckpointStore checkpointStore,
+                                                                       long checkpointIntervalMillis,
+                                                                       int prefetchDepth) {
+        return new ExtractorEtlProducer<>(name, downstreamEtlConsumer,
+                new ResumablePrefetchingExtractor<>(name, resumableExtractor, prefetchDepth),
+                new CheckpointTracker(name, checkpointStore, checkpointIntervalMillis), streamCancellation);
+    }
+
+    /**
+     * Constructs a new producer that splits a SplittableExtractor into as many pieces as the parallelism allows and
+     * extracts the pieces concurrently, each with its own producer. The extractor is split when this method is called.
+     * Every piece opens and closes the downstream consumer, so it must count its producers and only close once the
+     * last of them has closed it, as the consumers built by EtlConsumerFactory do; any other consumer is wrapped so
+     * that it does, otherwise the first piece to finish would close the stage under the others.
+     * @param name The name of this producer used in logging and reporting. Each piece is named after it, followed by
+     *             its index.
+     * @param splittableExtractor The extractor object this producer is based on.
+     * @param downstreamEtlConsumer The consumer to send objects this producer extracts to.
+     * @param parallelism The most pieces to split the extractor into, and the number of pieces extracted at once.
+     * @param <T> The type of object being extracted.
+     * @return A fully constructed producer.
+     */
+    public <T> EtlProducer newParallelExtractorProducer(String name, SplittableExtractor<T> splittableExtractor,
+                                                        EtlConsumer downstreamEtlConsumer, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+
+        List<Extractor<T>> splitExtractors = splittableExtractor.split(parallelism);
+
+        if (splitExtractors.isEmpty() || splitExtractors.size() > parallelism) {
+            throw new IllegalStateException("Extractor '" + name + "' was split into " + splitExtractors.size() +
+                    " pieces when asked for between 1 and " + parallelism);
+        }
+
+        EtlConsumer sharedEtlConsumer = EtlConsumerFactory.newSharedConsumer(name, downstreamEtlConsumer);
+        List<EtlProducer> splitProducers = new ArrayList<>(splitExtractors.size());
+
+        for (int i = 0; i < splitExtractors.size(); i++) {
+            splitProducers.add(newExtractorProducer(name + "." + i, splitExtractors.get(i), sharedEtlConsumer));
+        }
+
+        return combineProducers(name, splitProducers, splitProducers.size());
     }
 
     /**
@@ -53,6 +176,16 @@ public class EtlProducerFactory {
      * @return A fully constructed producer.
      */
     public EtlProducer combineProducers(String name, Collection<EtlProducer> etlProducers, int numberOfParallelWorkers) {
-        return new ExecutorEtlProducer(name, etlProducers, etlExecutorFactory.newUnboundFixedThreadsEtlExecutorFactory(numberOfParallelWorkers));
+        return new ExecutorEtlProducer(name, etlProducers,
+                etlExecutorFactory.newUnboundFixedThreadsEtlExecutorFactory(numberOfParallelWorkers), streamCancellation);
+    }
+
+    private static <T> PrefetchingExtractor<T> newPrefetchingExtractor(String name, Extractor<T> extractor,
+                                                                       int prefetchDepth) {
+        if (extractor instanceof ResumableExtractor) {
+            return new ResumablePrefetchingExtractor<>(name, (ResumableExtractor<T>) extractor, prefetchDepth);
+        }
+
+        return new PrefetchingExtractor<>(name, extractor, prefetchDepth);
     }
 }
@@ -17,6 +17,7 @@ package com.amazon.pocketEtl.core.producer;
 
 import com.amazon.pocketEtl.EtlMetrics;
 import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.core.StreamCancellation;
 import com.amazon.pocketEtl.core.executor.EtlExecutor;
 import com.amazon.pocketEtl.exception.GenericEtlException;
 import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
@@ -25,6 +26,7 @@ import lombok.EqualsAndHashCode;
 import org.apache.logging.log4j.Logger;
 
 import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
@@ -33,14 +35,19 @@ import static org.apache.logging.log4j.LogManager.getLogger;
  * Producer implementation that facilitates running parallel producers. This is typically the top-most object in a
  * complex chain of Producers and Consumers that constitutes an ETL job. The job would be considered complete once all
  * the producers have exhausted their supply of work and been closed.
+ *
+ * When constructed with a StreamCancellation, an UnrecoverableStreamFailureException thrown by any producer cancels the
+ * whole stream. Producers that have not started by the time the stream is cancelled are closed without producing
+ * anything, and closing this producer after cancellation waits for the others no longer than the abort deadline.
  */
-@EqualsAndHashCode(exclude = "abortStreamException")
+@EqualsAndHashCode(exclude = {"abortStreamException", "streamCancellation"})
 class ExecutorEtlProducer implements EtlProducer {
     private final static Logger logger = getLogger(ExecutorEtlProducer.class);
 
     private final String name;
     private final Collection<EtlProducer> etlProducers;
     private final EtlExecutor etlExecutor;
+    private final StreamCancellation streamCancellation;
 
     private AtomicReference<UnrecoverableStreamFailureException> abortStreamException = new AtomicReference<>();
     private EtlMetrics parentMetrics = null;
@@ -52,9 +59,22 @@ class ExecutorEtlProducer implements EtlProducer {
      * @param etlExecutor An EtlExecutor object to manage the thread-pool to run the producers in.
      */
     ExecutorEtlProducer(String name, Collection<EtlProducer> etlProducers, EtlExecutor etlExecutor) {
+        this(name, etlProducers, etlExecutor, null);
+    }
+
+    /**
+     * Constructor for producers that take part in cancelling the whole stream.
+     *
+     * @param etlProducers       List of producers to be run in parallel.
+     * @param etlExecutor        An EtlExecutor object to manage the thread-pool to run the producers in.
+     * @param streamCancellation The cancellation token shared by the stream, or null.
+     */
+    ExecutorEtlProducer(String name, Collection<EtlProducer> etlProducers, EtlExecutor etlExecutor,
+                        StreamCancellation streamCancellation) {
         this.name = name;
         this.etlProducers = etlProducers;
         this.etlExecutor = etlExecutor;
+        this.streamCancellation = streamCancellation;
     }
 
     /**
@@ -71,9 +91,11 @@ class ExecutorEtlProducer implements EtlProducer {
         try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "ExecutorProducer." + name + ".produce")) {
             etlProducers.forEach(producer -> etlExecutor.submit(() -> {
                 try {
-                    producer.produce();
+                    if (!isCancelled()) {
+                        producer.produce();
+                    }
                 } catch (UnrecoverableStreamFailureException e) {
-                    abortStreamException.set(e);
+                    abortStream(e);
                 } catch (RuntimeException e) {
                     logger.error("Error extracting data: ", e);
                 }
@@ -81,7 +103,7 @@ class ExecutorEtlProducer implements EtlProducer {
                 try {
                     producer.close();
                 } catch (UnrecoverableStreamFailureException e) {
-                    abortStreamException.set(e);
+                    abortStream(e);
                 } catch (Exception e) {
                     logger.error("Error closing producer: ", e);
                 }
@@ -91,7 +113,7 @@ class ExecutorEtlProducer implements EtlProducer {
 
     /**
      * Block and wait for each wrapped Producer to complete its production of work and be closed, and then shutdown
-     * the EtlExecutor running them.
+     * the EtlExecutor running them. If the stream has been cancelled, this only blocks until the abort deadline.
      *
      * @throws Exception if something goes wrong.
      */
@@ -99,7 +121,11 @@ class ExecutorEtlProducer implements EtlProducer {
     public void close() throws Exception {
         try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "ExecutorProducer." + name + ".close")) {
             try {
-                etlExecutor.shutdown();
+                if (isCancelled()) {
+                    shutdownBeforeAbortDeadline();
+                } else {
+                    etlExecutor.shutdown();
+                }
             } catch (GenericEtlException e) {
                 logger.error("Error shutting down executor: ", e);
             }
@@ -107,6 +133,10 @@ class ExecutorEtlProducer implements EtlProducer {
             if (abortStreamException.get() != null) {
                 throw abortStreamException.get();
             }
+
+            if (streamCancellation != null) {
+                streamCancellation.throwIfCancelled();
+            }
         }
     }
 
@@ -122,4 +152,23 @@ class ExecutorEtlProducer implements EtlProducer {
             etlProducers.forEach(producer -> producer.open(parentMetrics));
         }
     }
+
+    private void abortStream(UnrecoverableStreamFailureException e) {
+        abortStreamException.compareAndSet(null, e);
+
+        if (streamCancellation != null) {
+            streamCancellation.cancel(e);
+        }
+    }
+
+    private boolean isCancelled() {
+        return streamCancellation != null && streamCancellation.isCancelled();
+    }
+
+    private void shutdownBeforeAbortDeadline() throws GenericEtlException {
+        // Producers still running are closing the stream behind them, so give them until the deadline to finish
+        if (!etlExecutor.shutdownWithin(streamCancellation.getRemainingAbortTimeMillis(), TimeUnit.MILLISECONDS)) {
+            logger.warn("Producers of " + name + " did not finish before the abort deadline and have been abandoned");
+        }
+    }
 }
@@ -17,6 +17,7 @@ package com.amazon.pocketEtl.core.producer;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
 
+import java.io.IOException;
 import java.util.Optional;
 
 import org.apache.logging.log4j.Logger;
@@ -24,7 +25,10 @@ import org.apache.logging.log4j.Logger;
 import com.amazon.pocketEtl.EtlMetrics;
 import com.amazon.pocketEtl.EtlProfilingScope;
 import com.amazon.pocketEtl.Extractor;
+import com.amazon.pocketEtl.ResumableExtractor;
+import com.amazon.pocketEtl.checkpoint.Checkpoint;
 import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.StreamCancellation;
 import com.amazon.pocketEtl.core.consumer.EtlConsumer;
 import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
 
@@ -32,18 +36,33 @@ import lombok.EqualsAndHashCode;
 
 /**
  * Implementation of producer that uses an Extractor object to produce new objects. Each produced object will then be
- * sent to a downstream Consumer.
+ * sent to a downstream Consumer, stamped with its position in the output of the extractor.
+ *
+ * When constructed with a CheckpointTracker, the extractor must be a ResumableExtractor. Each produced object is then
+ * tracked until it has been completely dealt with by the stream, checkpoints are saved as records are completed and,
+ * if a checkpoint already exists when the producer is opened, extraction resumes from it rather than from the
+ * beginning. Only a DurableLoader, which has stored an object by the time load() returns, or a DurableAsyncLoader,
+ * which has stored it by the time its load completes, can load the objects of a checkpointed producer, as anything a
+ * loader buffers until it is closed would be lost if the stream dies; the load stage aborts the stream if any other
+ * loader is used.
+ *
+ * When constructed with a StreamCancellation, the producer stops extracting as soon as the stream is cancelled, and an
+ * UnrecoverableStreamFailureException thrown by the extractor cancels the stream.
  *
  * @param <T> The type of object produced by the Extractor.
  */
-@EqualsAndHashCode
+@EqualsAndHashCode(exclude = {"checkpointTracker", "streamCancellation", "isExtractorExhausted"})
 class ExtractorEtlProducer<T> implements EtlProducer {
     private final static Logger logger = getLogger(ExtractorEtlProducer.class);
 
     private final String name;
     private final EtlConsumer downstreamEtlConsumer;
     private final Extractor<T> extractor;
+    private final CheckpointTracker checkpointTracker;
+    private final StreamCancellation streamCancellation;
     private boolean isClosed = false;
+    private boolean isExtractorExhausted = false;
+    private long nextSequenceNumber = 0;
     private EtlMetrics parentMetrics = null;
 
     /**
@@ -53,15 +72,45 @@ class ExtractorEtlProducer<T> implements EtlProducer {
      * @param extractor          An extractor object that will be used to produce new objects.
      */
     ExtractorEtlProducer(String name, EtlConsumer downstreamEtlConsumer, Extractor<T> extractor) {
+        this(name, downstreamEtlConsumer, extractor, null, null);
+    }
+
+    /**
+     * Constructor for a checkpointed producer.
+     *
+     * @param downstreamEtlConsumer A consumer to send all the produced objects to.
+     * @param resumableExtractor    An extractor object that will be used to produce new objects, and that can resume
+     *                              from a checkpoint.
+     * @param checkpointTracker     Tracks the objects produced and saves checkpoints.
+     */
+    ExtractorEtlProducer(String name, EtlConsumer downstreamEtlConsumer, ResumableExtractor<T> resumableExtractor,
+                         CheckpointTracker checkpointTracker) {
+        this(name, downstreamEtlConsumer, resumableExtractor, checkpointTracker, null);
+    }
+
+    /**
+     * Constructor for a producer that takes part in cancelling the whole stream.
+     *
+     * @param downstreamEtlConsumer A consumer to send all the produced objects to.
+     * @param extractor             An extractor object that will be used to produce new objects. Must be a
+     *                              ResumableExtractor if a checkpoint tracker is given.
+     * @param checkpointTracker     Tracks the objects produced and saves checkpoints, or null.
+     * @param streamCancellation    The cancellation token shared by the stream, or null.
+     */
+    ExtractorEtlProducer(String name, EtlConsumer downstreamEtlConsumer, Extractor<T> extractor,
+                         CheckpointTracker checkpointTracker, StreamCancellation streamCancellation) {
         this.name = name;
         this.downstreamEtlConsumer = downstreamEtlConsumer;
         this.extractor = extractor;
+        this.checkpointTracker = checkpointTracker;
+        this.streamCancellation = streamCancellation;
     }
 
     /**
      * Run the extraction. The extractor will extractor all the objects that are available to be extracted and push those
      * objects to the consumer it is chained to. This method does not guarantee that all the extraction work will be
-     * complete down the chain when it returns, only closing the extractor will do that.
+     * complete down the chain when it returns, only closing the extractor will do that. If the stream is cancelled,
+     * extraction stops and the failure the stream was cancelled for is thrown.
      **/
     @Override
     public void produce() throws IllegalStateException, UnrecoverableStreamFailureException {
@@ -76,16 +125,28 @@ class ExtractorEtlProducer<T> implements EtlProducer {
             do {
                 nonFatalExceptionWasThrown = false;
 
+                if (streamCancellation != null) {
+                    streamCancellation.throwIfCancelled();
+                }
+
                 try {
                     result = extractor.next();
-                    result.ifPresent(obj -> downstreamEtlConsumer.consume(EtlStreamObject.of(obj)));
+                    if (result.isPresent()) {
+                        downstreamEtlConsumer.consume(newEtlStreamObject(result.get()));
+                    }
                 } catch (UnrecoverableStreamFailureException e) {
+                    if (streamCancellation != null) {
+                        streamCancellation.cancel(e);
+                    }
+
                     throw e;
                 } catch (RuntimeException e) {
                     nonFatalExceptionWasThrown = true;
                     logger.error("Extractor threw an exception during next() operation:", e);
                 }
             } while (nonFatalExceptionWasThrown || result.isPresent());
+
+            isExtractorExhausted = true;
         }
     }
 
@@ -98,7 +159,16 @@ class ExtractorEtlProducer<T> implements EtlProducer {
     public void close() throws Exception {
         try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "ExtractorProducer." + name + ".close")) {
             isClosed = true;
-            downstreamEtlConsumer.close();
+            boolean isStreamComplete = false;
+
+            try {
+                downstreamEtlConsumer.close();
+                isStreamComplete = isExtractorExhausted;
+            } finally {
+                if (checkpointTracker != null) {
+                    stopCheckpointTracker(isStreamComplete);
+                }
+            }
 
             try {
                 extractor.close();
@@ -112,15 +182,50 @@ class ExtractorEtlProducer<T> implements EtlProducer {
 
     /**
      * Signals the producer that it should prepare to produce work. This will also signal the downstream consumer to
-     * do the same.
+     * do the same. A checkpointed producer will position its extractor at the last checkpoint, if there is one.
      */
     @Override
     public void open(EtlMetrics parentMetrics) {
         this.parentMetrics = parentMetrics;
 
         try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "ExtractorProducer." + name + ".open")) {
+            if (checkpointTracker != null) {
+                checkpointTracker.start().ifPresent(this::resumeFrom);
+            }
+
             extractor.open(parentMetrics);
             downstreamEtlConsumer.open(parentMetrics);
         }
     }
-}
\ No newline at end of file
+
+    private EtlStreamObject newEtlStreamObject(T extractedObject) {
+        long sequenceNumber = nextSequenceNumber++;
+        EtlStreamObject etlStreamObject = EtlStreamObject.of(extractedObject).withSequenceNumber(sequenceNumber);
+
+        if (checkpointTracker != null) {
+            etlStreamObject.withRecordCompletion(checkpointTracker.track(sequenceNumber,
+                    ((ResumableExtractor<T>) extractor).getPosition()));
+        }
+
+        return etlStreamObject;
+    }
+
+    private void resumeFrom(Checkpoint checkpoint) {
+        logger.info("Resuming extractor '" + name + "' from checkpoint: " + checkpoint);
+        ((ResumableExtractor<T>) extractor).resumeFrom(checkpoint.getPosition());
+        nextSequenceNumber = checkpoint.getRecordsCompleted();
+    }
+
+    private void stopCheckpointTracker(boolean isStreamComplete) throws IOException {
+        try {
+            checkpointTracker.stop(isStreamComplete);
+        } catch (IOException e) {
+            if (isStreamComplete) {
+                throw e;
+            }
+
+            // Don't mask whatever stopped the stream; the last periodic checkpoint can still be resumed from
+            logger.error("Failed to save final checkpoint for extractor '" + name + "': ", e);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.producer;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.Extractor;
+import com.amazon.pocketEtl.core.PooledEtlProfilingScope;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.EqualsAndHashCode;
+
+import javax.annotation.Nullable;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Wraps an Extractor with a dedicated reader thread that extracts objects into a bounded buffer ahead of them being
+ * asked for, so that the time spent waiting on the source overlaps with the time the producer spends handing objects
+ * to the first stage of the stream. When the buffer is full the reader waits for room, so no more than prefetchDepth
+ * objects are ever held.
+ *
+ * Exceptions thrown by the wrapped extractor are buffered in order with the objects and thrown from next() when they
+ * are reached, so the producer handles them exactly as it would without prefetching. The reader stops after the wrapped
+ * extractor is exhausted or throws an UnrecoverableStreamFailureException. ResumableExtractors are wrapped by
+ * ResumablePrefetchingExtractor instead, so that only a prefetching extractor that can actually resume is seen as one.
+ *
+ * The buffer depth is sampled on each call to next() and averaged; once per sampling interval, and again on close, the
+ * average depth and the average fraction of the buffer that was full are emitted. Each emitted value is a level, not a
+ * count, so read them with an average or maximum statistic rather than a sum. The reader records the time it spends
+ * stalled waiting for room in the buffer.
+ *
+ * @param <T> Type of object that is extracted.
+ */
+@EqualsAndHashCode(exclude = {"nextScopeName", "readerStallScopeName", "bufferDepthCounterName",
+        "bufferFillRatioCounterName", "bufferDepthSampleIntervalNanos", "nanoClock", "buffer", "readerThread",
+        "isClosed", "isExhausted", "position", "parentMetrics", "bufferDepthSum", "bufferDepthSamples",
+        "lastBufferDepthEmissionNanos"})
+class PrefetchingExtractor<T> implements Extractor<T> {
+    private final static long DEFAULT_BUFFER_DEPTH_SAMPLE_INTERVAL_MILLIS = 1000;
+    private final static ThreadFactory readerThreadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("PrefetchingExtractor-%d")
+            .setDaemon(true)
+            .build();
+
+    private final String name;
+    private final Extractor<T> extractor;
+    private final int prefetchDepth;
+    private final String nextScopeName;
+    private final String readerStallScopeName;
+    private final String bufferDepthCounterName;
+    private final String bufferFillRatioCounterName;
+    private final long bufferDepthSampleIntervalNanos;
+    private final LongSupplier nanoClock;
+    private BlockingQueue<Prefetched<T>> buffer = null;
+    private Thread readerThread = null;
+    private volatile boolean isClosed = false;
+    private boolean isExhausted = false;
+    private String position = null;
+    private EtlMetrics parentMetrics = null;
+    private long bufferDepthSum = 0;
+    private long bufferDepthSamples = 0;
+    private long lastBufferDepthEmissionNanos = 0;
+
+    private static class Prefetched<T> {
+        private final T extractedObject;
+        private final String position;
+        private final RuntimeException failure;
+
+        Prefetched(T extractedObject, String position, RuntimeException failure) {
+            this.extractedObject = extractedObject;
+            this.position = position;
+            this.failure = failure;
+        }
+
+        boolean isEndOfExtraction() {
+            return extractedObject == null && failure == null;
+        }
+    }
+
+    /**
+     * Standard constructor.
+     *
+     * @param name          A human readable name for the instance of this class that will be used in logging and
+     *                      metrics.
+     * @param extractor     The extractor to read ahead from.
+     * @param prefetchDepth The most objects to buffer ahead of them being asked for.
+     */
+    PrefetchingExtractor(String name, Extractor<T> extractor, int prefetchDepth) {
+        this(name, extractor, prefetchDepth, DEFAULT_BUFFER_DEPTH_SAMPLE_INTERVAL_MILLIS, System::nanoTime);
+    }
+
+    PrefetchingExtractor(String name, Extractor<T> extractor, int prefetchDepth,
+                         long bufferDepthSampleIntervalMillis, LongSupplier nanoClock) {
+        if (prefetchDepth < 1) {
+            throw new IllegalArgumentException("prefetchDepth must be at least 1");
+        }
+
+        this.name = name;
+        this.extractor = extractor;
+        this.prefetchDepth = prefetchDepth;
+        this.nextScopeName = "PrefetchingExtractor." + name + ".next";
+        this.readerStallScopeName = "PrefetchingExtractor." + name + ".readerStall";
+        this.bufferDepthCounterName = name + ".prefetchBufferDepth";
+        this.bufferFillRatioCounterName = name + ".prefetchBufferFillRatio";
+        this.bufferDepthSampleIntervalNanos = TimeUnit.MILLISECONDS.toNanos(bufferDepthSampleIntervalMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Opens the wrapped extractor and starts the reader thread.
+     * @param parentMetrics An EtlMetrics object to attach any counters or timers to, will be null if profiling is not
+     *                      required.
+     */
+    @Override
+    public void open(@Nullable EtlMetrics parentMetrics) {
+        if (buffer != null) {
+            throw new IllegalStateException("PrefetchingExtractor has already been opened");
+        }
+
+        this.parentMetrics = parentMetrics;
+        extractor.open(parentMetrics);
+        buffer = new ArrayBlockingQueue<>(prefetchDepth);
+        lastBufferDepthEmissionNanos = nanoClock.getAsLong();
+        readerThread = readerThreadFactory.newThread(this::read);
+        readerThread.start();
+    }
+
+    /**
+     * Waits for the reader to have extracted the next object and returns it.
+     * @return The next object, or empty if the wrapped extractor is exhausted.
+     * @throws UnrecoverableStreamFailureException If the wrapped extractor threw one, or the thread was interrupted.
+     */
+    @Override
+    public Optional<T> next() throws UnrecoverableStreamFailureException {
+        if (buffer == null) {
+            throw new IllegalStateException("next() called on PrefetchingExtractor before it was opened");
+        }
+
+        if (isExhausted) {
+            return Optional.empty();
+        }
+
+        Prefetched<T> prefetched;
+
+        try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, nextScopeName)) {
+            prefetched = buffer.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnrecoverableStreamFailureException("Interrupted waiting for extractor '" + name + "'", e);
+        }
+
+        sampleBufferDepth(buffer.size());
+
+        if (prefetched.isEndOfExtraction()) {
+            isExhausted = true;
+            return Optional.empty();
+        }
+
+        if (prefetched.failure != null) {
+            if (prefetched.failure instanceof UnrecoverableStreamFailureException) {
+                isExhausted = true;
+            }
+
+            throw prefetched.failure;
+        }
+
+        position = prefetched.position;
+        return Optional.of(prefetched.extractedObject);
+    }
+
+    /**
+     * Stops the reader thread, waiting for it to finish, emits the buffer depth averaged since it was last emitted and
+     * then closes the wrapped extractor.
+     * @throws Exception If the wrapped extractor could not be closed, or the thread was interrupted whilst waiting.
+     */
+    @Override
+    public void close() throws Exception {
+        isClosed = true;
+        emitAverageBufferDepth();
+
+        if (readerThread != null) {
+            readerThread.interrupt();
+            readerThread.join();
+        }
+
+        extractor.close();
+    }
+
+    /**
+     * Get the position captured by the reader along with the object most recently returned by next().
+     * @return The position of the most recently returned object, or null if no object has been returned yet.
+     */
+    String getReturnedPosition() {
+        return position;
+    }
+
+    /**
+     * Overrides the position reported by getReturnedPosition(), for when the wrapped extractor has been repositioned.
+     * @param position The new position.
+     */
+    void setReturnedPosition(String position) {
+        this.position = position;
+    }
+
+    /**
+     * Called on the reader thread straight after each object is extracted, to capture the position of the wrapped
+     * extractor at the same time as the object.
+     * @return The position after the object just extracted, or null if the wrapped extractor has no positions.
+     */
+    @Nullable
+    String readPosition() {
+        return null;
+    }
+
+    private void read() {
+        try {
+            while (!isClosed) {
+                Prefetched<T> prefetched = readNext();
+                enqueue(prefetched);
+
+                if (prefetched.isEndOfExtraction() ||
+                        prefetched.failure instanceof UnrecoverableStreamFailureException) {
+                    return;
+                }
+            }
+        } catch (InterruptedException ignored) {
+            // Closed whilst waiting for room in the buffer
+        }
+    }
+
+    private Prefetched<T> readNext() {
+        try {
+            Optional<T> result = extractor.next();
+
+            if (!result.isPresent()) {
+                return new Prefetched<>(null, null, null);
+            }
+
+            return new Prefetched<>(result.get(), readPosition(), null);
+        } catch (RuntimeException e) {
+            return new Prefetched<>(null, null, e);
+        }
+    }
+
+    private void enqueue(Prefetched<T> prefetched) throws InterruptedException {
+        if (buffer.offer(prefetched)) {
+            return;
+        }
+
+        try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(parentMetrics, readerStallScopeName)) {
+            buffer.put(prefetched);
+        }
+    }
+
+    private void sampleBufferDepth(int bufferDepth) {
+        if (parentMetrics == null) {
+            return;
+        }
+
+        bufferDepthSum += bufferDepth;
+        bufferDepthSamples++;
+
+        if (nanoClock.getAsLong() - lastBufferDepthEmissionNanos >= bufferDepthSampleIntervalNanos) {
+            emitAverageBufferDepth();
+        }
+    }
+
+    private void emitAverageBufferDepth() {
+        if (parentMetrics == null || bufferDepthSamples == 0) {
+            return;
+        }
+
+        double averageBufferDepth = (double) bufferDepthSum / bufferDepthSamples;
+        parentMetrics.addCount(bufferDepthCounterName, averageBufferDepth);
+        parentMetrics.addCount(bufferFillRatioCounterName, averageBufferDepth / prefetchDepth);
+
+        bufferDepthSum = 0;
+        bufferDepthSamples = 0;
+        lastBufferDepthEmissionNanos = nanoClock.getAsLong();
+    }
+}
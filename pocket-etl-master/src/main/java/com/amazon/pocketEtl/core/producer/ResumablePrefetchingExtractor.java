@@ -0,0 +1,76 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.producer;
+
+import com.amazon.pocketEtl.ResumableExtractor;
+import lombok.EqualsAndHashCode;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A PrefetchingExtractor for a ResumableExtractor. The position after each object is captured by the reader at the
+ * same time as the object, and getPosition() reports the position of the object most recently returned by next()
+ * rather than the position the reader has got to.
+ *
+ * @param <T> Type of object that is extracted.
+ */
+@EqualsAndHashCode(callSuper = true)
+class ResumablePrefetchingExtractor<T> extends PrefetchingExtractor<T> implements ResumableExtractor<T> {
+    private final ResumableExtractor<T> resumableExtractor;
+
+    /**
+     * Standard constructor.
+     *
+     * @param name               A human readable name for the instance of this class that will be used in logging and
+     *                           metrics.
+     * @param resumableExtractor The extractor to read ahead from.
+     * @param prefetchDepth      The most objects to buffer ahead of them being asked for.
+     */
+    ResumablePrefetchingExtractor(String name, ResumableExtractor<T> resumableExtractor, int prefetchDepth) {
+        super(name, resumableExtractor, prefetchDepth);
+        this.resumableExtractor = resumableExtractor;
+    }
+
+    ResumablePrefetchingExtractor(String name, ResumableExtractor<T> resumableExtractor, int prefetchDepth,
+                                  long bufferDepthSampleIntervalMillis, LongSupplier nanoClock) {
+        super(name, resumableExtractor, prefetchDepth, bufferDepthSampleIntervalMillis, nanoClock);
+        this.resumableExtractor = resumableExtractor;
+    }
+
+    /**
+     * Get the position just after the object most recently returned by next().
+     * @return The current position of the wrapped extractor, as seen by the producer.
+     */
+    @Override
+    public String getPosition() {
+        return getReturnedPosition();
+    }
+
+    /**
+     * Positions the wrapped extractor. Called before open(), and only when resuming from a checkpoint.
+     * @param position A position previously reported by getPosition().
+     */
+    @Override
+    public void resumeFrom(String position) {
+        resumableExtractor.resumeFrom(position);
+        setReturnedPosition(position);
+    }
+
+    @Override
+    String readPosition() {
+        return resumableExtractor.getPosition();
+    }
+}
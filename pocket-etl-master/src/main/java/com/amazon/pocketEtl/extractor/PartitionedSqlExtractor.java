@@ -0,0 +1,322 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.Extractor;
+import com.amazon.pocketEtl.SplittableExtractor;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import org.joda.time.DateTime;
+
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * An Extractor that divides a SQL query into disjoint ranges of a numeric or date partition column, so that a large
+ * table can be extracted over several connections at once rather than through a single cursor. Each range is extracted
+ * by its own SqlExtractor with its own connection from the DataSource, which should therefore be a pooled one. Split
+ * the extractor with split(), or hand it to a producer that extracts SplittableExtractors in parallel; used on its own
+ * it extracts the whole query as a single range.
+ *
+ * The query is wrapped as a subquery and restricted with '#partitionLowerBound' and '#partitionUpperBound' parameters,
+ * so it can use '#param' substitution in the same way as any other SqlExtractor query, but those two parameter names
+ * are reserved. The bounds of the partition column can be given; otherwise they are discovered with a MIN/MAX query
+ * when the extractor is split. Numeric partition columns must hold whole numbers, and date partition columns are
+ * divided to the millisecond.
+ *
+ * Example usage:
+ * PartitionedSqlExtractor.of(dataSource, "SELECT * FROM orders WHERE status = #status", Order.class, "order_id")
+ *                        .withSqlParameters(ImmutableMap.of("status", "SHIPPED"));
+ *
+ * @param <T> Type of object that is extracted.
+ */
+@EqualsAndHashCode(exclude = {"unsplitExtractor"})
+public class PartitionedSqlExtractor<T> implements SplittableExtractor<T> {
+    private final static String LOWER_BOUND_PARAMETER = "partitionLowerBound";
+    private final static String UPPER_BOUND_PARAMETER = "partitionUpperBound";
+    private final static Pattern COLUMN_NAME_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final DataSource dataSource;
+    private final String sql;
+    private final Class<T> extractClass;
+    private final String partitionColumn;
+    private final Map<String, ?> sqlParameters;
+    private final boolean isDatePartitionColumn;
+    private final Long lowerBound;
+    private final Long upperBound;
+    private Extractor<T> unsplitExtractor = null;
+
+    @Data
+    @NoArgsConstructor
+    public static class NumericBounds {
+        private Long lowerBound;
+        private Long upperBound;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class DateBounds {
+        private DateTime lowerBound;
+        private DateTime upperBound;
+    }
+
+    /**
+     * Constructs an extractor that divides a query into ranges of a numeric partition column, discovering the bounds
+     * of the column when it is split.
+     * @param dataSource A pooled DataSource to get a connection for each range from.
+     * @param sql The query to extract, which may contain '#param' placeholders.
+     * @param extractClass Class of the objects to extract each row into.
+     * @param partitionColumn Name of the column in the results of the query to divide them by.
+     * @param <T> Type of object that is extracted.
+     * @return A new PartitionedSqlExtractor.
+     */
+    public static <T> PartitionedSqlExtractor<T> of(DataSource dataSource, String sql, Class<T> extractClass,
+                                                    String partitionColumn) {
+        if (!COLUMN_NAME_PATTERN.matcher(partitionColumn).matches()) {
+            throw new IllegalArgumentException("Invalid partition column name: " + partitionColumn);
+        }
+
+        return new PartitionedSqlExtractor<>(dataSource, sql, extractClass, partitionColumn, ImmutableMap.of(), false,
+                null, null);
+    }
+
+    private PartitionedSqlExtractor(DataSource dataSource, String sql, Class<T> extractClass, String partitionColumn,
+                                    Map<String, ?> sqlParameters, boolean isDatePartitionColumn,
+                                    @Nullable Long lowerBound, @Nullable Long upperBound) {
+        this.dataSource = dataSource;
+        this.sql = sql;
+        this.extractClass = extractClass;
+        this.partitionColumn = partitionColumn;
+        this.sqlParameters = sqlParameters;
+        this.isDatePartitionColumn = isDatePartitionColumn;
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+    }
+
+    /**
+     * Sets the parameters to substitute for the '#param' placeholders in the query.
+     * @param sqlParameters A map of parameter names to values.
+     * @return A copy of this extractor with the parameters set.
+     */
+    public PartitionedSqlExtractor<T> withSqlParameters(Map<String, ?> sqlParameters) {
+        if (sqlParameters.containsKey(LOWER_BOUND_PARAMETER) || sqlParameters.containsKey(UPPER_BOUND_PARAMETER)) {
+            throw new IllegalArgumentException("The parameter names '" + LOWER_BOUND_PARAMETER + "' and '" +
+                    UPPER_BOUND_PARAMETER + "' are reserved by PartitionedSqlExtractor");
+        }
+
+        return new PartitionedSqlExtractor<>(dataSource, sql, extractClass, partitionColumn,
+                ImmutableMap.copyOf(sqlParameters), isDatePartitionColumn, lowerBound, upperBound);
+    }
+
+    /**
+     * Sets the bounds of a numeric partition column rather than discovering them. Rows outside of the bounds will not
+     * be extracted.
+     * @param lowerBound The smallest value of the partition column to extract.
+     * @param upperBound The largest value of the partition column to extract.
+     * @return A copy of this extractor with the bounds set.
+     */
+    public PartitionedSqlExtractor<T> withPartitionBounds(long lowerBound, long upperBound) {
+        return withBounds(false, lowerBound, upperBound);
+    }
+
+    /**
+     * Treats the partition column as a date column, discovering its bounds when the extractor is split.
+     * @return A copy of this extractor that divides the query into ranges of dates.
+     */
+    public PartitionedSqlExtractor<T> withDatePartitionColumn() {
+        return new PartitionedSqlExtractor<>(dataSource, sql, extractClass, partitionColumn, sqlParameters, true,
+                null, null);
+    }
+
+    /**
+     * Treats the partition column as a date column and sets its bounds rather than discovering them. Rows outside of
+     * the bounds will not be extracted.
+     * @param lowerBound The earliest value of the partition column to extract.
+     * @param upperBound The latest value of the partition column to extract.
+     * @return A copy of this extractor that divides the query into ranges of dates.
+     */
+    public PartitionedSqlExtractor<T> withDatePartitionBounds(DateTime lowerBound, DateTime upperBound) {
+        return withBounds(true, lowerBound.getMillis(), upperBound.getMillis());
+    }
+
+    /**
+     * Divides the query into disjoint ranges of the partition column of as near equal width as possible. Fewer ranges
+     * are returned if the bounds are too close together to give each one at least one value, and a single range that
+     * extracts nothing is returned if the query has no rows.
+     * @param maximumSplits The most ranges to divide the query into.
+     * @return A SqlExtractor for each range.
+     */
+    @Override
+    public List<Extractor<T>> split(int maximumSplits) {
+        if (maximumSplits < 1) {
+            throw new IllegalArgumentException("maximumSplits must be at least 1");
+        }
+
+        long[] bounds = lowerBound != null ? new long[] {lowerBound, upperBound} : discoverBounds();
+
+        if (bounds == null) {
+            // A range that ends before it starts, so extracts nothing
+            return ImmutableList.of(newRangeExtractor(1, 0));
+        }
+
+        List<Extractor<T>> rangeExtractors = new ArrayList<>();
+        List<long[]> ranges = divideRange(bounds[0], bounds[1], maximumSplits);
+
+        for (long[] range : ranges) {
+            rangeExtractors.add(newRangeExtractor(range[0], range[1]));
+        }
+
+        return rangeExtractors;
+    }
+
+    /**
+     * Prepares to extract the whole query as a single range.
+     * @param parentMetrics An EtlMetrics object to attach any counters or timers to, will be null if profiling is not
+     *                      required.
+     */
+    @Override
+    public void open(@Nullable EtlMetrics parentMetrics) {
+        unsplitExtractor = split(1).get(0);
+        unsplitExtractor.open(parentMetrics);
+    }
+
+    /**
+     * Extracts the next row of the query.
+     * @return The next row, or empty if there are no more.
+     */
+    @Override
+    public Optional<T> next() {
+        if (unsplitExtractor == null) {
+            throw new IllegalStateException("next() called on PartitionedSqlExtractor before it was opened");
+        }
+
+        return unsplitExtractor.next();
+    }
+
+    /**
+     * Closes the connection used to extract the query.
+     * @throws Exception If something goes wrong.
+     */
+    @Override
+    public void close() throws Exception {
+        if (unsplitExtractor != null) {
+            unsplitExtractor.close();
+        }
+    }
+
+    /**
+     * Divides the inclusive range of values between lowerBound and upperBound into at most maximumSplits inclusive
+     * ranges of as near equal width as possible. Ranges are inclusive so that the last one can end at Long.MAX_VALUE.
+     */
+    static List<long[]> divideRange(long lowerBound, long upperBound, int maximumSplits) {
+        long width;
+
+        try {
+            width = Math.addExact(Math.subtractExact(upperBound, lowerBound), 1);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Partition bounds are too far apart to divide: " + lowerBound + " to " +
+                    upperBound, e);
+        }
+
+        int splits = (int) Math.min(maximumSplits, width);
+        long baseWidth = width / splits;
+        long remainder = width % splits;
+        List<long[]> ranges = new ArrayList<>(splits);
+        long rangeStart = lowerBound;
+
+        for (int i = 0; i < splits; i++) {
+            long rangeEnd = rangeStart + (baseWidth - 1) + (i < remainder ? 1 : 0);
+            ranges.add(new long[] {rangeStart, rangeEnd});
+
+            if (rangeEnd < upperBound) {
+                rangeStart = rangeEnd + 1;
+            }
+        }
+
+        return ranges;
+    }
+
+    private PartitionedSqlExtractor<T> withBounds(boolean isDatePartitionColumn, long lowerBound, long upperBound) {
+        if (upperBound < lowerBound) {
+            throw new IllegalArgumentException("Partition upper bound is below its lower bound");
+        }
+
+        return new PartitionedSqlExtractor<>(dataSource, sql, extractClass, partitionColumn, sqlParameters,
+                isDatePartitionColumn, lowerBound, upperBound);
+    }
+
+    private Extractor<T> newRangeExtractor(long rangeStart, long rangeEnd) {
+        Map<String, Object> rangeParameters = new HashMap<>(sqlParameters);
+        String upperBoundOperator;
+
+        // Whole numbers end exactly on the last value of the range, but a date column can hold values between the
+        // last millisecond of the range and the next one
+        if (isDatePartitionColumn) {
+            rangeParameters.put(LOWER_BOUND_PARAMETER, new Timestamp(rangeStart));
+            rangeParameters.put(UPPER_BOUND_PARAMETER, new Timestamp(rangeEnd + 1));
+            upperBoundOperator = " < #";
+        } else {
+            rangeParameters.put(LOWER_BOUND_PARAMETER, rangeStart);
+            rangeParameters.put(UPPER_BOUND_PARAMETER, rangeEnd);
+            upperBoundOperator = " <= #";
+        }
+
+        String rangeSql = "SELECT * FROM (" + sql + ") partitioned_source WHERE " + partitionColumn + " >= #" +
+                LOWER_BOUND_PARAMETER + " AND " + partitionColumn + upperBoundOperator + UPPER_BOUND_PARAMETER;
+
+        return SqlExtractor.of(dataSource, rangeSql, extractClass).withSqlParameters(rangeParameters);
+    }
+
+    @Nullable
+    private long[] discoverBounds() {
+        String boundsSql = "SELECT MIN(" + partitionColumn + ") AS lowerBound, MAX(" + partitionColumn +
+                ") AS upperBound FROM (" + sql + ") partitioned_source";
+
+        if (isDatePartitionColumn) {
+            DateBounds dateBounds = extractBounds(boundsSql, DateBounds.class);
+            return dateBounds.getLowerBound() == null ? null :
+                    new long[] {dateBounds.getLowerBound().getMillis(), dateBounds.getUpperBound().getMillis()};
+        }
+
+        NumericBounds numericBounds = extractBounds(boundsSql, NumericBounds.class);
+        return numericBounds.getLowerBound() == null ? null :
+                new long[] {numericBounds.getLowerBound(), numericBounds.getUpperBound()};
+    }
+
+    private <B> B extractBounds(String boundsSql, Class<B> boundsClass) {
+        try (SqlExtractor<B> boundsExtractor = SqlExtractor.of(dataSource, boundsSql, boundsClass)
+                .withSqlParameters(sqlParameters)) {
+            boundsExtractor.open(null);
+            return boundsExtractor.next()
+                    .orElseThrow(() -> new IllegalStateException("Query for partition bounds returned no rows"));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to close extractor used to discover partition bounds", e);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.Extractor;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import lombok.EqualsAndHashCode;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import javax.annotation.Nullable;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * An Extractor that subscribes to a Reactive Streams Publisher and extracts the elements it publishes. Elements are
+ * only requested from the publisher as they are taken by next(), and next() is only called once the previous element
+ * has been accepted by the downstream stage, so when the executors downstream are saturated and block the extractor
+ * the publisher is throttled as well : no more than bufferSize elements are ever outstanding, however bursty the
+ * publisher is.
+ *
+ * next() blocks until the publisher has published another element, and returns empty once the publisher has completed.
+ * If the publisher signals an error, next() will throw an UnrecoverableStreamFailureException as there is no way to
+ * carry on from where it left off.
+ *
+ * @param <T> Type of object that is extracted.
+ */
+@EqualsAndHashCode(exclude = {"buffer", "subscription", "elementsTakenSinceLastRequest", "isTerminated"})
+public class PublisherExtractor<T> implements Extractor<T> {
+    private final static int DEFAULT_BUFFER_SIZE = 256;
+    private final static Object COMPLETE = new Object();
+
+    private final Publisher<T> publisher;
+    private final int bufferSize;
+    private BlockingQueue<Object> buffer;
+    private volatile Subscription subscription;
+    private int elementsTakenSinceLastRequest = 0;
+    private boolean isTerminated = false;
+
+    /**
+     * Constructs an extractor that will subscribe to the given publisher when it is opened.
+     * @param publisher The publisher to subscribe to.
+     * @param <T> Type of object that is extracted.
+     * @return A new PublisherExtractor.
+     */
+    public static <T> PublisherExtractor<T> of(Publisher<T> publisher) {
+        return new PublisherExtractor<>(publisher, DEFAULT_BUFFER_SIZE);
+    }
+
+    private PublisherExtractor(Publisher<T> publisher, int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be at least 1");
+        }
+
+        this.publisher = publisher;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Sets the most elements that can be requested from the publisher ahead of being extracted. Demand is replenished
+     * in chunks of half this size to keep the number of request signals down.
+     * @param bufferSize The most elements to buffer.
+     * @return A copy of this extractor with the new buffer size.
+     */
+    public PublisherExtractor<T> withBufferSize(int bufferSize) {
+        return new PublisherExtractor<>(publisher, bufferSize);
+    }
+
+    /**
+     * Subscribes to the publisher.
+     * @param parentMetrics An EtlMetrics object to attach any counters or timers to, will be null if profiling is not
+     *                      required.
+     */
+    @Override
+    public void open(@Nullable EtlMetrics parentMetrics) {
+        if (buffer != null) {
+            throw new IllegalStateException("PublisherExtractor has already been opened");
+        }
+
+        // Outstanding demand never exceeds bufferSize, so the extra slot always has room for the terminal signal
+        buffer = new ArrayBlockingQueue<>(bufferSize + 1);
+        publisher.subscribe(new BufferingSubscriber());
+    }
+
+    /**
+     * Waits for the next element published and extracts it.
+     * @return The next element, or empty if the publisher has completed.
+     * @throws UnrecoverableStreamFailureException If the publisher signalled an error or the thread was interrupted.
+     */
+    @Override
+    public Optional<T> next() throws UnrecoverableStreamFailureException {
+        if (buffer == null) {
+            throw new IllegalStateException("next() called on PublisherExtractor before it was opened");
+        }
+
+        if (isTerminated) {
+            return Optional.empty();
+        }
+
+        Object signal;
+
+        try {
+            signal = buffer.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnrecoverableStreamFailureException("Interrupted waiting for publisher", e);
+        }
+
+        if (signal == COMPLETE) {
+            isTerminated = true;
+            return Optional.empty();
+        }
+
+        if (signal instanceof PublisherError) {
+            isTerminated = true;
+            throw new UnrecoverableStreamFailureException("Publisher signalled an error",
+                    ((PublisherError) signal).getCause());
+        }
+
+        replenishDemand();
+
+        @SuppressWarnings("unchecked")
+        T element = (T) signal;
+        return Optional.of(element);
+    }
+
+    /**
+     * Cancels the subscription to the publisher if it has not already terminated.
+     */
+    @Override
+    public void close() {
+        if (subscription != null && !isTerminated) {
+            isTerminated = true;
+            subscription.cancel();
+        }
+    }
+
+    private void replenishDemand() {
+        elementsTakenSinceLastRequest++;
+
+        if (elementsTakenSinceLastRequest >= Math.max(1, bufferSize / 2)) {
+            subscription.request(elementsTakenSinceLastRequest);
+            elementsTakenSinceLastRequest = 0;
+        }
+    }
+
+    private void terminate(Object signal) {
+        if (!buffer.offer(signal)) {
+            // Only a publisher that ignored demand can fill the buffer, and the stream is being aborted regardless
+            buffer.clear();
+            buffer.offer(signal);
+        }
+    }
+
+    private class BufferingSubscriber implements Subscriber<T> {
+        @Override
+        public void onSubscribe(Subscription newSubscription) {
+            if (subscription != null) {
+                newSubscription.cancel();
+                return;
+            }
+
+            subscription = newSubscription;
+            newSubscription.request(bufferSize);
+        }
+
+        @Override
+        public void onNext(T element) {
+            if (element == null) {
+                throw new NullPointerException("Publisher published a null element");
+            }
+
+            if (!buffer.offer(element)) {
+                subscription.cancel();
+                terminate(new PublisherError(new IllegalStateException("Publisher published more elements than " +
+                        "were requested")));
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (throwable == null) {
+                throw new NullPointerException("Publisher signalled a null error");
+            }
+
+            terminate(new PublisherError(throwable));
+        }
+
+        @Override
+        public void onComplete() {
+            terminate(COMPLETE);
+        }
+    }
+
+    private static class PublisherError {
+        private final Throwable cause;
+
+        PublisherError(Throwable cause) {
+            this.cause = cause;
+        }
+
+        Throwable getCause() {
+            return cause;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+import com.amazon.pocketEtl.Loader;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * A Loader that exposes the objects loaded into it as a Reactive Streams Publisher, so the output of an ETL stream can
+ * be consumed by a reactive service. The publisher accepts a single subscriber, and each object loaded is passed to
+ * that subscriber's onNext() as soon as it has requested one. load() blocks until the subscriber has signalled demand,
+ * so a slow subscriber holds up the threads of the load stage, which in turn fills the stage queues and throttles the
+ * extractor at the source. Objects loaded before anything has subscribed wait for the subscriber in the same way.
+ *
+ * Closing the loader completes the subscriber. If the subscriber cancels its subscription, any further attempt to load
+ * an object will throw an UnrecoverableStreamFailureException, as there is nothing left to deliver it to.
+ *
+ * The subscriber is always signalled while holding a lock on this loader, so its onNext() is never called concurrently
+ * even when the load stage has many threads, but it should not block waiting for signals from other threads.
+ *
+ * @param <T> Type of object that is loaded and published.
+ */
+public class PublisherLoader<T> implements Loader<T>, Publisher<T> {
+    private final Object lock = new Object();
+
+    private Subscriber<? super T> subscriber = null;
+    private long demand = 0;
+    private boolean isCancelled = false;
+    private boolean isClosed = false;
+
+    /**
+     * Waits for the subscriber to request another object and then publishes this one to it.
+     * @param objectToLoad The object to publish.
+     * @throws UnrecoverableStreamFailureException If the subscription has been cancelled or the thread was
+     *                                             interrupted.
+     */
+    @Override
+    public void load(T objectToLoad) throws UnrecoverableStreamFailureException {
+        synchronized (lock) {
+            while (!isCancelled && demand == 0) {
+                if (isClosed) {
+                    throw new IllegalStateException("Attempt to load an object into a closed PublisherLoader");
+                }
+
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UnrecoverableStreamFailureException("Interrupted waiting for subscriber demand", e);
+                }
+            }
+
+            if (isCancelled) {
+                throw new UnrecoverableStreamFailureException("Subscriber cancelled its subscription");
+            }
+
+            demand--;
+            subscriber.onNext(objectToLoad);
+        }
+    }
+
+    /**
+     * Completes the subscriber. A subscriber that subscribes after the loader was closed is completed immediately.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (isClosed) {
+                return;
+            }
+
+            isClosed = true;
+
+            if (subscriber != null && !isCancelled) {
+                subscriber.onComplete();
+            }
+
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Subscribes to the objects loaded. Only one subscriber is accepted, any further subscribers are signalled an
+     * error.
+     * @param newSubscriber The subscriber that will receive the objects loaded.
+     */
+    @Override
+    public void subscribe(Subscriber<? super T> newSubscriber) {
+        if (newSubscriber == null) {
+            throw new NullPointerException("Subscriber cannot be null");
+        }
+
+        synchronized (lock) {
+            if (subscriber != null) {
+                newSubscriber.onSubscribe(new RejectedSubscription());
+                newSubscriber.onError(new IllegalStateException("PublisherLoader only accepts a single subscriber"));
+                return;
+            }
+
+            subscriber = newSubscriber;
+            subscriber.onSubscribe(new LoaderSubscription());
+
+            if (isClosed && !isCancelled) {
+                subscriber.onComplete();
+            }
+        }
+    }
+
+    private class LoaderSubscription implements Subscription {
+        @Override
+        public void request(long n) {
+            synchronized (lock) {
+                if (isCancelled) {
+                    return;
+                }
+
+                if (n <= 0) {
+                    isCancelled = true;
+                    subscriber.onError(new IllegalArgumentException("Subscriber requested a non-positive number " +
+                            "of elements: " + n));
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+
+                lock.notifyAll();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (lock) {
+                isCancelled = true;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private static class RejectedSubscription implements Subscription {
+        @Override
+        public void request(long n) {
+            //no-op
+        }
+
+        @Override
+        public void cancel() {
+            //no-op
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.checkpoint;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LocalFileCheckpointStoreTest {
+    private final static String CHECKPOINT_NAME = "TestCheckpoint";
+    private final static Checkpoint CHECKPOINT = new Checkpoint("position=key:1234\nwith newline", 42);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+    private LocalFileCheckpointStore localFileCheckpointStore;
+
+    @Before
+    public void constructCheckpointStore() {
+        directory = temporaryFolder.getRoot().toPath().resolve("checkpoints");
+        localFileCheckpointStore = new LocalFileCheckpointStore(directory);
+    }
+
+    @Test
+    public void loadReturnsEmptyIfNothingWasSaved() throws IOException {
+        assertThat(localFileCheckpointStore.load(CHECKPOINT_NAME), is(Optional.empty()));
+    }
+
+    @Test
+    public void loadReturnsTheSavedCheckpoint() throws IOException {
+        localFileCheckpointStore.save(CHECKPOINT_NAME, CHECKPOINT);
+
+        assertThat(localFileCheckpointStore.load(CHECKPOINT_NAME), equalTo(Optional.of(CHECKPOINT)));
+    }
+
+    @Test
+    public void saveReplacesThePreviousCheckpoint() throws IOException {
+        Checkpoint laterCheckpoint = new Checkpoint("later", 100);
+
+        localFileCheckpointStore.save(CHECKPOINT_NAME, CHECKPOINT);
+        localFileCheckpointStore.save(CHECKPOINT_NAME, laterCheckpoint);
+
+        assertThat(localFileCheckpointStore.load(CHECKPOINT_NAME), equalTo(Optional.of(laterCheckpoint)));
+    }
+
+    @Test
+    public void saveDoesNotLeaveTemporaryFilesBehind() throws IOException {
+        localFileCheckpointStore.save(CHECKPOINT_NAME, CHECKPOINT);
+
+        assertThat(Files.list(directory).count(), is(1L));
+    }
+
+    @Test
+    public void checkpointsAreKeptApartByName() throws IOException {
+        Checkpoint otherCheckpoint = new Checkpoint("other", 7);
+
+        localFileCheckpointStore.save(CHECKPOINT_NAME, CHECKPOINT);
+        localFileCheckpointStore.save("OtherCheckpoint", otherCheckpoint);
+
+        assertThat(localFileCheckpointStore.load(CHECKPOINT_NAME), equalTo(Optional.of(CHECKPOINT)));
+        assertThat(localFileCheckpointStore.load("OtherCheckpoint"), equalTo(Optional.of(otherCheckpoint)));
+    }
+
+    @Test
+    public void clearRemovesTheCheckpoint() throws IOException {
+        localFileCheckpointStore.save(CHECKPOINT_NAME, CHECKPOINT);
+        localFileCheckpointStore.clear(CHECKPOINT_NAME);
+
+        assertThat(localFileCheckpointStore.load(CHECKPOINT_NAME), is(Optional.empty()));
+    }
+
+    @Test
+    public void clearDoesNothingIfNothingWasSaved() throws IOException {
+        localFileCheckpointStore.clear(CHECKPOINT_NAME);
+    }
+
+    @Test(expected = IOException.class)
+    public void loadThrowsIOExceptionForACorruptCheckpoint() throws IOException {
+        Files.createDirectories(directory);
+        Files.write(directory.resolve(CHECKPOINT_NAME + ".checkpoint"), "position=abc".getBytes());
+
+        localFileCheckpointStore.load(CHECKPOINT_NAME);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void saveThrowsIllegalArgumentExceptionForANameThatIsAPath() throws IOException {
+        localFileCheckpointStore.save("../" + CHECKPOINT_NAME, CHECKPOINT);
+    }
+}
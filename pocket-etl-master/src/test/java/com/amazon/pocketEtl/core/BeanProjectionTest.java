@@ -0,0 +1,156 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class BeanProjectionTest {
+    private final BeanProjection beanProjection = new BeanProjection(new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    private static class WideDTO {
+        private String first;
+        private int second;
+        private Instant third;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    private static class NarrowDTO {
+        private String first;
+        private Integer second;
+        private String unmatched = "default";
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    private static class StringSecondDTO {
+        private String second;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    private static class NestedDTO {
+        private List<String> first;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    private static class RenamedDTO {
+        @JsonProperty("first")
+        private String renamed;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    private static class FormattedDTO {
+        @JsonFormat(shape = JsonFormat.Shape.STRING)
+        private int second;
+    }
+
+    @Test
+    public void projectCopiesMatchingPropertiesAndLeavesOthersAtDefault() {
+        WideDTO source = new WideDTO("first-value", 123, Instant.now());
+
+        Optional<NarrowDTO> result = beanProjection.project(source, NarrowDTO.class);
+
+        assertThat(result, equalTo(Optional.of(new NarrowDTO("first-value", 123, "default"))));
+    }
+
+    @Test
+    public void projectHonorsJacksonPropertyNames() {
+        Optional<RenamedDTO> result = beanProjection.project(new WideDTO("first-value", 1, null), RenamedDTO.class);
+
+        assertThat(result, equalTo(Optional.of(new RenamedDTO("first-value"))));
+    }
+
+    @Test
+    public void projectCopiesNullValues() {
+        NarrowDTO source = new NarrowDTO(null, null, null);
+
+        Optional<NarrowDTO> result = beanProjection.project(source, NarrowDTO.class);
+
+        assertThat(result, equalTo(Optional.of(source)));
+    }
+
+    @Test
+    public void projectDoesNotHandleTypeConversions() {
+        Optional<StringSecondDTO> result = beanProjection.project(new WideDTO("first", 123, null), StringSecondDTO.class);
+
+        assertThat(result, equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void projectDoesNotHandleUnboxingIntoPrimitives() {
+        Optional<WideDTO> result = beanProjection.project(new NarrowDTO("first", 123, "x"), WideDTO.class);
+
+        assertThat(result, equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void projectDoesNotHandleMutableValues() {
+        Optional<NestedDTO> result = beanProjection.project(new NestedDTO(null), NestedDTO.class);
+
+        assertThat(result, equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void projectDoesNotHandleJacksonCustomizations() {
+        Optional<FormattedDTO> result = beanProjection.project(new WideDTO("first", 123, null), FormattedDTO.class);
+
+        assertThat(result, equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void toMapReadsAllPropertiesIncludingNulls() {
+        Map<Object, Object> result = beanProjection.toMap(new NarrowDTO("first-value", null, "x"))
+                .orElseThrow(RuntimeException::new);
+
+        assertThat(result.size(), is(3));
+        assertThat(result.get("first"), equalTo((Object) "first-value"));
+        assertThat(result.containsKey("second"), is(true));
+        assertThat(result.get("unmatched"), equalTo((Object) "x"));
+    }
+
+    @Test
+    public void toMapDoesNotHandleMutableValues() {
+        assertThat(beanProjection.toMap(new NestedDTO(null)), equalTo(Optional.empty()));
+    }
+}
@@ -23,10 +23,16 @@ import lombok.NoArgsConstructor;
 import org.joda.time.DateTime;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.Map;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class EtlStreamObjectTest {
@@ -209,6 +215,36 @@ public class EtlStreamObjectTest {
         assertThat(actualObject, equalTo(expectedObject));
     }
 
+    @Test
+    public void copiesDoNotShareUpdatesToDeepDataStructures() {
+        TestDTO6 initialObject =
+            TestDTO6.builder().outer(TestDTO2.builder().first("test-1").second("test-2").build()).build();
+        EtlStreamObject etlStreamObject = EtlStreamObject.of(initialObject);
+
+        EtlStreamObject firstCopy = etlStreamObject.createCopy()
+            .with(TestDTO5.builder().outer(TestDTO1.builder().first("test-3").build()).build());
+        EtlStreamObject secondCopy = etlStreamObject.createCopy()
+            .with(TestDTO5.builder().outer(TestDTO1.builder().first("test-4").build()).build());
+
+        assertThat(firstCopy.get(TestDTO6.class),
+            equalTo(TestDTO6.builder().outer(TestDTO2.builder().first("test-3").second("test-2").build()).build()));
+        assertThat(secondCopy.get(TestDTO6.class),
+            equalTo(TestDTO6.builder().outer(TestDTO2.builder().first("test-4").second("test-2").build()).build()));
+        assertThat(etlStreamObject.get(TestDTO6.class), equalTo(initialObject));
+    }
+
+    @Test
+    public void updatingTheOriginalDoesNotAffectCopies() {
+        EtlStreamObject etlStreamObject = EtlStreamObject.of(TestDTO2.builder().first("test-1").second("test-2").build());
+        EtlStreamObject copy = etlStreamObject.createCopy();
+
+        etlStreamObject.with(TestDTO1.builder().first("test-3").build());
+
+        assertThat(copy.get(TestDTO2.class), equalTo(TestDTO2.builder().first("test-1").second("test-2").build()));
+        assertThat(etlStreamObject.get(TestDTO2.class),
+            equalTo(TestDTO2.builder().first("test-3").second("test-2").build()));
+    }
+
     @Test
     public void handlesMapsKeyedByString() {
         TestDTO7 objectToSerialize = TestDTO7.builder().outer(ImmutableMap.of("key1", "value1")).build();
@@ -232,4 +268,91 @@ public class EtlStreamObjectTest {
 
         etlStreamObject.get(Object.class);
     }
+
+    @Test
+    public void copiesInheritTheSequenceNumber() {
+        EtlStreamObject etlStreamObject = EtlStreamObject.of(TestDTO1.builder().first("test").build())
+                .withSequenceNumber(42);
+
+        assertThat(etlStreamObject.createCopy().getSequenceNumber(), equalTo(42L));
+    }
+
+    @Test
+    public void objectsAreUnsequencedByDefault() {
+        EtlStreamObject etlStreamObject = EtlStreamObject.of(TestDTO1.builder().first("test").build());
+
+        assertThat(etlStreamObject.getSequenceNumber(), equalTo(EtlStreamObject.UNSEQUENCED));
+    }
+
+    @Test
+    public void recordIsCompletedWhenItsObjectIsMarkedCompleted() {
+        RecordCompletion recordCompletion = new RecordCompletion(0, "position");
+        EtlStreamObject etlStreamObject = EtlStreamObject.of(TestDTO1.builder().first("test").build())
+                .withRecordCompletion(recordCompletion);
+
+        assertThat(recordCompletion.isCompleted(), equalTo(false));
+        etlStreamObject.markCompleted();
+        assertThat(recordCompletion.isCompleted(), equalTo(true));
+    }
+
+    @Test
+    public void recordIsNotCompletedUntilEveryCopyIsMarkedCompleted() {
+        RecordCompletion recordCompletion = new RecordCompletion(0, "position");
+        EtlStreamObject etlStreamObject = EtlStreamObject.of(TestDTO1.builder().first("test").build())
+                .withRecordCompletion(recordCompletion);
+        EtlStreamObject firstCopy = etlStreamObject.createCopy();
+        EtlStreamObject secondCopy = etlStreamObject.createCopy();
+
+        etlStreamObject.markCompleted();
+        firstCopy.markCompleted();
+        assertThat(recordCompletion.isCompleted(), equalTo(false));
+        secondCopy.markCompleted();
+        assertThat(recordCompletion.isCompleted(), equalTo(true));
+    }
+
+    @Test
+    public void markCompletedDoesNothingWhenCompletionIsNotTracked() {
+        EtlStreamObject.of(TestDTO1.builder().first("test").build()).markCompleted();
+    }
+
+    @Test
+    public void objectReadBackFromWriteToHasTheSameSequenceNumberAndData() throws Exception {
+        EtlStreamObject etlStreamObject = EtlStreamObject.of(TestDTO1.builder().first("one").build())
+                .with(TestDTO2.builder().second("two").build())
+                .withSequenceNumber(42);
+
+        EtlStreamObject result = writeAndReadBack(etlStreamObject);
+
+        assertThat(result.getSequenceNumber(), equalTo(42L));
+        assertThat(result.get(TestDTO2.class), equalTo(TestDTO2.builder().first("one").second("two").build()));
+    }
+
+    @Test
+    public void objectWrittenBeforeItsDataWasConvertedToAMapCanBeReadBack() throws Exception {
+        DateTime dateTime = DateTime.now();
+        Instant instant = Instant.now();
+        EtlStreamObject etlStreamObject =
+                EtlStreamObject.of(TestDTO4.builder().first(dateTime).second(instant).build());
+
+        TestDTO4a result = writeAndReadBack(etlStreamObject).get(TestDTO4a.class);
+
+        assertThat(result.getFirst().withZone(dateTime.getZone()), equalTo(dateTime));
+        assertThat(result.getSecond(), equalTo(instant));
+    }
+
+    @Test
+    public void recordCompletionIsNotWrittenByWriteTo() throws Exception {
+        EtlStreamObject etlStreamObject = EtlStreamObject.of(TestDTO1.builder().first("test").build())
+                .withRecordCompletion(new RecordCompletion(0, "position"));
+
+        assertThat(writeAndReadBack(etlStreamObject).getRecordCompletion(), nullValue());
+    }
+
+    private static EtlStreamObject writeAndReadBack(EtlStreamObject etlStreamObject) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        etlStreamObject.writeTo(new DataOutputStream(byteArrayOutputStream));
+
+        return EtlStreamObject.readFrom(
+                new DataInputStream(new ByteArrayInputStream(byteArrayOutputStream.toByteArray())));
+    }
 }
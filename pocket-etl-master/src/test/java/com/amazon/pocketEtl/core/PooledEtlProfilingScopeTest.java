@@ -0,0 +1,197 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlTestBase;
+import com.sun.management.ThreadMXBean;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.lang.management.ManagementFactory;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PooledEtlProfilingScopeTest extends EtlTestBase {
+    private static final String SCOPE_NAME = "TestScope";
+    private static final String COUNTER_NAME = "TestCounter";
+    private static final int ALLOCATION_WARMUP_ITERATIONS = 20_000;
+    private static final int ALLOCATION_MEASURED_ITERATIONS = 1_000_000;
+
+    @Test
+    public void closeRecordsTimeAndClosesChildMetrics() {
+        PooledEtlProfilingScope.open(mockMetrics, SCOPE_NAME).close();
+
+        verify(mockMetrics).addTime(eq(SCOPE_NAME), anyDouble());
+        verify(mockMetrics).close();
+    }
+
+    @Test
+    public void addCounterAddsCountToChildMetrics() {
+        try (PooledEtlProfilingScope scope = PooledEtlProfilingScope.open(mockMetrics, SCOPE_NAME)) {
+            scope.addCounter(COUNTER_NAME, 3);
+        }
+
+        verify(mockMetrics).addCount(eq(COUNTER_NAME), eq(3.0));
+    }
+
+    @Test
+    public void getMetricsReturnsChildMetrics() {
+        try (PooledEtlProfilingScope scope = PooledEtlProfilingScope.open(mockMetrics, SCOPE_NAME)) {
+            assertThat(scope.getMetrics(), is(mockMetrics));
+        }
+    }
+
+    @Test
+    public void scopesWithoutMetricsAreASharedScopeThatDoesNothing() {
+        PooledEtlProfilingScope scope = PooledEtlProfilingScope.open(null, SCOPE_NAME);
+
+        scope.addCounter(COUNTER_NAME, 1);
+        scope.close();
+
+        assertThat(scope.getMetrics(), nullValue());
+        assertThat(PooledEtlProfilingScope.open(null, "AnotherScope"), sameInstance(scope));
+    }
+
+    @Test
+    public void nestedScopesAreDistinctAndAreReusedOnceClosed() {
+        PooledEtlProfilingScope outerScope;
+        PooledEtlProfilingScope innerScope;
+
+        try (PooledEtlProfilingScope scope1 = PooledEtlProfilingScope.open(mockMetrics, SCOPE_NAME)) {
+            try (PooledEtlProfilingScope scope2 = PooledEtlProfilingScope.open(mockMetrics, SCOPE_NAME)) {
+                assertThat(scope2, not(sameInstance(scope1)));
+                outerScope = scope1;
+                innerScope = scope2;
+            }
+        }
+
+        try (PooledEtlProfilingScope scope1 = PooledEtlProfilingScope.open(mockMetrics, SCOPE_NAME)) {
+            assertThat(scope1, sameInstance(outerScope));
+
+            try (PooledEtlProfilingScope scope2 = PooledEtlProfilingScope.open(mockMetrics, SCOPE_NAME)) {
+                assertThat(scope2, sameInstance(innerScope));
+            }
+        }
+
+        verify(mockMetrics, times(4)).addTime(eq(SCOPE_NAME), anyDouble());
+    }
+
+    @Test
+    public void closingAScopeTwiceOnlyRecordsItOnce() {
+        PooledEtlProfilingScope scope = PooledEtlProfilingScope.open(mockMetrics, SCOPE_NAME);
+
+        scope.close();
+        scope.close();
+
+        verify(mockMetrics, times(1)).addTime(eq(SCOPE_NAME), anyDouble());
+    }
+
+    @Test
+    public void scopesNestedDeeperThanTheInitialStackStillWork() {
+        openNestedScopes(40);
+
+        verify(mockMetrics, times(40)).addTime(eq(SCOPE_NAME), anyDouble());
+    }
+
+    @Test
+    public void perRecordPathAllocatesNothingWithMetrics() {
+        EtlMetrics reusedChildMetrics = new NonAllocatingEtlMetrics();
+
+        assertThat(bytesAllocatedPerIteration(() -> openAndCloseNestedScopes(reusedChildMetrics)), lessThan(1.0));
+    }
+
+    @Test
+    public void perRecordPathAllocatesNothingWithoutMetrics() {
+        assertThat(bytesAllocatedPerIteration(() -> openAndCloseNestedScopes(null)), lessThan(1.0));
+    }
+
+    private void openAndCloseNestedScopes(EtlMetrics parentMetrics) {
+        try (PooledEtlProfilingScope outerScope = PooledEtlProfilingScope.open(parentMetrics, SCOPE_NAME)) {
+            try (PooledEtlProfilingScope innerScope = PooledEtlProfilingScope.open(parentMetrics, SCOPE_NAME)) {
+                innerScope.addCounter(COUNTER_NAME, 1);
+            }
+
+            outerScope.addCounter(COUNTER_NAME, 1);
+        }
+    }
+
+    // Measured with the allocation counter of the current thread, so allocations made by other threads, such as the
+    // JIT compiler, are not counted. A whole byte per iteration would mean at least one object is allocated for every
+    // few iterations, so anything under that is noise from the measurement itself.
+    private static double bytesAllocatedPerIteration(Runnable iteration) {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+        ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < ALLOCATION_WARMUP_ITERATIONS; i++) {
+            iteration.run();
+        }
+
+        long allocatedBytesBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0; i < ALLOCATION_MEASURED_ITERATIONS; i++) {
+            iteration.run();
+        }
+
+        long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBytesBefore;
+        return (double) allocatedBytes / ALLOCATION_MEASURED_ITERATIONS;
+    }
+
+    private void openNestedScopes(int depth) {
+        if (depth == 0) {
+            return;
+        }
+
+        try (PooledEtlProfilingScope ignored = PooledEtlProfilingScope.open(mockMetrics, SCOPE_NAME)) {
+            openNestedScopes(depth - 1);
+        }
+    }
+
+    // Hands out itself as its own child metrics, so that only allocations made by the scopes are measured
+    private static final class NonAllocatingEtlMetrics implements EtlMetrics {
+        @Override
+        public EtlMetrics createChildMetrics() {
+            return this;
+        }
+
+        @Override
+        public void addCount(String keyName, double count) {
+        }
+
+        @Override
+        public void addTime(String keyName, double timeInMilliSeconds) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
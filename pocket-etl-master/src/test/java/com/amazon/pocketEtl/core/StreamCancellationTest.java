@@ -0,0 +1,133 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core;
+
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class StreamCancellationTest {
+    private static final long ABORT_TIMEOUT_MILLIS = 60_000;
+
+    private StreamCancellation streamCancellation;
+
+    @Before
+    public void constructStreamCancellation() {
+        streamCancellation = new StreamCancellation(ABORT_TIMEOUT_MILLIS);
+    }
+
+    @Test
+    public void isNotCancelledUntilCancelIsCalled() {
+        assertThat(streamCancellation.isCancelled(), is(false));
+        assertThat(streamCancellation.getCause(), nullValue());
+
+        streamCancellation.throwIfCancelled();
+    }
+
+    @Test
+    public void cancelRecordsTheCause() {
+        UnrecoverableStreamFailureException cause = new UnrecoverableStreamFailureException("test exception");
+
+        assertThat(streamCancellation.cancel(cause), is(true));
+
+        assertThat(streamCancellation.isCancelled(), is(true));
+        assertThat(streamCancellation.getCause(), is(cause));
+    }
+
+    @Test
+    public void onlyTheFirstCancelHasAnyEffect() {
+        UnrecoverableStreamFailureException firstCause = new UnrecoverableStreamFailureException("first");
+        AtomicInteger timesNotified = new AtomicInteger(0);
+        streamCancellation.onCancel(timesNotified::incrementAndGet);
+
+        streamCancellation.cancel(firstCause);
+
+        assertThat(streamCancellation.cancel(new UnrecoverableStreamFailureException("second")), is(false));
+        assertThat(streamCancellation.getCause(), is(firstCause));
+        assertThat(timesNotified.get(), is(1));
+    }
+
+    @Test
+    public void throwIfCancelledThrowsTheCause() {
+        UnrecoverableStreamFailureException cause = new UnrecoverableStreamFailureException("test exception");
+        streamCancellation.cancel(cause);
+
+        try {
+            streamCancellation.throwIfCancelled();
+            fail("Expected UnrecoverableStreamFailureException");
+        } catch (UnrecoverableStreamFailureException e) {
+            assertThat(e, is(cause));
+        }
+    }
+
+    @Test
+    public void listenerRegisteredAfterCancellationIsRunStraightAway() {
+        AtomicInteger timesNotified = new AtomicInteger(0);
+        streamCancellation.cancel(new UnrecoverableStreamFailureException("test exception"));
+
+        streamCancellation.onCancel(timesNotified::incrementAndGet);
+
+        assertThat(timesNotified.get(), is(1));
+    }
+
+    @Test
+    public void failingListenerDoesNotStopTheOthersBeingNotified() {
+        AtomicInteger timesNotified = new AtomicInteger(0);
+        streamCancellation.onCancel(() -> {
+            throw new RuntimeException("test exception");
+        });
+        streamCancellation.onCancel(timesNotified::incrementAndGet);
+
+        streamCancellation.cancel(new UnrecoverableStreamFailureException("test exception"));
+
+        assertThat(timesNotified.get(), is(1));
+    }
+
+    @Test
+    public void remainingAbortTimeIsTheWholeTimeoutUntilCancelled() {
+        assertThat(streamCancellation.getRemainingAbortTimeMillis(), is(ABORT_TIMEOUT_MILLIS));
+    }
+
+    @Test
+    public void remainingAbortTimeCountsDownFromCancellation() {
+        streamCancellation.cancel(new UnrecoverableStreamFailureException("test exception"));
+
+        assertThat(streamCancellation.getRemainingAbortTimeMillis(), lessThanOrEqualTo(ABORT_TIMEOUT_MILLIS));
+        assertThat(streamCancellation.getRemainingAbortTimeMillis(), greaterThan(0L));
+    }
+
+    @Test
+    public void remainingAbortTimeIsZeroOnceTheTimeIsUp() {
+        streamCancellation = new StreamCancellation(0);
+        streamCancellation.cancel(new UnrecoverableStreamFailureException("test exception"));
+
+        assertThat(streamCancellation.getRemainingAbortTimeMillis(), is(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorRejectsANegativeTimeout() {
+        new StreamCancellation(-1);
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ *   Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.AsyncLoader;
+import com.amazon.pocketEtl.DurableAsyncLoader;
+import com.amazon.pocketEtl.EtlTestBase;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.RecordCompletion;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AsyncLoaderEtlConsumerTest extends EtlTestBase {
+    private static final String TEST_NAME = "TestName";
+    private static final int MAX_LOADS_IN_FLIGHT = 2;
+
+    @Mock
+    private AsyncLoader<TestDTO> mockAsyncLoader;
+
+    @Mock
+    private DurableAsyncLoader<TestDTO> mockDurableAsyncLoader;
+
+    @Mock
+    private EtlConsumer mockErrorEtlConsumer;
+
+    @Mock
+    private EtlStreamObject mockEtlStreamObject;
+
+    @Mock
+    private TestDTO mockTestDTO;
+
+    private final List<CompletableFuture<Void>> pendingLoads = new ArrayList<>();
+
+    private AsyncLoaderEtlConsumer<TestDTO> asyncLoaderConsumer;
+
+    @Before
+    public void constructWorker() {
+        when(mockEtlStreamObject.get(any())).thenReturn(mockTestDTO);
+        when(mockAsyncLoader.load(any())).thenAnswer(invocation -> {
+            CompletableFuture<Void> load = new CompletableFuture<>();
+
+            synchronized (pendingLoads) {
+                pendingLoads.add(load);
+            }
+
+            return load;
+        });
+
+        asyncLoaderConsumer = new AsyncLoaderEtlConsumer<>(TEST_NAME, mockAsyncLoader, TestDTO.class,
+                mockErrorEtlConsumer, MAX_LOADS_IN_FLIGHT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorRejectsAnEmptyInFlightWindow() {
+        new AsyncLoaderEtlConsumer<>(TEST_NAME, mockAsyncLoader, TestDTO.class, mockErrorEtlConsumer, 0);
+    }
+
+    @Test
+    public void consumeStartsLoadingASingleObject() {
+        asyncLoaderConsumer.open(mockMetrics);
+        asyncLoaderConsumer.consume(mockEtlStreamObject);
+
+        verify(mockAsyncLoader).load(eq(mockTestDTO));
+    }
+
+    @Test
+    public void consumeMarksObjectCompletedOnlyWhenItsLoadCompletes() {
+        asyncLoaderConsumer.open(mockMetrics);
+        asyncLoaderConsumer.consume(mockEtlStreamObject);
+
+        verify(mockEtlStreamObject, never()).markCompleted();
+
+        pendingLoads.get(0).complete(null);
+
+        verify(mockEtlStreamObject).markCompleted();
+    }
+
+    @Test
+    public void consumePassesToTheErrorConsumerWhenTheLoadCompletesExceptionally() {
+        asyncLoaderConsumer.open(mockMetrics);
+        asyncLoaderConsumer.consume(mockEtlStreamObject);
+        pendingLoads.get(0).completeExceptionally(new RuntimeException("test"));
+
+        verify(mockErrorEtlConsumer).consume(mockEtlStreamObject);
+        verify(mockEtlStreamObject, never()).markCompleted();
+    }
+
+    @Test
+    public void consumePassesToTheErrorConsumerWhenTheLoaderThrows() {
+        doThrow(new RuntimeException("test")).when(mockAsyncLoader).load(any(TestDTO.class));
+
+        asyncLoaderConsumer.open(mockMetrics);
+        asyncLoaderConsumer.consume(mockEtlStreamObject);
+
+        verify(mockErrorEtlConsumer).consume(mockEtlStreamObject);
+        verify(mockEtlStreamObject, never()).markCompleted();
+    }
+
+    @Test
+    public void aNullCompletionStageIsTreatedAsAFailedLoad() throws Exception {
+        doReturn(null).when(mockAsyncLoader).load(any(TestDTO.class));
+
+        asyncLoaderConsumer.open(mockMetrics);
+
+        for (int i = 0; i <= MAX_LOADS_IN_FLIGHT; i++) {
+            asyncLoaderConsumer.consume(mockEtlStreamObject);
+        }
+
+        asyncLoaderConsumer.close();
+
+        verify(mockErrorEtlConsumer, times(MAX_LOADS_IN_FLIGHT + 1)).consume(mockEtlStreamObject);
+        verify(mockEtlStreamObject, never()).markCompleted();
+    }
+
+    @Test
+    public void consumeBlocksWhileTheInFlightWindowIsFull() throws Exception {
+        CountDownLatch thirdLoadStarted = new CountDownLatch(1);
+
+        asyncLoaderConsumer.open(mockMetrics);
+        asyncLoaderConsumer.consume(mockEtlStreamObject);
+        asyncLoaderConsumer.consume(mockEtlStreamObject);
+
+        Thread consumerThread = new Thread(() -> {
+            asyncLoaderConsumer.consume(mockEtlStreamObject);
+            thirdLoadStarted.countDown();
+        });
+        consumerThread.start();
+
+        assertThat(thirdLoadStarted.await(100, TimeUnit.MILLISECONDS), is(false));
+
+        pendingLoads.get(0).complete(null);
+
+        assertThat(thirdLoadStarted.await(5, TimeUnit.SECONDS), is(true));
+        consumerThread.join();
+    }
+
+    @Test
+    public void consumeBatchStartsLoadingEveryObject() {
+        List<EtlStreamObject> batch = new ArrayList<>();
+        batch.add(mockEtlStreamObject);
+        batch.add(mockEtlStreamObject);
+
+        asyncLoaderConsumer.open(mockMetrics);
+        asyncLoaderConsumer.consumeBatch(batch);
+
+        assertThat(pendingLoads.size(), is(2));
+    }
+
+    @Test
+    public void closeWaitsForLoadsInFlightToComplete() throws Exception {
+        CountDownLatch closed = new CountDownLatch(1);
+
+        asyncLoaderConsumer.open(mockMetrics);
+        asyncLoaderConsumer.consume(mockEtlStreamObject);
+
+        Thread closingThread = new Thread(() -> {
+            try {
+                asyncLoaderConsumer.close();
+                closed.countDown();
+            } catch (Exception ignored) {
+            }
+        });
+        closingThread.start();
+
+        assertThat(closed.await(100, TimeUnit.MILLISECONDS), is(false));
+        verify(mockAsyncLoader, never()).close();
+
+        pendingLoads.get(0).complete(null);
+
+        assertThat(closed.await(5, TimeUnit.SECONDS), is(true));
+        closingThread.join();
+        verify(mockAsyncLoader).close();
+    }
+
+    @Test
+    public void closeClosesErrorConsumer() throws Exception {
+        asyncLoaderConsumer.open(mockMetrics);
+        asyncLoaderConsumer.close();
+
+        verify(mockErrorEtlConsumer).close();
+    }
+
+    @Test
+    public void closeClosesErrorConsumerEvenAfterARuntimeException() throws Exception {
+        doThrow(new RuntimeException("Test exception")).when(mockAsyncLoader).close();
+        asyncLoaderConsumer.open(mockMetrics);
+        asyncLoaderConsumer.close();
+
+        verify(mockErrorEtlConsumer).close();
+    }
+
+    @Test
+    public void openOpensLoaderAndErrorConsumer() {
+        asyncLoaderConsumer.open(etlProfilingScope.getMetrics());
+
+        verify(mockAsyncLoader).open(eq(etlProfilingScope.getMetrics()));
+        verify(mockErrorEtlConsumer).open(eq(etlProfilingScope.getMetrics()));
+    }
+
+    @Test
+    public void anUnrecoverableLoadFailureAbortsTheStream() throws Exception {
+        asyncLoaderConsumer.open(mockMetrics);
+        asyncLoaderConsumer.consume(mockEtlStreamObject);
+        pendingLoads.get(0).completeExceptionally(new UnrecoverableStreamFailureException("test"));
+
+        verify(mockErrorEtlConsumer, never()).consume(any());
+
+        try {
+            asyncLoaderConsumer.consume(mockEtlStreamObject);
+            fail("Expected UnrecoverableStreamFailureException");
+        } catch (UnrecoverableStreamFailureException ignored) {
+        }
+
+        try {
+            asyncLoaderConsumer.close();
+            fail("Expected UnrecoverableStreamFailureException");
+        } catch (UnrecoverableStreamFailureException ignored) {
+        }
+    }
+
+    @Test
+    public void consumeRejectsACheckpointedObjectIfTheLoaderIsNotDurable() {
+        when(mockEtlStreamObject.getRecordCompletion()).thenReturn(new RecordCompletion(1, "position-1"));
+        asyncLoaderConsumer.open(mockMetrics);
+
+        try {
+            asyncLoaderConsumer.consume(mockEtlStreamObject);
+            fail("Expected UnrecoverableStreamFailureException");
+        } catch (UnrecoverableStreamFailureException ignored) {
+        }
+
+        verify(mockAsyncLoader, never()).load(any(TestDTO.class));
+        verify(mockEtlStreamObject, never()).markCompleted();
+    }
+
+    @Test
+    public void consumeLoadsACheckpointedObjectIfTheLoaderIsDurable() throws Exception {
+        when(mockEtlStreamObject.getRecordCompletion()).thenReturn(new RecordCompletion(1, "position-1"));
+        when(mockDurableAsyncLoader.load(any(TestDTO.class))).thenReturn(CompletableFuture.completedFuture(null));
+        asyncLoaderConsumer = new AsyncLoaderEtlConsumer<>(TEST_NAME, mockDurableAsyncLoader, TestDTO.class,
+                mockErrorEtlConsumer, MAX_LOADS_IN_FLIGHT);
+
+        asyncLoaderConsumer.open(mockMetrics);
+        asyncLoaderConsumer.consume(mockEtlStreamObject);
+        asyncLoaderConsumer.close();
+
+        verify(mockEtlStreamObject).markCompleted();
+    }
+}
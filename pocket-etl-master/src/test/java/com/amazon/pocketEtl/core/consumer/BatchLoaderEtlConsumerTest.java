@@ -0,0 +1,192 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.BatchLoader;
+import com.amazon.pocketEtl.DurableLoader;
+import com.amazon.pocketEtl.EtlTestBase;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.RecordCompletion;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BatchLoaderEtlConsumerTest extends EtlTestBase {
+    private static final String TEST_NAME = "TestName";
+    private static final String BAD_VALUE = "bad";
+
+    @Mock
+    private BatchLoader<TestDTO> mockBatchLoader;
+
+    @Mock
+    private DurableBatchLoader<TestDTO> mockDurableBatchLoader;
+
+    @Mock
+    private EtlConsumer mockErrorEtlConsumer;
+
+    private final List<List<String>> loadedBatches = new ArrayList<>();
+
+    // Fails any batch that contains a bad value, but loads every other batch
+    private final BatchLoader<TestDTO> fakeBatchLoader = objectsToLoad -> {
+        List<String> values = new ArrayList<>();
+        objectsToLoad.forEach(dto -> values.add(dto.getValue()));
+
+        if (values.contains(BAD_VALUE)) {
+            throw new RuntimeException("Test exception");
+        }
+
+        loadedBatches.add(values);
+    };
+
+    private BatchLoaderEtlConsumer<TestDTO> batchLoaderConsumer;
+
+    @Before
+    public void constructWorker() {
+        batchLoaderConsumer = new BatchLoaderEtlConsumer<>(TEST_NAME, mockBatchLoader, TestDTO.class,
+                mockErrorEtlConsumer);
+    }
+
+    @Test
+    public void consumeBatchLoadsAllObjectsInASingleOperation() {
+        batchLoaderConsumer.open(mockMetrics);
+        batchLoaderConsumer.consumeBatch(ImmutableList.of(EtlStreamObject.of(new TestDTO("one")),
+                EtlStreamObject.of(new TestDTO("two"))));
+
+        verify(mockBatchLoader, times(1)).loadBatch(eq(ImmutableList.of(new TestDTO("one"), new TestDTO("two"))));
+    }
+
+    @Test
+    public void consumeLoadsASingleObjectAsABatchOfOne() {
+        batchLoaderConsumer.open(mockMetrics);
+        batchLoaderConsumer.consume(EtlStreamObject.of(new TestDTO("one")));
+
+        verify(mockBatchLoader, times(1)).loadBatch(eq(ImmutableList.of(new TestDTO("one"))));
+    }
+
+    @Test
+    public void consumeBatchSplitsAFailedBatchAndOnlySendsBadObjectsToTheErrorConsumer() {
+        batchLoaderConsumer = new BatchLoaderEtlConsumer<>(TEST_NAME, fakeBatchLoader, TestDTO.class,
+                mockErrorEtlConsumer);
+        batchLoaderConsumer.open(mockMetrics);
+
+        batchLoaderConsumer.consumeBatch(ImmutableList.of(
+                EtlStreamObject.of(new TestDTO("one")),
+                EtlStreamObject.of(new TestDTO("two")),
+                EtlStreamObject.of(new TestDTO(BAD_VALUE)),
+                EtlStreamObject.of(new TestDTO("four"))));
+
+        List<String> loadedValues = new ArrayList<>();
+        loadedBatches.forEach(loadedValues::addAll);
+
+        assertThat(loadedValues, containsInAnyOrder("one", "two", "four"));
+        assertThat(loadedBatches.get(0), contains("one", "two"));
+        verify(mockErrorEtlConsumer, times(1)).consume(argThat(
+                etlStreamObject -> BAD_VALUE.equals(etlStreamObject.get(TestDTO.class).getValue())));
+    }
+
+    @Test
+    public void consumeSendsAFailedSingleObjectToTheErrorConsumer() {
+        doThrow(new RuntimeException("Test exception")).when(mockBatchLoader).loadBatch(any());
+        EtlStreamObject etlStreamObject = EtlStreamObject.of(new TestDTO("one"));
+        batchLoaderConsumer.open(mockMetrics);
+
+        batchLoaderConsumer.consume(etlStreamObject);
+
+        verify(mockBatchLoader, times(1)).loadBatch(any());
+        verify(mockErrorEtlConsumer, times(1)).consume(eq(etlStreamObject));
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void consumeBatchPropagatesUnrecoverableStreamFailureExceptionWithoutSplitting() {
+        doThrow(new UnrecoverableStreamFailureException("Test exception")).when(mockBatchLoader).loadBatch(any());
+        batchLoaderConsumer.open(mockMetrics);
+
+        try {
+            batchLoaderConsumer.consumeBatch(ImmutableList.of(EtlStreamObject.of(new TestDTO("one")),
+                    EtlStreamObject.of(new TestDTO("two"))));
+        } finally {
+            verify(mockBatchLoader, times(1)).loadBatch(any());
+            verify(mockErrorEtlConsumer, never()).consume(any());
+        }
+    }
+
+    @Test
+    public void openOpensLoaderAndErrorConsumer() {
+        batchLoaderConsumer.open(mockMetrics);
+
+        verify(mockBatchLoader).open(eq(mockMetrics));
+        verify(mockErrorEtlConsumer).open(eq(mockMetrics));
+    }
+
+    @Test
+    public void closeClosesErrorConsumerEvenAfterARuntimeException() throws Exception {
+        doThrow(new RuntimeException("Test exception")).when(mockBatchLoader).close();
+        batchLoaderConsumer.open(mockMetrics);
+        batchLoaderConsumer.close();
+
+        verify(mockBatchLoader).close();
+        verify(mockErrorEtlConsumer).close();
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void consumeBatchRejectsCheckpointedObjectsIfTheLoaderIsNotDurable() {
+        batchLoaderConsumer.open(mockMetrics);
+
+        try {
+            batchLoaderConsumer.consumeBatch(ImmutableList.of(
+                    EtlStreamObject.of(new TestDTO("one")).withRecordCompletion(new RecordCompletion(1, "1"))));
+        } finally {
+            verify(mockBatchLoader, never()).loadBatch(any());
+        }
+    }
+
+    @Test
+    public void consumeBatchLoadsCheckpointedObjectsIfTheLoaderIsDurable() {
+        RecordCompletion recordCompletion = new RecordCompletion(1, "1");
+        batchLoaderConsumer = new BatchLoaderEtlConsumer<>(TEST_NAME, mockDurableBatchLoader, TestDTO.class,
+                mockErrorEtlConsumer);
+
+        batchLoaderConsumer.open(mockMetrics);
+        batchLoaderConsumer.consumeBatch(ImmutableList.of(
+                EtlStreamObject.of(new TestDTO("one")).withRecordCompletion(recordCompletion)));
+
+        verify(mockDurableBatchLoader).loadBatch(any());
+        assertThat(recordCompletion.isCompleted(), equalTo(true));
+    }
+
+    interface DurableBatchLoader<T> extends BatchLoader<T>, DurableLoader<T> {
+    }
+}
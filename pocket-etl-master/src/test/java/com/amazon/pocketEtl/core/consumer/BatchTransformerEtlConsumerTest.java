@@ -0,0 +1,157 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.BatchTransformer;
+import com.amazon.pocketEtl.EtlTestBase;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BatchTransformerEtlConsumerTest extends EtlTestBase {
+    private static final String TEST_NAME = "TestName";
+    private static final String BAD_VALUE = "bad";
+
+    @Mock
+    private EtlConsumer mockEtlConsumer;
+
+    @Mock
+    private EtlConsumer mockErrorEtlConsumer;
+
+    @Mock
+    private BatchTransformer<TestDTO, TestDTO> mockBatchTransformer;
+
+    // Fails any batch that contains a bad value, otherwise doubles every object
+    private final BatchTransformer<TestDTO, TestDTO> fakeBatchTransformer = objectsToTransform -> {
+        List<List<TestDTO>> results = new ArrayList<>();
+
+        for (TestDTO dto : objectsToTransform) {
+            if (BAD_VALUE.equals(dto.getValue())) {
+                throw new RuntimeException("Test exception");
+            }
+
+            results.add(ImmutableList.of(new TestDTO(dto.getValue() + "-a"), new TestDTO(dto.getValue() + "-b")));
+        }
+
+        return results;
+    };
+
+    private BatchTransformerEtlConsumer<TestDTO, TestDTO> batchTransformerConsumer;
+
+    @Before
+    public void constructWorker() {
+        batchTransformerConsumer = new BatchTransformerEtlConsumer<>(TEST_NAME, mockEtlConsumer, mockErrorEtlConsumer,
+                mockBatchTransformer, TestDTO.class);
+    }
+
+    @Test
+    public void consumeBatchTransformsAllObjectsInASingleOperationAndSendsOneBatchDownstream() {
+        when(mockBatchTransformer.transformBatch(any())).thenReturn(ImmutableList.of(
+                ImmutableList.of(new TestDTO("one-t")), ImmutableList.of(new TestDTO("two-t"))));
+        batchTransformerConsumer.open(mockMetrics);
+
+        batchTransformerConsumer.consumeBatch(ImmutableList.of(EtlStreamObject.of(new TestDTO("one")),
+                EtlStreamObject.of(new TestDTO("two"))));
+
+        verify(mockBatchTransformer, times(1)).transformBatch(
+                eq(ImmutableList.of(new TestDTO("one"), new TestDTO("two"))));
+        verify(mockEtlConsumer, times(1)).consumeBatch(argThat(batch -> batch.size() == 2
+                && new TestDTO("one-t").equals(batch.get(0).get(TestDTO.class))
+                && new TestDTO("two-t").equals(batch.get(1).get(TestDTO.class))));
+    }
+
+    @Test
+    public void consumeTransformsASingleObjectAndSendsItDownstream() {
+        when(mockBatchTransformer.transformBatch(any())).thenReturn(ImmutableList.of(
+                ImmutableList.of(new TestDTO("one-t"))));
+        batchTransformerConsumer.open(mockMetrics);
+
+        batchTransformerConsumer.consume(EtlStreamObject.of(new TestDTO("one")));
+
+        verify(mockEtlConsumer, times(1)).consume(argThat(
+                etlStreamObject -> new TestDTO("one-t").equals(etlStreamObject.get(TestDTO.class))));
+    }
+
+    @Test
+    public void consumeBatchSplitsAFailedBatchAndOnlySendsBadObjectsToTheErrorConsumer() {
+        batchTransformerConsumer = new BatchTransformerEtlConsumer<>(TEST_NAME, mockEtlConsumer, mockErrorEtlConsumer,
+                fakeBatchTransformer, TestDTO.class);
+        batchTransformerConsumer.open(mockMetrics);
+
+        batchTransformerConsumer.consumeBatch(ImmutableList.of(
+                EtlStreamObject.of(new TestDTO("one")),
+                EtlStreamObject.of(new TestDTO(BAD_VALUE)),
+                EtlStreamObject.of(new TestDTO("three"))));
+
+        verify(mockEtlConsumer, times(1)).consumeBatch(argThat(batch -> batch.size() == 4
+                && new TestDTO("one-a").equals(batch.get(0).get(TestDTO.class))
+                && new TestDTO("one-b").equals(batch.get(1).get(TestDTO.class))
+                && new TestDTO("three-a").equals(batch.get(2).get(TestDTO.class))
+                && new TestDTO("three-b").equals(batch.get(3).get(TestDTO.class))));
+        verify(mockErrorEtlConsumer, times(1)).consume(argThat(
+                etlStreamObject -> BAD_VALUE.equals(etlStreamObject.get(TestDTO.class).getValue())));
+    }
+
+    @Test
+    public void consumeBatchTreatsAMismatchedNumberOfResultsAsAFailure() {
+        when(mockBatchTransformer.transformBatch(any())).thenReturn(ImmutableList.of());
+        EtlStreamObject etlStreamObject = EtlStreamObject.of(new TestDTO("one"));
+        batchTransformerConsumer.open(mockMetrics);
+
+        batchTransformerConsumer.consumeBatch(ImmutableList.of(etlStreamObject));
+
+        verify(mockErrorEtlConsumer, times(1)).consume(eq(etlStreamObject));
+        verify(mockEtlConsumer, never()).consumeBatch(any());
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void consumeBatchPropagatesUnrecoverableStreamFailureException() {
+        doThrow(new UnrecoverableStreamFailureException("Test exception")).when(mockBatchTransformer)
+                .transformBatch(any());
+        batchTransformerConsumer.open(mockMetrics);
+
+        batchTransformerConsumer.consumeBatch(ImmutableList.of(EtlStreamObject.of(new TestDTO("one")),
+                EtlStreamObject.of(new TestDTO("two"))));
+    }
+
+    @Test
+    public void closeClosesDownstreamConsumersAndTransformer() throws Exception {
+        batchTransformerConsumer.open(mockMetrics);
+        batchTransformerConsumer.close();
+
+        verify(mockEtlConsumer).close();
+        verify(mockErrorEtlConsumer).close();
+        verify(mockBatchTransformer).close();
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.EtlTestBase;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.RecordCompletion;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DeadLetterFileEtlConsumerTest extends EtlTestBase {
+    private static final String TEST_NAME = "TestName";
+    private static final long MAX_FILE_BYTES = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+    private List<RecordCompletion> recordCompletions;
+
+    @Before
+    public void initializeDirectory() {
+        directory = temporaryFolder.getRoot().toPath().resolve("dead-letters");
+        recordCompletions = new ArrayList<>();
+    }
+
+    @Test
+    public void consumedObjectsAreWrittenOneLinePerObjectInOrder() throws Exception {
+        DeadLetterFileEtlConsumer<TestDTO> consumer = newConsumer(MAX_FILE_BYTES);
+
+        consumer.open(mockMetrics);
+        consumer.consume(newEtlStreamObject("one"));
+        consumer.consume(newEtlStreamObject("two"));
+        consumer.consume(newEtlStreamObject("three"));
+        consumer.close();
+
+        assertThat(readAllLines(), contains("one", "two", "three"));
+    }
+
+    @Test
+    public void objectsAreMarkedCompletedOnceWritten() throws Exception {
+        DeadLetterFileEtlConsumer<TestDTO> consumer = newConsumer(MAX_FILE_BYTES);
+
+        consumer.open(mockMetrics);
+
+        for (int i = 0; i < 100; i++) {
+            consumer.consume(newEtlStreamObject("object-" + i));
+        }
+
+        consumer.close();
+
+        assertThat(countCompletedObjects(), is(100L));
+    }
+
+    @Test
+    public void aNewFileIsStartedOnceTheCurrentOneIsFull() throws Exception {
+        DeadLetterFileEtlConsumer<TestDTO> consumer = newConsumer(32);
+
+        consumer.open(mockMetrics);
+
+        for (int i = 0; i < 20; i++) {
+            consumer.consume(newEtlStreamObject("object-" + i));
+        }
+
+        consumer.close();
+
+        assertThat(listFiles().length, greaterThan(1));
+
+        for (File file : listFiles()) {
+            assertThat(file.length() <= 32, is(true));
+        }
+
+        List<String> expectedLines = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            expectedLines.add("object-" + i);
+        }
+
+        assertThat(readAllLines(), is(expectedLines));
+    }
+
+    @Test
+    public void objectIsMarkedCompletedWithoutBeingWrittenIfTheSerializationStrategyFails() throws Exception {
+        DeadLetterFileEtlConsumer<TestDTO> consumer = new DeadLetterFileEtlConsumer<>(TEST_NAME, directory,
+                TestDTO.class, dto -> {
+                    throw new RuntimeException("Test exception");
+                }, MAX_FILE_BYTES);
+
+        consumer.open(mockMetrics);
+        consumer.consume(newEtlStreamObject("one"));
+        consumer.close();
+
+        assertThat(countCompletedObjects(), is(1L));
+        assertThat(readAllLines(), empty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void consumeBeforeOpenThrowsIllegalStateException() {
+        newConsumer(MAX_FILE_BYTES).consume(newEtlStreamObject("one"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void consumeAfterCloseThrowsIllegalStateException() throws Exception {
+        DeadLetterFileEtlConsumer<TestDTO> consumer = newConsumer(MAX_FILE_BYTES);
+
+        consumer.open(mockMetrics);
+        consumer.close();
+        consumer.consume(newEtlStreamObject("one"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorRejectsANonPositiveMaximumFileSize() {
+        newConsumer(0);
+    }
+
+    private DeadLetterFileEtlConsumer<TestDTO> newConsumer(long maxFileBytes) {
+        return new DeadLetterFileEtlConsumer<>(TEST_NAME, directory, TestDTO.class, TestDTO::getValue, maxFileBytes);
+    }
+
+    private EtlStreamObject newEtlStreamObject(String value) {
+        RecordCompletion recordCompletion = new RecordCompletion(recordCompletions.size(), value);
+        recordCompletions.add(recordCompletion);
+        return EtlStreamObject.of(new TestDTO(value)).withRecordCompletion(recordCompletion);
+    }
+
+    private long countCompletedObjects() {
+        return recordCompletions.stream().filter(RecordCompletion::isCompleted).count();
+    }
+
+    private File[] listFiles() {
+        File[] files = directory.toFile().listFiles();
+        Arrays.sort(files, (first, second) -> Integer.compare(fileIndex(first), fileIndex(second)));
+        return files;
+    }
+
+    private static int fileIndex(File file) {
+        String fileName = file.getName();
+        String withoutExtension = fileName.substring(0, fileName.lastIndexOf('.'));
+        return Integer.parseInt(withoutExtension.substring(withoutExtension.lastIndexOf('.') + 1));
+    }
+
+    private List<String> readAllLines() throws Exception {
+        List<String> lines = new ArrayList<>();
+
+        for (File file : listFiles()) {
+            lines.addAll(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+        }
+
+        return lines;
+    }
+
+    public static class TestDTO {
+        private String value;
+
+        public TestDTO() {
+        }
+
+        TestDTO(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+    }
+}
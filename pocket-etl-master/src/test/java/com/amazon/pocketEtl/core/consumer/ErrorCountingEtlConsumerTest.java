@@ -0,0 +1,109 @@
+/*
+ *   Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.executor.EtlExecutor;
+import com.amazon.pocketEtl.core.metrics.EtlMetricsRegistry;
+import com.amazon.pocketEtl.core.metrics.StageMetrics;
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ErrorCountingEtlConsumerTest {
+    private static final String STAGE_NAME = "test-stage";
+
+    @Mock
+    private EtlConsumer mockErrorEtlConsumer;
+
+    @Mock
+    private EtlExecutor mockEtlExecutor;
+
+    @Mock
+    private EtlStreamObject mockEtlStreamObject1;
+
+    @Mock
+    private EtlStreamObject mockEtlStreamObject2;
+
+    @Mock
+    private EtlMetrics mockMetrics;
+
+    private StageMetrics stageMetrics;
+    private ErrorCountingEtlConsumer errorCountingEtlConsumer;
+
+    @Before
+    public void constructErrorCountingConsumer() {
+        stageMetrics = new EtlMetricsRegistry().getStageMetrics(STAGE_NAME);
+        errorCountingEtlConsumer = new ErrorCountingEtlConsumer(mockErrorEtlConsumer, stageMetrics, mockEtlExecutor);
+    }
+
+    @Test
+    public void consumeCountsTheErrorAndPassesTheObjectOn() {
+        stageMetrics.addRecordsCompleted(1);
+
+        errorCountingEtlConsumer.consume(mockEtlStreamObject1);
+
+        assertThat(stageMetrics.getErrors(), is(1L));
+        assertThat(stageMetrics.getRecordsCompleted(), is(0L));
+        verify(mockErrorEtlConsumer).consume(eq(mockEtlStreamObject1));
+    }
+
+    @Test
+    public void consumeBatchCountsEveryObjectAsAnError() {
+        errorCountingEtlConsumer.consumeBatch(ImmutableList.of(mockEtlStreamObject1, mockEtlStreamObject2));
+
+        assertThat(stageMetrics.getErrors(), is(2L));
+        verify(mockErrorEtlConsumer).consumeBatch(eq(ImmutableList.of(mockEtlStreamObject1, mockEtlStreamObject2)));
+    }
+
+    @Test
+    public void routedObjectsAreReportedToTheExecutorAsTaskFailures() {
+        errorCountingEtlConsumer.consume(mockEtlStreamObject1);
+        errorCountingEtlConsumer.consumeBatch(ImmutableList.of(mockEtlStreamObject2));
+
+        verify(mockEtlExecutor, times(2)).reportTaskFailure();
+    }
+
+    @Test
+    public void consumeWithoutStageMetricsStillReportsTheFailure() {
+        errorCountingEtlConsumer = new ErrorCountingEtlConsumer(mockErrorEtlConsumer, null, mockEtlExecutor);
+
+        errorCountingEtlConsumer.consume(mockEtlStreamObject1);
+
+        verify(mockEtlExecutor).reportTaskFailure();
+        verify(mockErrorEtlConsumer).consume(eq(mockEtlStreamObject1));
+    }
+
+    @Test
+    public void openAndCloseArePassedOn() throws Exception {
+        errorCountingEtlConsumer.open(mockMetrics);
+        errorCountingEtlConsumer.close();
+
+        verify(mockErrorEtlConsumer).open(eq(mockMetrics));
+        verify(mockErrorEtlConsumer).close();
+    }
+}
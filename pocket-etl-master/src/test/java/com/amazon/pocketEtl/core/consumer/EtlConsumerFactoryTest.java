@@ -15,11 +15,18 @@
 
 package com.amazon.pocketEtl.core.consumer;
 
+import com.amazon.pocketEtl.AsyncLoader;
+import com.amazon.pocketEtl.BatchLoader;
+import com.amazon.pocketEtl.BatchTransformer;
 import com.amazon.pocketEtl.Loader;
 import com.amazon.pocketEtl.Transformer;
 import com.amazon.pocketEtl.core.DefaultLoggingStrategy;
+import com.amazon.pocketEtl.core.EtlStreamObject;
 import com.amazon.pocketEtl.core.executor.EtlExecutor;
 import com.amazon.pocketEtl.core.executor.EtlExecutorFactory;
+import com.amazon.pocketEtl.core.executor.PartitionedEtlExecutor;
+import com.amazon.pocketEtl.core.metrics.EtlMetricsRegistry;
+import com.amazon.pocketEtl.core.metrics.StageMetrics;
 import org.apache.logging.log4j.Logger;
 import org.junit.Before;
 import org.junit.Test;
@@ -27,8 +34,17 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.nio.file.Paths;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -38,14 +54,24 @@ public class EtlConsumerFactoryTest {
     @Mock
     private Loader<Object> mockLoader;
     @Mock
+    private AsyncLoader<Object> mockAsyncLoader;
+    @Mock
     private Transformer<Object, Object> mockTransformer;
     @Mock
+    private BatchLoader<Object> mockBatchLoader;
+    @Mock
+    private BatchTransformer<Object, Object> mockBatchTransformer;
+    @Mock
     private EtlConsumer mockErrorConsumer;
     @Mock
     private EtlConsumer mockDownstreamConsumer;
     @Mock
     private EtlExecutor mockEtlExecutor;
     @Mock
+    private EtlExecutor mockImmediateEtlExecutor;
+    @Mock
+    private PartitionedEtlExecutor mockPartitionedEtlExecutor;
+    @Mock
     private Logger mockLogger;
     @Mock
     private EtlExecutorFactory mockEtlExecutorFactory;
@@ -64,6 +90,14 @@ public class EtlConsumerFactoryTest {
         verifyWrappedConsumerStack(consumer, LoaderEtlConsumer.class);
     }
 
+    @Test
+    public void newAsyncLoaderCreatesAWrappedAsyncLoaderConsumer() {
+        EtlConsumer consumer = etlConsumerFactory.newAsyncLoader(STAGE_NAME, mockAsyncLoader, Object.class,
+                mockErrorConsumer, mockEtlExecutor, 10);
+
+        verifyWrappedConsumerStack(consumer, AsyncLoaderEtlConsumer.class);
+    }
+
     @Test
     public void newTransformerCreatesAWrappedTransformerConsumer() {
         EtlConsumer consumer = etlConsumerFactory.newTransformer(STAGE_NAME, mockTransformer, Object.class, mockDownstreamConsumer,
@@ -72,6 +106,130 @@ public class EtlConsumerFactoryTest {
         verifyWrappedConsumerStack(consumer, TransformerEtlConsumer.class);
     }
 
+    @Test
+    public void newMicroBatchingLoaderCreatesAWrappedLoaderConsumer() {
+        EtlConsumer consumer = etlConsumerFactory.newLoader(STAGE_NAME, mockLoader, Object.class, mockErrorConsumer,
+                mockEtlExecutor, MicroBatchPolicy.ofSize(10));
+
+        verifyMicroBatchingWrappedConsumerStack(consumer, LoaderEtlConsumer.class);
+    }
+
+    @Test
+    public void newMicroBatchingTransformerCreatesAWrappedTransformerConsumer() {
+        EtlConsumer consumer = etlConsumerFactory.newTransformer(STAGE_NAME, mockTransformer, Object.class, mockDownstreamConsumer,
+                mockErrorConsumer, mockEtlExecutor, MicroBatchPolicy.ofSize(10));
+
+        verifyMicroBatchingWrappedConsumerStack(consumer, TransformerEtlConsumer.class);
+    }
+
+    @Test
+    public void newMicroBatchingLoaderCreatesAWrappedBatchLoaderConsumerForABatchLoader() {
+        EtlConsumer consumer = etlConsumerFactory.newLoader(STAGE_NAME, mockBatchLoader, Object.class, mockErrorConsumer,
+                mockEtlExecutor, MicroBatchPolicy.ofSize(10));
+
+        verifyMicroBatchingWrappedConsumerStack(consumer, BatchLoaderEtlConsumer.class);
+    }
+
+    @Test
+    public void newMicroBatchingTransformerCreatesAWrappedBatchTransformerConsumerForABatchTransformer() {
+        EtlConsumer consumer = etlConsumerFactory.newTransformer(STAGE_NAME, mockBatchTransformer, Object.class,
+                mockDownstreamConsumer, mockErrorConsumer, mockEtlExecutor, MicroBatchPolicy.ofSize(10));
+
+        verifyMicroBatchingWrappedConsumerStack(consumer, BatchTransformerEtlConsumer.class);
+    }
+
+    @Test
+    public void newOrderPreservingTransformerCreatesAWrappedOrderPreservingTransformerConsumer() {
+        EtlConsumer consumer = etlConsumerFactory.newOrderPreservingTransformer(STAGE_NAME, mockTransformer, Object.class,
+                mockDownstreamConsumer, mockErrorConsumer, mockEtlExecutor, 10);
+
+        assertThat(consumer, instanceOf(SmartEtlConsumer.class));
+
+        consumer = ((SmartEtlConsumer)consumer).getWrappedEtlConsumer();
+        assertThat(consumer, instanceOf(MetricsEmissionEtlConsumer.class));
+
+        consumer = ((MetricsEmissionEtlConsumer)consumer).getDownstreamEtlConsumer();
+        assertThat(consumer, instanceOf(OrderPreservingEtlConsumer.class));
+        assertThat(((OrderPreservingEtlConsumer)consumer).getDownstreamEtlConsumer(), is(mockDownstreamConsumer));
+
+        consumer = ((OrderPreservingEtlConsumer)consumer).getWrappedEtlConsumer();
+        assertThat(consumer, instanceOf(TransformerEtlConsumer.class));
+    }
+
+    @Test
+    public void newKeyPartitionedTransformerCreatesAWrappedTransformerConsumer() {
+        EtlConsumer consumer = etlConsumerFactory.newKeyPartitionedTransformer(STAGE_NAME, mockTransformer, Object.class,
+                mockDownstreamConsumer, mockErrorConsumer, mockPartitionedEtlExecutor, Object::hashCode);
+
+        verifyWrappedConsumerStack(consumer, TransformerEtlConsumer.class);
+    }
+
+    @Test
+    public void newLoaderWithAnImmediateExecutorCreatesAFusedLoaderConsumer() {
+        when(mockImmediateEtlExecutor.runsTasksOnSubmittingThread()).thenReturn(true);
+
+        EtlConsumer consumer = etlConsumerFactory.newLoader(STAGE_NAME, mockLoader, Object.class, mockErrorConsumer,
+                mockImmediateEtlExecutor);
+
+        verifyFusedConsumerStack(consumer, LoaderEtlConsumer.class);
+    }
+
+    @Test
+    public void newTransformerWithAnImmediateExecutorIsLinkedToAFusedDownstreamStage() {
+        when(mockImmediateEtlExecutor.runsTasksOnSubmittingThread()).thenReturn(true);
+        EtlConsumer loaderConsumer = etlConsumerFactory.newLoader("loader-stage", mockLoader, Object.class,
+                mockErrorConsumer, mockImmediateEtlExecutor);
+
+        EtlConsumer consumer = etlConsumerFactory.newTransformer(STAGE_NAME, mockTransformer, Object.class,
+                loaderConsumer, mockErrorConsumer, mockImmediateEtlExecutor);
+
+        verifyFusedConsumerStack(consumer, TransformerEtlConsumer.class);
+
+        TransformerEtlConsumer transformerConsumer = (TransformerEtlConsumer)((FusedEtlConsumer)
+                ((SmartEtlConsumer)consumer).getWrappedEtlConsumer()).getWrappedEtlConsumer();
+        assertThat(transformerConsumer.getDownstreamEtlConsumer(), instanceOf(FusedLinkEtlConsumer.class));
+
+        FusedLinkEtlConsumer fusedLinkConsumer = (FusedLinkEtlConsumer) transformerConsumer.getDownstreamEtlConsumer();
+        assertThat(fusedLinkConsumer.getDownstreamSmartEtlConsumer(), is(loaderConsumer));
+        assertThat(fusedLinkConsumer.getDownstreamFusedEtlConsumer(),
+                is(((SmartEtlConsumer)loaderConsumer).getWrappedEtlConsumer()));
+    }
+
+    @Test
+    public void newTransformerWithAThreadedExecutorIsNotLinkedToAFusedDownstreamStage() {
+        when(mockImmediateEtlExecutor.runsTasksOnSubmittingThread()).thenReturn(true);
+        EtlConsumer loaderConsumer = etlConsumerFactory.newLoader("loader-stage", mockLoader, Object.class,
+                mockErrorConsumer, mockImmediateEtlExecutor);
+
+        EtlConsumer consumer = etlConsumerFactory.newTransformer(STAGE_NAME, mockTransformer, Object.class,
+                loaderConsumer, mockErrorConsumer, mockEtlExecutor);
+
+        TransformerEtlConsumer transformerConsumer = (TransformerEtlConsumer)((ExecutorEtlConsumer)
+                ((MetricsEmissionEtlConsumer)((SmartEtlConsumer)consumer).getWrappedEtlConsumer())
+                        .getDownstreamEtlConsumer()).getWrappedEtlConsumer();
+        assertThat(transformerConsumer.getDownstreamEtlConsumer(), is(loaderConsumer));
+    }
+
+    @Test
+    public void explainDescribesEveryStageOfTheConsumerPlan() {
+        when(mockImmediateEtlExecutor.runsTasksOnSubmittingThread()).thenReturn(true);
+        EtlConsumer loaderConsumer = etlConsumerFactory.newLoader("loader-stage", mockLoader, Object.class,
+                mockErrorConsumer, mockImmediateEtlExecutor);
+        EtlConsumer fusedConsumer = etlConsumerFactory.newTransformer("fused-stage", mockTransformer, Object.class,
+                loaderConsumer, mockErrorConsumer, mockImmediateEtlExecutor);
+        EtlConsumer consumer = etlConsumerFactory.newTransformer(STAGE_NAME, mockTransformer, Object.class,
+                fusedConsumer, mockErrorConsumer, mockEtlExecutor);
+
+        String plan = etlConsumerFactory.explain(consumer);
+
+        assertThat(plan, equalTo(
+                "SmartConsumer(" + STAGE_NAME + ") -> MetricsEmissionConsumer -> ExecutorConsumer -> TransformerConsumer"
+                        + System.lineSeparator() +
+                "SmartConsumer(fused-stage) -> FusedConsumer(fused-stage) -> TransformerConsumer"
+                        + System.lineSeparator() +
+                "FusedLinkConsumer -> FusedConsumer(loader-stage) -> LoaderConsumer"));
+    }
+
     @Test
     public void newLogAsErrorCreatesAWrappedLogAsErrorConsumer() {
         EtlConsumer consumer = etlConsumerFactory.newLogAsErrorConsumer(STAGE_NAME, mockLogger, Object.class, new DefaultLoggingStrategy<>());
@@ -79,6 +237,14 @@ public class EtlConsumerFactoryTest {
         verifyWrappedConsumerStack(consumer, LogAsErrorEtlConsumer.class);
     }
 
+    @Test
+    public void newDeadLetterFileConsumerCreatesAWrappedDeadLetterFileConsumer() {
+        EtlConsumer consumer = etlConsumerFactory.newDeadLetterFileConsumer(STAGE_NAME, Paths.get("dead-letters"),
+                Object.class, Object::toString, 1024);
+
+        verifyWrappedConsumerStack(consumer, DeadLetterFileEtlConsumer.class);
+    }
+
     private void verifyWrappedConsumerStack(EtlConsumer consumer, Class expectedClass) {
         assertThat(consumer, instanceOf(SmartEtlConsumer.class));
 
@@ -91,4 +257,86 @@ public class EtlConsumerFactoryTest {
         consumer = ((ExecutorEtlConsumer)consumer).getWrappedEtlConsumer();
         assertThat(consumer, instanceOf(expectedClass));
     }
+
+    private void verifyFusedConsumerStack(EtlConsumer consumer, Class expectedClass) {
+        assertThat(consumer, instanceOf(SmartEtlConsumer.class));
+
+        consumer = ((SmartEtlConsumer)consumer).getWrappedEtlConsumer();
+        assertThat(consumer, instanceOf(FusedEtlConsumer.class));
+
+        consumer = ((FusedEtlConsumer)consumer).getWrappedEtlConsumer();
+        assertThat(consumer, instanceOf(expectedClass));
+    }
+
+    private void verifyMicroBatchingWrappedConsumerStack(EtlConsumer consumer, Class expectedClass) {
+        assertThat(consumer, instanceOf(SmartEtlConsumer.class));
+
+        consumer = ((SmartEtlConsumer)consumer).getWrappedEtlConsumer();
+        assertThat(consumer, instanceOf(MicroBatchingEtlConsumer.class));
+
+        consumer = ((MicroBatchingEtlConsumer)consumer).getDownstreamEtlConsumer();
+        assertThat(consumer, instanceOf(MetricsEmissionEtlConsumer.class));
+
+        consumer = ((MetricsEmissionEtlConsumer)consumer).getDownstreamEtlConsumer();
+        assertThat(consumer, instanceOf(ExecutorEtlConsumer.class));
+
+        consumer = ((ExecutorEtlConsumer)consumer).getWrappedEtlConsumer();
+        assertThat(consumer, instanceOf(expectedClass));
+    }
+
+    @Test
+    public void consumersRecordToTheRegistryTheFactoryWasConstructedWith() {
+        EtlMetricsRegistry etlMetricsRegistry = new EtlMetricsRegistry();
+        etlConsumerFactory = new EtlConsumerFactory(mockEtlExecutorFactory, etlMetricsRegistry);
+
+        EtlConsumer consumer = etlConsumerFactory.newLoader(STAGE_NAME, mockLoader, Object.class, mockErrorConsumer,
+                mockEtlExecutor);
+
+        verifyWrappedConsumerStack(consumer, LoaderEtlConsumer.class);
+        assertThat(etlMetricsRegistry.getAllStageMetrics(),
+                contains(etlMetricsRegistry.getStageMetrics(STAGE_NAME)));
+    }
+
+    @Test
+    public void recordsAThrowingTransformerRoutesToTheErrorConsumerAreCountedAsStageErrors() throws Exception {
+        EtlMetricsRegistry etlMetricsRegistry = new EtlMetricsRegistry();
+        etlConsumerFactory = new EtlConsumerFactory(new EtlExecutorFactory(), etlMetricsRegistry);
+        Transformer<Object, Object> throwingTransformer = object -> {
+            throw new RuntimeException("Test exception");
+        };
+
+        EtlConsumer consumer = etlConsumerFactory.newTransformer(STAGE_NAME, throwingTransformer, Object.class,
+                mockDownstreamConsumer, mockErrorConsumer,
+                new EtlExecutorFactory().newUnboundFixedThreadsEtlExecutorFactory(2));
+        consumer.open(null);
+        consumer.consume(EtlStreamObject.of(new Object()));
+        consumer.consume(EtlStreamObject.of(new Object()));
+        consumer.close();
+
+        StageMetrics stageMetrics = etlMetricsRegistry.getStageMetrics(STAGE_NAME);
+        assertThat(stageMetrics.getErrors(), is(2L));
+        assertThat(stageMetrics.getRecordsCompleted(), is(0L));
+        verify(mockErrorConsumer, times(2)).consume(any(EtlStreamObject.class));
+        verify(mockDownstreamConsumer, never()).consume(any(EtlStreamObject.class));
+    }
+
+    @Test
+    public void recordsAThrowingTransformerRoutesToTheErrorConsumerAreCountedAsStageErrorsWhenFused() throws Exception {
+        EtlMetricsRegistry etlMetricsRegistry = new EtlMetricsRegistry();
+        etlConsumerFactory = new EtlConsumerFactory(new EtlExecutorFactory(), etlMetricsRegistry);
+        Transformer<Object, Object> throwingTransformer = object -> {
+            throw new RuntimeException("Test exception");
+        };
+
+        EtlConsumer consumer = etlConsumerFactory.newTransformer(STAGE_NAME, throwingTransformer, Object.class,
+                mockDownstreamConsumer, mockErrorConsumer, new EtlExecutorFactory().newImmediateExecutionEtlExecutor());
+        consumer.open(null);
+        consumer.consume(EtlStreamObject.of(new Object()));
+        consumer.close();
+
+        StageMetrics stageMetrics = etlMetricsRegistry.getStageMetrics(STAGE_NAME);
+        assertThat(stageMetrics.getErrors(), is(1L));
+        assertThat(stageMetrics.getRecordsCompleted(), is(0L));
+        verify(mockErrorConsumer).consume(any(EtlStreamObject.class));
+    }
 }
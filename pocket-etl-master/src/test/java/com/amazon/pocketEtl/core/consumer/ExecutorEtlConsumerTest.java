@@ -18,19 +18,38 @@ package com.amazon.pocketEtl.core.consumer;
 import com.amazon.pocketEtl.EtlMetrics;
 import com.amazon.pocketEtl.EtlTestBase;
 import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.StreamCancellation;
 import com.amazon.pocketEtl.core.executor.EtlExecutor;
+import com.amazon.pocketEtl.core.executor.PartitionedEtlExecutor;
+import com.amazon.pocketEtl.core.executor.SpillableEtlExecutor;
+import com.amazon.pocketEtl.core.metrics.EtlMetricsRegistry;
+import com.amazon.pocketEtl.core.metrics.StageMetrics;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjLongConsumer;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
 @RunWith(MockitoJUnitRunner.class)
 public class ExecutorEtlConsumerTest extends EtlTestBase {
@@ -42,9 +61,18 @@ public class ExecutorEtlConsumerTest extends EtlTestBase {
     @Mock
     private EtlExecutor mockEtlExecutor;
 
+    @Mock
+    private EtlStreamObject mockEtlStreamObject2;
+
     @Mock
     private EtlConsumer mockEtlConsumer;
 
+    @Mock
+    private SpillableEtlExecutor mockSpillableEtlExecutor;
+
+    @Mock
+    private PartitionedEtlExecutor mockPartitionedEtlExecutor;
+
     private ExecutorEtlConsumer executorConsumer;
 
     @Before
@@ -72,6 +100,66 @@ public class ExecutorEtlConsumerTest extends EtlTestBase {
         verify(mockEtlConsumer, times(1)).consume(eq(mockEtlStreamObject));
     }
 
+    @Test
+    public void consumeWithPartitionKeyExtractorSubmitsARunnableToThePartitionOwningTheKey() {
+        executorConsumer = new ExecutorEtlConsumer(TEST_NAME, mockEtlConsumer, mockPartitionedEtlExecutor,
+                etlStreamObject -> "key", null, null);
+        doAnswer(invocation -> {
+            Runnable runnable = (Runnable) invocation.getArguments()[1];
+            runnable.run();
+            return null;
+        }).when(mockPartitionedEtlExecutor).submit(eq("key"), any(Runnable.class), any(EtlMetrics.class));
+
+        executorConsumer.open(etlProfilingScope.getMetrics());
+        executorConsumer.consume(mockEtlStreamObject);
+
+        verify(mockPartitionedEtlExecutor, times(1)).submit(eq("key"), any(Runnable.class), 
+                eq(etlProfilingScope.getMetrics()));
+        verify(mockEtlConsumer, times(1)).consume(eq(mockEtlStreamObject));
+    }
+
+    @Test
+    public void consumeWithFailingPartitionKeyExtractorSubmitsWithANullKey() {
+        executorConsumer = new ExecutorEtlConsumer(TEST_NAME, mockEtlConsumer, mockPartitionedEtlExecutor,
+                etlStreamObject -> {
+                    throw new RuntimeException("Test exception");
+                }, null, null);
+
+        executorConsumer.open(etlProfilingScope.getMetrics());
+        executorConsumer.consume(mockEtlStreamObject);
+
+        verify(mockPartitionedEtlExecutor, times(1)).submit(isNull(), any(Runnable.class), 
+                eq(etlProfilingScope.getMetrics()));
+    }
+
+    @Test
+    public void consumeBatchWithPartitionKeyExtractorSubmitsEachObjectToItsOwnPartition() {
+        executorConsumer = new ExecutorEtlConsumer(TEST_NAME, mockEtlConsumer, mockPartitionedEtlExecutor,
+                etlStreamObject -> etlStreamObject == mockEtlStreamObject ? "key1" : "key2", null, null);
+
+        executorConsumer.open(etlProfilingScope.getMetrics());
+        executorConsumer.consumeBatch(Arrays.asList(mockEtlStreamObject, mockEtlStreamObject2));
+
+        verify(mockPartitionedEtlExecutor, times(1)).submit(eq("key1"), any(Runnable.class), 
+                eq(etlProfilingScope.getMetrics()));
+        verify(mockPartitionedEtlExecutor, times(1)).submit(eq("key2"), any(Runnable.class), 
+                eq(etlProfilingScope.getMetrics()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorRejectsAPartitionKeyExtractorWithAnExecutorThatIsNotPartitioned() {
+        new ExecutorEtlConsumer(TEST_NAME, mockEtlConsumer, mockEtlExecutor, etlStreamObject -> "key", null, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorRejectsAPartitionKeyExtractorWithASpillableExecutor() {
+        EtlExecutor partitionedSpillableEtlExecutor = mock(SpillableEtlExecutor.class,
+                withSettings().extraInterfaces(PartitionedEtlExecutor.class));
+
+        new ExecutorEtlConsumer(TEST_NAME, mockEtlConsumer, partitionedSpillableEtlExecutor, etlStreamObject -> "key",
+                null, null);
+    }
+
     @Test
     public void closeShutsDownExecutor() throws Exception {
         executorConsumer.open(mockMetrics);
@@ -101,4 +189,171 @@ public class ExecutorEtlConsumerTest extends EtlTestBase {
         when(mockEtlExecutor.isShutdown()).thenReturn(true);
         executorConsumer.consume(mockEtlStreamObject);
     }
+
+    @Test
+    public void consumeRecordsQueueWaitTimeAndServiceTimeInStageMetrics() {
+        StageMetrics stageMetrics = new EtlMetricsRegistry().getStageMetrics(TEST_NAME);
+        executorConsumer = new ExecutorEtlConsumer(TEST_NAME, mockEtlConsumer, mockEtlExecutor, null, stageMetrics,
+                null);
+        doAnswer(invocation -> {
+            Runnable runnable = (Runnable) invocation.getArguments()[0];
+            runnable.run();
+            return null;
+        }).when(mockEtlExecutor).submit(any(Runnable.class), any(EtlMetrics.class));
+        executorConsumer.open(mockMetrics);
+
+        executorConsumer.consume(mockEtlStreamObject);
+        executorConsumer.consumeBatch(Arrays.asList(mockEtlStreamObject, mockEtlStreamObject2));
+
+        assertThat(stageMetrics.getQueueWaitTime().snapshot().getCount(), is(2L));
+        assertThat(stageMetrics.getServiceTime().snapshot().getCount(), is(2L));
+        assertThat(stageMetrics.getRecordsCompleted(), is(3L));
+        verify(mockEtlConsumer).consume(eq(mockEtlStreamObject));
+    }
+
+    @Test
+    public void constructorWithStageMetricsObservesTheExecutor() {
+        StageMetrics stageMetrics = new EtlMetricsRegistry().getStageMetrics(TEST_NAME);
+        when(mockEtlExecutor.getQueuedTaskCount()).thenReturn(6);
+
+        new ExecutorEtlConsumer(TEST_NAME, mockEtlConsumer, mockEtlExecutor, null, stageMetrics, null);
+
+        assertThat(stageMetrics.getQueuedTaskCount(), is(6));
+    }
+
+    @Test
+    public void consumeCountsErrorsThrownByWrappedConsumerInStageMetrics() {
+        StageMetrics stageMetrics = new EtlMetricsRegistry().getStageMetrics(TEST_NAME);
+        executorConsumer = new ExecutorEtlConsumer(TEST_NAME, mockEtlConsumer, mockEtlExecutor, null, stageMetrics,
+                null);
+        doAnswer(invocation -> {
+            Runnable runnable = (Runnable) invocation.getArguments()[0];
+
+            try {
+                runnable.run();
+            } catch (RuntimeException ignored) {
+            }
+
+            return null;
+        }).when(mockEtlExecutor).submit(any(Runnable.class), any(EtlMetrics.class));
+        doThrow(new RuntimeException("test exception")).when(mockEtlConsumer).consume(any(EtlStreamObject.class));
+        executorConsumer.open(mockMetrics);
+
+        executorConsumer.consume(mockEtlStreamObject);
+
+        assertThat(stageMetrics.getErrors(), is(1L));
+        assertThat(stageMetrics.getRecordsCompleted(), is(0L));
+        assertThat(stageMetrics.getServiceTime().snapshot().getCount(), is(1L));
+    }
+
+    @Test
+    public void consumeWithSpillableExecutorSubmitsTheObjectWithAnActionThatWritesToConsumer() {
+        StageMetrics stageMetrics = new EtlMetricsRegistry().getStageMetrics(TEST_NAME);
+        executorConsumer = new ExecutorEtlConsumer(TEST_NAME, mockEtlConsumer, mockSpillableEtlExecutor, null,
+                stageMetrics, null);
+        doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            ObjLongConsumer<EtlStreamObject> action = (ObjLongConsumer<EtlStreamObject>) invocation.getArguments()[1];
+            action.accept((EtlStreamObject) invocation.getArguments()[0], System.nanoTime());
+            return null;
+        }).when(mockSpillableEtlExecutor).submit(any(EtlStreamObject.class), any(), any(EtlMetrics.class));
+        executorConsumer.open(etlProfilingScope.getMetrics());
+
+        executorConsumer.consume(mockEtlStreamObject);
+
+        verify(mockSpillableEtlExecutor).submit(eq(mockEtlStreamObject), any(), eq(etlProfilingScope.getMetrics()));
+        verify(mockEtlConsumer).consume(eq(mockEtlStreamObject));
+        assertThat(stageMetrics.getQueueWaitTime().snapshot().getCount(), is(1L));
+        assertThat(stageMetrics.getRecordsCompleted(), is(1L));
+    }
+
+    @Test
+    public void consumeBatchWithSpillableExecutorSubmitsEachObjectIndividually() {
+        executorConsumer = new ExecutorEtlConsumer(TEST_NAME, mockEtlConsumer, mockSpillableEtlExecutor);
+
+        executorConsumer.open(etlProfilingScope.getMetrics());
+        executorConsumer.consumeBatch(Arrays.asList(mockEtlStreamObject, mockEtlStreamObject2));
+
+        verify(mockSpillableEtlExecutor).submit(eq(mockEtlStreamObject), any(), eq(etlProfilingScope.getMetrics()));
+        verify(mockSpillableEtlExecutor).submit(eq(mockEtlStreamObject2), any(), eq(etlProfilingScope.getMetrics()));
+        verify(mockSpillableEtlExecutor, never()).submit(any(Runnable.class), any(EtlMetrics.class));
+    }
+
+    @Test
+    public void unrecoverableFailureCancelsTheStreamAndTheExecutor() {
+        StreamCancellation streamCancellation = new StreamCancellation(1000);
+        executorConsumer = new ExecutorEtlConsumer(TEST_NAME, mockEtlConsumer, mockEtlExecutor, null, null,
+                streamCancellation);
+        UnrecoverableStreamFailureException failure = new UnrecoverableStreamFailureException("test exception");
+        doAnswer(invocation -> {
+            Runnable runnable = (Runnable) invocation.getArguments()[0];
+            runnable.run();
+            return null;
+        }).when(mockEtlExecutor).submit(any(Runnable.class), any(EtlMetrics.class));
+        doThrow(failure).when(mockEtlConsumer).consume(any(EtlStreamObject.class));
+        executorConsumer.open(mockMetrics);
+
+        executorConsumer.consume(mockEtlStreamObject);
+
+        assertThat(streamCancellation.getCause(), is(failure));
+        verify(mockEtlExecutor).cancel();
+    }
+
+    @Test
+    public void consumeThrowsTheCauseOnceTheStreamIsCancelledElsewhere() {
+        StreamCancellation streamCancellation = new StreamCancellation(1000);
+        executorConsumer = new ExecutorEtlConsumer(TEST_NAME, mockEtlConsumer, mockEtlExecutor, null, null,
+                streamCancellation);
+        UnrecoverableStreamFailureException failure = new UnrecoverableStreamFailureException("test exception");
+        executorConsumer.open(mockMetrics);
+        streamCancellation.cancel(failure);
+
+        try {
+            executorConsumer.consume(mockEtlStreamObject);
+            fail("Expected UnrecoverableStreamFailureException");
+        } catch (UnrecoverableStreamFailureException e) {
+            assertThat(e, is(failure));
+        }
+
+        verify(mockEtlExecutor).cancel();
+        verify(mockEtlExecutor, never()).submit(any(Runnable.class), any(EtlMetrics.class));
+    }
+
+    @Test
+    public void closeAfterCancellationWaitsForTheExecutorNoLongerThanTheAbortDeadline() throws Exception {
+        StreamCancellation streamCancellation = new StreamCancellation(1000);
+        executorConsumer = new ExecutorEtlConsumer(TEST_NAME, mockEtlConsumer, mockEtlExecutor, null, null,
+                streamCancellation);
+        executorConsumer.open(mockMetrics);
+        when(mockEtlExecutor.shutdownWithin(anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(true);
+        streamCancellation.cancel(new UnrecoverableStreamFailureException("test exception"));
+
+        try {
+            executorConsumer.close();
+            fail("Expected UnrecoverableStreamFailureException");
+        } catch (UnrecoverableStreamFailureException ignored) {
+        }
+
+        verify(mockEtlExecutor).shutdownWithin(anyLong(), eq(TimeUnit.MILLISECONDS));
+        verify(mockEtlExecutor, never()).shutdown();
+        verify(mockEtlConsumer).close();
+    }
+
+    @Test
+    public void closeAfterCancellationDoesNotCloseTheWrappedConsumerIfWorkersWereAbandoned() throws Exception {
+        StreamCancellation streamCancellation = new StreamCancellation(1000);
+        executorConsumer = new ExecutorEtlConsumer(TEST_NAME, mockEtlConsumer, mockEtlExecutor, null, null,
+                streamCancellation);
+        executorConsumer.open(mockMetrics);
+        when(mockEtlExecutor.shutdownWithin(anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(false);
+        streamCancellation.cancel(new UnrecoverableStreamFailureException("test exception"));
+
+        try {
+            executorConsumer.close();
+            fail("Expected UnrecoverableStreamFailureException");
+        } catch (UnrecoverableStreamFailureException ignored) {
+        }
+
+        verify(mockEtlConsumer, never()).close();
+    }
 }
@@ -0,0 +1,180 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.EtlTestBase;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.executor.EtlExecutor;
+import com.amazon.pocketEtl.core.metrics.EtlMetricsRegistry;
+import com.amazon.pocketEtl.core.metrics.StageMetrics;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FusedEtlConsumerTest extends EtlTestBase {
+    private static final String STAGE_NAME = "TestStage";
+
+    @Mock
+    private EtlStreamObject mockEtlStreamObject;
+
+    @Mock
+    private EtlExecutor mockEtlExecutor;
+
+    @Mock
+    private EtlConsumer mockEtlConsumer;
+
+    private FusedEtlConsumer fusedEtlConsumer;
+
+    @Before
+    public void constructFusedConsumer() {
+        fusedEtlConsumer = new FusedEtlConsumer(STAGE_NAME, mockEtlConsumer, mockEtlExecutor);
+        fusedEtlConsumer.open(mockMetrics);
+    }
+
+    @Test
+    public void consumePassesObjectToWrappedConsumer() {
+        fusedEtlConsumer.consume(mockEtlStreamObject);
+
+        verify(mockEtlConsumer, times(1)).consume(eq(mockEtlStreamObject));
+    }
+
+    @Test
+    public void consumeEmitsACounterAndASingleProfilingScopeForEveryRecordConsumed() {
+        fusedEtlConsumer.consume(mockEtlStreamObject);
+        fusedEtlConsumer.consume(mockEtlStreamObject);
+
+        verify(mockMetrics, times(2)).addCount(eq(STAGE_NAME + ".recordsProcessed"), eq(1.0));
+        verify(mockMetrics, times(2)).addTime(eq("FusedConsumer." + STAGE_NAME + ".consume"), anyDouble());
+    }
+
+    @Test
+    public void consumeBatchPassesBatchToWrappedConsumerAndCountsIt() {
+        fusedEtlConsumer.consumeBatch(ImmutableList.of(mockEtlStreamObject, mockEtlStreamObject));
+
+        verify(mockEtlConsumer, times(1)).consumeBatch(eq(ImmutableList.of(mockEtlStreamObject, mockEtlStreamObject)));
+        verify(mockMetrics).addCount(eq(STAGE_NAME + ".recordsProcessed"), eq(2.0));
+    }
+
+    @Test
+    public void consumeFusedCountsTheRecordWithoutAProfilingScope() {
+        fusedEtlConsumer.consumeFused(mockEtlStreamObject);
+
+        verify(mockEtlConsumer, times(1)).consume(eq(mockEtlStreamObject));
+        verify(mockMetrics).addCount(eq(STAGE_NAME + ".recordsProcessed"), eq(1.0));
+        verify(mockMetrics, never()).addTime(eq("FusedConsumer." + STAGE_NAME + ".consume"), anyDouble());
+    }
+
+    @Test
+    public void openEmitsAZeroCounterAndOpensWrappedConsumer() {
+        verify(mockMetrics).addCount(eq(STAGE_NAME + ".recordsProcessed"), eq(0.0));
+        verify(mockEtlConsumer).open(eq(mockMetrics));
+    }
+
+    @Test
+    public void consumeSwallowsRuntimeExceptionsThrownByWrappedConsumer() {
+        doThrow(new RuntimeException("Test exception")).when(mockEtlConsumer).consume(any());
+
+        fusedEtlConsumer.consume(mockEtlStreamObject);
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void consumeThrowsUnrecoverableStreamFailureExceptionAfterWrappedConsumerHasThrownOne() {
+        doThrow(new UnrecoverableStreamFailureException("Test exception")).when(mockEtlConsumer).consume(any());
+
+        fusedEtlConsumer.consume(mockEtlStreamObject);
+        fusedEtlConsumer.consume(mockEtlStreamObject);
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void closeThrowsUnrecoverableStreamFailureExceptionAfterWrappedConsumerHasThrownOne() throws Exception {
+        doThrow(new UnrecoverableStreamFailureException("Test exception")).when(mockEtlConsumer).consume(any());
+
+        fusedEtlConsumer.consume(mockEtlStreamObject);
+        fusedEtlConsumer.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void consumeThrowsIllegalStateExceptionIfExecutorIsShutdown() {
+        when(mockEtlExecutor.isShutdown()).thenReturn(true);
+
+        fusedEtlConsumer.consume(mockEtlStreamObject);
+    }
+
+    @Test
+    public void closeShutsDownExecutorAndClosesWrappedConsumer() throws Exception {
+        fusedEtlConsumer.close();
+
+        verify(mockEtlExecutor).shutdown();
+        verify(mockEtlConsumer).close();
+    }
+
+    @Test
+    public void consumeRecordsToRegistryInsteadOfOpeningAProfilingScope() {
+        EtlMetricsRegistry etlMetricsRegistry = new EtlMetricsRegistry();
+        fusedEtlConsumer = new FusedEtlConsumer(STAGE_NAME, mockEtlConsumer, mockEtlExecutor, etlMetricsRegistry);
+        fusedEtlConsumer.open(mockMetrics);
+
+        fusedEtlConsumer.consume(mockEtlStreamObject);
+        fusedEtlConsumer.consumeBatch(ImmutableList.of(mockEtlStreamObject, mockEtlStreamObject));
+
+        StageMetrics stageMetrics = etlMetricsRegistry.getStageMetrics(STAGE_NAME);
+        assertThat(stageMetrics.getRecordsProcessed(), is(3L));
+        assertThat(stageMetrics.getServiceTime().snapshot().getCount(), is(2L));
+        verify(mockMetrics, never()).addTime(eq("FusedConsumer." + STAGE_NAME + ".consume"), anyDouble());
+        verify(mockMetrics, never()).addTime(eq("FusedConsumer." + STAGE_NAME + ".consumeBatch"), anyDouble());
+    }
+
+    @Test
+    public void consumeCountsErrorsInRegistry() {
+        EtlMetricsRegistry etlMetricsRegistry = new EtlMetricsRegistry();
+        fusedEtlConsumer = new FusedEtlConsumer(STAGE_NAME, mockEtlConsumer, mockEtlExecutor, etlMetricsRegistry);
+        fusedEtlConsumer.open(mockMetrics);
+        doThrow(new RuntimeException("test exception")).when(mockEtlConsumer).consume(any(EtlStreamObject.class));
+
+        fusedEtlConsumer.consume(mockEtlStreamObject);
+
+        assertThat(etlMetricsRegistry.getStageMetrics(STAGE_NAME).getErrors(), is(1L));
+    }
+
+    @Test
+    public void closeFlushesRegistry() throws Exception {
+        EtlMetricsRegistry etlMetricsRegistry = new EtlMetricsRegistry();
+        fusedEtlConsumer = new FusedEtlConsumer(STAGE_NAME, mockEtlConsumer, mockEtlExecutor, etlMetricsRegistry);
+        fusedEtlConsumer.open(mockMetrics);
+        fusedEtlConsumer.consume(mockEtlStreamObject);
+
+        fusedEtlConsumer.close();
+
+        verify(mockMetrics).addCount(eq(STAGE_NAME + ".recordsProcessed"), eq(1.0));
+        verify(mockMetrics).addTime(eq(STAGE_NAME + ".serviceTime.p50"), anyDouble());
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.EtlTestBase;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FusedLinkEtlConsumerTest extends EtlTestBase {
+    @Mock
+    private EtlStreamObject mockEtlStreamObject;
+
+    @Mock
+    private SmartEtlConsumer mockSmartEtlConsumer;
+
+    @Mock
+    private FusedEtlConsumer mockFusedEtlConsumer;
+
+    private FusedLinkEtlConsumer fusedLinkEtlConsumer;
+
+    @Before
+    public void constructFusedLinkConsumer() {
+        fusedLinkEtlConsumer = new FusedLinkEtlConsumer(mockSmartEtlConsumer, mockFusedEtlConsumer);
+    }
+
+    @Test
+    public void consumeSkipsTheSmartConsumer() {
+        fusedLinkEtlConsumer.consume(mockEtlStreamObject);
+
+        verify(mockFusedEtlConsumer).consumeFused(eq(mockEtlStreamObject));
+        verifyZeroInteractions(mockSmartEtlConsumer);
+    }
+
+    @Test
+    public void consumeBatchSkipsTheSmartConsumer() {
+        fusedLinkEtlConsumer.consumeBatch(ImmutableList.of(mockEtlStreamObject));
+
+        verify(mockFusedEtlConsumer).consumeBatch(eq(ImmutableList.of(mockEtlStreamObject)));
+        verifyZeroInteractions(mockSmartEtlConsumer);
+    }
+
+    @Test
+    public void openOpensTheSmartConsumer() {
+        fusedLinkEtlConsumer.open(mockMetrics);
+
+        verify(mockSmartEtlConsumer).open(eq(mockMetrics));
+        verifyZeroInteractions(mockFusedEtlConsumer);
+    }
+
+    @Test
+    public void closeClosesTheSmartConsumer() throws Exception {
+        fusedLinkEtlConsumer.close();
+
+        verify(mockSmartEtlConsumer).close();
+        verifyZeroInteractions(mockFusedEtlConsumer);
+    }
+}
@@ -15,9 +15,12 @@
 
 package com.amazon.pocketEtl.core.consumer;
 
+import com.amazon.pocketEtl.DurableLoader;
 import com.amazon.pocketEtl.EtlTestBase;
 import com.amazon.pocketEtl.Loader;
 import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.RecordCompletion;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -27,6 +30,7 @@ import org.mockito.junit.MockitoJUnitRunner;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -38,6 +42,9 @@ public class LoaderEtlConsumerTest extends EtlTestBase {
     @Mock
     private Loader<TestDTO> mockLoader;
 
+    @Mock
+    private DurableLoader<TestDTO> mockDurableLoader;
+
     @Mock
     private EtlConsumer mockErrorEtlConsumer;
 
@@ -111,4 +118,48 @@ public class LoaderEtlConsumerTest extends EtlTestBase {
 
         verify(mockErrorEtlConsumer).consume(mockEtlStreamObject);
     }
+
+    @Test
+    public void consumeMarksLoadedObjectCompleted() {
+        loaderConsumer.open(mockMetrics);
+        loaderConsumer.consume(mockEtlStreamObject);
+
+        verify(mockEtlStreamObject).markCompleted();
+    }
+
+    @Test
+    public void consumeDoesNotMarkObjectCompletedWhenItIsPassedToTheErrorConsumer() {
+        doThrow(new RuntimeException("test")).when(mockLoader).load(any(TestDTO.class));
+
+        loaderConsumer.open(mockMetrics);
+        loaderConsumer.consume(mockEtlStreamObject);
+
+        verify(mockEtlStreamObject, never()).markCompleted();
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void consumeRejectsACheckpointedObjectIfTheLoaderIsNotDurable() {
+        when(mockEtlStreamObject.getRecordCompletion()).thenReturn(new RecordCompletion(1, "position-1"));
+
+        loaderConsumer.open(mockMetrics);
+
+        try {
+            loaderConsumer.consume(mockEtlStreamObject);
+        } finally {
+            verify(mockLoader, never()).load(any(TestDTO.class));
+            verify(mockEtlStreamObject, never()).markCompleted();
+        }
+    }
+
+    @Test
+    public void consumeLoadsACheckpointedObjectIfTheLoaderIsDurable() {
+        when(mockEtlStreamObject.getRecordCompletion()).thenReturn(new RecordCompletion(1, "position-1"));
+        loaderConsumer = new LoaderEtlConsumer<>(TEST_NAME, mockDurableLoader, TestDTO.class, mockErrorEtlConsumer);
+
+        loaderConsumer.open(mockMetrics);
+        loaderConsumer.consume(mockEtlStreamObject);
+
+        verify(mockDurableLoader).load(mockTestDTO);
+        verify(mockEtlStreamObject).markCompleted();
+    }
 }
@@ -114,4 +114,12 @@ public class LogAsErrorEtlConsumerTest extends EtlTestBase {
 
         verify(mockLogger).error(contains(mockEtlStreamObject.getClass().getSimpleName()), eq(e));
     }
+
+    @Test
+    public void consumeMarksObjectCompleted() {
+        logAsErrorConsumerWithLogging.open(mockMetrics);
+        logAsErrorConsumerWithLogging.consume(mockEtlStreamObject);
+
+        verify(mockEtlStreamObject).markCompleted();
+    }
 }
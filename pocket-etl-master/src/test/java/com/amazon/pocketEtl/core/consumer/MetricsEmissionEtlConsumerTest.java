@@ -18,13 +18,18 @@ package com.amazon.pocketEtl.core.consumer;
 import com.amazon.pocketEtl.EtlProfilingScope;
 import com.amazon.pocketEtl.EtlTestBase;
 import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.metrics.EtlMetricsRegistry;
+import com.google.common.collect.ImmutableList;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -61,6 +66,22 @@ public class MetricsEmissionEtlConsumerTest extends EtlTestBase {
                 .addCount(eq(JOB_NAME + "." + STAGE_NAME + ".recordsProcessed"), eq(1.0));
     }
 
+    @Test
+    public void consumeBatchEmitsACounterForTheSizeOfTheBatch() {
+        metricsEmissionConsumer.open(mockMetrics);
+        metricsEmissionConsumer.consumeBatch(ImmutableList.of(mockEtlStreamObject, mockEtlStreamObject));
+
+        verify(mockMetrics).addCount(eq(JOB_NAME + "." + STAGE_NAME + ".recordsProcessed"), eq(2.0));
+    }
+
+    @Test
+    public void consumeBatchPassesBatchToDownstreamConsumer() {
+        metricsEmissionConsumer.open(mockMetrics);
+        metricsEmissionConsumer.consumeBatch(ImmutableList.of(mockEtlStreamObject));
+
+        verify(mockDownstreamEtlConsumer, times(1)).consumeBatch(eq(ImmutableList.of(mockEtlStreamObject)));
+    }
+
     @Test
     public void consumeEmitsAZeroCounterWithoutAnyRecordConsumed() {
         metricsEmissionConsumer.open(mockMetrics);
@@ -89,4 +110,33 @@ public class MetricsEmissionEtlConsumerTest extends EtlTestBase {
 
         verify(mockDownstreamEtlConsumer, times(1)).close();
     }
+
+    @Test
+    public void consumeCountsRecordsInRegistryInsteadOfEmittingACounter() {
+        EtlMetricsRegistry etlMetricsRegistry = new EtlMetricsRegistry();
+        metricsEmissionConsumer = new MetricsEmissionEtlConsumer(STAGE_NAME, mockDownstreamEtlConsumer,
+                etlMetricsRegistry);
+        metricsEmissionConsumer.open(mockMetrics);
+
+        metricsEmissionConsumer.consume(mockEtlStreamObject);
+        metricsEmissionConsumer.consumeBatch(ImmutableList.of(mockEtlStreamObject, mockEtlStreamObject));
+
+        assertThat(etlMetricsRegistry.getStageMetrics(STAGE_NAME).getRecordsProcessed(), is(3L));
+        verify(mockMetrics, never()).addCount(eq(STAGE_NAME + ".recordsProcessed"), eq(1.0));
+        verify(mockMetrics, never()).addCount(eq(STAGE_NAME + ".recordsProcessed"), eq(2.0));
+        verify(mockDownstreamEtlConsumer).consume(eq(mockEtlStreamObject));
+    }
+
+    @Test
+    public void closeFlushesCountsInRegistry() throws Exception {
+        EtlMetricsRegistry etlMetricsRegistry = new EtlMetricsRegistry();
+        metricsEmissionConsumer = new MetricsEmissionEtlConsumer(STAGE_NAME, mockDownstreamEtlConsumer,
+                etlMetricsRegistry);
+        metricsEmissionConsumer.open(mockMetrics);
+        metricsEmissionConsumer.consume(mockEtlStreamObject);
+
+        metricsEmissionConsumer.close();
+
+        verify(mockMetrics).addCount(eq(STAGE_NAME + ".recordsProcessed"), eq(1.0));
+    }
 }
@@ -0,0 +1,204 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.EtlTestBase;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MicroBatchingEtlConsumerTest extends EtlTestBase {
+    private static final String TEST_NAME = "TestName";
+
+    @Mock
+    private EtlStreamObject mockEtlStreamObject1;
+
+    @Mock
+    private EtlStreamObject mockEtlStreamObject2;
+
+    @Mock
+    private EtlStreamObject mockEtlStreamObject3;
+
+    @Mock
+    private EtlConsumer mockDownstreamEtlConsumer;
+
+    @Test
+    public void consumeReleasesBatchWhenItIsFull() {
+        MicroBatchingEtlConsumer consumer = new MicroBatchingEtlConsumer(TEST_NAME, mockDownstreamEtlConsumer,
+                MicroBatchPolicy.ofSize(2));
+        consumer.open(mockMetrics);
+
+        consumer.consume(mockEtlStreamObject1);
+        verify(mockDownstreamEtlConsumer, never()).consumeBatch(anyList());
+
+        consumer.consume(mockEtlStreamObject2);
+        verify(mockDownstreamEtlConsumer).consumeBatch(eq(ImmutableList.of(mockEtlStreamObject1, mockEtlStreamObject2)));
+    }
+
+    @Test
+    public void closeReleasesPartialBatchAndClosesDownstreamConsumer() throws Exception {
+        MicroBatchingEtlConsumer consumer = new MicroBatchingEtlConsumer(TEST_NAME, mockDownstreamEtlConsumer,
+                MicroBatchPolicy.ofSize(2));
+        consumer.open(mockMetrics);
+
+        consumer.consume(mockEtlStreamObject1);
+        consumer.consume(mockEtlStreamObject2);
+        consumer.consume(mockEtlStreamObject3);
+        consumer.close();
+
+        verify(mockDownstreamEtlConsumer).consumeBatch(eq(ImmutableList.of(mockEtlStreamObject3)));
+        verify(mockDownstreamEtlConsumer).close();
+    }
+
+    @Test
+    public void closeDoesNotReleaseEmptyBatch() throws Exception {
+        MicroBatchingEtlConsumer consumer = new MicroBatchingEtlConsumer(TEST_NAME, mockDownstreamEtlConsumer,
+                MicroBatchPolicy.ofSize(2));
+        consumer.open(mockMetrics);
+        consumer.close();
+
+        verify(mockDownstreamEtlConsumer, never()).consumeBatch(anyList());
+        verify(mockDownstreamEtlConsumer).close();
+    }
+
+    @Test
+    public void expiredBatchIsReleasedInTheBackground() throws Exception {
+        MicroBatchingEtlConsumer consumer = new MicroBatchingEtlConsumer(TEST_NAME, mockDownstreamEtlConsumer,
+                MicroBatchPolicy.of(100, 10));
+        consumer.open(mockMetrics);
+
+        consumer.consume(mockEtlStreamObject1);
+
+        verify(mockDownstreamEtlConsumer, timeout(5000)).consumeBatch(eq(ImmutableList.of(mockEtlStreamObject1)));
+        consumer.close();
+    }
+
+    @Test
+    public void closeWaitsForAnExpiredBatchBeingReleasedWithoutInterruptingIt() throws Exception {
+        MicroBatchingEtlConsumer consumer = new MicroBatchingEtlConsumer(TEST_NAME, mockDownstreamEtlConsumer,
+                MicroBatchPolicy.of(100, 10));
+        CountDownLatch releaseStarted = new CountDownLatch(1);
+        AtomicBoolean releaseCompleted = new AtomicBoolean(false);
+        doAnswer(invocation -> {
+            releaseStarted.countDown();
+            Thread.sleep(200);
+            releaseCompleted.set(true);
+            return null;
+        }).when(mockDownstreamEtlConsumer).consumeBatch(anyList());
+        consumer.open(mockMetrics);
+
+        consumer.consume(mockEtlStreamObject1);
+        assertThat(releaseStarted.await(5, TimeUnit.SECONDS), is(true));
+        consumer.close();
+
+        assertThat(releaseCompleted.get(), is(true));
+        verify(mockDownstreamEtlConsumer).consumeBatch(eq(ImmutableList.of(mockEtlStreamObject1)));
+    }
+
+    @Test
+    public void closeReleasesPartialBatchAfterAnExpiredBatchFailed() throws Exception {
+        MicroBatchingEtlConsumer consumer = new MicroBatchingEtlConsumer(TEST_NAME, mockDownstreamEtlConsumer,
+                MicroBatchPolicy.of(100, 10));
+        RuntimeException flushException = new RuntimeException("Test exception");
+        CountDownLatch releaseStarted = new CountDownLatch(1);
+        CountDownLatch failRelease = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            releaseStarted.countDown();
+            failRelease.await();
+            throw flushException;
+        }).when(mockDownstreamEtlConsumer).consumeBatch(eq(ImmutableList.of(mockEtlStreamObject1)));
+        consumer.open(mockMetrics);
+
+        consumer.consume(mockEtlStreamObject1);
+        assertThat(releaseStarted.await(5, TimeUnit.SECONDS), is(true));
+        consumer.consume(mockEtlStreamObject2);
+        failRelease.countDown();
+
+        try {
+            consumer.close();
+            fail("Expected the expired batch failure to be thrown");
+        } catch (RuntimeException e) {
+            assertThat(e, is(flushException));
+        }
+
+        verify(mockDownstreamEtlConsumer).consumeBatch(eq(ImmutableList.of(mockEtlStreamObject2)));
+        verify(mockDownstreamEtlConsumer).close();
+    }
+
+    @Test
+    public void batchIsNotReleasedBeforeItExpires() throws Exception {
+        MicroBatchingEtlConsumer consumer = new MicroBatchingEtlConsumer(TEST_NAME, mockDownstreamEtlConsumer,
+                MicroBatchPolicy.of(100, 60000));
+        consumer.open(mockMetrics);
+
+        consumer.consume(mockEtlStreamObject1);
+
+        verify(mockDownstreamEtlConsumer, after(100).never()).consumeBatch(anyList());
+        consumer.close();
+    }
+
+    @Test
+    public void openOpensDownstreamConsumer() {
+        MicroBatchingEtlConsumer consumer = new MicroBatchingEtlConsumer(TEST_NAME, mockDownstreamEtlConsumer,
+                MicroBatchPolicy.ofSize(2));
+        consumer.open(etlProfilingScope.getMetrics());
+
+        verify(mockDownstreamEtlConsumer).open(eq(etlProfilingScope.getMetrics()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void consumeThrowsIllegalStateExceptionIfNotOpen() {
+        MicroBatchingEtlConsumer consumer = new MicroBatchingEtlConsumer(TEST_NAME, mockDownstreamEtlConsumer,
+                MicroBatchPolicy.ofSize(2));
+
+        consumer.consume(mockEtlStreamObject1);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void consumeThrowsDownstreamException() {
+        MicroBatchingEtlConsumer consumer = new MicroBatchingEtlConsumer(TEST_NAME, mockDownstreamEtlConsumer,
+                MicroBatchPolicy.ofSize(1));
+        doThrow(new RuntimeException("Test Exception")).when(mockDownstreamEtlConsumer).consumeBatch(anyList());
+        consumer.open(mockMetrics);
+
+        consumer.consume(mockEtlStreamObject1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void policyRejectsEmptyBatches() {
+        MicroBatchPolicy.ofSize(0);
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import com.amazon.pocketEtl.EtlTestBase;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.executor.EtlExecutor;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderPreservingEtlConsumerTest extends EtlTestBase {
+    private static final String TEST_NAME = "TestName";
+    private static final int REORDER_BUFFER_SIZE = 2;
+
+    @Mock
+    private EtlConsumer mockWrappedEtlConsumer;
+
+    @Mock
+    private EtlConsumer mockDownstreamEtlConsumer;
+
+    @Mock
+    private EtlExecutor mockEtlExecutor;
+
+    @Mock
+    private EtlStreamObject mockEtlStreamObject1;
+
+    @Mock
+    private EtlStreamObject mockEtlStreamObject2;
+
+    @Mock
+    private EtlStreamObject mockOutput1;
+
+    @Mock
+    private EtlStreamObject mockOutput2a;
+
+    @Mock
+    private EtlStreamObject mockOutput2b;
+
+    private EtlConsumer collectingEtlConsumer;
+    private OrderPreservingEtlConsumer orderPreservingEtlConsumer;
+
+    @Before
+    public void constructOrderPreservingConsumer() {
+        orderPreservingEtlConsumer = new OrderPreservingEtlConsumer(TEST_NAME, collector -> {
+            collectingEtlConsumer = collector;
+            return mockWrappedEtlConsumer;
+        }, mockDownstreamEtlConsumer, mockEtlExecutor, REORDER_BUFFER_SIZE);
+
+        orderPreservingEtlConsumer.open(mockMetrics);
+    }
+
+    @Test
+    public void objectsCompletedOutOfOrderAreReleasedInOrder() {
+        stubFirstObjectToEmitOneOutput();
+        stubSecondObjectToEmitTwoOutputs();
+
+        orderPreservingEtlConsumer.consume(mockEtlStreamObject1);
+        orderPreservingEtlConsumer.consume(mockEtlStreamObject2);
+        List<Runnable> tasks = captureSubmittedTasks();
+
+        tasks.get(1).run();
+        verify(mockDownstreamEtlConsumer, never()).consume(any());
+
+        tasks.get(0).run();
+
+        InOrder inOrder = inOrder(mockDownstreamEtlConsumer);
+        inOrder.verify(mockDownstreamEtlConsumer).consume(eq(mockOutput1));
+        inOrder.verify(mockDownstreamEtlConsumer).consume(eq(mockOutput2a));
+        inOrder.verify(mockDownstreamEtlConsumer).consume(eq(mockOutput2b));
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test
+    public void objectsWithNoOutputDoNotHoldUpLaterObjects() {
+        stubSecondObjectToEmitTwoOutputs();
+
+        orderPreservingEtlConsumer.consume(mockEtlStreamObject1);
+        orderPreservingEtlConsumer.consume(mockEtlStreamObject2);
+        List<Runnable> tasks = captureSubmittedTasks();
+
+        tasks.get(0).run();
+        tasks.get(1).run();
+
+        InOrder inOrder = inOrder(mockDownstreamEtlConsumer);
+        inOrder.verify(mockDownstreamEtlConsumer).consume(eq(mockOutput2a));
+        inOrder.verify(mockDownstreamEtlConsumer).consume(eq(mockOutput2b));
+    }
+
+    @Test
+    public void consumeBlocksWhenTheReorderBufferIsFull() throws Exception {
+        stubFirstObjectToEmitOneOutput();
+        stubSecondObjectToEmitTwoOutputs();
+        CountDownLatch submitted = new CountDownLatch(1);
+        orderPreservingEtlConsumer.consume(mockEtlStreamObject1);
+        orderPreservingEtlConsumer.consume(mockEtlStreamObject2);
+
+        Thread submitter = new Thread(() -> {
+            orderPreservingEtlConsumer.consume(mockEtlStreamObject2);
+            submitted.countDown();
+        });
+        submitter.start();
+
+        // Completing a later object does not free any space, only releasing the oldest object does
+        captureSubmittedTasks().get(1).run();
+        assertThat(submitted.await(100, TimeUnit.MILLISECONDS), is(false));
+
+        captureSubmittedTasks().get(0).run();
+        assertThat(submitted.await(5, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void reorderBufferOccupancyIsReported() {
+        stubFirstObjectToEmitOneOutput();
+        stubSecondObjectToEmitTwoOutputs();
+
+        orderPreservingEtlConsumer.consume(mockEtlStreamObject1);
+        orderPreservingEtlConsumer.consume(mockEtlStreamObject2);
+        List<Runnable> tasks = captureSubmittedTasks();
+
+        tasks.get(1).run();
+        tasks.get(0).run();
+
+        verify(mockMetrics).addCount(eq(TEST_NAME + ".reorderBufferOccupancy"), eq(1.0));
+        verify(mockMetrics).addCount(eq(TEST_NAME + ".reorderBufferOccupancy"), eq(2.0));
+    }
+
+    @Test
+    public void rejectedSubmitDoesNotHoldUpLaterObjects() {
+        stubSecondObjectToEmitTwoOutputs();
+        doThrow(new RejectedExecutionException("Test exception")).doAnswer(invocation -> null)
+                .when(mockEtlExecutor).submit(any(), any());
+
+        try {
+            orderPreservingEtlConsumer.consume(mockEtlStreamObject1);
+        } catch (RejectedExecutionException ignored) {
+        }
+
+        orderPreservingEtlConsumer.consume(mockEtlStreamObject2);
+        captureSubmittedTasks().get(1).run();
+
+        verify(mockDownstreamEtlConsumer).consume(eq(mockOutput2a));
+    }
+
+    @Test
+    public void wrappedConsumerThatThrowsDoesNotHoldUpLaterObjects() throws Exception {
+        stubSecondObjectToEmitTwoOutputs();
+        doThrow(new IllegalStateException("Test exception")).when(mockWrappedEtlConsumer)
+                .consume(eq(mockEtlStreamObject1));
+        CountDownLatch submitted = new CountDownLatch(1);
+
+        orderPreservingEtlConsumer.consume(mockEtlStreamObject1);
+        orderPreservingEtlConsumer.consume(mockEtlStreamObject2);
+        List<Runnable> tasks = captureSubmittedTasks();
+
+        tasks.get(1).run();
+
+        try {
+            tasks.get(0).run();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException ignored) {
+        }
+
+        Thread submitter = new Thread(() -> {
+            orderPreservingEtlConsumer.consume(mockEtlStreamObject1);
+            submitted.countDown();
+        });
+        submitter.start();
+
+        assertThat(submitted.await(5, TimeUnit.SECONDS), is(true));
+        InOrder inOrder = inOrder(mockDownstreamEtlConsumer);
+        inOrder.verify(mockDownstreamEtlConsumer).consume(eq(mockOutput2a));
+        inOrder.verify(mockDownstreamEtlConsumer).consume(eq(mockOutput2b));
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test
+    public void downstreamConsumerThatThrowsDoesNotStrandLaterOutputs() {
+        stubFirstObjectToEmitOneOutput();
+        stubSecondObjectToEmitTwoOutputs();
+        doThrow(new IllegalStateException("Test exception")).when(mockDownstreamEtlConsumer)
+                .consume(eq(mockOutput1));
+
+        orderPreservingEtlConsumer.consume(mockEtlStreamObject1);
+        orderPreservingEtlConsumer.consume(mockEtlStreamObject2);
+        List<Runnable> tasks = captureSubmittedTasks();
+
+        tasks.get(1).run();
+        tasks.get(0).run();
+
+        InOrder inOrder = inOrder(mockDownstreamEtlConsumer);
+        inOrder.verify(mockDownstreamEtlConsumer).consume(eq(mockOutput1));
+        inOrder.verify(mockDownstreamEtlConsumer).consume(eq(mockOutput2a));
+        inOrder.verify(mockDownstreamEtlConsumer).consume(eq(mockOutput2b));
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void consumeThrowsUnrecoverableStreamFailureExceptionAfterWrappedConsumerDoes() {
+        doThrow(new UnrecoverableStreamFailureException("Test exception")).when(mockWrappedEtlConsumer)
+                .consume(eq(mockEtlStreamObject1));
+
+        orderPreservingEtlConsumer.consume(mockEtlStreamObject1);
+        captureSubmittedTasks().get(0).run();
+
+        orderPreservingEtlConsumer.consume(mockEtlStreamObject2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void consumeThrowsIllegalStateExceptionIfExecutorIsShutdown() {
+        when(mockEtlExecutor.isShutdown()).thenReturn(true);
+
+        orderPreservingEtlConsumer.consume(mockEtlStreamObject1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void collectorThrowsIllegalStateExceptionOutsideOfConsume() {
+        collectingEtlConsumer.consume(mockOutput1);
+    }
+
+    @Test
+    public void openOpensWrappedAndDownstreamConsumers() {
+        verify(mockWrappedEtlConsumer).open(eq(mockMetrics));
+        verify(mockDownstreamEtlConsumer).open(eq(mockMetrics));
+    }
+
+    @Test
+    public void closeShutsDownExecutorAndClosesWrappedAndDownstreamConsumers() throws Exception {
+        orderPreservingEtlConsumer.close();
+
+        InOrder inOrder = inOrder(mockEtlExecutor, mockWrappedEtlConsumer, mockDownstreamEtlConsumer);
+        inOrder.verify(mockEtlExecutor).shutdown();
+        inOrder.verify(mockWrappedEtlConsumer).close();
+        inOrder.verify(mockDownstreamEtlConsumer).close();
+    }
+
+    private void stubFirstObjectToEmitOneOutput() {
+        doAnswer(invocation -> {
+            collectingEtlConsumer.consume(mockOutput1);
+            return null;
+        }).when(mockWrappedEtlConsumer).consume(eq(mockEtlStreamObject1));
+    }
+
+    private void stubSecondObjectToEmitTwoOutputs() {
+        doAnswer(invocation -> {
+            collectingEtlConsumer.consume(mockOutput2a);
+            collectingEtlConsumer.consume(mockOutput2b);
+            return null;
+        }).when(mockWrappedEtlConsumer).consume(eq(mockEtlStreamObject2));
+    }
+
+    private List<Runnable> captureSubmittedTasks() {
+        ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockEtlExecutor, atLeastOnce()).submit(runnableCaptor.capture(), any());
+        return runnableCaptor.getAllValues();
+    }
+}
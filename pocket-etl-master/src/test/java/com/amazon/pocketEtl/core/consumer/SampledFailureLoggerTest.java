@@ -0,0 +1,131 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.consumer;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SampledFailureLoggerTest {
+    private static final String STAGE_NAME = "TestStage";
+    private static final String DESCRIPTION = "Exception thrown in loader object";
+    private static final long SAMPLE_INTERVAL_MILLIS = 1000;
+
+    @Mock
+    private Logger mockLogger;
+
+    private final AtomicLong nanoClock = new AtomicLong(0);
+    private SampledFailureLogger sampledFailureLogger;
+
+    @Before
+    public void constructSampledFailureLogger() {
+        sampledFailureLogger = new SampledFailureLogger(mockLogger, STAGE_NAME, SAMPLE_INTERVAL_MILLIS, nanoClock::get);
+    }
+
+    @Test
+    public void firstFailureIsLoggedWithItsStackTrace() {
+        RuntimeException exception = new RuntimeException("test exception");
+
+        sampledFailureLogger.warn(DESCRIPTION, exception);
+
+        verify(mockLogger).warn(contains(STAGE_NAME), eq(exception));
+    }
+
+    @Test
+    public void failuresWithinTheSampleIntervalAreOnlyCounted() {
+        for (int i = 0; i < 100; i++) {
+            sampledFailureLogger.warn(DESCRIPTION, new RuntimeException("test exception"));
+        }
+
+        verify(mockLogger, times(1)).warn(anyString(), any(Throwable.class));
+    }
+
+    @Test
+    public void nextSampleReportsHowManyFailuresWereNotLogged() {
+        for (int i = 0; i < 5; i++) {
+            sampledFailureLogger.warn(DESCRIPTION, new RuntimeException("test exception"));
+        }
+
+        nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(SAMPLE_INTERVAL_MILLIS));
+        RuntimeException sampledException = new RuntimeException("test exception");
+        sampledFailureLogger.warn(DESCRIPTION, sampledException);
+
+        verify(mockLogger).warn(contains("4 more like it"), eq(sampledException));
+    }
+
+    @Test
+    public void failuresOfDifferentTypesAreSampledSeparately() {
+        RuntimeException runtimeException = new RuntimeException("test exception");
+        IllegalArgumentException illegalArgumentException = new IllegalArgumentException("test exception");
+
+        sampledFailureLogger.warn(DESCRIPTION, runtimeException);
+        sampledFailureLogger.warn(DESCRIPTION, illegalArgumentException);
+
+        verify(mockLogger).warn(anyString(), eq(runtimeException));
+        verify(mockLogger).warn(anyString(), eq(illegalArgumentException));
+    }
+
+    @Test
+    public void failuresWithDifferentDescriptionsAreSampledSeparately() {
+        RuntimeException firstException = new RuntimeException("test exception");
+        RuntimeException secondException = new RuntimeException("test exception");
+
+        sampledFailureLogger.warn(DESCRIPTION, firstException);
+        sampledFailureLogger.warn("Exception thrown converting object for loader", secondException);
+
+        verify(mockLogger).warn(contains(DESCRIPTION), eq(firstException));
+        verify(mockLogger).warn(contains("converting object"), eq(secondException));
+    }
+
+    @Test
+    public void flushSummarizesFailuresThatWereNotLogged() {
+        for (int i = 0; i < 3; i++) {
+            sampledFailureLogger.warn(DESCRIPTION, new IllegalStateException("test exception"));
+        }
+
+        sampledFailureLogger.flush();
+
+        verify(mockLogger).warn(contains("2 more java.lang.IllegalStateException failures"));
+    }
+
+    @Test
+    public void flushLogsNothingIfEveryFailureWasLogged() {
+        RuntimeException exception = new RuntimeException("test exception");
+        sampledFailureLogger.warn(DESCRIPTION, exception);
+
+        sampledFailureLogger.flush();
+
+        verify(mockLogger).warn(anyString(), eq(exception));
+        verify(mockLogger, never()).warn(anyString());
+        verifyNoMoreInteractions(mockLogger);
+    }
+}
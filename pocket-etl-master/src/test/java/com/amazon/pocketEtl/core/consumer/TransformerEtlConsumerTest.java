@@ -19,6 +19,7 @@ import com.amazon.pocketEtl.EtlMetrics;
 import com.amazon.pocketEtl.EtlTestBase;
 import com.amazon.pocketEtl.Transformer;
 import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.RecordCompletion;
 import com.google.common.collect.ImmutableList;
 import org.junit.Before;
 import org.junit.Test;
@@ -26,6 +27,10 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
@@ -91,6 +96,20 @@ public class TransformerEtlConsumerTest extends EtlTestBase {
         verifyNoMoreInteractions(mockTransformer);
     }
 
+    @Test
+    public void consumeBatchSendsAllTransformedObjectsDownstreamAsOneBatch() {
+        when(mockTransformer.transform(eq(testDTO1))).thenReturn(ImmutableList.of(testDTO2, testDTO3));
+        when(mockTransformer.transform(eq(testDTO2))).thenReturn(ImmutableList.of(testDTO1));
+        transformerConsumer.open(mockMetrics);
+        transformerConsumer.consumeBatch(ImmutableList.of(EtlStreamObject.of(testDTO1), EtlStreamObject.of(testDTO2)));
+
+        verify(mockEtlConsumer, times(1)).consumeBatch(argThat(batch -> batch.size() == 3
+                && testDTO2.equals(batch.get(0).get(TestDTO.class))
+                && testDTO3.equals(batch.get(1).get(TestDTO.class))
+                && testDTO1.equals(batch.get(2).get(TestDTO.class))));
+        verify(mockEtlConsumer, times(0)).consume(any());
+    }
+
     @Test
     public void consumePassesToTheErrorConsumerOnRuntimeException() {
         when(mockTransformer.transform(any(TestDTO.class))).thenThrow(new RuntimeException("soooo fast"));
@@ -155,4 +174,24 @@ public class TransformerEtlConsumerTest extends EtlTestBase {
         verify(mockTransformer).close();
         verify(mockEtlConsumer).close();
     }
+
+    @Test
+    public void consumeKeepsRecordIncompleteUntilEveryFannedOutObjectIsCompleted() {
+        RecordCompletion recordCompletion = new RecordCompletion(0, "position");
+        when(mockTransformer.transform(any(TestDTO.class))).thenReturn(ImmutableList.of(testDTO2, testDTO3));
+        transformerConsumer.open(mockMetrics);
+        transformerConsumer.consume(EtlStreamObject.of(testDTO1).withRecordCompletion(recordCompletion));
+
+        assertThat(recordCompletion.isCompleted(), is(false));
+    }
+
+    @Test
+    public void consumeCompletesRecordThatIsTransformedIntoNothing() {
+        RecordCompletion recordCompletion = new RecordCompletion(0, "position");
+        when(mockTransformer.transform(any(TestDTO.class))).thenReturn(Collections.emptyList());
+        transformerConsumer.open(mockMetrics);
+        transformerConsumer.consume(EtlStreamObject.of(testDTO1).withRecordCompletion(recordCompletion));
+
+        assertThat(recordCompletion.isCompleted(), is(true));
+    }
 }
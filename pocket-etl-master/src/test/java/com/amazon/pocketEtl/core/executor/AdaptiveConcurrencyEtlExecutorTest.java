@@ -0,0 +1,223 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AdaptiveConcurrencyEtlExecutorTest {
+    private final static int MIN_CONCURRENCY = 1;
+    private final static int MAX_CONCURRENCY = 4;
+    private final static long FAST_LATENCY = 10;
+    private final static long SLOW_LATENCY = 100;
+
+    @Mock
+    private EtlExecutor mockEtlExecutor;
+
+    @Mock
+    private EtlMetrics mockMetrics;
+
+    // Every reading of the clock advances it by the current latency, so a task's start and end readings differ by it
+    private final AtomicLong fakeClock = new AtomicLong(0);
+    private long currentLatency = 0;
+    private AdaptiveConcurrencyEtlExecutor adaptiveConcurrencyEtlExecutor;
+    private int tasksRun = 0;
+
+    @Before
+    public void constructEtlExecutor() {
+        adaptiveConcurrencyEtlExecutor = new AdaptiveConcurrencyEtlExecutor(mockEtlExecutor, MIN_CONCURRENCY,
+                MAX_CONCURRENCY, this::readFakeClock);
+    }
+
+    @Test
+    public void concurrencyLimitStartsAtMinimum() {
+        assertThat(adaptiveConcurrencyEtlExecutor.getConcurrencyLimit(), is(MIN_CONCURRENCY));
+    }
+
+    @Test
+    public void concurrencyLimitGrowsWhileSaturatedAndFastUpToMaximum() {
+        for (int i = 0; i < 10; i++) {
+            runSaturatedWindow(FAST_LATENCY, () -> { });
+        }
+
+        assertThat(adaptiveConcurrencyEtlExecutor.getConcurrencyLimit(), is(MAX_CONCURRENCY));
+    }
+
+    @Test
+    public void concurrencyLimitBacksOffWhenLatencyRises() {
+        for (int i = 0; i < 10; i++) {
+            runSaturatedWindow(FAST_LATENCY, () -> { });
+        }
+
+        runSaturatedWindow(SLOW_LATENCY, () -> { });
+
+        assertThat(adaptiveConcurrencyEtlExecutor.getConcurrencyLimit(), is(MAX_CONCURRENCY - 1));
+    }
+
+    @Test
+    public void concurrencyLimitBacksOffWhenATaskFails() {
+        for (int i = 0; i < 10; i++) {
+            runSaturatedWindow(FAST_LATENCY, () -> { });
+        }
+
+        runSaturatedWindow(FAST_LATENCY, () -> {
+            throw new RuntimeException("Test exception");
+        });
+
+        assertThat(adaptiveConcurrencyEtlExecutor.getConcurrencyLimit(), is(MAX_CONCURRENCY - 1));
+    }
+
+    @Test
+    public void concurrencyLimitBacksOffWhenATaskReportsAFailure() {
+        for (int i = 0; i < 10; i++) {
+            runSaturatedWindow(FAST_LATENCY, () -> { });
+        }
+
+        runSaturatedWindow(FAST_LATENCY, () -> adaptiveConcurrencyEtlExecutor.reportTaskFailure());
+
+        assertThat(adaptiveConcurrencyEtlExecutor.getConcurrencyLimit(), is(MAX_CONCURRENCY - 1));
+    }
+
+    @Test
+    public void failureReportedOutsideOfATaskIsIgnored() {
+        adaptiveConcurrencyEtlExecutor.reportTaskFailure();
+
+        for (int i = 0; i < 10; i++) {
+            runSaturatedWindow(FAST_LATENCY, () -> { });
+        }
+
+        assertThat(adaptiveConcurrencyEtlExecutor.getConcurrencyLimit(), is(MAX_CONCURRENCY));
+    }
+
+    @Test
+    public void concurrencyLimitNeverDropsBelowMinimum() {
+        for (int i = 0; i < 10; i++) {
+            runSaturatedWindow(FAST_LATENCY, () -> { });
+        }
+
+        for (int i = 0; i < 10; i++) {
+            runSaturatedWindow(SLOW_LATENCY * (i + 2), () -> { });
+        }
+
+        assertThat(adaptiveConcurrencyEtlExecutor.getConcurrencyLimit(), is(MIN_CONCURRENCY));
+    }
+
+    @Test
+    public void concurrencyLimitDoesNotGrowWhenNotSaturated() {
+        adaptiveConcurrencyEtlExecutor = new AdaptiveConcurrencyEtlExecutor(mockEtlExecutor, 2, MAX_CONCURRENCY,
+                this::readFakeClock);
+
+        for (int i = 0; i < 10; i++) {
+            adaptiveConcurrencyEtlExecutor.submit(() -> { }, mockMetrics);
+            runNextSubmittedTask(FAST_LATENCY);
+        }
+
+        assertThat(adaptiveConcurrencyEtlExecutor.getConcurrencyLimit(), is(2));
+    }
+
+    @Test
+    public void concurrencyLimitIsEmittedToMetrics() {
+        runSaturatedWindow(FAST_LATENCY, () -> { });
+
+        verify(mockMetrics).addCount(eq(AdaptiveConcurrencyEtlExecutor.CONCURRENCY_LIMIT_METRIC_NAME), eq(2.0));
+    }
+
+    @Test
+    public void submitBlocksWhenConcurrencyLimitIsReached() throws Exception {
+        CountDownLatch submitted = new CountDownLatch(1);
+        adaptiveConcurrencyEtlExecutor.submit(() -> { }, null);
+
+        Thread submitter = new Thread(() -> {
+            adaptiveConcurrencyEtlExecutor.submit(() -> { }, null);
+            submitted.countDown();
+        });
+        submitter.start();
+
+        assertThat(submitted.await(100, TimeUnit.MILLISECONDS), is(false));
+
+        runNextSubmittedTask(FAST_LATENCY);
+
+        assertThat(submitted.await(5, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void submitThrowsRejectedExecutionExceptionIfShutdown() {
+        when(mockEtlExecutor.isShutdown()).thenReturn(true);
+
+        adaptiveConcurrencyEtlExecutor.submit(() -> { }, null);
+    }
+
+    @Test
+    public void shutdownShutsDownWrappedExecutor() throws Exception {
+        adaptiveConcurrencyEtlExecutor.shutdown();
+
+        verify(mockEtlExecutor).shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsIllegalArgumentExceptionIfMinimumExceedsMaximum() {
+        new AdaptiveConcurrencyEtlExecutor(mockEtlExecutor, 5, 4);
+    }
+
+    private long readFakeClock() {
+        return fakeClock.addAndGet(currentLatency);
+    }
+
+    private void runSaturatedWindow(long latency, Runnable task) {
+        int concurrencyLimit = adaptiveConcurrencyEtlExecutor.getConcurrencyLimit();
+
+        for (int i = 0; i < concurrencyLimit; i++) {
+            adaptiveConcurrencyEtlExecutor.submit(task, mockMetrics);
+        }
+
+        for (int i = 0; i < concurrencyLimit; i++) {
+            runNextSubmittedTask(latency);
+        }
+    }
+
+    private void runNextSubmittedTask(long latency) {
+        ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockEtlExecutor, atLeastOnce()).submit(runnableCaptor.capture(), any());
+        List<Runnable> submittedTasks = runnableCaptor.getAllValues();
+
+        currentLatency = latency;
+
+        try {
+            submittedTasks.get(tasksRun++).run();
+        } catch (RuntimeException ignored) {
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class EtlExecutorFactoryAdaptiveConcurrencyTest {
+    private final static int MIN_CONCURRENCY = 2;
+    private final static int MAX_CONCURRENCY = 8;
+
+    private EtlExecutorFactory etlExecutorFactory = new EtlExecutorFactory();
+    private EtlExecutor etlExecutor;
+
+    @Before
+    public void constructEtlExecutor() {
+        etlExecutor = etlExecutorFactory.newAdaptiveConcurrencyEtlExecutor(MIN_CONCURRENCY, MAX_CONCURRENCY);
+    }
+
+    @After
+    public void teardownEtlExecutor() throws Exception {
+        etlExecutor.shutdown();
+    }
+
+    @Test
+    public void executorIsConfiguredCorrectly() {
+        assertThat(etlExecutor, instanceOf(AdaptiveConcurrencyEtlExecutor.class));
+
+        AdaptiveConcurrencyEtlExecutor adaptiveEtlExecutor = (AdaptiveConcurrencyEtlExecutor) etlExecutor;
+        assertThat(adaptiveEtlExecutor.getMinConcurrency(), is(MIN_CONCURRENCY));
+        assertThat(adaptiveEtlExecutor.getMaxConcurrency(), is(MAX_CONCURRENCY));
+        assertThat(adaptiveEtlExecutor.getConcurrencyLimit(), is(MIN_CONCURRENCY));
+
+        ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor)
+                ((ExecutorServiceEtlExecutor) adaptiveEtlExecutor.getWrappedEtlExecutor()).getExecutorService();
+        assertThat(threadPoolExecutor.getMaximumPoolSize(), is(MAX_CONCURRENCY));
+    }
+
+    @Test
+    public void executorCanDoRealWork() throws Exception {
+        AtomicInteger workCounter = new AtomicInteger(0);
+
+        IntStream.range(0, 100).forEach(i -> etlExecutor.submit(workCounter::incrementAndGet, null));
+        etlExecutor.shutdown();
+
+        assertThat(workCounter.get(), equalTo(100));
+    }
+}
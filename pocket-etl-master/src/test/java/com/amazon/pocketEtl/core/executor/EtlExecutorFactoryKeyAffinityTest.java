@@ -0,0 +1,60 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class EtlExecutorFactoryKeyAffinityTest {
+    private final static int NUMBER_OF_PARTITIONS = 3;
+    private final static int QUEUE_SIZE = 7;
+
+    private EtlExecutorFactory etlExecutorFactory = new EtlExecutorFactory();
+    private PartitionedEtlExecutor etlExecutor;
+
+    @Before
+    public void constructEtlExecutor() {
+        etlExecutor = etlExecutorFactory.newKeyAffinityEtlExecutor(NUMBER_OF_PARTITIONS, QUEUE_SIZE);
+    }
+
+    @After
+    public void teardownEtlExecutor() throws Exception {
+        etlExecutor.shutdown();
+    }
+
+    @Test
+    public void executorIsConfiguredCorrectly() {
+        assertThat(etlExecutor, instanceOf(KeyAffinityEtlExecutor.class));
+
+        KeyAffinityEtlExecutor keyAffinityEtlExecutor = (KeyAffinityEtlExecutor) etlExecutor;
+        assertThat(keyAffinityEtlExecutor.getPartitions().size(), is(NUMBER_OF_PARTITIONS));
+
+        for (ExecutorServiceEtlExecutor partition : keyAffinityEtlExecutor.getPartitions()) {
+            ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) partition.getExecutorService();
+            assertThat(threadPoolExecutor.getMaximumPoolSize(), is(1));
+            assertThat(threadPoolExecutor.getQueue(), instanceOf(ArrayBlockingQueue.class));
+            assertThat(threadPoolExecutor.getQueue().remainingCapacity(), is(QUEUE_SIZE));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class EtlExecutorFactoryOffHeapBufferedTest {
+    private final static int NUMBER_OF_WORKERS = 3;
+    private final static long BUFFER_SIZE_BYTES = 1024 * 1024;
+
+    private EtlExecutorFactory etlExecutorFactory = new EtlExecutorFactory();
+    private EtlExecutor etlExecutor;
+
+    @Before
+    public void constructEtlExecutor() {
+        etlExecutor = etlExecutorFactory.newOffHeapBufferedEtlExecutor(NUMBER_OF_WORKERS, BUFFER_SIZE_BYTES);
+    }
+
+    @After
+    public void teardownEtlExecutor() throws Exception {
+        etlExecutor.shutdown();
+    }
+
+    @Test
+    public void executorIsConfiguredCorrectly() {
+        assertThat(etlExecutor, instanceOf(OffHeapBufferedEtlExecutor.class));
+
+        OffHeapBufferedEtlExecutor offHeapBufferedEtlExecutor = (OffHeapBufferedEtlExecutor) etlExecutor;
+        assertThat(offHeapBufferedEtlExecutor.getNumberOfWorkers(), is(NUMBER_OF_WORKERS));
+        assertThat(offHeapBufferedEtlExecutor.getBufferSizeBytes(), is(BUFFER_SIZE_BYTES));
+    }
+}
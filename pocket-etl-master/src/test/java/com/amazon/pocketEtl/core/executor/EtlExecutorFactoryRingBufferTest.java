@@ -0,0 +1,53 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class EtlExecutorFactoryRingBufferTest {
+    private final static int NUMBER_OF_WORKERS = 3;
+    private final static int BUFFER_SIZE = 16;
+
+    private EtlExecutorFactory etlExecutorFactory = new EtlExecutorFactory();
+    private EtlExecutor etlExecutor;
+
+    @Before
+    public void constructEtlExecutor() {
+        etlExecutor = etlExecutorFactory.newRingBufferEtlExecutor(NUMBER_OF_WORKERS, BUFFER_SIZE,
+                RingBufferWaitStrategy.PARK);
+    }
+
+    @After
+    public void teardownEtlExecutor() throws Exception {
+        etlExecutor.shutdown();
+    }
+
+    @Test
+    public void executorIsConfiguredCorrectly() {
+        assertThat(etlExecutor, instanceOf(RingBufferEtlExecutor.class));
+
+        RingBufferEtlExecutor ringBufferEtlExecutor = (RingBufferEtlExecutor) etlExecutor;
+        assertThat(ringBufferEtlExecutor.getNumberOfWorkers(), is(NUMBER_OF_WORKERS));
+        assertThat(ringBufferEtlExecutor.getBufferSize(), is(BUFFER_SIZE));
+        assertThat(ringBufferEtlExecutor.getWaitStrategy(), is(RingBufferWaitStrategy.PARK));
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class EtlExecutorFactorySpillingFixedThreadsTest {
+    private final static int NUMBER_OF_WORKERS = 3;
+    private final static int IN_MEMORY_QUEUE_SIZE = 16;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private EtlExecutorFactory etlExecutorFactory = new EtlExecutorFactory();
+    private EtlExecutor etlExecutor;
+
+    @Before
+    public void constructEtlExecutor() {
+        etlExecutor = etlExecutorFactory.newSpillingFixedThreadsEtlExecutor(NUMBER_OF_WORKERS, IN_MEMORY_QUEUE_SIZE,
+                temporaryFolder.getRoot().toPath());
+    }
+
+    @After
+    public void teardownEtlExecutor() throws Exception {
+        etlExecutor.shutdown();
+    }
+
+    @Test
+    public void executorIsConfiguredCorrectly() {
+        assertThat(etlExecutor, instanceOf(SpillingEtlExecutor.class));
+
+        SpillingEtlExecutor spillingEtlExecutor = (SpillingEtlExecutor) etlExecutor;
+        assertThat(spillingEtlExecutor.getNumberOfWorkers(), is(NUMBER_OF_WORKERS));
+        assertThat(spillingEtlExecutor.getInMemoryQueueSize(), is(IN_MEMORY_QUEUE_SIZE));
+        assertThat(spillingEtlExecutor.getSpillDirectory(), is(temporaryFolder.getRoot().toPath()));
+    }
+}
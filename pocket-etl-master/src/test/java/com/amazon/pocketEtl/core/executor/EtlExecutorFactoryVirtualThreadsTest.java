@@ -0,0 +1,99 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class EtlExecutorFactoryVirtualThreadsTest {
+    private final static int MAX_CONCURRENCY = 4;
+
+    private EtlExecutorFactory etlExecutorFactory = new EtlExecutorFactory();
+    private EtlExecutor etlExecutor;
+
+    @Before
+    public void constructEtlExecutor() {
+        etlExecutor = etlExecutorFactory.newVirtualThreadsEtlExecutor(MAX_CONCURRENCY);
+    }
+
+    @After
+    public void teardownEtlExecutor() throws Exception {
+        etlExecutor.shutdown();
+    }
+
+    @Test
+    public void executorIsBoundedByMaxConcurrency() {
+        assertThat(etlExecutor, instanceOf(SemaphoreBoundedEtlExecutor.class));
+        assertThat(((SemaphoreBoundedEtlExecutor) etlExecutor).getMaxConcurrency(), is(MAX_CONCURRENCY));
+    }
+
+    @Test
+    public void executorCanDoRealWork() throws Exception {
+        AtomicInteger workCounter = new AtomicInteger(0);
+
+        IntStream.range(0, 100).forEach(i -> etlExecutor.submit(workCounter::incrementAndGet, null));
+        etlExecutor.shutdown();
+
+        assertThat(workCounter.get(), equalTo(100));
+    }
+
+    @Test
+    public void executorNeverExceedsMaxConcurrency() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger(0);
+        AtomicInteger maxInFlight = new AtomicInteger(0);
+
+        IntStream.range(0, 50).forEach(i -> etlExecutor.submit(() -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException ignored) {
+            }
+            inFlight.decrementAndGet();
+        }, null));
+        etlExecutor.shutdown();
+
+        assertThat(maxInFlight.get(), lessThanOrEqualTo(MAX_CONCURRENCY));
+    }
+
+    @Test
+    public void executorRunsTasksConcurrently() throws Exception {
+        CountDownLatch allStarted = new CountDownLatch(MAX_CONCURRENCY);
+        CountDownLatch release = new CountDownLatch(1);
+
+        IntStream.range(0, MAX_CONCURRENCY).forEach(i -> etlExecutor.submit(() -> {
+            allStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        }, null));
+
+        assertThat(allStarted.await(5, TimeUnit.SECONDS), is(true));
+        release.countDown();
+    }
+}
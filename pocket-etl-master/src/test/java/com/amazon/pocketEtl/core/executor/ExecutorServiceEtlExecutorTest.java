@@ -29,6 +29,8 @@ import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.is;
@@ -187,6 +189,44 @@ public class ExecutorServiceEtlExecutorTest extends EtlTestBase {
         etlExecutor.shutdown();
     }
 
+    @Test
+    public void cancelShutsDownTheExecutorServiceImmediately() {
+        etlExecutor.cancel();
+
+        verify(mockExecutorService).shutdownNow();
+    }
+
+    @Test
+    public void shutdownWithinWaitsNoLongerThanTheTimeout() throws Exception {
+        when(mockExecutorService.awaitTermination(anyLong(), any(TimeUnit.class))).thenReturn(false);
+
+        assertThat(etlExecutor.shutdownWithin(250, TimeUnit.MILLISECONDS), is(false));
+
+        InOrder inOrder = Mockito.inOrder(mockExecutorService);
+        inOrder.verify(mockExecutorService).shutdown();
+        inOrder.verify(mockExecutorService).awaitTermination(eq(250L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void shutdownWithinReturnsTrueIfTheExecutorServiceTerminatesInTime() throws Exception {
+        when(mockExecutorService.awaitTermination(anyLong(), any(TimeUnit.class))).thenReturn(true);
+
+        assertThat(etlExecutor.shutdownWithin(250, TimeUnit.MILLISECONDS), is(true));
+    }
+
+    @Test
+    public void shutdownWithinRestoresTheInterruptFlagIfInterrupted() throws Exception {
+        when(mockExecutorService.awaitTermination(anyLong(), any(TimeUnit.class)))
+                .thenThrow(new InterruptedException());
+
+        try {
+            assertThat(etlExecutor.shutdownWithin(250, TimeUnit.MILLISECONDS), is(false));
+            assertThat(Thread.currentThread().isInterrupted(), is(true));
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
     @Test
     public void isShutdownReturnsStatusFromExecutorService() {
         assertThat(etlExecutor.isShutdown(), is(false));
@@ -195,4 +235,25 @@ public class ExecutorServiceEtlExecutorTest extends EtlTestBase {
 
         assertThat(etlExecutor.isShutdown(), is(true));
     }
+
+    @Test
+    public void getQueuedTaskCountAndGetActiveWorkerCountReadTheStateOfAThreadPoolExecutor() {
+        ThreadPoolExecutor mockThreadPoolExecutor = mock(ThreadPoolExecutor.class);
+        LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+        queue.add(() -> { });
+        queue.add(() -> { });
+        when(mockThreadPoolExecutor.getQueue()).thenReturn(queue);
+        when(mockThreadPoolExecutor.getActiveCount()).thenReturn(3);
+
+        ExecutorServiceEtlExecutor threadPoolEtlExecutor = new ExecutorServiceEtlExecutor(mockThreadPoolExecutor);
+
+        assertThat(threadPoolEtlExecutor.getQueuedTaskCount(), is(2));
+        assertThat(threadPoolEtlExecutor.getActiveWorkerCount(), is(3));
+    }
+
+    @Test
+    public void getQueuedTaskCountAndGetActiveWorkerCountAreZeroForOtherExecutorServices() {
+        assertThat(etlExecutor.getQueuedTaskCount(), is(0));
+        assertThat(etlExecutor.getActiveWorkerCount(), is(0));
+    }
 }
@@ -70,6 +70,11 @@ public class ImmediateExecutionEtlExecutorTest extends EtlTestBase {
             }, etlProfilingScope.getMetrics());
     }
 
+    @Test
+    public void runsTasksOnSubmittingThreadIsTrue() {
+        assertThat(etlExecutor.runsTasksOnSubmittingThread(), is(true));
+    }
+
     @Test
     public void submitWrapsExecutionInServiceLogEntryScope() {
         etlExecutor.submit(() -> {}, etlProfilingScope.getMetrics());
@@ -0,0 +1,186 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import com.amazon.pocketEtl.EtlTestBase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class KeyAffinityEtlExecutorTest extends EtlTestBase {
+    private final static int NUMBER_OF_PARTITIONS = 4;
+    private final static int QUEUE_SIZE = 2000;
+
+    private KeyAffinityEtlExecutor keyAffinityEtlExecutor;
+
+    @Before
+    public void constructEtlExecutor() {
+        keyAffinityEtlExecutor = (KeyAffinityEtlExecutor) new EtlExecutorFactory()
+                .newKeyAffinityEtlExecutor(NUMBER_OF_PARTITIONS, QUEUE_SIZE);
+    }
+
+    @After
+    public void teardownEtlExecutor() throws Exception {
+        keyAffinityEtlExecutor.shutdown();
+    }
+
+    @Test
+    public void equalKeysAlwaysMapToTheSamePartition() {
+        int partitionIndex = keyAffinityEtlExecutor.getPartitionIndex("key");
+
+        assertThat(keyAffinityEtlExecutor.getPartitionIndex(new String("key")), is(partitionIndex));
+    }
+
+    @Test
+    public void nullKeysMapToTheFirstPartition() {
+        assertThat(keyAffinityEtlExecutor.getPartitionIndex(null), is(0));
+    }
+
+    @Test
+    public void tasksWithTheSameKeyRunOnOneThreadInOrder() throws Exception {
+        List<Integer> completedTasks = Collections.synchronizedList(new ArrayList<>());
+        Set<Thread> threadsUsed = ConcurrentHashMap.newKeySet();
+        List<Integer> expectedTasks = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            final int taskNumber = i;
+            expectedTasks.add(taskNumber);
+            keyAffinityEtlExecutor.submit("key", () -> {
+                threadsUsed.add(Thread.currentThread());
+                completedTasks.add(taskNumber);
+            }, null);
+        }
+
+        keyAffinityEtlExecutor.shutdown();
+
+        assertThat(threadsUsed.size(), is(1));
+        assertThat(completedTasks, contains(expectedTasks.toArray()));
+    }
+
+    @Test
+    public void tasksWithDifferentKeysAreSpreadAcrossPartitions() throws Exception {
+        Set<Thread> threadsUsed = ConcurrentHashMap.newKeySet();
+
+        for (int i = 0; i < 100; i++) {
+            keyAffinityEtlExecutor.submit(i, () -> threadsUsed.add(Thread.currentThread()), null);
+        }
+
+        keyAffinityEtlExecutor.shutdown();
+
+        assertThat(threadsUsed.size(), greaterThan(1));
+    }
+
+    @Test
+    public void submitReportsQueueDepthAndSkewOfPartitions() throws Exception {
+        for (int i = 0; i < 1024; i++) {
+            keyAffinityEtlExecutor.submit(null, () -> { }, mockMetrics);
+        }
+
+        for (int i = 0; i < NUMBER_OF_PARTITIONS; i++) {
+            verify(mockMetrics, times(1))
+                    .addCount(eq("KeyAffinityEtlExecutor.partition." + i + ".queueDepth"), anyDouble());
+        }
+        verify(mockMetrics, times(1))
+                .addCount(eq(KeyAffinityEtlExecutor.PARTITION_SKEW_METRIC_NAME), eq((double) NUMBER_OF_PARTITIONS));
+    }
+
+    @Test
+    public void unkeyedTasksAreSpreadAcrossPartitionsInTurn() {
+        List<ExecutorServiceEtlExecutor> mockPartitions = new ArrayList<>();
+        Runnable task = () -> { };
+
+        for (int i = 0; i < NUMBER_OF_PARTITIONS; i++) {
+            mockPartitions.add(mock(ExecutorServiceEtlExecutor.class));
+        }
+
+        KeyAffinityEtlExecutor mockedEtlExecutor = new KeyAffinityEtlExecutor(mockPartitions);
+
+        for (int i = 0; i < NUMBER_OF_PARTITIONS; i++) {
+            mockedEtlExecutor.submit(task, null);
+        }
+
+        for (ExecutorServiceEtlExecutor mockPartition : mockPartitions) {
+            verify(mockPartition, times(1)).submit(task, null);
+        }
+    }
+
+    @Test
+    public void shutdownShutsDownEveryPartition() throws Exception {
+        keyAffinityEtlExecutor.shutdown();
+
+        assertThat(keyAffinityEtlExecutor.isShutdown(), is(true));
+        Set<Boolean> partitionsShutdown = new HashSet<>();
+        keyAffinityEtlExecutor.getPartitions().forEach(partition -> partitionsShutdown.add(partition.isShutdown()));
+        assertThat(partitionsShutdown, contains(true));
+    }
+
+    @Test
+    public void isShutdownIsFalseUntilEveryPartitionIsShutdown() {
+        ExecutorServiceEtlExecutor mockPartition1 = mock(ExecutorServiceEtlExecutor.class);
+        ExecutorServiceEtlExecutor mockPartition2 = mock(ExecutorServiceEtlExecutor.class);
+        when(mockPartition1.isShutdown()).thenReturn(true);
+        when(mockPartition2.isShutdown()).thenReturn(false);
+
+        List<ExecutorServiceEtlExecutor> mockPartitions = new ArrayList<>();
+        mockPartitions.add(mockPartition1);
+        mockPartitions.add(mockPartition2);
+
+        assertThat(new KeyAffinityEtlExecutor(mockPartitions).isShutdown(), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorRejectsAnEmptyListOfPartitions() {
+        new KeyAffinityEtlExecutor(new ArrayList<>());
+    }
+
+    @Test
+    public void getQueuedTaskCountAndGetActiveWorkerCountSumEveryPartition() {
+        List<ExecutorServiceEtlExecutor> mockPartitions = new ArrayList<>();
+
+        for (int i = 0; i < NUMBER_OF_PARTITIONS; i++) {
+            ExecutorServiceEtlExecutor mockPartition = mock(ExecutorServiceEtlExecutor.class);
+            when(mockPartition.getQueuedTaskCount()).thenReturn(2);
+            when(mockPartition.getActiveWorkerCount()).thenReturn(1);
+            mockPartitions.add(mockPartition);
+        }
+
+        KeyAffinityEtlExecutor mockedEtlExecutor = new KeyAffinityEtlExecutor(mockPartitions);
+
+        assertThat(mockedEtlExecutor.getQueuedTaskCount(), is(2 * NUMBER_OF_PARTITIONS));
+        assertThat(mockedEtlExecutor.getActiveWorkerCount(), is(NUMBER_OF_PARTITIONS));
+    }
+}
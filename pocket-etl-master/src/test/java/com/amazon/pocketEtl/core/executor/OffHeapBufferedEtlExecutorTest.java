@@ -0,0 +1,276 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.RecordCompletion;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class OffHeapBufferedEtlExecutorTest {
+    private final static long BUFFER_SIZE_BYTES = 4096;
+    private final static int ARENA_SIZE_BYTES = 256;
+    private final static long DEFAULT_ARENAS_BUFFER_SIZE_BYTES = 64 * 1024;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    private static class TestDTO {
+        private int value;
+    }
+
+    private final CountDownLatch firstTaskStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseWorker = new CountDownLatch(1);
+    private final Semaphore workerPermits = new Semaphore(0);
+    private final List<EtlStreamObject> processedObjects = Collections.synchronizedList(new ArrayList<>());
+    private final ObjLongConsumer<EtlStreamObject> blockingAction = (etlStreamObject, submitTimeNanos) -> {
+        firstTaskStarted.countDown();
+        awaitRelease();
+        processedObjects.add(etlStreamObject);
+    };
+
+    private OffHeapBufferedEtlExecutor etlExecutor;
+
+    @After
+    public void teardownEtlExecutor() throws Exception {
+        releaseWorker.countDown();
+        workerPermits.release(Integer.MAX_VALUE / 2);
+
+        if (etlExecutor != null && !etlExecutor.isShutdown()) {
+            etlExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void executorCanDoRealWork() throws Exception {
+        etlExecutor = newEtlExecutor(3);
+        AtomicInteger workCounter = new AtomicInteger(0);
+
+        IntStream.range(0, 1000).forEach(i -> etlExecutor.submit(workCounter::incrementAndGet, null));
+        etlExecutor.shutdown();
+
+        assertThat(workCounter.get(), equalTo(1000));
+    }
+
+    @Test
+    public void executorDoesNotLoseObjectsFromConcurrentSubmitters() throws Exception {
+        etlExecutor = newEtlExecutor(3);
+        AtomicLong sum = new AtomicLong(0);
+        ObjLongConsumer<EtlStreamObject> action = (etlStreamObject, submitTimeNanos) ->
+                sum.addAndGet(etlStreamObject.get(TestDTO.class).getValue());
+        Thread[] submitters = new Thread[4];
+
+        for (int i = 0; i < submitters.length; i++) {
+            submitters[i] = new Thread(() -> IntStream.rangeClosed(1, 1000).forEach(value ->
+                    etlExecutor.submit(EtlStreamObject.of(new TestDTO(value)), action, null)));
+            submitters[i].start();
+        }
+
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+
+        etlExecutor.shutdown();
+
+        assertThat(sum.get(), equalTo(4 * 500500L));
+    }
+
+    @Test
+    public void objectsAreProcessedInTheOrderTheyWereSubmitted() throws Exception {
+        etlExecutor = newEtlExecutor(1);
+
+        IntStream.range(0, 200).forEach(this::submitObject);
+        releaseWorker.countDown();
+        etlExecutor.shutdown();
+
+        List<Integer> processedValues = processedObjects.stream()
+                .map(etlStreamObject -> etlStreamObject.get(TestDTO.class).getValue())
+                .collect(Collectors.toList());
+        assertThat(processedValues, equalTo(IntStream.range(0, 200).boxed().collect(Collectors.toList())));
+    }
+
+    @Test
+    public void submitBlocksOnceTheMemoryBudgetIsUsedUp() throws Exception {
+        etlExecutor = newEtlExecutor(1);
+
+        submitObject(0);
+        assertThat(firstTaskStarted.await(5, TimeUnit.SECONDS), is(true));
+
+        Thread submitter = new Thread(() -> IntStream.range(1, 1000).forEach(this::submitObject));
+        submitter.start();
+        submitter.join(200);
+
+        assertThat(submitter.isAlive(), is(true));
+        assertThat(etlExecutor.getBufferedBytes() > BUFFER_SIZE_BYTES / 2, is(true));
+
+        releaseWorker.countDown();
+        submitter.join();
+        etlExecutor.shutdown();
+
+        assertThat(processedObjects.size(), is(1000));
+    }
+
+    @Test
+    public void blockedSubmittersResumeBeforeTheBufferHasBeenEmptied() throws Exception {
+        etlExecutor = new OffHeapBufferedEtlExecutor(1, DEFAULT_ARENAS_BUFFER_SIZE_BYTES);
+        AtomicInteger submittedCount = new AtomicInteger(0);
+        ObjLongConsumer<EtlStreamObject> action = (etlStreamObject, submitTimeNanos) -> {
+            workerPermits.acquireUninterruptibly();
+            processedObjects.add(etlStreamObject);
+        };
+        Thread submitter = new Thread(() -> IntStream.range(0, 10000).forEach(value -> {
+            etlExecutor.submit(EtlStreamObject.of(new TestDTO(value)), action, null);
+            submittedCount.incrementAndGet();
+        }));
+        submitter.start();
+
+        int blockedSubmittedCount = awaitBlockedSubmitter(submitter, submittedCount);
+        // A quarter of the buffer spans more than one arena but leaves the buffer far from empty
+        int permittedObjectCount = etlExecutor.getQueuedTaskCount() / 4;
+        workerPermits.release(permittedObjectCount);
+
+        assertThat(awaitSubmittedCountAbove(blockedSubmittedCount, submittedCount), is(true));
+        assertThat(processedObjects.size(), lessThanOrEqualTo(permittedObjectCount));
+
+        workerPermits.release(Integer.MAX_VALUE / 2);
+        submitter.join();
+        etlExecutor.shutdown();
+
+        assertThat(processedObjects.size(), is(10000));
+    }
+
+    @Test
+    public void defaultArenaSizeSplitsTheBudgetIntoSeveralArenas() {
+        assertThat(OffHeapBufferedEtlExecutor.getDefaultArenaSizeBytes(DEFAULT_ARENAS_BUFFER_SIZE_BYTES), is(8192));
+        assertThat(OffHeapBufferedEtlExecutor.getDefaultArenaSizeBytes(1024L * 1024 * 1024), is(1024 * 1024));
+        assertThat(OffHeapBufferedEtlExecutor.getDefaultArenaSizeBytes(8 * 1024), is(4096));
+        assertThat(OffHeapBufferedEtlExecutor.getDefaultArenaSizeBytes(100), is(100));
+    }
+
+    @Test
+    public void queuedTaskCountIncludesBufferedObjects() throws Exception {
+        etlExecutor = newEtlExecutor(1);
+
+        submitObject(0);
+        assertThat(firstTaskStarted.await(5, TimeUnit.SECONDS), is(true));
+        IntStream.range(1, 11).forEach(this::submitObject);
+
+        assertThat(etlExecutor.getQueuedTaskCount(), is(10));
+        assertThat(etlExecutor.getActiveWorkerCount(), is(1));
+        assertThat(etlExecutor.getBufferedBytes(), greaterThan(0L));
+    }
+
+    @Test
+    public void bufferedObjectsKeepTheirRecordCompletion() throws Exception {
+        etlExecutor = newEtlExecutor(1);
+        RecordCompletion recordCompletion = new RecordCompletion(1, "position");
+
+        submitObject(0);
+        etlExecutor.submit(EtlStreamObject.of(new TestDTO(1)).withRecordCompletion(recordCompletion), blockingAction,
+                null);
+        releaseWorker.countDown();
+        etlExecutor.shutdown();
+
+        assertThat(processedObjects.get(1).getRecordCompletion(), sameInstance(recordCompletion));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void submitRejectsAnObjectThatCanNeverFitInTheBuffer() {
+        etlExecutor = new OffHeapBufferedEtlExecutor(1, 16, 16);
+
+        submitObject(0);
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void submitObjectAfterShutdownThrowsRejectedExecutionException() throws Exception {
+        etlExecutor = newEtlExecutor(1);
+        etlExecutor.shutdown();
+
+        submitObject(1);
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void submitTaskAfterShutdownThrowsRejectedExecutionException() throws Exception {
+        etlExecutor = newEtlExecutor(1);
+        etlExecutor.shutdown();
+
+        etlExecutor.submit(() -> { }, null);
+    }
+
+    private OffHeapBufferedEtlExecutor newEtlExecutor(int numberOfWorkers) {
+        return new OffHeapBufferedEtlExecutor(numberOfWorkers, BUFFER_SIZE_BYTES, ARENA_SIZE_BYTES);
+    }
+
+    private void submitObject(int value) {
+        etlExecutor.submit(EtlStreamObject.of(new TestDTO(value)), blockingAction, null);
+    }
+
+    private static int awaitBlockedSubmitter(Thread submitter, AtomicInteger submittedCount) throws Exception {
+        int previousSubmittedCount = -1;
+
+        for (int i = 0; i < 100; i++) {
+            int currentSubmittedCount = submittedCount.get();
+
+            if (submitter.getState() == Thread.State.WAITING && currentSubmittedCount == previousSubmittedCount) {
+                return currentSubmittedCount;
+            }
+
+            previousSubmittedCount = currentSubmittedCount;
+            Thread.sleep(50);
+        }
+
+        throw new AssertionError("Submitter never blocked");
+    }
+
+    private static boolean awaitSubmittedCountAbove(int count, AtomicInteger submittedCount) throws Exception {
+        for (int i = 0; i < 100 && submittedCount.get() <= count; i++) {
+            Thread.sleep(50);
+        }
+
+        return submittedCount.get() > count;
+    }
+
+    private void awaitRelease() {
+        try {
+            releaseWorker.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
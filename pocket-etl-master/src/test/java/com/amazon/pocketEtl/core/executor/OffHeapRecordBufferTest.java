@@ -0,0 +1,142 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class OffHeapRecordBufferTest {
+    private final static int ARENA_SIZE_BYTES = 16;
+    private final static long MAX_BYTES = 64;
+
+    private OffHeapRecordBuffer offHeapRecordBuffer = new OffHeapRecordBuffer(MAX_BYTES, ARENA_SIZE_BYTES);
+
+    @Test
+    public void pollReturnsNullWhenEmpty() {
+        assertThat(offHeapRecordBuffer.poll(), nullValue());
+    }
+
+    @Test
+    public void capacityIsRoundedUpToAWholeNumberOfArenas() {
+        assertThat(new OffHeapRecordBuffer(65, ARENA_SIZE_BYTES).getCapacityBytes(), is(80L));
+    }
+
+    @Test
+    public void recordsArePolledInTheOrderTheyWereOfferedAcrossArenas() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(offHeapRecordBuffer.offer(record(i)), is(true));
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(new String(offHeapRecordBuffer.poll(), StandardCharsets.UTF_8), is("record-" + i));
+        }
+
+        assertThat(offHeapRecordBuffer.poll(), nullValue());
+    }
+
+    @Test
+    public void recordsLargerThanAnArenaAreSplitAcrossArenas() {
+        byte[] record = new byte[40];
+
+        for (int i = 0; i < record.length; i++) {
+            record[i] = (byte) i;
+        }
+
+        offHeapRecordBuffer.offer(record);
+
+        assertThat(offHeapRecordBuffer.poll(), is(record));
+    }
+
+    @Test
+    public void offerReturnsFalseWhenTheMemoryBudgetIsUsedUp() {
+        // Each record takes twelve bytes including its length prefix
+        for (int i = 0; i < 5; i++) {
+            assertThat(offHeapRecordBuffer.offer(record(i)), is(true));
+        }
+
+        assertThat(offHeapRecordBuffer.offer(record(5)), is(false));
+        assertThat(offHeapRecordBuffer.getSize(), is(5L));
+        assertThat(offHeapRecordBuffer.getUsedBytes(), is(60L));
+    }
+
+    @Test
+    public void arenasAreReusedOnceTheyHaveBeenRead() {
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 5; i++) {
+                assertThat(offHeapRecordBuffer.offer(record(i)), is(true));
+            }
+
+            for (int i = 0; i < 5; i++) {
+                assertThat(new String(offHeapRecordBuffer.poll(), StandardCharsets.UTF_8), is("record-" + i));
+            }
+        }
+
+        assertThat(offHeapRecordBuffer.getUsedBytes(), is(0L));
+    }
+
+    @Test
+    public void anArenaIsReusedAsSoonAsItHasBeenReadToTheEnd() {
+        // Each record fills an arena exactly including its length prefix
+        byte[] record = new byte[ARENA_SIZE_BYTES - Integer.BYTES];
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(offHeapRecordBuffer.offer(record), is(true));
+        }
+
+        assertThat(offHeapRecordBuffer.offer(record), is(false));
+
+        offHeapRecordBuffer.poll();
+
+        assertThat(offHeapRecordBuffer.offer(record), is(true));
+        assertThat(offHeapRecordBuffer.getSize(), is(4L));
+    }
+
+    @Test
+    public void recordsCanBeOfferedAndPolledAlternately() {
+        offHeapRecordBuffer.offer(record(0));
+
+        for (int i = 1; i < 100; i++) {
+            assertThat(offHeapRecordBuffer.offer(record(i % 10)), is(true));
+            assertThat(new String(offHeapRecordBuffer.poll(), StandardCharsets.UTF_8), is("record-" + ((i - 1) % 10)));
+        }
+
+        assertThat(offHeapRecordBuffer.getSize(), is(1L));
+    }
+
+    @Test
+    public void releaseDiscardsEveryRecord() {
+        offHeapRecordBuffer.offer(record(0));
+        offHeapRecordBuffer.release();
+
+        assertThat(offHeapRecordBuffer.getSize(), is(0L));
+        assertThat(offHeapRecordBuffer.getUsedBytes(), is(0L));
+        assertThat(offHeapRecordBuffer.poll(), nullValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorRejectsANonPositiveArenaSize() {
+        new OffHeapRecordBuffer(MAX_BYTES, 0);
+    }
+
+    private static byte[] record(int i) {
+        return ("record-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RingBufferEtlExecutorTest {
+    private final static int NUMBER_OF_WORKERS = 3;
+    private final static int BUFFER_SIZE = 4;
+
+    private EtlExecutor etlExecutor = new RingBufferEtlExecutor(NUMBER_OF_WORKERS, BUFFER_SIZE,
+            RingBufferWaitStrategy.YIELD);
+
+    @After
+    public void teardownEtlExecutor() throws Exception {
+        etlExecutor.shutdown();
+    }
+
+    @Test
+    public void bufferSizeIsRoundedUpToAPowerOfTwo() throws Exception {
+        RingBufferEtlExecutor ringBufferEtlExecutor = new RingBufferEtlExecutor(1, 5, RingBufferWaitStrategy.PARK);
+
+        assertThat(ringBufferEtlExecutor.getBufferSize(), is(8));
+        ringBufferEtlExecutor.shutdown();
+    }
+
+    @Test
+    public void executorCanDoRealWork() throws Exception {
+        AtomicInteger workCounter = new AtomicInteger(0);
+
+        IntStream.range(0, 1000).forEach(i -> etlExecutor.submit(workCounter::incrementAndGet, null));
+        etlExecutor.shutdown();
+
+        assertThat(workCounter.get(), equalTo(1000));
+    }
+
+    @Test
+    public void executorDoesNotLoseWorkFromConcurrentSubmitters() throws Exception {
+        AtomicLong sum = new AtomicLong(0);
+        Thread[] submitters = new Thread[4];
+
+        for (int i = 0; i < submitters.length; i++) {
+            submitters[i] = new Thread(() -> IntStream.rangeClosed(1, 1000).forEach(value ->
+                    etlExecutor.submit(() -> sum.addAndGet(value), null)));
+            submitters[i].start();
+        }
+
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+
+        etlExecutor.shutdown();
+
+        assertThat(sum.get(), equalTo(submitters.length * 1000L * 1001L / 2));
+    }
+
+    @Test
+    public void submitBlocksWhenTheBufferIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch workersBusy = new CountDownLatch(NUMBER_OF_WORKERS);
+        AtomicBoolean lastSubmitCompleted = new AtomicBoolean(false);
+
+        IntStream.range(0, NUMBER_OF_WORKERS).forEach(i -> etlExecutor.submit(() -> {
+            workersBusy.countDown();
+            awaitQuietly(release);
+        }, null));
+        assertThat(workersBusy.await(5, TimeUnit.SECONDS), is(true));
+
+        IntStream.range(0, BUFFER_SIZE).forEach(i -> etlExecutor.submit(() -> { }, null));
+
+        Thread submitter = new Thread(() -> {
+            etlExecutor.submit(() -> { }, null);
+            lastSubmitCompleted.set(true);
+        });
+        submitter.start();
+        submitter.join(100);
+
+        assertThat(lastSubmitCompleted.get(), is(false));
+
+        release.countDown();
+        submitter.join(5000);
+
+        assertThat(lastSubmitCompleted.get(), is(true));
+    }
+
+    @Test
+    public void shutdownDrainsTheBufferBeforeReturning() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger workCounter = new AtomicInteger(0);
+
+        IntStream.range(0, NUMBER_OF_WORKERS).forEach(i -> etlExecutor.submit(() -> awaitQuietly(release), null));
+        IntStream.range(0, BUFFER_SIZE).forEach(i -> etlExecutor.submit(workCounter::incrementAndGet, null));
+
+        Thread shutdownThread = new Thread(() -> {
+            try {
+                etlExecutor.shutdown();
+            } catch (Exception ignored) {
+            }
+        });
+        shutdownThread.start();
+        release.countDown();
+        shutdownThread.join(5000);
+
+        assertThat(etlExecutor.isShutdown(), is(true));
+        assertThat(workCounter.get(), equalTo(BUFFER_SIZE));
+    }
+
+    @Test
+    public void exceptionsThrownByTasksDoNotStopTheWorkers() throws Exception {
+        AtomicInteger workCounter = new AtomicInteger(0);
+
+        IntStream.range(0, 10).forEach(i -> etlExecutor.submit(() -> {
+            throw new RuntimeException("Test exception");
+        }, null));
+        IntStream.range(0, 10).forEach(i -> etlExecutor.submit(workCounter::incrementAndGet, null));
+        etlExecutor.shutdown();
+
+        assertThat(workCounter.get(), equalTo(10));
+    }
+
+    @Test
+    public void errorsThrownByTasksDoNotStopTheWorkers() throws Exception {
+        AtomicInteger workCounter = new AtomicInteger(0);
+
+        IntStream.range(0, 10).forEach(i -> etlExecutor.submit(() -> {
+            throw new AssertionError("Test error");
+        }, null));
+        IntStream.range(0, 10).forEach(i -> etlExecutor.submit(workCounter::incrementAndGet, null));
+        etlExecutor.shutdown();
+
+        assertThat(workCounter.get(), equalTo(10));
+    }
+
+    @Test
+    public void tasksAreProfiledAgainstTheirParentMetrics() throws Exception {
+        EtlMetrics mockMetrics = mock(EtlMetrics.class);
+        when(mockMetrics.createChildMetrics()).thenReturn(mockMetrics);
+
+        etlExecutor.submit(() -> { }, mockMetrics);
+        etlExecutor.shutdown();
+
+        verify(mockMetrics).addTime(eq("RingBufferEtlExecutor.submit"), anyDouble());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void submitThrowsRejectedExecutionExceptionAfterShutdown() throws Exception {
+        etlExecutor.shutdown();
+
+        etlExecutor.submit(() -> { }, null);
+    }
+
+    @Test
+    public void isShutdownReturnsFalseBeforeShutdown() {
+        assertThat(etlExecutor.isShutdown(), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsIllegalArgumentExceptionForZeroWorkers() {
+        new RingBufferEtlExecutor(0, BUFFER_SIZE, RingBufferWaitStrategy.PARK);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    @Test
+    public void queuedTaskCountAndActiveWorkerCountReflectTheStateOfTheBuffer() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch workersBusy = new CountDownLatch(NUMBER_OF_WORKERS);
+
+        IntStream.range(0, NUMBER_OF_WORKERS).forEach(i -> etlExecutor.submit(() -> {
+            workersBusy.countDown();
+            awaitQuietly(release);
+        }, null));
+        assertThat(workersBusy.await(5, TimeUnit.SECONDS), is(true));
+        IntStream.range(0, 2).forEach(i -> etlExecutor.submit(() -> { }, null));
+
+        assertThat(etlExecutor.getActiveWorkerCount(), is(NUMBER_OF_WORKERS));
+        assertThat(etlExecutor.getQueuedTaskCount(), is(2));
+
+        release.countDown();
+        etlExecutor.shutdown();
+
+        assertThat(etlExecutor.getActiveWorkerCount(), is(0));
+        assertThat(etlExecutor.getQueuedTaskCount(), is(0));
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SemaphoreBoundedEtlExecutorTest {
+    private final static int MAX_CONCURRENCY = 2;
+
+    @Mock
+    private EtlExecutor mockEtlExecutor;
+
+    @Mock
+    private Runnable mockRunnable;
+
+    private SemaphoreBoundedEtlExecutor semaphoreBoundedEtlExecutor;
+
+    @Before
+    public void constructEtlExecutor() {
+        semaphoreBoundedEtlExecutor = new SemaphoreBoundedEtlExecutor(mockEtlExecutor, MAX_CONCURRENCY);
+    }
+
+    @Test
+    public void submitRunsTaskOnWrappedExecutor() {
+        ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+
+        semaphoreBoundedEtlExecutor.submit(mockRunnable, null);
+        verify(mockEtlExecutor).submit(runnableCaptor.capture(), any());
+        runnableCaptor.getValue().run();
+
+        verify(mockRunnable, times(1)).run();
+    }
+
+    @Test
+    public void submitBlocksWhenMaxConcurrencyIsReachedUntilATaskCompletes() throws Exception {
+        ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+        CountDownLatch submitted = new CountDownLatch(1);
+
+        semaphoreBoundedEtlExecutor.submit(mockRunnable, null);
+        semaphoreBoundedEtlExecutor.submit(mockRunnable, null);
+
+        Thread submittingThread = new Thread(() -> {
+            semaphoreBoundedEtlExecutor.submit(mockRunnable, null);
+            submitted.countDown();
+        });
+        submittingThread.start();
+
+        assertThat(submitted.await(100, TimeUnit.MILLISECONDS), is(false));
+
+        verify(mockEtlExecutor, times(2)).submit(runnableCaptor.capture(), any());
+        runnableCaptor.getAllValues().get(0).run();
+
+        assertThat(submitted.await(5, TimeUnit.SECONDS), is(true));
+        verify(mockEtlExecutor, times(3)).submit(any(), any());
+    }
+
+    @Test
+    public void failingTaskStillReleasesItsPermit() {
+        ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+        doThrow(new RuntimeException("Test exception")).when(mockRunnable).run();
+
+        semaphoreBoundedEtlExecutor.submit(mockRunnable, null);
+        semaphoreBoundedEtlExecutor.submit(mockRunnable, null);
+        verify(mockEtlExecutor, times(2)).submit(runnableCaptor.capture(), any());
+
+        try {
+            runnableCaptor.getAllValues().get(0).run();
+        } catch (RuntimeException ignored) {
+        }
+
+        semaphoreBoundedEtlExecutor.submit(mockRunnable, null);
+        verify(mockEtlExecutor, times(3)).submit(any(), any());
+    }
+
+    @Test
+    public void rejectedSubmitReleasesItsPermit() {
+        doThrow(new RejectedExecutionException("Test exception")).doThrow(new RejectedExecutionException("Test exception"))
+                .doNothing().when(mockEtlExecutor).submit(any(), any());
+
+        for (int i = 0; i < MAX_CONCURRENCY; i++) {
+            try {
+                semaphoreBoundedEtlExecutor.submit(mockRunnable, null);
+            } catch (RejectedExecutionException ignored) {
+            }
+        }
+
+        semaphoreBoundedEtlExecutor.submit(mockRunnable, null);
+        verify(mockEtlExecutor, times(3)).submit(any(), any());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void submitThrowsRejectedExecutionExceptionIfShutdown() {
+        when(mockEtlExecutor.isShutdown()).thenReturn(true);
+
+        try {
+            semaphoreBoundedEtlExecutor.submit(mockRunnable, null);
+        } finally {
+            verify(mockEtlExecutor, never()).submit(any(), any());
+        }
+    }
+
+    @Test
+    public void submitThrowsRejectedExecutionExceptionIfInterruptedWhileBlocked() throws Exception {
+        AtomicBoolean wasRejected = new AtomicBoolean(false);
+
+        semaphoreBoundedEtlExecutor.submit(mockRunnable, null);
+        semaphoreBoundedEtlExecutor.submit(mockRunnable, null);
+
+        Thread submittingThread = new Thread(() -> {
+            try {
+                semaphoreBoundedEtlExecutor.submit(mockRunnable, null);
+            } catch (RejectedExecutionException e) {
+                wasRejected.set(true);
+            }
+        });
+        submittingThread.start();
+        submittingThread.interrupt();
+        submittingThread.join(5000);
+
+        assertThat(wasRejected.get(), is(true));
+    }
+
+    @Test
+    public void shutdownShutsDownWrappedExecutor() throws Exception {
+        semaphoreBoundedEtlExecutor.shutdown();
+
+        verify(mockEtlExecutor).shutdown();
+    }
+
+    @Test
+    public void isShutdownReturnsShutdownStateOfWrappedExecutor() {
+        when(mockEtlExecutor.isShutdown()).thenReturn(true);
+
+        assertThat(semaphoreBoundedEtlExecutor.isShutdown(), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsIllegalArgumentExceptionForZeroConcurrency() {
+        new SemaphoreBoundedEtlExecutor(mockEtlExecutor, 0);
+    }
+
+    @Test
+    public void getQueuedTaskCountAndGetActiveWorkerCountDelegateToWrappedExecutor() {
+        when(mockEtlExecutor.getQueuedTaskCount()).thenReturn(4);
+        when(mockEtlExecutor.getActiveWorkerCount()).thenReturn(2);
+
+        assertThat(semaphoreBoundedEtlExecutor.getQueuedTaskCount(), is(4));
+        assertThat(semaphoreBoundedEtlExecutor.getActiveWorkerCount(), is(2));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.RecordCompletion;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class SerializedRecordCodecTest {
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    private static class TestDTO {
+        private String value;
+    }
+
+    private final List<EtlStreamObject> processedObjects = new ArrayList<>();
+    private final ObjLongConsumer<EtlStreamObject> action = (etlStreamObject, submitTimeNanos) ->
+            processedObjects.add(etlStreamObject);
+    private final ObjLongConsumer<EtlStreamObject> otherAction = (etlStreamObject, submitTimeNanos) -> { };
+    private final EtlMetrics mockEtlMetrics = mock(EtlMetrics.class);
+
+    private SerializedRecordCodec serializedRecordCodec = new SerializedRecordCodec();
+
+    @Test
+    public void decodedRecordHasTheActionMetricsAndSubmitTimeItWasEncodedWith() throws Exception {
+        serializedRecordCodec.encode(EtlStreamObject.of(new TestDTO("other")), otherAction, 1L, null);
+        byte[] data = serializedRecordCodec.encode(EtlStreamObject.of(new TestDTO("test")), action, 123L,
+                mockEtlMetrics);
+
+        SerializedRecord serializedRecord = serializedRecordCodec.decode(data);
+
+        assertThat(serializedRecord.getAction(), sameInstance(action));
+        assertThat(serializedRecord.getParentMetrics(), sameInstance(mockEtlMetrics));
+        assertThat(serializedRecord.getSubmitTimeNanos(), equalTo(123L));
+    }
+
+    @Test
+    public void decodedRecordWithoutParentMetricsHasNullParentMetrics() {
+        byte[] data = encode(EtlStreamObject.of(new TestDTO("test")));
+
+        assertThat(serializedRecordCodec.decode(data).getParentMetrics(), nullValue());
+    }
+
+    @Test
+    public void performActionGivesTheActionACopyOfTheObject() throws Exception {
+        byte[] data = encode(EtlStreamObject.of(new TestDTO("test")).withSequenceNumber(7));
+
+        serializedRecordCodec.decode(data).performAction();
+
+        assertThat(processedObjects.get(0).get(TestDTO.class), equalTo(new TestDTO("test")));
+        assertThat(processedObjects.get(0).getSequenceNumber(), equalTo(7L));
+    }
+
+    @Test
+    public void recordCompletionsAreReattachedInTheOrderTheyWereAdded() throws Exception {
+        RecordCompletion firstRecordCompletion = new RecordCompletion(0, "first");
+        RecordCompletion secondRecordCompletion = new RecordCompletion(2, "second");
+        EtlStreamObject firstObject = EtlStreamObject.of(new TestDTO("first")).withRecordCompletion(firstRecordCompletion);
+        EtlStreamObject untrackedObject = EtlStreamObject.of(new TestDTO("untracked"));
+        EtlStreamObject secondObject = EtlStreamObject.of(new TestDTO("second"))
+                .withRecordCompletion(secondRecordCompletion);
+        List<byte[]> encodedRecords = new ArrayList<>();
+
+        for (EtlStreamObject etlStreamObject : new EtlStreamObject[]{firstObject, untrackedObject, secondObject}) {
+            encodedRecords.add(encode(etlStreamObject));
+            serializedRecordCodec.addRecordCompletion(etlStreamObject);
+        }
+
+        for (byte[] encodedRecord : encodedRecords) {
+            serializedRecordCodec.decode(encodedRecord).performAction();
+        }
+
+        assertThat(processedObjects.get(0).getRecordCompletion(), sameInstance(firstRecordCompletion));
+        assertThat(processedObjects.get(1).getRecordCompletion(), nullValue());
+        assertThat(processedObjects.get(2).getRecordCompletion(), sameInstance(secondRecordCompletion));
+    }
+
+    private byte[] encode(EtlStreamObject etlStreamObject) {
+        try {
+            return serializedRecordCodec.encode(etlStreamObject, action, 0L, null);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
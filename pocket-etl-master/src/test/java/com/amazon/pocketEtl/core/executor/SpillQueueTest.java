@@ -0,0 +1,134 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SpillQueueTest {
+    private final static long MAX_SEGMENT_BYTES = 64;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private SpillQueue spillQueue;
+
+    @Before
+    public void constructSpillQueue() {
+        spillQueue = new SpillQueue(temporaryFolder.getRoot().toPath(), MAX_SEGMENT_BYTES);
+    }
+
+    @After
+    public void closeSpillQueue() throws Exception {
+        spillQueue.close();
+    }
+
+    @Test
+    public void pollReturnsNullWhenEmpty() throws Exception {
+        assertThat(spillQueue.poll(), nullValue());
+    }
+
+    @Test
+    public void appendReturnsTheBytesWrittenIncludingTheLengthPrefix() throws Exception {
+        assertThat(spillQueue.append(record(1)), is(4L + record(1).length));
+    }
+
+    @Test
+    public void recordsArePolledInTheOrderTheyWereAppendedAcrossSegments() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            spillQueue.append(record(i));
+        }
+
+        assertThat(spillQueue.getSize(), is(100L));
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(new String(spillQueue.poll(), StandardCharsets.UTF_8), is("record-" + i));
+        }
+
+        assertThat(spillQueue.getSize(), is(0L));
+        assertThat(spillQueue.poll(), nullValue());
+    }
+
+    @Test
+    public void recordsCanBeAppendedAndPolledAlternately() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            spillQueue.append(record(i * 2));
+            spillQueue.append(record(i * 2 + 1));
+            assertThat(new String(spillQueue.poll(), StandardCharsets.UTF_8), is("record-" + i));
+        }
+
+        assertThat(spillQueue.getSize(), is(50L));
+    }
+
+    @Test
+    public void segmentsAreDeletedOnceTheyHaveBeenRead() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            spillQueue.append(record(i));
+        }
+
+        File spillDirectory = temporaryFolder.getRoot().listFiles()[0];
+        int segmentsBeforeReading = spillDirectory.listFiles().length;
+
+        for (int i = 0; i < 50; i++) {
+            spillQueue.poll();
+        }
+
+        assertThat(spillDirectory.listFiles().length < segmentsBeforeReading, is(true));
+
+        for (int i = 0; i < 50; i++) {
+            spillQueue.poll();
+        }
+
+        assertThat(spillDirectory.listFiles(), arrayWithSize(0));
+    }
+
+    @Test
+    public void nothingIsWrittenToDiskUntilARecordIsAppended() {
+        assertThat(temporaryFolder.getRoot().listFiles(), arrayWithSize(0));
+    }
+
+    @Test
+    public void closeDeletesTheSpillDirectory() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            spillQueue.append(record(i));
+        }
+
+        spillQueue.close();
+
+        assertThat(temporaryFolder.getRoot().listFiles(), arrayWithSize(0));
+        assertThat(spillQueue.getSize(), is(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorRejectsANonPositiveSegmentSize() {
+        new SpillQueue(temporaryFolder.getRoot().toPath(), 0);
+    }
+
+    private static byte[] record(int i) {
+        return ("record-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+}
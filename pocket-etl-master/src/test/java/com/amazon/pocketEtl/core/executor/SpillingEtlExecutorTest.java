@@ -0,0 +1,233 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.executor;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.RecordCompletion;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class SpillingEtlExecutorTest {
+    private final static int IN_MEMORY_QUEUE_SIZE = 2;
+    private final static long MAX_SEGMENT_BYTES = 256;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    private static class TestDTO {
+        private int value;
+    }
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final CountDownLatch firstTaskStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseWorker = new CountDownLatch(1);
+    private final List<EtlStreamObject> processedObjects = Collections.synchronizedList(new ArrayList<>());
+    private final ObjLongConsumer<EtlStreamObject> blockingAction = (etlStreamObject, submitTimeNanos) -> {
+        firstTaskStarted.countDown();
+        awaitRelease();
+        processedObjects.add(etlStreamObject);
+    };
+
+    private SpillingEtlExecutor etlExecutor;
+
+    @After
+    public void teardownEtlExecutor() throws Exception {
+        releaseWorker.countDown();
+
+        if (etlExecutor != null && !etlExecutor.isShutdown()) {
+            etlExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void executorCanDoRealWork() throws Exception {
+        etlExecutor = newEtlExecutor(3);
+        AtomicInteger workCounter = new AtomicInteger(0);
+
+        IntStream.range(0, 1000).forEach(i -> etlExecutor.submit(workCounter::incrementAndGet, null));
+        etlExecutor.shutdown();
+
+        assertThat(workCounter.get(), equalTo(1000));
+    }
+
+    @Test
+    public void objectsAreProcessedInTheOrderTheyWereSubmittedWhenSpilled() throws Exception {
+        etlExecutor = newEtlExecutor(1);
+
+        submitBlockedFirstObject();
+        IntStream.range(1, 200).forEach(this::submitObject);
+        releaseWorker.countDown();
+        etlExecutor.shutdown();
+
+        List<Integer> processedValues = processedObjects.stream()
+                .map(etlStreamObject -> etlStreamObject.get(TestDTO.class).getValue())
+                .collect(Collectors.toList());
+        assertThat(processedValues, equalTo(IntStream.range(0, 200).boxed().collect(Collectors.toList())));
+    }
+
+    @Test
+    public void queuedTaskCountIncludesSpilledObjects() throws Exception {
+        etlExecutor = newEtlExecutor(1);
+
+        submitBlockedFirstObject();
+        IntStream.range(1, 11).forEach(this::submitObject);
+
+        assertThat(etlExecutor.getQueuedTaskCount(), is(10));
+        assertThat(etlExecutor.getActiveWorkerCount(), is(1));
+    }
+
+    @Test
+    public void spilledObjectsAndBytesAreCountedToParentMetrics() throws Exception {
+        etlExecutor = newEtlExecutor(1);
+        EtlMetrics mockEtlMetrics = mock(EtlMetrics.class);
+
+        submitBlockedFirstObject();
+        IntStream.range(1, 11).forEach(i ->
+                etlExecutor.submit(EtlStreamObject.of(new TestDTO(i)), blockingAction, mockEtlMetrics));
+
+        verify(mockEtlMetrics, times(10 - IN_MEMORY_QUEUE_SIZE))
+                .addCount(SpillingEtlExecutor.SPILLED_RECORDS_METRIC_NAME, 1);
+        verify(mockEtlMetrics, times(10 - IN_MEMORY_QUEUE_SIZE))
+                .addCount(eq(SpillingEtlExecutor.SPILLED_BYTES_METRIC_NAME), anyDouble());
+    }
+
+    @Test
+    public void nothingIsSpilledWhileThereIsRoomInMemory() throws Exception {
+        etlExecutor = newEtlExecutor(1);
+        EtlMetrics mockEtlMetrics = mock(EtlMetrics.class);
+
+        etlExecutor.submit(EtlStreamObject.of(new TestDTO(1)), blockingAction, mockEtlMetrics);
+        releaseWorker.countDown();
+        etlExecutor.shutdown();
+
+        verify(mockEtlMetrics, never()).addCount(eq(SpillingEtlExecutor.SPILLED_RECORDS_METRIC_NAME), anyDouble());
+        assertThat(temporaryFolder.getRoot().listFiles(), arrayWithSize(0));
+    }
+
+    @Test
+    public void spilledObjectsKeepTheirRecordCompletion() throws Exception {
+        etlExecutor = newEtlExecutor(1);
+        RecordCompletion recordCompletion = new RecordCompletion(10, "position");
+
+        submitBlockedFirstObject();
+        IntStream.range(1, 10).forEach(this::submitObject);
+        etlExecutor.submit(EtlStreamObject.of(new TestDTO(10)).withRecordCompletion(recordCompletion), blockingAction,
+                null);
+        releaseWorker.countDown();
+        etlExecutor.shutdown();
+
+        assertThat(processedObjects.get(10).getRecordCompletion(), sameInstance(recordCompletion));
+    }
+
+    @Test
+    public void shutdownDeletesSpillFiles() throws Exception {
+        etlExecutor = newEtlExecutor(1);
+
+        submitBlockedFirstObject();
+        IntStream.range(1, 100).forEach(this::submitObject);
+        assertThat(temporaryFolder.getRoot().listFiles(), arrayWithSize(1));
+
+        releaseWorker.countDown();
+        etlExecutor.shutdown();
+
+        assertThat(temporaryFolder.getRoot().listFiles(), arrayWithSize(0));
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void submitThrowsUnrecoverableStreamFailureExceptionIfObjectCannotBeSpilled() throws Exception {
+        File notADirectory = temporaryFolder.newFile();
+        etlExecutor = new SpillingEtlExecutor(1, IN_MEMORY_QUEUE_SIZE, notADirectory.toPath(), MAX_SEGMENT_BYTES);
+
+        submitBlockedFirstObject();
+        IntStream.range(1, 10).forEach(this::submitObject);
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void submitObjectAfterShutdownThrowsRejectedExecutionException() throws Exception {
+        etlExecutor = newEtlExecutor(1);
+        etlExecutor.shutdown();
+
+        submitObject(1);
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void submitTaskAfterShutdownThrowsRejectedExecutionException() throws Exception {
+        etlExecutor = newEtlExecutor(1);
+        etlExecutor.shutdown();
+
+        etlExecutor.submit(() -> { }, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorRejectsAnEmptyInMemoryQueue() {
+        new SpillingEtlExecutor(1, 0, temporaryFolder.getRoot().toPath());
+    }
+
+    private SpillingEtlExecutor newEtlExecutor(int numberOfWorkers) {
+        return new SpillingEtlExecutor(numberOfWorkers, IN_MEMORY_QUEUE_SIZE, temporaryFolder.getRoot().toPath(),
+                MAX_SEGMENT_BYTES);
+    }
+
+    private void submitBlockedFirstObject() throws InterruptedException {
+        submitObject(0);
+        assertThat(firstTaskStarted.await(5, TimeUnit.SECONDS), is(true));
+    }
+
+    private void submitObject(int value) {
+        etlExecutor.submit(EtlStreamObject.of(new TestDTO(value)), blockingAction, null);
+    }
+
+    private void awaitRelease() {
+        try {
+            releaseWorker.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.metrics;
+
+import com.amazon.pocketEtl.EtlTestBase;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EtlMetricsRegistryTest extends EtlTestBase {
+    private final static String STAGE_NAME = "TestStage";
+    private final static String OTHER_STAGE_NAME = "OtherTestStage";
+    private final static long LONG_FLUSH_PERIOD_MILLIS = 3_600_000;
+
+    @Test
+    public void getStageMetricsReturnsTheSameMetricsForTheSameStage() {
+        EtlMetricsRegistry etlMetricsRegistry = new EtlMetricsRegistry();
+
+        assertThat(etlMetricsRegistry.getStageMetrics(STAGE_NAME),
+                sameInstance(etlMetricsRegistry.getStageMetrics(STAGE_NAME)));
+        assertThat(etlMetricsRegistry.getStageMetrics(STAGE_NAME).getStageName(), is(STAGE_NAME));
+    }
+
+    @Test
+    public void getAllStageMetricsReturnsEveryStage() {
+        EtlMetricsRegistry etlMetricsRegistry = new EtlMetricsRegistry();
+        StageMetrics stageMetrics = etlMetricsRegistry.getStageMetrics(STAGE_NAME);
+        StageMetrics otherStageMetrics = etlMetricsRegistry.getStageMetrics(OTHER_STAGE_NAME);
+
+        assertThat(etlMetricsRegistry.getAllStageMetrics(), containsInAnyOrder(stageMetrics, otherStageMetrics));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsIllegalArgumentExceptionIfFlushPeriodIsNotPositive() {
+        new EtlMetricsRegistry(0);
+    }
+
+    @Test
+    public void flushDoesNothingIfNotAttached() {
+        EtlMetricsRegistry etlMetricsRegistry = new EtlMetricsRegistry();
+        etlMetricsRegistry.getStageMetrics(STAGE_NAME).addRecordsProcessed(1);
+
+        etlMetricsRegistry.flush();
+
+        assertThat(etlMetricsRegistry.getStageMetrics(STAGE_NAME).getRecordsProcessed(), is(1L));
+    }
+
+    @Test
+    public void flushEmitsEveryStageToAttachedMetrics() {
+        EtlMetricsRegistry etlMetricsRegistry = new EtlMetricsRegistry(LONG_FLUSH_PERIOD_MILLIS);
+        etlMetricsRegistry.getStageMetrics(STAGE_NAME).addRecordsProcessed(1);
+        etlMetricsRegistry.getStageMetrics(OTHER_STAGE_NAME).addRecordsProcessed(2);
+        etlMetricsRegistry.attach(mockMetrics);
+
+        etlMetricsRegistry.flush();
+
+        verify(mockMetrics).addCount(eq(STAGE_NAME + ".recordsProcessed"), eq(1.0));
+        verify(mockMetrics).addCount(eq(OTHER_STAGE_NAME + ".recordsProcessed"), eq(2.0));
+        etlMetricsRegistry.detach();
+    }
+
+    @Test
+    public void lastDetachPerformsAFinalFlush() {
+        EtlMetricsRegistry etlMetricsRegistry = new EtlMetricsRegistry(LONG_FLUSH_PERIOD_MILLIS);
+        etlMetricsRegistry.attach(mockMetrics);
+        etlMetricsRegistry.attach(mockMetrics);
+        etlMetricsRegistry.getStageMetrics(STAGE_NAME).addRecordsProcessed(3);
+
+        etlMetricsRegistry.detach();
+        verify(mockMetrics, never()).addCount(anyString(), anyDouble());
+
+        etlMetricsRegistry.detach();
+        verify(mockMetrics).addCount(eq(STAGE_NAME + ".recordsProcessed"), eq(3.0));
+    }
+
+    @Test
+    public void attachFlushesPeriodically() {
+        EtlMetricsRegistry etlMetricsRegistry = new EtlMetricsRegistry(10);
+        etlMetricsRegistry.getStageMetrics(STAGE_NAME).addRecordsProcessed(4);
+
+        etlMetricsRegistry.attach(mockMetrics);
+
+        verify(mockMetrics, timeout(5000)).addCount(eq(STAGE_NAME + ".recordsProcessed"), eq(4.0));
+        etlMetricsRegistry.detach();
+    }
+
+    @Test
+    public void nothingIsFlushedAfterTheLastDetach() {
+        EtlMetricsRegistry etlMetricsRegistry = new EtlMetricsRegistry(10);
+        etlMetricsRegistry.attach(mockMetrics);
+        etlMetricsRegistry.detach();
+        etlMetricsRegistry.getStageMetrics(STAGE_NAME).addRecordsProcessed(5);
+
+        verify(mockMetrics, after(100).never()).addCount(eq(STAGE_NAME + ".recordsProcessed"), eq(5.0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void detachThrowsIllegalStateExceptionIfNotAttached() {
+        new EtlMetricsRegistry().detach();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.metrics;
+
+import com.amazon.pocketEtl.core.executor.EtlExecutor;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EtlTelemetryTest {
+    private final static String STAGE_NAME = "b.TestStage";
+    private final static String OTHER_STAGE_NAME = "a.OtherTestStage";
+    private final static long ONE_SECOND_IN_NANOS = 1_000_000_000L;
+
+    @Mock
+    private EtlExecutor mockEtlExecutor;
+
+    private final AtomicLong nanoClock = new AtomicLong(0);
+    private EtlMetricsRegistry etlMetricsRegistry;
+    private EtlTelemetry etlTelemetry;
+
+    @Before
+    public void constructTelemetry() {
+        etlMetricsRegistry = new EtlMetricsRegistry();
+        etlTelemetry = new EtlTelemetry(etlMetricsRegistry, nanoClock::get);
+    }
+
+    @Test
+    public void snapshotReportsEveryStageInOrderOfName() {
+        etlMetricsRegistry.getStageMetrics(STAGE_NAME);
+        etlMetricsRegistry.getStageMetrics(OTHER_STAGE_NAME);
+
+        List<StageTelemetry> snapshot = etlTelemetry.snapshot();
+
+        assertThat(snapshot.size(), is(2));
+        assertThat(snapshot.get(0).getStageName(), is(OTHER_STAGE_NAME));
+        assertThat(snapshot.get(1).getStageName(), is(STAGE_NAME));
+    }
+
+    @Test
+    public void snapshotReportsCountsAndExecutorState() {
+        StageMetrics stageMetrics = etlMetricsRegistry.getStageMetrics(STAGE_NAME);
+        stageMetrics.addRecordsProcessed(10);
+        stageMetrics.addRecordsCompleted(8);
+        stageMetrics.addError();
+        stageMetrics.observeExecutor(mockEtlExecutor);
+        when(mockEtlExecutor.getQueuedTaskCount()).thenReturn(5);
+        when(mockEtlExecutor.getActiveWorkerCount()).thenReturn(2);
+        when(mockEtlExecutor.getConcurrencyLimit()).thenReturn(4);
+
+        StageTelemetry stageTelemetry = etlTelemetry.snapshot().get(0);
+
+        assertThat(stageTelemetry.getRecordsIn(), is(10L));
+        assertThat(stageTelemetry.getRecordsOut(), is(8L));
+        assertThat(stageTelemetry.getRecordsErrored(), is(1L));
+        assertThat(stageTelemetry.getQueuedTasks(), is(5));
+        assertThat(stageTelemetry.getActiveWorkers(), is(2));
+        assertThat(stageTelemetry.getConcurrencyLimit(), is(4));
+    }
+
+    @Test
+    public void snapshotReportsLatencyPercentilesInMilliseconds() {
+        StageMetrics stageMetrics = etlMetricsRegistry.getStageMetrics(STAGE_NAME);
+        stageMetrics.getServiceTime().record(20);
+        stageMetrics.getQueueWaitTime().record(10);
+
+        StageTelemetry stageTelemetry = etlTelemetry.snapshot().get(0);
+
+        assertThat(stageTelemetry.getServiceTimeP50Millis(), is(0.00002));
+        assertThat(stageTelemetry.getServiceTimeP999Millis(), is(0.00002));
+        assertThat(stageTelemetry.getQueueWaitTimeP99Millis(), is(0.00001));
+    }
+
+    @Test
+    public void snapshotReportsThroughputSinceThePreviousSnapshot() {
+        StageMetrics stageMetrics = etlMetricsRegistry.getStageMetrics(STAGE_NAME);
+        stageMetrics.addRecordsProcessed(100);
+        nanoClock.set(2 * ONE_SECOND_IN_NANOS);
+
+        assertThat(etlTelemetry.snapshot().get(0).getRecordsPerSecond(), is(50.0));
+
+        stageMetrics.addRecordsProcessed(30);
+        nanoClock.addAndGet(ONE_SECOND_IN_NANOS);
+
+        assertThat(etlTelemetry.snapshot().get(0).getRecordsPerSecond(), is(30.0));
+    }
+
+    @Test
+    public void snapshotReportsZeroThroughputIfNoTimeHasPassed() {
+        etlMetricsRegistry.getStageMetrics(STAGE_NAME).addRecordsProcessed(100);
+
+        assertThat(etlTelemetry.snapshot().get(0).getRecordsPerSecond(), is(0.0));
+    }
+
+    @Test
+    public void snapshotIsEmptyForAnEmptyRegistry() {
+        assertThat(etlTelemetry.snapshot().isEmpty(), is(true));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.metrics;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class LatencyHistogramTest {
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+    @Test
+    public void snapshotOfEmptyHistogramHasNoCountAndReportsZero() {
+        LatencyHistogram.Snapshot snapshot = latencyHistogram.snapshot();
+
+        assertThat(snapshot.getCount(), is(0L));
+        assertThat(snapshot.getValueAtPercentile(99.0), is(0L));
+    }
+
+    @Test
+    public void smallValuesAreRecordedExactly() {
+        latencyHistogram.record(17);
+
+        assertThat(latencyHistogram.snapshot().getValueAtPercentile(50.0), is(17L));
+    }
+
+    @Test
+    public void largeValuesAreRecordedWithinThreePercent() {
+        long value = 123_456_789L;
+        latencyHistogram.record(value);
+
+        long reportedValue = latencyHistogram.snapshot().getValueAtPercentile(50.0);
+
+        assertThat(reportedValue, greaterThanOrEqualTo(value));
+        assertThat(reportedValue, lessThanOrEqualTo((long) (value * 1.03)));
+    }
+
+    @Test
+    public void negativeValuesAreRecordedAsZero() {
+        latencyHistogram.record(-5);
+
+        assertThat(latencyHistogram.snapshot().getValueAtPercentile(100.0), is(0L));
+    }
+
+    @Test
+    public void valuesBeyondTheRangeAreCountedInTheHighestBucket() {
+        latencyHistogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = latencyHistogram.snapshot();
+
+        assertThat(snapshot.getCount(), is(1L));
+        assertThat(snapshot.getValueAtPercentile(100.0), greaterThanOrEqualTo((1L << 41) - 1));
+    }
+
+    @Test
+    public void getValueAtPercentileReportsTheRequestedPercentiles() {
+        for (int i = 1; i <= 1000; i++) {
+            latencyHistogram.record(i);
+        }
+
+        LatencyHistogram.Snapshot snapshot = latencyHistogram.snapshot();
+
+        assertThat(snapshot.getCount(), is(1000L));
+        assertThat(snapshot.getValueAtPercentile(50.0), is(greaterThanOrEqualTo(500L)));
+        assertThat(snapshot.getValueAtPercentile(50.0), is(lessThanOrEqualTo(515L)));
+        assertThat(snapshot.getValueAtPercentile(99.0), is(greaterThanOrEqualTo(990L)));
+        assertThat(snapshot.getValueAtPercentile(99.0), is(lessThanOrEqualTo(1020L)));
+        assertThat(snapshot.getValueAtPercentile(100.0), is(greaterThanOrEqualTo(1000L)));
+    }
+
+    @Test
+    public void snapshotAndResetEmptiesTheHistogram() {
+        latencyHistogram.record(100);
+
+        assertThat(latencyHistogram.snapshotAndReset().getCount(), is(1L));
+        assertThat(latencyHistogram.snapshot().getCount(), is(0L));
+    }
+
+    @Test
+    public void everyValueFallsWithinTheBucketItIsCountedIn() {
+        for (long value = 1; value > 0 && value < (1L << 41); value = value * 3 + 1) {
+            int bucketIndex = LatencyHistogram.getBucketIndex(value);
+
+            assertThat(LatencyHistogram.getHighestValueInBucket(bucketIndex), greaterThanOrEqualTo(value));
+            assertThat(LatencyHistogram.getHighestValueInBucket(bucketIndex - 1), is(lessThanOrEqualTo(value - 1)));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.metrics;
+
+import com.google.common.io.CharStreams;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PrometheusTelemetryEndpointTest {
+    private final static String STAGE_NAME = "TestStage";
+
+    private EtlMetricsRegistry etlMetricsRegistry;
+    private EtlTelemetry etlTelemetry;
+
+    @Before
+    public void constructTelemetry() {
+        etlMetricsRegistry = new EtlMetricsRegistry();
+        etlTelemetry = new EtlTelemetry(etlMetricsRegistry);
+    }
+
+    @Test
+    public void formatWritesCountersWithTypeAndStageLabel() {
+        etlMetricsRegistry.getStageMetrics(STAGE_NAME).addRecordsProcessed(42);
+
+        String output = PrometheusTelemetryEndpoint.format(etlTelemetry.snapshot());
+
+        assertThat(output, containsString("# TYPE pocket_etl_stage_records_in_total counter\n"));
+        assertThat(output, containsString("pocket_etl_stage_records_in_total{stage=\"" + STAGE_NAME + "\"} 42\n"));
+    }
+
+    @Test
+    public void formatWritesLatencyQuantiles() {
+        etlMetricsRegistry.getStageMetrics(STAGE_NAME).getServiceTime().record(20);
+
+        String output = PrometheusTelemetryEndpoint.format(etlTelemetry.snapshot());
+
+        assertThat(output, containsString("# TYPE pocket_etl_stage_service_time_milliseconds summary\n"));
+        assertThat(output, containsString(
+                "pocket_etl_stage_service_time_milliseconds{stage=\"" + STAGE_NAME + "\",quantile=\"0.99\"} 2.0E-5\n"));
+    }
+
+    @Test
+    public void formatEscapesStageNames() {
+        etlMetricsRegistry.getStageMetrics("quote\"back\\slash");
+
+        String output = PrometheusTelemetryEndpoint.format(etlTelemetry.snapshot());
+
+        assertThat(output, containsString("{stage=\"quote\\\"back\\\\slash\"}"));
+    }
+
+    @Test
+    public void endpointServesTelemetryOnLocalhost() throws Exception {
+        etlMetricsRegistry.getStageMetrics(STAGE_NAME).addRecordsProcessed(7);
+
+        try (PrometheusTelemetryEndpoint endpoint = PrometheusTelemetryEndpoint.start(etlTelemetry, 0)) {
+            HttpURLConnection connection = (HttpURLConnection)
+                    new URL("http://127.0.0.1:" + endpoint.getPort() + "/metrics").openConnection();
+
+            assertThat(connection.getResponseCode(), is(200));
+            assertThat(connection.getContentType(), startsWith("text/plain; version=0.0.4"));
+
+            String body = CharStreams.toString(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+            assertThat(body, containsString("pocket_etl_stage_records_in_total{stage=\"" + STAGE_NAME + "\"} 7\n"));
+        }
+    }
+
+    @Test
+    public void endpointRejectsRequestsOtherThanGet() throws Exception {
+        try (PrometheusTelemetryEndpoint endpoint = PrometheusTelemetryEndpoint.start(etlTelemetry, 0)) {
+            HttpURLConnection connection = (HttpURLConnection)
+                    new URL("http://127.0.0.1:" + endpoint.getPort() + "/metrics").openConnection();
+            connection.setRequestMethod("DELETE");
+
+            assertThat(connection.getResponseCode(), is(405));
+        }
+    }
+
+    @Test
+    public void aFailureAfterTheHeadersAreSentDoesNotTryToSendThemAgain() throws Exception {
+        HttpExchange mockHttpExchange = mock(HttpExchange.class);
+        when(mockHttpExchange.getRequestMethod()).thenReturn("GET");
+        when(mockHttpExchange.getResponseHeaders()).thenReturn(new Headers());
+        when(mockHttpExchange.getResponseBody()).thenReturn(new OutputStream() {
+            @Override
+            public void write(int b) {
+                throw new IllegalStateException("Test exception");
+            }
+        });
+
+        try (PrometheusTelemetryEndpoint endpoint = PrometheusTelemetryEndpoint.start(etlTelemetry, 0)) {
+            endpoint.handle(mockHttpExchange);
+        }
+
+        verify(mockHttpExchange).sendResponseHeaders(eq(200), anyLong());
+        verify(mockHttpExchange, never()).sendResponseHeaders(eq(500), anyLong());
+        verify(mockHttpExchange).close();
+    }
+
+    @Test
+    public void aFailureBeforeTheHeadersAreSentIsReportedAsAServerError() throws Exception {
+        HttpExchange mockHttpExchange = mock(HttpExchange.class);
+        when(mockHttpExchange.getRequestMethod()).thenReturn("GET");
+        when(mockHttpExchange.getResponseHeaders()).thenThrow(new IllegalStateException("Test exception"));
+
+        try (PrometheusTelemetryEndpoint endpoint = PrometheusTelemetryEndpoint.start(etlTelemetry, 0)) {
+            endpoint.handle(mockHttpExchange);
+        }
+
+        verify(mockHttpExchange).sendResponseHeaders(500, -1);
+        verify(mockHttpExchange).close();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.metrics;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.core.executor.EtlExecutor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StageMetricsTest {
+    private final static String STAGE_NAME = "TestStage";
+
+    @Mock
+    private EtlMetrics mockMetrics;
+
+    @Mock
+    private EtlExecutor mockEtlExecutor;
+
+    private final StageMetrics stageMetrics = new StageMetrics(STAGE_NAME);
+
+    @Test
+    public void countersAccumulateUntilFlushed() {
+        stageMetrics.addRecordsProcessed(2);
+        stageMetrics.addRecordsProcessed(3);
+        stageMetrics.addError();
+
+        assertThat(stageMetrics.getRecordsProcessed(), is(5L));
+        assertThat(stageMetrics.getErrors(), is(1L));
+    }
+
+    @Test
+    public void flushEmitsCountersSinceThePreviousFlush() {
+        stageMetrics.addRecordsProcessed(5);
+        stageMetrics.addError();
+        stageMetrics.flush(mockMetrics);
+
+        stageMetrics.addRecordsProcessed(2);
+        stageMetrics.flush(mockMetrics);
+
+        verify(mockMetrics).addCount(eq(STAGE_NAME + ".recordsProcessed"), eq(5.0));
+        verify(mockMetrics).addCount(eq(STAGE_NAME + ".errors"), eq(1.0));
+        verify(mockMetrics).addCount(eq(STAGE_NAME + ".recordsProcessed"), eq(2.0));
+        verify(mockMetrics).addCount(eq(STAGE_NAME + ".errors"), eq(0.0));
+        assertThat(stageMetrics.getRecordsProcessed(), is(7L));
+        assertThat(stageMetrics.getErrors(), is(1L));
+    }
+
+    @Test
+    public void addRecordsCompletedAccumulates() {
+        stageMetrics.addRecordsCompleted(2);
+        stageMetrics.addRecordsCompleted(1);
+
+        assertThat(stageMetrics.getRecordsCompleted(), is(3L));
+    }
+
+    @Test
+    public void queuedTaskCountAndActiveWorkerCountAreReadFromTheObservedExecutor() {
+        when(mockEtlExecutor.getQueuedTaskCount()).thenReturn(7);
+        when(mockEtlExecutor.getActiveWorkerCount()).thenReturn(3);
+
+        stageMetrics.observeExecutor(mockEtlExecutor);
+
+        assertThat(stageMetrics.getQueuedTaskCount(), is(7));
+        assertThat(stageMetrics.getActiveWorkerCount(), is(3));
+    }
+
+    @Test
+    public void queuedTaskCountAndActiveWorkerCountAreZeroWithoutAnObservedExecutor() {
+        assertThat(stageMetrics.getQueuedTaskCount(), is(0));
+        assertThat(stageMetrics.getActiveWorkerCount(), is(0));
+        assertThat(stageMetrics.getConcurrencyLimit(), is(0));
+    }
+
+    @Test
+    public void concurrencyLimitIsReadFromTheObservedExecutor() {
+        when(mockEtlExecutor.getConcurrencyLimit()).thenReturn(6);
+
+        stageMetrics.observeExecutor(mockEtlExecutor);
+
+        assertThat(stageMetrics.getConcurrencyLimit(), is(6));
+    }
+
+    @Test
+    public void flushEmitsLatencyPercentilesInMilliseconds() {
+        stageMetrics.getServiceTime().record(20);
+        stageMetrics.getQueueWaitTime().record(10);
+
+        stageMetrics.flush(mockMetrics);
+
+        verify(mockMetrics).addTime(eq(STAGE_NAME + ".serviceTime.p50"), eq(0.00002));
+        verify(mockMetrics).addTime(eq(STAGE_NAME + ".serviceTime.p99"), eq(0.00002));
+        verify(mockMetrics).addTime(eq(STAGE_NAME + ".serviceTime.p999"), eq(0.00002));
+        verify(mockMetrics).addTime(eq(STAGE_NAME + ".queueWaitTime.p50"), eq(0.00001));
+        verify(mockMetrics).addTime(eq(STAGE_NAME + ".queueWaitTime.p99"), eq(0.00001));
+        verify(mockMetrics).addTime(eq(STAGE_NAME + ".queueWaitTime.p999"), eq(0.00001));
+    }
+
+    @Test
+    public void flushDoesNotEmitLatenciesIfNoneWereRecorded() {
+        stageMetrics.flush(mockMetrics);
+
+        verify(mockMetrics, never()).addTime(anyString(), anyDouble());
+    }
+
+    @Test
+    public void flushResetsLatencies() {
+        stageMetrics.getServiceTime().record(20);
+
+        stageMetrics.flush(mockMetrics);
+
+        assertThat(stageMetrics.getServiceTime().snapshot().getCount(), is(0L));
+    }
+}
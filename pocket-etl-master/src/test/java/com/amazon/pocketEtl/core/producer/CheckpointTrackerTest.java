@@ -0,0 +1,160 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.core.producer;
+
+import com.amazon.pocketEtl.checkpoint.Checkpoint;
+import com.amazon.pocketEtl.checkpoint.CheckpointStore;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.RecordCompletion;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CheckpointTrackerTest {
+    private final static String CHECKPOINT_NAME = "TestCheckpoint";
+    private final static long LONG_CHECKPOINT_INTERVAL_MILLIS = 3_600_000;
+
+    @Mock
+    private CheckpointStore mockCheckpointStore;
+
+    private CheckpointTracker checkpointTracker;
+
+    @After
+    public void stopCheckpointTracker() throws IOException {
+        if (checkpointTracker != null) {
+            checkpointTracker.stop(true);
+        }
+    }
+
+    @Test
+    public void startReturnsTheSavedCheckpoint() throws IOException {
+        Checkpoint checkpoint = new Checkpoint("position", 10);
+        when(mockCheckpointStore.load(CHECKPOINT_NAME)).thenReturn(Optional.of(checkpoint));
+        checkpointTracker = new CheckpointTracker(CHECKPOINT_NAME, mockCheckpointStore, LONG_CHECKPOINT_INTERVAL_MILLIS);
+
+        assertThat(checkpointTracker.start(), is(Optional.of(checkpoint)));
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void startThrowsUnrecoverableStreamFailureExceptionIfTheCheckpointCannotBeLoaded() throws IOException {
+        when(mockCheckpointStore.load(CHECKPOINT_NAME)).thenThrow(new IOException("Test"));
+        CheckpointTracker failingCheckpointTracker =
+                new CheckpointTracker(CHECKPOINT_NAME, mockCheckpointStore, LONG_CHECKPOINT_INTERVAL_MILLIS);
+
+        failingCheckpointTracker.start();
+    }
+
+    @Test
+    public void checkpointSavesTheLastOfTheCompletedRecordsAtTheStartOfTheStream() throws IOException {
+        checkpointTracker = startCheckpointTracker(LONG_CHECKPOINT_INTERVAL_MILLIS);
+        RecordCompletion first = checkpointTracker.track(0, "first");
+        RecordCompletion second = checkpointTracker.track(1, "second");
+        checkpointTracker.track(2, "third");
+
+        complete(first);
+        complete(second);
+        checkpointTracker.checkpoint();
+
+        verify(mockCheckpointStore).save(eq(CHECKPOINT_NAME), eq(new Checkpoint("second", 2)));
+    }
+
+    @Test
+    public void checkpointDoesNotSkipOverARecordThatIsStillInFlight() throws IOException {
+        checkpointTracker = startCheckpointTracker(LONG_CHECKPOINT_INTERVAL_MILLIS);
+        checkpointTracker.track(0, "first");
+        RecordCompletion second = checkpointTracker.track(1, "second");
+
+        complete(second);
+        checkpointTracker.checkpoint();
+
+        verify(mockCheckpointStore, never()).save(any(), any());
+    }
+
+    @Test
+    public void checkpointIsOnlySavedWhenItHasAdvanced() throws IOException {
+        checkpointTracker = startCheckpointTracker(LONG_CHECKPOINT_INTERVAL_MILLIS);
+        complete(checkpointTracker.track(0, "first"));
+
+        checkpointTracker.checkpoint();
+        checkpointTracker.checkpoint();
+
+        verify(mockCheckpointStore).save(eq(CHECKPOINT_NAME), eq(new Checkpoint("first", 1)));
+    }
+
+    @Test
+    public void checkpointsAreSavedPeriodically() throws IOException {
+        checkpointTracker = startCheckpointTracker(1);
+        complete(checkpointTracker.track(0, "first"));
+
+        verify(mockCheckpointStore, timeout(1000)).save(eq(CHECKPOINT_NAME), eq(new Checkpoint("first", 1)));
+    }
+
+    @Test
+    public void stopClearsTheCheckpointIfTheStreamCompleted() throws IOException {
+        checkpointTracker = startCheckpointTracker(LONG_CHECKPOINT_INTERVAL_MILLIS);
+        complete(checkpointTracker.track(0, "first"));
+
+        checkpointTracker.stop(true);
+
+        verify(mockCheckpointStore).clear(CHECKPOINT_NAME);
+        verify(mockCheckpointStore, never()).save(any(), any());
+    }
+
+    @Test
+    public void stopSavesAFinalCheckpointIfTheStreamDidNotComplete() throws IOException {
+        checkpointTracker = startCheckpointTracker(LONG_CHECKPOINT_INTERVAL_MILLIS);
+        complete(checkpointTracker.track(0, "first"));
+        checkpointTracker.track(1, "second");
+
+        checkpointTracker.stop(false);
+
+        verify(mockCheckpointStore).save(eq(CHECKPOINT_NAME), eq(new Checkpoint("first", 1)));
+        verify(mockCheckpointStore, never()).clear(any());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsIllegalArgumentExceptionIfCheckpointIntervalIsNotPositive() {
+        new CheckpointTracker(CHECKPOINT_NAME, mockCheckpointStore, 0);
+    }
+
+    private CheckpointTracker startCheckpointTracker(long checkpointIntervalMillis) throws IOException {
+        when(mockCheckpointStore.load(CHECKPOINT_NAME)).thenReturn(Optional.empty());
+        CheckpointTracker startedCheckpointTracker =
+                new CheckpointTracker(CHECKPOINT_NAME, mockCheckpointStore, checkpointIntervalMillis);
+        startedCheckpointTracker.start();
+        return startedCheckpointTracker;
+    }
+
+    private static void complete(RecordCompletion recordCompletion) {
+        EtlStreamObject.of(new Object()).withRecordCompletion(recordCompletion).markCompleted();
+    }
+}
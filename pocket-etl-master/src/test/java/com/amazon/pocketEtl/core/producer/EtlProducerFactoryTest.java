@@ -15,8 +15,13 @@
 
 package com.amazon.pocketEtl.core.producer;
 
+import com.amazon.pocketEtl.EtlMetrics;
 import com.amazon.pocketEtl.Extractor;
+import com.amazon.pocketEtl.ResumableExtractor;
+import com.amazon.pocketEtl.SplittableExtractor;
+import com.amazon.pocketEtl.core.EtlStreamObject;
 import com.amazon.pocketEtl.core.consumer.EtlConsumer;
+import com.amazon.pocketEtl.core.consumer.EtlConsumerFactory;
 import com.amazon.pocketEtl.core.executor.EtlExecutorFactory;
 import com.google.common.collect.ImmutableList;
 import org.junit.Before;
@@ -25,9 +30,21 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class EtlProducerFactoryTest {
@@ -36,6 +53,14 @@ public class EtlProducerFactoryTest {
     @Mock
     private Extractor<Object> mockExtractor;
     @Mock
+    private Extractor<Object> mockSplitExtractor;
+    @Mock
+    private ResumableExtractor<Object> mockResumableExtractor;
+    @Mock
+    private SplittableExtractor<Object> mockSplittableExtractor;
+    @Mock
+    private SplittableExtractor<String> mockStringSplittableExtractor;
+    @Mock
     private EtlConsumer mockEtlConsumer;
     @Mock
     private EtlProducer mockEtlProducer;
@@ -56,6 +81,79 @@ public class EtlProducerFactoryTest {
         assertThat(producer, instanceOf(ExtractorEtlProducer.class));
     }
 
+    @Test
+    public void newPrefetchingExtractorProducerWrapsTheExtractor() {
+        EtlProducer producer = etlProducerFactory.newPrefetchingExtractorProducer(PRODUCER_NAME, mockExtractor,
+                mockEtlConsumer, 8);
+
+        assertThat(producer, equalTo(new ExtractorEtlProducer<>(PRODUCER_NAME, mockEtlConsumer,
+                new PrefetchingExtractor<>(PRODUCER_NAME, mockExtractor, 8))));
+    }
+
+    @Test
+    public void newPrefetchingExtractorProducerKeepsAResumableExtractorResumable() {
+        EtlProducer producer = etlProducerFactory.newPrefetchingExtractorProducer(PRODUCER_NAME,
+                mockResumableExtractor, mockEtlConsumer, 8);
+
+        assertThat(producer, equalTo(new ExtractorEtlProducer<>(PRODUCER_NAME, mockEtlConsumer,
+                new ResumablePrefetchingExtractor<>(PRODUCER_NAME, mockResumableExtractor, 8))));
+    }
+
+    @Test
+    public void newParallelExtractorProducerRunsEachSplitWithItsOwnProducer() {
+        when(mockSplittableExtractor.split(4)).thenReturn(ImmutableList.of(mockExtractor, mockSplitExtractor));
+
+        EtlProducer producer = etlProducerFactory.newParallelExtractorProducer(PRODUCER_NAME, mockSplittableExtractor,
+                mockEtlConsumer, 4);
+
+        EtlConsumer sharedEtlConsumer = EtlConsumerFactory.newSharedConsumer(PRODUCER_NAME, mockEtlConsumer);
+        assertThat(producer, equalTo(new ExecutorEtlProducer(PRODUCER_NAME, ImmutableList.of(
+                new ExtractorEtlProducer<>(PRODUCER_NAME + ".0", sharedEtlConsumer, mockExtractor),
+                new ExtractorEtlProducer<>(PRODUCER_NAME + ".1", sharedEtlConsumer, mockSplitExtractor)), null)));
+        verify(mockEtlExecutorFactory).newUnboundFixedThreadsEtlExecutorFactory(2);
+    }
+
+    @Test
+    public void newParallelExtractorProducerKeepsAPlainConsumerOpenUntilEveryPieceHasFinished() throws Exception {
+        CountDownLatch firstPieceClosed = new CountDownLatch(1);
+        Extractor<String> firstPiece = new ListExtractor(ImmutableList.of("1"), firstPieceClosed::countDown,
+                () -> { });
+        // The second piece only starts extracting once the first piece has finished and closed its producer
+        Extractor<String> secondPiece = new ListExtractor(ImmutableList.of("2", "3"), () -> { },
+                () -> firstPieceClosed.await(5, TimeUnit.SECONDS));
+        when(mockStringSplittableExtractor.split(2)).thenReturn(ImmutableList.of(firstPiece, secondPiece));
+        RecordingEtlConsumer recordingEtlConsumer = new RecordingEtlConsumer();
+
+        EtlProducer producer = new EtlProducerFactory(new EtlExecutorFactory())
+                .newParallelExtractorProducer(PRODUCER_NAME, mockStringSplittableExtractor, recordingEtlConsumer, 2);
+        producer.open(null);
+        producer.produce();
+        producer.close();
+
+        assertThat(recordingEtlConsumer.consumedValues, containsInAnyOrder("1", "2", "3"));
+        assertThat(recordingEtlConsumer.openCount.get(), equalTo(1));
+        assertThat(recordingEtlConsumer.closeCount.get(), equalTo(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void newParallelExtractorProducerRejectsAnExtractorSplitIntoNothing() {
+        when(mockSplittableExtractor.split(4)).thenReturn(ImmutableList.of());
+
+        etlProducerFactory.newParallelExtractorProducer(PRODUCER_NAME, mockSplittableExtractor, mockEtlConsumer, 4);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void newParallelExtractorProducerRejectsAnExtractorSplitIntoTooManyPieces() {
+        when(mockSplittableExtractor.split(1)).thenReturn(ImmutableList.of(mockExtractor, mockSplitExtractor));
+
+        etlProducerFactory.newParallelExtractorProducer(PRODUCER_NAME, mockSplittableExtractor, mockEtlConsumer, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void newParallelExtractorProducerRejectsAParallelismOfZero() {
+        etlProducerFactory.newParallelExtractorProducer(PRODUCER_NAME, mockSplittableExtractor, mockEtlConsumer, 0);
+    }
+
     @Test
     public void combineProducersReturnsCorrectType() {
         EtlProducer producer = etlProducerFactory.combineProducers(PRODUCER_NAME, ImmutableList.of(mockEtlProducer), 1);
@@ -69,4 +167,65 @@ public class EtlProducerFactoryTest {
         verify(mockEtlExecutorFactory).newUnboundFixedThreadsEtlExecutorFactory(5);
     }
 
+    private interface TestAction {
+        void run() throws Exception;
+    }
+
+    private static class ListExtractor implements Extractor<String> {
+        private final Iterator<String> values;
+        private final TestAction onClose;
+        private final TestAction beforeFirstValue;
+        private boolean isStarted = false;
+
+        ListExtractor(List<String> values, TestAction onClose, TestAction beforeFirstValue) {
+            this.values = values.iterator();
+            this.onClose = onClose;
+            this.beforeFirstValue = beforeFirstValue;
+        }
+
+        @Override
+        public Optional<String> next() {
+            try {
+                if (!isStarted) {
+                    isStarted = true;
+                    beforeFirstValue.run();
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            return values.hasNext() ? Optional.of(values.next()) : Optional.empty();
+        }
+
+        @Override
+        public void close() throws Exception {
+            onClose.run();
+        }
+    }
+
+    // A consumer that does not count its producers, and refuses objects once it has been closed
+    private static class RecordingEtlConsumer implements EtlConsumer {
+        private final Queue<String> consumedValues = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger openCount = new AtomicInteger(0);
+        private final AtomicInteger closeCount = new AtomicInteger(0);
+
+        @Override
+        public void consume(EtlStreamObject objectToConsume) {
+            if (closeCount.get() > 0) {
+                throw new IllegalStateException("Consumer has been closed");
+            }
+
+            consumedValues.add(objectToConsume.get(String.class));
+        }
+
+        @Override
+        public void open(EtlMetrics parentMetrics) {
+            openCount.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+            closeCount.incrementAndGet();
+        }
+    }
 }
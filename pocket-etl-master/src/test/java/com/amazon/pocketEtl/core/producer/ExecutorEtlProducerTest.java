@@ -17,6 +17,7 @@ package com.amazon.pocketEtl.core.producer;
 
 import com.amazon.pocketEtl.EtlMetrics;
 import com.amazon.pocketEtl.EtlTestBase;
+import com.amazon.pocketEtl.core.StreamCancellation;
 import com.amazon.pocketEtl.core.executor.EtlExecutor;
 import com.amazon.pocketEtl.exception.GenericEtlException;
 import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
@@ -30,14 +31,20 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -108,6 +115,43 @@ public class ExecutorEtlProducerTest extends EtlTestBase {
         executorProducer.close();
     }
 
+    @Test
+    public void produceCancelsTheStreamAndClosesWithoutProducingOnceCancelled() throws Exception {
+        StreamCancellation streamCancellation = new StreamCancellation(1000);
+        UnrecoverableStreamFailureException failure = new UnrecoverableStreamFailureException("Test exception");
+        doThrow(failure).when(mockEtlProducers.get(0)).produce();
+        executorProducer = new ExecutorEtlProducer(TEST_NAME, mockEtlProducers, mockEtlExecutor, streamCancellation);
+
+        executorProducer.open(etlProfilingScope.getMetrics());
+        executorProducer.produce();
+
+        assertThat(streamCancellation.getCause(), is(failure));
+
+        for (int i = 1; i < mockEtlProducers.size(); i++) {
+            verify(mockEtlProducers.get(i), never()).produce();
+            verify(mockEtlProducers.get(i)).close();
+        }
+    }
+
+    @Test
+    public void closeAfterCancellationWaitsForTheExecutorNoLongerThanTheAbortDeadline() throws Exception {
+        StreamCancellation streamCancellation = new StreamCancellation(1000);
+        UnrecoverableStreamFailureException failure = new UnrecoverableStreamFailureException("Test exception");
+        executorProducer = new ExecutorEtlProducer(TEST_NAME, mockEtlProducers, mockEtlExecutor, streamCancellation);
+        executorProducer.open(mockMetrics);
+        streamCancellation.cancel(failure);
+
+        try {
+            executorProducer.close();
+            fail("Expected UnrecoverableStreamFailureException");
+        } catch (UnrecoverableStreamFailureException e) {
+            assertThat(e, is(failure));
+        }
+
+        verify(mockEtlExecutor).shutdownWithin(anyLong(), eq(TimeUnit.MILLISECONDS));
+        verify(mockEtlExecutor, never()).shutdown();
+    }
+
     @Test
     public void openOpensAllExtractors() {
         executorProducer.open(etlProfilingScope.getMetrics());
@@ -17,12 +17,15 @@ package com.amazon.pocketEtl.core.producer;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -33,6 +36,7 @@ import java.util.Optional;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -40,6 +44,11 @@ import org.mockito.junit.MockitoJUnitRunner;
 import com.amazon.pocketEtl.EtlMetrics;
 import com.amazon.pocketEtl.EtlTestBase;
 import com.amazon.pocketEtl.Extractor;
+import com.amazon.pocketEtl.ResumableExtractor;
+import com.amazon.pocketEtl.checkpoint.Checkpoint;
+import com.amazon.pocketEtl.core.EtlStreamObject;
+import com.amazon.pocketEtl.core.RecordCompletion;
+import com.amazon.pocketEtl.core.StreamCancellation;
 import com.amazon.pocketEtl.core.consumer.EtlConsumer;
 import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
 
@@ -56,6 +65,12 @@ public class ExtractorEtlProducerTest extends EtlTestBase {
     @Mock
     private Extractor<TestDTO> mockExtractor;
 
+    @Mock
+    private ResumableExtractor<TestDTO> mockResumableExtractor;
+
+    @Mock
+    private CheckpointTracker mockCheckpointTracker;
+
     private ExtractorEtlProducer<TestDTO> extractorProducer;
 
     @Before
@@ -84,6 +99,24 @@ public class ExtractorEtlProducerTest extends EtlTestBase {
         inOrder.verifyNoMoreInteractions();
     }
 
+    @Test
+    public void produceStampsExtractedObjectsWithSequenceNumbers() {
+        when(mockExtractor.next())
+                .thenReturn(Optional.of(new TestDTO(COLUMN_VALUE1)))
+                .thenThrow(new RuntimeException("Non-fatal exception"))
+                .thenReturn(Optional.of(new TestDTO(COLUMN_VALUE2)))
+                .thenReturn(Optional.empty());
+
+        extractorProducer.produce();
+
+        InOrder inOrder = inOrder(mockDownstreamEtlConsumer);
+        inOrder.verify(mockDownstreamEtlConsumer, times(1)).consume(argThat(
+            etlStreamObject -> etlStreamObject.getSequenceNumber() == 0));
+        inOrder.verify(mockDownstreamEtlConsumer, times(1)).consume(argThat(
+            etlStreamObject -> etlStreamObject.getSequenceNumber() == 1));
+        inOrder.verifyNoMoreInteractions();
+    }
+
     @Test
     public void produceCanHandleNonFatalExceptions() {
         when(mockExtractor.next())
@@ -109,6 +142,45 @@ public class ExtractorEtlProducerTest extends EtlTestBase {
         extractorProducer.produce();
     }
 
+    @Test
+    public void produceCancelsTheStreamIfExtractorThrowsUnrecoverableStreamFailureException() {
+        StreamCancellation streamCancellation = new StreamCancellation(1000);
+        UnrecoverableStreamFailureException failure = new UnrecoverableStreamFailureException("Test");
+        when(mockExtractor.next()).thenThrow(failure);
+        extractorProducer = new ExtractorEtlProducer<>(TEST_NAME, mockDownstreamEtlConsumer, mockExtractor, null,
+                streamCancellation);
+        extractorProducer.open(mockMetrics);
+
+        try {
+            extractorProducer.produce();
+            fail("Expected UnrecoverableStreamFailureException");
+        } catch (UnrecoverableStreamFailureException ignored) {
+        }
+
+        assertThat(streamCancellation.getCause(), is(failure));
+    }
+
+    @Test
+    public void produceStopsExtractingOnceTheStreamIsCancelled() {
+        StreamCancellation streamCancellation = new StreamCancellation(1000);
+        UnrecoverableStreamFailureException failure = new UnrecoverableStreamFailureException("Test");
+        when(mockExtractor.next()).thenReturn(Optional.of(new TestDTO(COLUMN_VALUE1)));
+        doAnswer(invocation -> streamCancellation.cancel(failure))
+                .when(mockDownstreamEtlConsumer).consume(any(EtlStreamObject.class));
+        extractorProducer = new ExtractorEtlProducer<>(TEST_NAME, mockDownstreamEtlConsumer, mockExtractor, null,
+                streamCancellation);
+        extractorProducer.open(mockMetrics);
+
+        try {
+            extractorProducer.produce();
+            fail("Expected UnrecoverableStreamFailureException");
+        } catch (UnrecoverableStreamFailureException e) {
+            assertThat(e, is(failure));
+        }
+
+        verify(mockExtractor, times(1)).next();
+    }
+
     @Test
     public void produceCanHandleAnEmptyResultSet() {
         when(mockExtractor.next()).thenReturn(Optional.empty());
@@ -187,4 +259,95 @@ public class ExtractorEtlProducerTest extends EtlTestBase {
         verify(mockMetrics).addTime(eq("ExtractorProducer." + TEST_NAME + ".produce"), anyDouble());
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void openResumesCheckpointedExtractorFromTheSavedCheckpoint() {
+        when(mockCheckpointTracker.start()).thenReturn(Optional.of(new Checkpoint("position", 10)));
+        when(mockResumableExtractor.next()).thenReturn(Optional.of(new TestDTO(COLUMN_VALUE1)))
+                .thenReturn(Optional.empty());
+        ExtractorEtlProducer<TestDTO> checkpointedProducer = newCheckpointedProducer();
+
+        checkpointedProducer.open(mockMetrics);
+        checkpointedProducer.produce();
+
+        InOrder inOrder = inOrder(mockResumableExtractor);
+        inOrder.verify(mockResumableExtractor).resumeFrom("position");
+        inOrder.verify(mockResumableExtractor).open(any());
+        verify(mockDownstreamEtlConsumer).consume(argThat(etlStreamObject -> etlStreamObject.getSequenceNumber() == 10));
+    }
+
+    @Test
+    public void openDoesNotResumeCheckpointedExtractorWithoutASavedCheckpoint() {
+        when(mockCheckpointTracker.start()).thenReturn(Optional.empty());
+
+        newCheckpointedProducer().open(mockMetrics);
+
+        verify(mockResumableExtractor, never()).resumeFrom(any());
+    }
+
+    @Test
+    public void produceTracksTheCompletionOfEveryExtractedObject() {
+        RecordCompletion recordCompletion = new RecordCompletion(0, "after-first");
+        when(mockCheckpointTracker.start()).thenReturn(Optional.empty());
+        when(mockCheckpointTracker.track(0, "after-first")).thenReturn(recordCompletion);
+        when(mockResumableExtractor.getPosition()).thenReturn("after-first");
+        when(mockResumableExtractor.next()).thenReturn(Optional.of(new TestDTO(COLUMN_VALUE1)))
+                .thenReturn(Optional.empty());
+        ExtractorEtlProducer<TestDTO> checkpointedProducer = newCheckpointedProducer();
+
+        checkpointedProducer.open(mockMetrics);
+        checkpointedProducer.produce();
+
+        ArgumentCaptor<EtlStreamObject> etlStreamObjectCaptor = ArgumentCaptor.forClass(EtlStreamObject.class);
+        verify(mockDownstreamEtlConsumer).consume(etlStreamObjectCaptor.capture());
+        etlStreamObjectCaptor.getValue().markCompleted();
+        assertThat(recordCompletion.isCompleted(), is(true));
+    }
+
+    @Test
+    public void closeReportsACompletedStreamToTheCheckpointTracker() throws Exception {
+        when(mockCheckpointTracker.start()).thenReturn(Optional.empty());
+        when(mockResumableExtractor.next()).thenReturn(Optional.empty());
+        ExtractorEtlProducer<TestDTO> checkpointedProducer = newCheckpointedProducer();
+
+        checkpointedProducer.open(mockMetrics);
+        checkpointedProducer.produce();
+        checkpointedProducer.close();
+
+        verify(mockCheckpointTracker).stop(true);
+    }
+
+    @Test
+    public void closeReportsAnIncompleteStreamToTheCheckpointTrackerIfTheExtractorWasNotExhausted() throws Exception {
+        when(mockCheckpointTracker.start()).thenReturn(Optional.empty());
+        ExtractorEtlProducer<TestDTO> checkpointedProducer = newCheckpointedProducer();
+
+        checkpointedProducer.open(mockMetrics);
+        checkpointedProducer.close();
+
+        verify(mockCheckpointTracker).stop(false);
+    }
+
+    @Test
+    public void closeReportsAnIncompleteStreamToTheCheckpointTrackerIfTheConsumerFailsToClose() throws Exception {
+        when(mockCheckpointTracker.start()).thenReturn(Optional.empty());
+        when(mockResumableExtractor.next()).thenReturn(Optional.empty());
+        doThrow(new UnrecoverableStreamFailureException("Test")).when(mockDownstreamEtlConsumer).close();
+        ExtractorEtlProducer<TestDTO> checkpointedProducer = newCheckpointedProducer();
+
+        checkpointedProducer.open(mockMetrics);
+        checkpointedProducer.produce();
+
+        try {
+            checkpointedProducer.close();
+        } catch (UnrecoverableStreamFailureException ignored) {
+        }
+
+        verify(mockCheckpointTracker).stop(false);
+    }
+
+    private ExtractorEtlProducer<TestDTO> newCheckpointedProducer() {
+        return new ExtractorEtlProducer<>(TEST_NAME, mockDownstreamEtlConsumer, mockResumableExtractor,
+                mockCheckpointTracker);
+    }
+}
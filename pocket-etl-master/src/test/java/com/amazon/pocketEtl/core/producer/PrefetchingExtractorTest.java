@@ -0,0 +1,216 @@
+/*
+ *   Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+package com.amazon.pocketEtl.core.producer;
+
+import com.amazon.pocketEtl.EtlTestBase;
+import com.amazon.pocketEtl.Extractor;
+import com.amazon.pocketEtl.ResumableExtractor;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PrefetchingExtractorTest extends EtlTestBase {
+    private static final String TEST_NAME = "TestName";
+
+    @Mock
+    private Extractor<String> mockExtractor;
+
+    private PrefetchingExtractor<String> prefetchingExtractor;
+
+    @After
+    public void closeExtractor() throws Exception {
+        if (prefetchingExtractor != null) {
+            prefetchingExtractor.close();
+        }
+    }
+
+    @Test
+    public void nextReturnsExtractedObjectsInOrder() {
+        when(mockExtractor.next()).thenReturn(Optional.of("1"), Optional.of("2"), Optional.empty());
+        prefetchingExtractor = new PrefetchingExtractor<>(TEST_NAME, mockExtractor, 4);
+        prefetchingExtractor.open(mockMetrics);
+
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.of("1")));
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.of("2")));
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.empty()));
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void openOpensTheWrappedExtractor() {
+        when(mockExtractor.next()).thenReturn(Optional.empty());
+        prefetchingExtractor = new PrefetchingExtractor<>(TEST_NAME, mockExtractor, 4);
+        prefetchingExtractor.open(mockMetrics);
+
+        verify(mockExtractor).open(mockMetrics);
+    }
+
+    @Test
+    public void readerExtractsAheadOfNext() {
+        when(mockExtractor.next()).thenReturn(Optional.of("1"), Optional.of("2"), Optional.empty());
+        prefetchingExtractor = new PrefetchingExtractor<>(TEST_NAME, mockExtractor, 4);
+        prefetchingExtractor.open(mockMetrics);
+
+        verify(mockExtractor, timeout(5000).times(3)).next();
+    }
+
+    @Test
+    public void readerDoesNotExtractMoreThanThePrefetchDepthAhead() throws Exception {
+        when(mockExtractor.next()).thenReturn(Optional.of("1"));
+        prefetchingExtractor = new PrefetchingExtractor<>(TEST_NAME, mockExtractor, 2);
+        prefetchingExtractor.open(mockMetrics);
+
+        // Two objects fill the buffer and the reader stalls holding the third
+        verify(mockExtractor, timeout(5000).times(3)).next();
+        Thread.sleep(100);
+        verify(mockExtractor, times(3)).next();
+
+        prefetchingExtractor.next();
+        verify(mockExtractor, timeout(5000).times(4)).next();
+    }
+
+    @Test
+    public void readerStallTimeIsReported() throws Exception {
+        when(mockExtractor.next()).thenReturn(Optional.of("1"));
+        prefetchingExtractor = new PrefetchingExtractor<>(TEST_NAME, mockExtractor, 1);
+        prefetchingExtractor.open(mockMetrics);
+
+        verify(mockExtractor, timeout(5000).times(2)).next();
+        prefetchingExtractor.next();
+
+        verify(mockMetrics, timeout(5000)).addTime(eq("PrefetchingExtractor." + TEST_NAME + ".readerStall"),
+                anyDouble());
+    }
+
+    @Test
+    public void averageBufferDepthAndFillRatioAreEmittedOncePerSampleInterval() throws Exception {
+        AtomicLong nanoClock = new AtomicLong(0);
+        when(mockExtractor.next()).thenReturn(Optional.of("1"), Optional.of("2"), Optional.of("3"), Optional.empty());
+        prefetchingExtractor = new PrefetchingExtractor<>(TEST_NAME, mockExtractor, 4, 1000, nanoClock::get);
+        prefetchingExtractor.open(mockMetrics);
+        verify(mockExtractor, timeout(5000).times(4)).next();
+        // Give the reader time to buffer what it has extracted
+        Thread.sleep(100);
+
+        // Depths of 3 and 2 are sampled within the interval and nothing is emitted
+        prefetchingExtractor.next();
+        prefetchingExtractor.next();
+        verify(mockMetrics, never()).addCount(eq(TEST_NAME + ".prefetchBufferDepth"), anyDouble());
+
+        // A depth of 1 is sampled once the interval has passed, and the average of all three is emitted
+        nanoClock.set(TimeUnit.SECONDS.toNanos(1));
+        prefetchingExtractor.next();
+        verify(mockMetrics).addCount(TEST_NAME + ".prefetchBufferDepth", 2.0);
+        verify(mockMetrics).addCount(TEST_NAME + ".prefetchBufferFillRatio", 0.5);
+    }
+
+    @Test
+    public void averageBufferDepthSinceTheLastEmissionIsEmittedOnClose() throws Exception {
+        when(mockExtractor.next()).thenReturn(Optional.of("1"), Optional.empty());
+        prefetchingExtractor = new PrefetchingExtractor<>(TEST_NAME, mockExtractor, 4, 1000, () -> 0L);
+        prefetchingExtractor.open(mockMetrics);
+        verify(mockExtractor, timeout(5000).times(2)).next();
+        // Give the reader time to buffer what it has extracted
+        Thread.sleep(100);
+
+        prefetchingExtractor.next();
+        verify(mockMetrics, never()).addCount(eq(TEST_NAME + ".prefetchBufferDepth"), anyDouble());
+
+        prefetchingExtractor.close();
+        prefetchingExtractor = null;
+        verify(mockMetrics).addCount(TEST_NAME + ".prefetchBufferDepth", 1.0);
+        verify(mockMetrics).addCount(TEST_NAME + ".prefetchBufferFillRatio", 0.25);
+    }
+
+    @Test
+    public void aPrefetchingExtractorIsNotResumable() {
+        assertThat(new PrefetchingExtractor<>(TEST_NAME, mockExtractor, 4) instanceof ResumableExtractor,
+                equalTo(false));
+    }
+
+    @Test
+    public void runtimeExceptionsAreThrownInOrderAndExtractionContinues() {
+        when(mockExtractor.next()).thenReturn(Optional.of("1")).thenThrow(new RuntimeException("Test exception"))
+                .thenReturn(Optional.of("2"), Optional.empty());
+        prefetchingExtractor = new PrefetchingExtractor<>(TEST_NAME, mockExtractor, 4);
+        prefetchingExtractor.open(mockMetrics);
+
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.of("1")));
+
+        try {
+            prefetchingExtractor.next();
+            fail("Expected RuntimeException");
+        } catch (RuntimeException ignored) {
+        }
+
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.of("2")));
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void unrecoverableStreamFailureExceptionEndsExtraction() {
+        when(mockExtractor.next()).thenThrow(new UnrecoverableStreamFailureException("Test exception"));
+        prefetchingExtractor = new PrefetchingExtractor<>(TEST_NAME, mockExtractor, 4);
+        prefetchingExtractor.open(mockMetrics);
+
+        try {
+            prefetchingExtractor.next();
+            fail("Expected UnrecoverableStreamFailureException");
+        } catch (UnrecoverableStreamFailureException ignored) {
+        }
+
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.empty()));
+        verify(mockExtractor, times(1)).next();
+    }
+
+    @Test
+    public void closeStopsTheReaderAndClosesTheWrappedExtractor() throws Exception {
+        when(mockExtractor.next()).thenReturn(Optional.of("1"));
+        PrefetchingExtractor<String> extractor = new PrefetchingExtractor<>(TEST_NAME, mockExtractor, 1);
+        extractor.open(mockMetrics);
+        extractor.close();
+
+        verify(mockExtractor).close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void callingNextBeforeOpenThrowsIllegalStateException() {
+        new PrefetchingExtractor<>(TEST_NAME, mockExtractor, 4).next();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void aPrefetchDepthOfZeroIsRejected() {
+        new PrefetchingExtractor<>(TEST_NAME, mockExtractor, 0);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *   Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+package com.amazon.pocketEtl.core.producer;
+
+import com.amazon.pocketEtl.EtlTestBase;
+import com.amazon.pocketEtl.ResumableExtractor;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ResumablePrefetchingExtractorTest extends EtlTestBase {
+    private static final String TEST_NAME = "TestName";
+
+    @Mock
+    private ResumableExtractor<String> mockResumableExtractor;
+
+    private ResumablePrefetchingExtractor<String> prefetchingExtractor;
+
+    @After
+    public void closeExtractor() throws Exception {
+        if (prefetchingExtractor != null) {
+            prefetchingExtractor.close();
+        }
+    }
+
+    @Test
+    public void positionFollowsTheObjectsReturnedRatherThanTheObjectsRead() {
+        when(mockResumableExtractor.next()).thenReturn(Optional.of("1"), Optional.of("2"), Optional.empty());
+        when(mockResumableExtractor.getPosition()).thenReturn("position-1", "position-2");
+        prefetchingExtractor = new ResumablePrefetchingExtractor<>(TEST_NAME, mockResumableExtractor, 4);
+        prefetchingExtractor.open(mockMetrics);
+
+        verify(mockResumableExtractor, timeout(5000).times(3)).next();
+        assertThat(prefetchingExtractor.getPosition(), nullValue());
+
+        prefetchingExtractor.next();
+        assertThat(prefetchingExtractor.getPosition(), equalTo("position-1"));
+
+        prefetchingExtractor.next();
+        assertThat(prefetchingExtractor.getPosition(), equalTo("position-2"));
+    }
+
+    @Test
+    public void resumeFromPositionsTheWrappedExtractor() {
+        prefetchingExtractor = new ResumablePrefetchingExtractor<>(TEST_NAME, mockResumableExtractor, 4);
+        prefetchingExtractor.resumeFrom("position-1");
+
+        verify(mockResumableExtractor).resumeFrom("position-1");
+        assertThat(prefetchingExtractor.getPosition(), equalTo("position-1"));
+    }
+
+    @Test
+    public void nextReturnsExtractedObjectsInOrder() {
+        when(mockResumableExtractor.next()).thenReturn(Optional.of("1"), Optional.of("2"), Optional.empty());
+        prefetchingExtractor = new ResumablePrefetchingExtractor<>(TEST_NAME, mockResumableExtractor, 4);
+        prefetchingExtractor.open(mockMetrics);
+
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.of("1")));
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.of("2")));
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.empty()));
+    }
+}
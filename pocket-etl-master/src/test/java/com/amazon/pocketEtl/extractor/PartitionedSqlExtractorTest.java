@@ -0,0 +1,108 @@
+/*
+ *   Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+package com.amazon.pocketEtl.extractor;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class PartitionedSqlExtractorTest {
+    private static final String SQL = "SELECT * FROM atable";
+
+    private final DataSource mockDataSource = mock(DataSource.class);
+
+    @Test
+    public void divideRangeDividesIntoEqualInclusiveRanges() {
+        List<long[]> ranges = PartitionedSqlExtractor.divideRange(1, 100, 4);
+
+        assertThat(ranges, hasSize(4));
+        assertThat(ranges.get(0), equalTo(new long[] {1, 25}));
+        assertThat(ranges.get(1), equalTo(new long[] {26, 50}));
+        assertThat(ranges.get(2), equalTo(new long[] {51, 75}));
+        assertThat(ranges.get(3), equalTo(new long[] {76, 100}));
+    }
+
+    @Test
+    public void divideRangeSpreadsTheRemainderOverTheFirstRanges() {
+        List<long[]> ranges = PartitionedSqlExtractor.divideRange(0, 9, 3);
+
+        assertThat(ranges.get(0), equalTo(new long[] {0, 3}));
+        assertThat(ranges.get(1), equalTo(new long[] {4, 6}));
+        assertThat(ranges.get(2), equalTo(new long[] {7, 9}));
+    }
+
+    @Test
+    public void divideRangeReturnsFewerRangesThanAskedForWhenTheRangeIsNarrow() {
+        List<long[]> ranges = PartitionedSqlExtractor.divideRange(5, 6, 4);
+
+        assertThat(ranges, hasSize(2));
+        assertThat(ranges.get(0), equalTo(new long[] {5, 5}));
+        assertThat(ranges.get(1), equalTo(new long[] {6, 6}));
+    }
+
+    @Test
+    public void divideRangeEndsTheLastRangeOnAnUpperBoundOfLongMaxValue() {
+        List<long[]> ranges = PartitionedSqlExtractor.divideRange(Long.MAX_VALUE - 9, Long.MAX_VALUE, 2);
+
+        assertThat(ranges, hasSize(2));
+        assertThat(ranges.get(0), equalTo(new long[] {Long.MAX_VALUE - 9, Long.MAX_VALUE - 5}));
+        assertThat(ranges.get(1), equalTo(new long[] {Long.MAX_VALUE - 4, Long.MAX_VALUE}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void divideRangeRejectsBoundsTooFarApartToDivide() {
+        PartitionedSqlExtractor.divideRange(Long.MIN_VALUE, Long.MAX_VALUE, 4);
+    }
+
+    @Test
+    public void splitWithGivenBoundsReturnsAnExtractorForEachRange() {
+        assertThat(PartitionedSqlExtractor.of(mockDataSource, SQL, Object.class, "id")
+                .withPartitionBounds(1, 100)
+                .split(4), hasSize(4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPartitionColumnNamesAreRejected() {
+        PartitionedSqlExtractor.of(mockDataSource, SQL, Object.class, "id; DROP TABLE atable");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reservedSqlParameterNamesAreRejected() {
+        PartitionedSqlExtractor.of(mockDataSource, SQL, Object.class, "id")
+                .withSqlParameters(ImmutableMap.of("partitionLowerBound", 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void boundsThatAreTheWrongWayRoundAreRejected() {
+        PartitionedSqlExtractor.of(mockDataSource, SQL, Object.class, "id").withPartitionBounds(10, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void splittingIntoNothingIsRejected() {
+        PartitionedSqlExtractor.of(mockDataSource, SQL, Object.class, "id").withPartitionBounds(1, 100).split(0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void callingNextBeforeOpenThrowsIllegalStateException() {
+        PartitionedSqlExtractor.of(mockDataSource, SQL, Object.class, "id").next();
+    }
+}
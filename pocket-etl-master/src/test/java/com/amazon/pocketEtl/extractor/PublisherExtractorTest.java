@@ -0,0 +1,153 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+package com.amazon.pocketEtl.extractor;
+
+import com.amazon.pocketEtl.EtlTestBase;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PublisherExtractorTest extends EtlTestBase {
+    private TestPublisher testPublisher;
+
+    @Before
+    public void createPublisher() {
+        testPublisher = new TestPublisher();
+    }
+
+    @Test
+    public void openRequestsAFullBufferOfElements() {
+        PublisherExtractor.of(testPublisher).withBufferSize(4).open(mockMetrics);
+
+        assertThat(testPublisher.requested, is(4L));
+    }
+
+    @Test
+    public void nextExtractsPublishedElementsUntilThePublisherCompletes() {
+        PublisherExtractor<String> extractor = PublisherExtractor.of(testPublisher).withBufferSize(4);
+        extractor.open(mockMetrics);
+
+        testPublisher.subscriber.onNext("1");
+        testPublisher.subscriber.onNext("2");
+        testPublisher.subscriber.onComplete();
+
+        assertThat(extractor.next(), equalTo(Optional.of("1")));
+        assertThat(extractor.next(), equalTo(Optional.of("2")));
+        assertThat(extractor.next(), equalTo(Optional.empty()));
+        assertThat(extractor.next(), equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void demandIsOnlyReplenishedAsElementsAreExtracted() {
+        PublisherExtractor<String> extractor = PublisherExtractor.of(testPublisher).withBufferSize(4);
+        extractor.open(mockMetrics);
+
+        for (int i = 0; i < 4; i++) {
+            testPublisher.subscriber.onNext(Integer.toString(i));
+        }
+
+        assertThat(testPublisher.requested, is(4L));
+
+        extractor.next();
+        assertThat(testPublisher.requested, is(4L));
+
+        extractor.next();
+        assertThat(testPublisher.requested, is(6L));
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void nextThrowsUnrecoverableStreamFailureExceptionWhenThePublisherSignalsAnError() {
+        PublisherExtractor<String> extractor = PublisherExtractor.of(testPublisher);
+        extractor.open(mockMetrics);
+
+        testPublisher.subscriber.onError(new RuntimeException("Test exception"));
+
+        extractor.next();
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void publishingMoreThanWasRequestedAbortsExtraction() {
+        PublisherExtractor<String> extractor = PublisherExtractor.of(testPublisher).withBufferSize(1);
+        extractor.open(mockMetrics);
+
+        testPublisher.subscriber.onNext("1");
+        testPublisher.subscriber.onNext("2");
+        testPublisher.subscriber.onNext("3");
+
+        assertThat(testPublisher.isCancelled, is(true));
+        extractor.next();
+    }
+
+    @Test
+    public void closeCancelsTheSubscription() {
+        PublisherExtractor<String> extractor = PublisherExtractor.of(testPublisher);
+        extractor.open(mockMetrics);
+        extractor.close();
+
+        assertThat(testPublisher.isCancelled, is(true));
+    }
+
+    @Test
+    public void closeDoesNotCancelACompletedSubscription() {
+        PublisherExtractor<String> extractor = PublisherExtractor.of(testPublisher);
+        extractor.open(mockMetrics);
+        testPublisher.subscriber.onComplete();
+        extractor.next();
+        extractor.close();
+
+        assertThat(testPublisher.isCancelled, is(false));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void callingNextBeforeOpenThrowsIllegalStateException() {
+        PublisherExtractor.of(testPublisher).next();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void anEmptyBufferIsRejected() {
+        PublisherExtractor.of(testPublisher).withBufferSize(0);
+    }
+
+    private static class TestPublisher implements Publisher<String>, Subscription {
+        private Subscriber<? super String> subscriber;
+        private long requested = 0;
+        private boolean isCancelled = false;
+
+        @Override
+        public void subscribe(Subscriber<? super String> subscriber) {
+            this.subscriber = subscriber;
+            subscriber.onSubscribe(this);
+        }
+
+        @Override
+        public void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            isCancelled = true;
+        }
+    }
+}
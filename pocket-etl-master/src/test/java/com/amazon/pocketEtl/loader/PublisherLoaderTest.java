@@ -0,0 +1,145 @@
+/*
+ *   Copyright 2018-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+package com.amazon.pocketEtl.loader;
+
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PublisherLoaderTest {
+    private PublisherLoader<String> publisherLoader;
+    private TestSubscriber testSubscriber;
+
+    @Before
+    public void createLoader() {
+        publisherLoader = new PublisherLoader<>();
+        testSubscriber = new TestSubscriber();
+    }
+
+    @Test
+    public void loadPublishesObjectsThatWereRequested() {
+        publisherLoader.subscribe(testSubscriber);
+        testSubscriber.subscription.request(2);
+
+        publisherLoader.load("1");
+        publisherLoader.load("2");
+
+        assertThat(testSubscriber.received, contains("1", "2"));
+    }
+
+    @Test
+    public void loadBlocksUntilTheSubscriberRequestsMore() throws Exception {
+        CountDownLatch loaded = new CountDownLatch(1);
+        publisherLoader.subscribe(testSubscriber);
+
+        Thread loadingThread = new Thread(() -> {
+            publisherLoader.load("1");
+            loaded.countDown();
+        });
+        loadingThread.start();
+
+        assertThat(loaded.await(100, TimeUnit.MILLISECONDS), is(false));
+        assertThat(testSubscriber.received, is(empty()));
+
+        testSubscriber.subscription.request(1);
+
+        assertThat(loaded.await(5, TimeUnit.SECONDS), is(true));
+        loadingThread.join();
+        assertThat(testSubscriber.received, contains("1"));
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void loadThrowsUnrecoverableStreamFailureExceptionAfterTheSubscriberCancels() {
+        publisherLoader.subscribe(testSubscriber);
+        testSubscriber.subscription.cancel();
+
+        publisherLoader.load("1");
+    }
+
+    @Test
+    public void closeCompletesTheSubscriber() {
+        publisherLoader.subscribe(testSubscriber);
+        publisherLoader.close();
+
+        assertThat(testSubscriber.isCompleted, is(true));
+    }
+
+    @Test
+    public void subscribingAfterCloseCompletesTheSubscriber() {
+        publisherLoader.close();
+        publisherLoader.subscribe(testSubscriber);
+
+        assertThat(testSubscriber.isCompleted, is(true));
+    }
+
+    @Test
+    public void aSecondSubscriberIsSignalledAnError() {
+        TestSubscriber secondSubscriber = new TestSubscriber();
+
+        publisherLoader.subscribe(testSubscriber);
+        publisherLoader.subscribe(secondSubscriber);
+
+        assertThat(secondSubscriber.error, instanceOf(IllegalStateException.class));
+        assertThat(testSubscriber.error == null, is(true));
+    }
+
+    @Test
+    public void requestingANonPositiveNumberSignalsAnError() {
+        publisherLoader.subscribe(testSubscriber);
+        testSubscriber.subscription.request(0);
+
+        assertThat(testSubscriber.error, instanceOf(IllegalArgumentException.class));
+    }
+
+    private static class TestSubscriber implements Subscriber<String> {
+        private final List<String> received = new ArrayList<>();
+        private Subscription subscription;
+        private Throwable error;
+        private boolean isCompleted = false;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(String element) {
+            received.add(element);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            isCompleted = true;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ *   Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+package functionalTests;
+
+import com.amazon.pocketEtl.Extractor;
+import com.amazon.pocketEtl.core.consumer.EtlConsumer;
+import com.amazon.pocketEtl.core.consumer.EtlConsumerFactory;
+import com.amazon.pocketEtl.core.executor.EtlExecutorFactory;
+import com.amazon.pocketEtl.core.producer.EtlProducer;
+import com.amazon.pocketEtl.core.producer.EtlProducerFactory;
+import com.amazon.pocketEtl.extractor.PartitionedSqlExtractor;
+import com.google.common.collect.ImmutableMap;
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+
+public class PartitionedSqlExtractorFunctionalTest {
+    private static ComboPooledDataSource dataSource;
+    private Connection connection;
+
+    private final static String DROP_SQL = "DROP TABLE IF EXISTS partitioned_test_data";
+
+    private final static String CREATE_SQL =
+            "CREATE TABLE partitioned_test_data (" +
+            " id INT NOT NULL," +
+            " aString VARCHAR(20)," +
+            " aNumber BIGINT," +
+            " aDateTime TIMESTAMP," +
+            " aBoolean BOOLEAN," +
+            " PRIMARY KEY (id))";
+
+    private final static String SELECT_SQL = "SELECT * FROM partitioned_test_data";
+    private final static DateTime FIRST_DATE_TIME = new DateTime(2017, 1, 2, 3, 4, 5);
+
+    @BeforeClass
+    public static void startDatabase() throws Exception {
+        dataSource = new ComboPooledDataSource();
+        dataSource.setDriverClass("org.hsqldb.jdbc.JDBCDriver");
+        dataSource.setJdbcUrl("jdbc:hsqldb:mem:pocketETL");
+    }
+
+    @Before
+    public void initializeDatabase() throws Exception {
+        connection = dataSource.getConnection();
+        connection.createStatement().execute(DROP_SQL);
+        connection.createStatement().execute(CREATE_SQL);
+    }
+
+    @Test
+    public void splitRangesBetweenThemExtractEveryRowExactlyOnce() throws Exception {
+        insertRows(100);
+
+        List<Extractor<TestDTO2>> extractors =
+                PartitionedSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "id").split(4);
+
+        assertThat(extractors, hasSize(4));
+        assertThat(extractIdsConcurrently(extractors), equalTo(idsBetween(1, 100)));
+    }
+
+    @Test
+    public void splitRangesOfADateColumnBetweenThemExtractEveryRowExactlyOnce() throws Exception {
+        insertRows(20);
+
+        List<Extractor<TestDTO2>> extractors =
+                PartitionedSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "aDateTime")
+                        .withDatePartitionColumn()
+                        .split(3);
+
+        assertThat(extractors, hasSize(3));
+        assertThat(extractIdsConcurrently(extractors), equalTo(idsBetween(1, 20)));
+    }
+
+    @Test
+    public void givenBoundsLimitTheRowsExtracted() throws Exception {
+        insertRows(30);
+
+        List<Extractor<TestDTO2>> extractors =
+                PartitionedSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "id")
+                        .withPartitionBounds(11, 20)
+                        .split(3);
+
+        assertThat(extractIdsConcurrently(extractors), equalTo(idsBetween(11, 20)));
+    }
+
+    @Test
+    public void givenDateBoundsLimitTheRowsExtracted() throws Exception {
+        insertRows(30);
+
+        List<Extractor<TestDTO2>> extractors =
+                PartitionedSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "aDateTime")
+                        .withDatePartitionBounds(FIRST_DATE_TIME.plusHours(10), FIRST_DATE_TIME.plusHours(19))
+                        .split(3);
+
+        assertThat(extractIdsConcurrently(extractors), equalTo(idsBetween(11, 20)));
+    }
+
+    @Test
+    public void sqlParametersApplyToEveryRangeAndToTheBoundsQuery() throws Exception {
+        insertRows(40);
+
+        List<Extractor<TestDTO2>> extractors =
+                PartitionedSqlExtractor.of(dataSource, SELECT_SQL + " WHERE aNumber = #aNumber", TestDTO2.class, "id")
+                        .withSqlParameters(ImmutableMap.of("aNumber", 1))
+                        .split(4);
+
+        List<Integer> expectedIds = idsBetween(1, 40).stream().filter(id -> id % 2 == 1).collect(Collectors.toList());
+        assertThat(extractIdsConcurrently(extractors), equalTo(expectedIds));
+    }
+
+    @Test
+    public void splitOfAnEmptyQueryReturnsASingleRangeThatExtractsNothing() throws Exception {
+        List<Extractor<TestDTO2>> extractors =
+                PartitionedSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "id").split(4);
+
+        assertThat(extractors, hasSize(1));
+        assertThat(extractIdsConcurrently(extractors), equalTo(Collections.emptyList()));
+    }
+
+    @Test
+    public void aParallelExtractorProducerMergesEveryRangeIntoTheStream() throws Exception {
+        insertRows(100);
+        EtlExecutorFactory etlExecutorFactory = new EtlExecutorFactory();
+        EtlConsumerFactory etlConsumerFactory = new EtlConsumerFactory(etlExecutorFactory);
+        BufferLoader<TestDTO2> bufferLoader = new BufferLoader<>();
+
+        EtlConsumer errorEtlConsumer = etlConsumerFactory.newLogAsErrorConsumer("load",
+                getLogger(PartitionedSqlExtractorFunctionalTest.class), TestDTO2.class, TestDTO2::toString);
+        EtlConsumer loadEtlConsumer = etlConsumerFactory.newLoader("load", bufferLoader, TestDTO2.class,
+                errorEtlConsumer, etlExecutorFactory.newUnboundFixedThreadsEtlExecutorFactory(2));
+        EtlProducer etlProducer = new EtlProducerFactory(etlExecutorFactory).newParallelExtractorProducer("extract",
+                PartitionedSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "id"), loadEtlConsumer, 4);
+
+        etlProducer.open(null);
+        etlProducer.produce();
+        etlProducer.close();
+
+        List<Integer> ids = bufferLoader.getBuffer().stream().map(TestDTO2::getId).sorted()
+                .collect(Collectors.toList());
+        assertThat(ids, equalTo(idsBetween(1, 100)));
+    }
+
+    @Test
+    public void anUnsplitExtractorExtractsEveryRow() throws Exception {
+        insertRows(10);
+        List<Integer> ids = new ArrayList<>();
+
+        try (PartitionedSqlExtractor<TestDTO2> extractor =
+                     PartitionedSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "id")) {
+            extractor.open(null);
+
+            for (Optional<TestDTO2> next = extractor.next(); next.isPresent(); next = extractor.next()) {
+                ids.add(next.get().getId());
+            }
+        }
+
+        Collections.sort(ids);
+        assertThat(ids, equalTo(idsBetween(1, 10)));
+    }
+
+    private void insertRows(int numberOfRows) throws Exception {
+        try (PreparedStatement statement =
+                     connection.prepareStatement("INSERT INTO partitioned_test_data VALUES (?, 'test', ?, ?, TRUE)")) {
+            for (int id = 1; id <= numberOfRows; id++) {
+                statement.setInt(1, id);
+                statement.setLong(2, id % 2);
+                statement.setTimestamp(3, new Timestamp(FIRST_DATE_TIME.plusHours(id - 1).getMillis()));
+                statement.execute();
+            }
+        }
+    }
+
+    private static List<Integer> extractIdsConcurrently(List<Extractor<TestDTO2>> extractors) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(extractors.size());
+        List<Future<List<Integer>>> futures = new ArrayList<>();
+
+        try {
+            for (Extractor<TestDTO2> extractor : extractors) {
+                futures.add(executorService.submit(() -> {
+                    List<Integer> ids = new ArrayList<>();
+
+                    try (Extractor<TestDTO2> rangeExtractor = extractor) {
+                        rangeExtractor.open(null);
+
+                        for (Optional<TestDTO2> next = rangeExtractor.next(); next.isPresent();
+                             next = rangeExtractor.next()) {
+                            ids.add(next.get().getId());
+                        }
+                    }
+
+                    return ids;
+                }));
+            }
+
+            List<Integer> allIds = new ArrayList<>();
+
+            for (Future<List<Integer>> future : futures) {
+                allIds.addAll(future.get());
+            }
+
+            Collections.sort(allIds);
+            return allIds;
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private static List<Integer> idsBetween(int firstId, int lastId) {
+        return IntStream.rangeClosed(firstId, lastId).boxed().collect(Collectors.toList());
+    }
+}